@@ -0,0 +1,352 @@
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Avisa os outros terminais (outras instâncias do PetStop na mesma rede ou na mesma máquina)
+ * de cada gravação feita por este, para que atualizem só o registro alterado em vez de
+ * recarregar tudo.
+ *
+ * Cada gravação com sucesso nos DAOs vira um evento (entidade, id, operação, versão) de 38
+ * bytes enviado por UDP multicast (grupo e porta em petstop.barramento.grupo/porta, TTL 1: não
+ * sai da rede local). Quem recebe relê o registro do banco para o cache, o índice, o resumo e
+ * o catálogo, e avisa os seus ouvintes (ex.: a tela, que troca a linha da tabela).
+ *
+ * UDP não garante entrega: um evento perdido deixa o outro terminal desatualizado até a próxima
+ * alteração do registro, o vencimento do cache ou o botão Recarregar. Não há perda de dados:
+ * a versão (controle otimista) continua impedindo gravar por cima de uma alteração não vista.
+ * Eventos repetidos ou mais antigos do que o último recebido do mesmo registro são ignorados.
+ */
+public class BarramentoAlteracoes {
+
+    public enum Entidade { PET, PRODUTO }
+
+    public enum Operacao {
+        INSERIDO,   //Versão 0: registro novo
+        ATUALIZADO,
+        REMOVIDO
+    }
+
+    //Recebe os eventos de outros terminais, na thread do barramento
+    public interface Ouvinte {
+        void alteracaoRecebida(Evento evento);
+    }
+
+    public static final String GRUPO_PADRAO = "239.255.77.77";
+    public static final int PORTA_PADRAO = 47770;
+
+    private static final int MAGICO = 0x50455453; //"PETS"
+    private static final int TAMANHO = 4 + 8 + 8 + 1 + 1 + 8 + 8;
+    private static final int VERSOES_GUARDADAS = 10_000; //Últimas versões recebidas, para ignorar repetidos
+    private static final int BUFFER_RECEPCAO = 1 << 20;
+
+    /** Uma alteração gravada por algum terminal. */
+    public static final class Evento {
+        private final long origem;
+        private final long sequencia;
+        private final Entidade entidade;
+        private final Operacao operacao;
+        private final long id;
+        private final long versao;
+
+        private Evento(long origem, long sequencia, Entidade entidade, Operacao operacao, long id, long versao) {
+            this.origem = origem;
+            this.sequencia = sequencia;
+            this.entidade = entidade;
+            this.operacao = operacao;
+            this.id = id;
+            this.versao = versao;
+        }
+
+        //Terminal que gravou (sorteado a cada execução)
+        public long getOrigem() {
+            return origem;
+        }
+
+        public long getSequencia() {
+            return sequencia;
+        }
+
+        public Entidade getEntidade() {
+            return entidade;
+        }
+
+        public Operacao getOperacao() {
+            return operacao;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getVersao() {
+            return versao;
+        }
+
+        @Override
+        public String toString() {
+            return "Evento{" + entidade + " " + id + " " + operacao + " v" + versao
+                    + ", origem=" + Long.toHexString(origem) + "#" + sequencia + '}';
+        }
+    }
+
+    private final InetSocketAddress grupo;
+    private final long origem = ThreadLocalRandom.current().nextLong();
+    private final AtomicLong sequencia = new AtomicLong();
+    private final List<Ouvinte> ouvintes = new CopyOnWriteArrayList<>();
+
+    //Protegido por synchronized(versoes)
+    private final LinkedHashMap<Long, Long> versoes = new LinkedHashMap<Long, Long>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> maisAntigo) {
+            return size() > VERSOES_GUARDADAS;
+        }
+    };
+
+    private volatile MulticastSocket socket; //Alterado só com synchronized(this)
+    private Thread receptor;
+    private volatile boolean ativo;
+    private PetDAO.Ouvinte publicadorPets;
+    private ProdutoDAO.Ouvinte publicadorProdutos;
+
+    //Contadores
+    private final LongAdder publicados = new LongAdder();
+    private final LongAdder recebidos = new LongAdder();
+    private final LongAdder ignorados = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+
+    public BarramentoAlteracoes() {
+        this(System.getProperty("petstop.barramento.grupo", GRUPO_PADRAO),
+                Integer.getInteger("petstop.barramento.porta", PORTA_PADRAO));
+    }
+
+    public BarramentoAlteracoes(String grupo, int porta) {
+        this.grupo = new InetSocketAddress(grupo, porta);
+    }
+
+    /**
+     * Entra no grupo multicast e começa a receber os eventos dos outros terminais.
+     * @ return false se não foi possível (ex.: rede sem multicast); a aplicação segue sem o barramento.
+     */
+    public synchronized boolean iniciar() {
+        if (ativo) return true;
+        MulticastSocket novo = null;
+        try {
+            InetAddress endereco = grupo.getAddress();
+            if (endereco == null || !endereco.isMulticastAddress()) {
+                throw new IOException("endereço " + grupo.getHostString() + " não é multicast");
+            }
+            novo = new MulticastSocket(grupo.getPort()); //SO_REUSEADDR: vários terminais na mesma máquina
+            novo.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            novo.setTimeToLive(1);
+            novo.setReceiveBufferSize(BUFFER_RECEPCAO);
+            novo.joinGroup(grupo, null);
+        } catch (IOException | RuntimeException e) {
+            if (novo != null) novo.close();
+            System.err.println("AVISO: Barramento de alterações desativado (" + grupo + "): " + e.getMessage()
+                    + ". Alterações de outros terminais só aparecem ao recarregar.");
+            return false;
+        }
+        MulticastSocket entrada = novo;
+        socket = entrada;
+        ativo = true;
+        receptor = new Thread(() -> receber(entrada), "PetStop-Barramento");
+        receptor.setDaemon(true);
+        receptor.start();
+        System.out.println("INFO: Barramento de alterações ativo em " + grupo + " (terminal "
+                + Long.toHexString(origem) + ").");
+        return true;
+    }
+
+    public void adicionarOuvinte(Ouvinte ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    public void removerOuvinte(Ouvinte ouvinte) {
+        ouvintes.remove(ouvinte);
+    }
+
+    public boolean isAtivo() {
+        return ativo;
+    }
+
+    public long getOrigem() {
+        return origem;
+    }
+
+    /** Envia o evento aos outros terminais. Não faz nada se o barramento não estiver ativo. */
+    public void publicar(Entidade entidade, Operacao operacao, long id, long versao) {
+        MulticastSocket atual = socket;
+        if (!ativo || atual == null) return;
+        ByteBuffer dados = ByteBuffer.allocate(TAMANHO);
+        dados.putInt(MAGICO)
+                .putLong(origem)
+                .putLong(sequencia.incrementAndGet())
+                .put((byte) entidade.ordinal())
+                .put((byte) operacao.ordinal())
+                .putLong(id)
+                .putLong(versao);
+        try {
+            atual.send(new DatagramPacket(dados.array(), TAMANHO, grupo));
+            publicados.increment();
+        } catch (IOException e) {
+            falhas.increment();
+            if (ativo) System.err.println("Erro ao publicar alteração no barramento: " + e.getMessage());
+        }
+    }
+
+    private void receber(MulticastSocket entrada) {
+        byte[] bytes = new byte[TAMANHO + 1]; //Um byte a mais para reconhecer pacotes maiores (de outro programa)
+        DatagramPacket pacote = new DatagramPacket(bytes, bytes.length);
+        while (ativo) {
+            try {
+                pacote.setLength(bytes.length);
+                entrada.receive(pacote);
+            } catch (SocketException e) {
+                break; //Socket fechado por encerrar()
+            } catch (IOException e) {
+                falhas.increment();
+                continue;
+            }
+            Evento evento = ler(pacote);
+            if (evento == null || evento.origem == origem) continue; //Outro programa no grupo, ou o próprio terminal
+            recebidos.increment();
+            if (!novo(evento)) {
+                ignorados.increment();
+                continue;
+            }
+            for (Ouvinte ouvinte : ouvintes) {
+                try {
+                    ouvinte.alteracaoRecebida(evento);
+                } catch (RuntimeException e) {
+                    System.err.println("Erro ao aplicar " + evento + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static Evento ler(DatagramPacket pacote) {
+        if (pacote.getLength() != TAMANHO) return null;
+        ByteBuffer dados = ByteBuffer.wrap(pacote.getData(), pacote.getOffset(), TAMANHO);
+        if (dados.getInt() != MAGICO) return null;
+        long origem = dados.getLong();
+        long sequencia = dados.getLong();
+        int entidade = dados.get();
+        int operacao = dados.get();
+        if (entidade < 0 || entidade >= Entidade.values().length
+                || operacao < 0 || operacao >= Operacao.values().length) return null;
+        return new Evento(origem, sequencia, Entidade.values()[entidade], Operacao.values()[operacao],
+                dados.getLong(), dados.getLong());
+    }
+
+    //false se já foi recebida uma versão igual ou mais nova do registro (pacote repetido ou atrasado)
+    private boolean novo(Evento evento) {
+        long chave = evento.id * 2 + evento.entidade.ordinal();
+        long versao = evento.operacao == Operacao.REMOVIDO ? Long.MAX_VALUE : evento.versao;
+        synchronized (versoes) {
+            Long anterior = versoes.get(chave);
+            if (anterior != null && anterior >= versao) return false;
+            versoes.put(chave, versao);
+            return true;
+        }
+    }
+
+    //--- Ligação com os DAOs ---
+
+    /**
+     * Publica as gravações feitas pelos DAOs deste terminal e aplica nos DAOs (cache, índice,
+     * resumo, catálogo e controle de estoque) as recebidas dos outros, antes dos demais ouvintes.
+     */
+    public synchronized void ligarDAOs(PetDAO petDAO, ProdutoDAO produtoDAO) {
+        if (publicadorPets != null) return;
+        ouvintes.add(0, evento -> {
+            boolean removido = evento.operacao == Operacao.REMOVIDO;
+            if (evento.entidade == Entidade.PET) {
+                petDAO.aplicarAlteracaoRemota(evento.id, removido);
+            } else {
+                produtoDAO.aplicarAlteracaoRemota(evento.id, removido);
+            }
+        });
+        publicadorPets = new PetDAO.Ouvinte() {
+            @Override
+            public void petGravado(Pet pet) {
+                if (deOutroTerminal()) return;
+                publicar(Entidade.PET, operacao(pet.getVersao()), pet.getId(), pet.getVersao());
+            }
+
+            @Override
+            public void petRemovido(long id) {
+                if (deOutroTerminal()) return;
+                publicar(Entidade.PET, Operacao.REMOVIDO, id, 0);
+            }
+        };
+        publicadorProdutos = new ProdutoDAO.Ouvinte() {
+            @Override
+            public void produtoGravado(Produto produto) {
+                if (deOutroTerminal()) return;
+                publicar(Entidade.PRODUTO, operacao(produto.getVersao()), produto.getId(), produto.getVersao());
+            }
+
+            @Override
+            public void produtoRemovido(long id) {
+                if (deOutroTerminal()) return;
+                publicar(Entidade.PRODUTO, Operacao.REMOVIDO, id, 0);
+            }
+        };
+        PetDAO.adicionarOuvinte(publicadorPets);
+        ProdutoDAO.adicionarOuvinte(publicadorProdutos);
+    }
+
+    //As gravações feitas na thread do barramento são as recebidas de outro terminal: não são publicadas de novo
+    private boolean deOutroTerminal() {
+        return Thread.currentThread() == receptor;
+    }
+
+    private static Operacao operacao(long versao) {
+        return versao == 0 ? Operacao.INSERIDO : Operacao.ATUALIZADO;
+    }
+
+    /** Sai do grupo e para de publicar. */
+    public synchronized void encerrar() {
+        if (publicadorPets != null) {
+            PetDAO.removerOuvinte(publicadorPets);
+            ProdutoDAO.removerOuvinte(publicadorProdutos);
+        }
+        if (!ativo) return;
+        ativo = false;
+        socket.close(); //Desbloqueia o receive() da thread do barramento
+        socket = null;
+        System.out.println("INFO: " + resumo());
+    }
+
+    //--- Métricas ---
+
+    public long getPublicados() {
+        return publicados.sum();
+    }
+
+    public long getRecebidos() {
+        return recebidos.sum();
+    }
+
+    public long getIgnorados() {
+        return ignorados.sum();
+    }
+
+    public String resumo() {
+        return String.format("BarramentoAlteracoes{publicados=%d, recebidos=%d, ignorados=%d, falhas=%d}",
+                publicados.sum(), recebidos.sum(), ignorados.sum(), falhas.sum());
+    }
+}
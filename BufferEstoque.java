@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Buffer write-behind das alterações de estoque (vendas e entradas de mercadoria).
+ *
+ * Cada venda só soma o delta ao total pendente do produto, em memória, e retorna na hora.
+ * A cada intervalo os totais são gravados com ProdutoDAO.ajustarEstoques: uma instrução por
+ * produto, não importa quantas vendas ele teve no intervalo, todas numa única transação.
+ *
+ * Durabilidade:
+ * - Cada gravação é um lote com um número de sequência, anotado em estoque_aplicado na mesma
+ *   transação dos UPDATEs (ProdutoDAO.ajustarEstoques(origem, sequencia, ...)).
+ * - Se a gravação falhar (ex.: banco fora do ar, ou a resposta do commit se perdeu), o mesmo
+ *   lote, com a mesma sequência, é tentado de novo no próximo intervalo; se ele já tinha sido
+ *   gravado, o banco o ignora. Produtos que não existem mais são descartados.
+ * - encerrar() (chamado ao fechar a aplicação, ou pelo shutdown hook se ela for encerrada
+ *   por fora) grava o que estiver pendente; se o banco não responder, os lotes são salvos
+ *   no arquivo de pendentes, que é lido e gravado no próximo iniciar(). Se a aplicação cair
+ *   depois do commit e antes de atualizar o arquivo, o lote é reenviado e ignorado.
+ *
+ * Enquanto não são gravados, os deltas não aparecem nas consultas ao banco; use
+ * getPendente(id) para somá-los à quantidade lida, se precisar do valor exato.
+ */
+public class BufferEstoque {
+
+    private static final int TENTATIVAS_AO_ENCERRAR = 3;
+
+    private final ProdutoDAO dao;
+    private final long intervaloMs;
+    private final Path arquivoPendentes;
+
+    private final ConcurrentHashMap<Long, Long> pendentes = new ConcurrentHashMap<>(); //ID -> soma dos deltas
+    private final Object gravacao = new Object(); //Uma gravação por vez
+
+    //Lotes já numerados e ainda não confirmados pelo banco, na ordem da sequência. Protegidos por gravacao.
+    private final long origem = ThreadLocalRandom.current().nextLong(); //Identifica este buffer em estoque_aplicado
+    private long proximaSequencia = 1;
+    private final List<Lote> lotes = new ArrayList<>();
+    private final ConcurrentHashMap<Long, Long> emLotes = new ConcurrentHashMap<>(); //ID -> soma dos deltas nos lotes
+    private final List<Runnable> fontes = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService agendador; //Protegido por synchronized(this)
+    private Thread ganchoEncerramento;
+    private volatile boolean iniciado;
+    private volatile boolean encerrado;
+    private volatile boolean arquivoExiste; //Há deltas salvos em arquivoPendentes ainda não gravados
+
+    //Contadores
+    private final LongAdder ajustes = new LongAdder();
+    private final LongAdder gravacoes = new LongAdder();
+    private final LongAdder produtosGravados = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+
+    public BufferEstoque(ProdutoDAO dao, long intervaloMs, Path arquivoPendentes) {
+        this.dao = dao;
+        this.intervaloMs = intervaloMs;
+        this.arquivoPendentes = arquivoPendentes;
+    }
+
+    /**
+     * Recupera os deltas salvos no último encerramento e começa a gravação periódica.
+     * Chamado no início da aplicação e, se ainda não tiver sido, no primeiro ajuste.
+     */
+    public synchronized void iniciar() {
+        if (iniciado || encerrado) return;
+        iniciado = true;
+        recuperarPendentes();
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PetStop-BufferEstoque");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(this::gravarComSeguranca, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        ganchoEncerramento = new Thread(this::encerrar, "PetStop-BufferEstoque-Encerramento");
+        Runtime.getRuntime().addShutdownHook(ganchoEncerramento);
+        if (temPendencias()) {
+            agendador.execute(this::gravarComSeguranca); //Grava logo o que veio do arquivo
+        }
+    }
+
+    /**
+     * Soma delta ao estoque do produto (negativo para saída). Retorna sem acessar o banco.
+     * Depois de encerrar(), o ajuste é gravado direto com ProdutoDAO.ajustarEstoque.
+     */
+    public void ajustar(long id, long delta) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("ID do produto inválido para ajuste de estoque: " + id);
+        }
+        if (delta == 0) return;
+        if (!iniciado) iniciar();
+        if (encerrado) {
+            dao.ajustarEstoque(id, delta);
+            return;
+        }
+        pendentes.merge(id, delta, Long::sum);
+        ajustes.increment();
+        if (encerrado) {
+            //encerrar() pode ter feito a última gravação entre a verificação acima e o merge: quem
+            //retirar o total do mapa grava (aqui, direto; ou a gravação do encerrar(), se ainda não terminou)
+            Long sobra = pendentes.remove(id);
+            if (sobra != null && sobra != 0) dao.ajustarEstoque(id, sobra);
+        }
+    }
+
+    public void registrarVenda(long id, long quantidade) {
+        ajustar(id, -quantidade);
+    }
+
+    public void registrarEntrada(long id, long quantidade) {
+        ajustar(id, quantidade);
+    }
+
+    //Soma dos deltas do produto ainda não gravados no banco
+    public long getPendente(long id) {
+        Long delta = pendentes.get(id);
+        Long emLote = emLotes.get(id);
+        return (delta == null ? 0 : delta) + (emLote == null ? 0 : emLote);
+    }
+
+    /**
+     * Registra quem acumula ajustes por conta própria (ex.: ControleEstoque). Antes de cada
+     * gravação a fonte é chamada para passar os seus ao buffer com ajustar().
+     */
+    public void adicionarFonte(Runnable fonte) {
+        fontes.add(fonte);
+    }
+
+    public boolean isEncerrado() {
+        return encerrado;
+    }
+
+    /**
+     * Executa a tarefa sem nenhuma gravação em andamento: os deltas que ela ler com getPendente
+     * ainda não estão no banco, e os que não estão pendentes já estão.
+     */
+    public <T> T semGravacao(Supplier<T> tarefa) {
+        synchronized (gravacao) {
+            return tarefa.get();
+        }
+    }
+
+    public int getProdutosPendentes() {
+        Set<Long> ids = new HashSet<>(pendentes.keySet());
+        ids.addAll(emLotes.keySet());
+        return ids.size();
+    }
+
+    /**
+     * Grava agora os deltas pendentes.
+     * @ return Quantos produtos foram atualizados no banco.
+     */
+    public int gravar() {
+        synchronized (gravacao) {
+            for (Runnable fonte : fontes) {
+                fonte.run();
+            }
+            formarLote();
+            int gravados = 0;
+            while (!lotes.isEmpty()) {
+                Lote lote = lotes.get(0);
+                ResultadoLote resultado = dao.ajustarEstoques(lote.origem, lote.sequencia, lote.ids, lote.deltas);
+                gravacoes.increment();
+                if (!resultado.isConfirmado()) {
+                    //Não se sabe se chegou ao banco: o mesmo lote vai de novo no próximo intervalo
+                    falhas.increment();
+                    break;
+                }
+                retirarLote();
+                produtosGravados.add(resultado.getSucessos());
+                gravados += resultado.getSucessos();
+
+                for (ResultadoLote.Falha falha : resultado.getFalhas()) {
+                    int i = falha.getIndice();
+                    if (LoteJDBC.LOTE_JA_GRAVADO.equals(falha.getMensagem())) {
+                        continue; //Gravado numa tentativa anterior
+                    }
+                    if (LoteJDBC.REGISTRO_NAO_ENCONTRADO.equals(falha.getMensagem())) {
+                        System.err.println("AVISO: Ajuste de estoque descartado, produto " + lote.ids[i]
+                                + " não existe mais (delta " + lote.deltas[i] + ").");
+                    } else {
+                        falhas.increment();
+                        //A transação foi confirmada sem esta linha: ela vai num próximo lote
+                        pendentes.merge(lote.ids[i], lote.deltas[i], Long::sum);
+                    }
+                }
+            }
+            if (arquivoExiste) {
+                //O arquivo passa a ter só o que ainda não foi gravado, para não aplicar de novo na próxima execução
+                if (lotes.isEmpty() && pendentes.isEmpty()) apagarArquivoPendentes();
+                else salvarPendentes(false);
+            }
+            return gravados;
+        }
+    }
+
+    //Retira cada total do mapa para um novo lote; vendas que chegarem durante a gravação entram no próximo
+    private void formarLote() {
+        List<Long> ids = new ArrayList<>(pendentes.size());
+        List<Long> deltas = new ArrayList<>(pendentes.size());
+        for (Long id : pendentes.keySet()) {
+            Long delta = pendentes.remove(id);
+            if (delta != null && delta != 0) {
+                ids.add(id);
+                deltas.add(delta);
+            }
+        }
+        if (ids.isEmpty()) return;
+
+        long[] idsLote = new long[ids.size()];
+        long[] deltasLote = new long[ids.size()];
+        for (int i = 0; i < idsLote.length; i++) {
+            idsLote[i] = ids.get(i);
+            deltasLote[i] = deltas.get(i);
+        }
+        adicionarLote(new Lote(origem, proximaSequencia++, idsLote, deltasLote));
+    }
+
+    private void adicionarLote(Lote lote) {
+        lotes.add(lote);
+        for (int i = 0; i < lote.ids.length; i++) {
+            emLotes.merge(lote.ids[i], lote.deltas[i], BufferEstoque::somarOuRemover);
+        }
+    }
+
+    //Retira o primeiro lote, confirmado pelo banco
+    private void retirarLote() {
+        Lote lote = lotes.remove(0);
+        for (int i = 0; i < lote.ids.length; i++) {
+            emLotes.merge(lote.ids[i], -lote.deltas[i], BufferEstoque::somarOuRemover);
+        }
+    }
+
+    private static Long somarOuRemover(Long atual, Long delta) {
+        long soma = atual + delta;
+        return soma == 0 ? null : soma;
+    }
+
+    private boolean temPendencias() {
+        synchronized (gravacao) {
+            return !pendentes.isEmpty() || !lotes.isEmpty();
+        }
+    }
+
+    //Na thread do agendador: um erro inesperado não pode cancelar as próximas gravações
+    private void gravarComSeguranca() {
+        try {
+            gravar();
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao gravar o buffer de estoque: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Para a gravação periódica e grava o que estiver pendente. Se mesmo assim sobrar algo
+     * (banco fora do ar), salva no arquivo de pendentes para o próximo iniciar().
+     */
+    public void encerrar() {
+        synchronized (this) {
+            if (encerrado) return;
+            encerrado = true;
+            if (agendador != null) agendador.shutdown();
+            if (ganchoEncerramento != null && Thread.currentThread() != ganchoEncerramento) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(ganchoEncerramento);
+                } catch (IllegalStateException e) {
+                    //A JVM já está encerrando: o gancho está rodando ou vai rodar, sem problema
+                }
+            }
+        }
+        try {
+            if (agendador != null) agendador.awaitTermination(intervaloMs + 5_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int tentativa = 1; tentativa <= TENTATIVAS_AO_ENCERRAR; tentativa++) {
+            gravarComSeguranca(); //A primeira roda mesmo sem pendentes, para pegar os das fontes
+            if (!temPendencias()) break;
+        }
+        if (temPendencias()) {
+            salvarPendentes(true);
+        }
+        if (iniciado) System.out.println("INFO: " + resumo());
+    }
+
+    //--- Arquivo de pendentes (uma linha "origem;sequencia;id;delta" por produto de cada lote) ---
+
+    //Deltas gravados juntos, sempre com a mesma sequência: se o lote for reenviado, o banco o ignora
+    private static final class Lote {
+        final long origem;
+        final long sequencia;
+        final long[] ids;
+        final long[] deltas;
+
+        Lote(long origem, long sequencia, long[] ids, long[] deltas) {
+            this.origem = origem;
+            this.sequencia = sequencia;
+            this.ids = ids;
+            this.deltas = deltas;
+        }
+    }
+
+    //Os deltas soltos viram um lote antes de ir para o arquivo: o que está no arquivo é sempre reenviado com a mesma sequência
+    private void salvarPendentes(boolean avisar) {
+        synchronized (gravacao) {
+            formarLote();
+            StringBuilder sb = new StringBuilder();
+            int linhas = 0;
+            for (Lote lote : lotes) {
+                for (int i = 0; i < lote.ids.length; i++) {
+                    sb.append(lote.origem).append(';').append(lote.sequencia).append(';')
+                            .append(lote.ids[i]).append(';').append(lote.deltas[i]).append(System.lineSeparator());
+                    linhas++;
+                }
+            }
+            try {
+                Path temporario = arquivoPendentes.resolveSibling(arquivoPendentes.getFileName() + ".tmp");
+                Files.write(temporario, sb.toString().getBytes(StandardCharsets.UTF_8));
+                Files.move(temporario, arquivoPendentes, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                arquivoExiste = true;
+                if (avisar) System.err.println("AVISO: " + linhas + " ajustes de estoque não gravados no banco foram salvos em "
+                        + arquivoPendentes + " e serão gravados na próxima execução.");
+            } catch (IOException e) {
+                System.err.println("ERRO: Não foi possível salvar os ajustes de estoque pendentes: " + e.getMessage());
+                for (Map.Entry<Long, Long> pendente : emLotes.entrySet()) {
+                    System.err.println("  produto " + pendente.getKey() + ": " + pendente.getValue()); //Para não perder no log
+                }
+            }
+        }
+    }
+
+    private void recuperarPendentes() {
+        if (!Files.exists(arquivoPendentes)) return;
+        arquivoExiste = true;
+        synchronized (gravacao) {
+            try {
+                int recuperados = 0;
+                List<String[]> linhasLote = new ArrayList<>();
+                for (String linha : Files.readAllLines(arquivoPendentes, StandardCharsets.UTF_8)) {
+                    String[] partes = linha.trim().split(";");
+                    if (partes.length == 2) {
+                        //Formato antigo, sem sequência: "id;delta"
+                        pendentes.merge(Long.parseLong(partes[0]), Long.parseLong(partes[1]), Long::sum);
+                        recuperados++;
+                    } else if (partes.length == 4) {
+                        if (!linhasLote.isEmpty() && !mesmoLote(linhasLote.get(0), partes)) {
+                            recuperarLote(linhasLote);
+                        }
+                        linhasLote.add(partes);
+                        recuperados++;
+                    }
+                }
+                if (!linhasLote.isEmpty()) recuperarLote(linhasLote);
+                System.out.println("INFO: " + recuperados + " ajustes de estoque pendentes recuperados de " + arquivoPendentes + ".");
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Erro ao ler os ajustes de estoque pendentes de " + arquivoPendentes + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean mesmoLote(String[] linha, String[] outra) {
+        return linha[0].equals(outra[0]) && linha[1].equals(outra[1]);
+    }
+
+    //Monta o lote com a origem e a sequência do arquivo, e esvazia a lista de linhas
+    private void recuperarLote(List<String[]> linhasLote) {
+        long[] ids = new long[linhasLote.size()];
+        long[] deltas = new long[linhasLote.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Long.parseLong(linhasLote.get(i)[2]);
+            deltas[i] = Long.parseLong(linhasLote.get(i)[3]);
+        }
+        String[] primeira = linhasLote.get(0);
+        adicionarLote(new Lote(Long.parseLong(primeira[0]), Long.parseLong(primeira[1]), ids, deltas));
+        linhasLote.clear();
+    }
+
+    private void apagarArquivoPendentes() {
+        try {
+            Files.deleteIfExists(arquivoPendentes);
+            arquivoExiste = false;
+        } catch (IOException e) {
+            System.err.println("Erro ao apagar " + arquivoPendentes + ": " + e.getMessage());
+        }
+    }
+
+    //--- Métricas ---
+
+    public long getAjustes() {
+        return ajustes.sum();
+    }
+
+    public long getGravacoes() {
+        return gravacoes.sum();
+    }
+
+    public long getProdutosGravados() {
+        return produtosGravados.sum();
+    }
+
+    public String resumo() {
+        return String.format("BufferEstoque{ajustes=%d, gravacoes=%d, produtosGravados=%d, falhas=%d, pendentes=%d}",
+                ajustes.sum(), gravacoes.sum(), produtosGravados.sum(), falhas.sum(), getProdutosPendentes());
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache em memória, por ID, para as buscas mais repetidas (ex.: o mesmo produto consultado
+ * várias vezes no balcão). Funciona como read-through: na falta, carrega do banco e guarda.
+ *
+ * - Limite de tamanho: ao passar da capacidade, o item usado há mais tempo é removido (LRU).
+ * - Validade (TTL): itens mais velhos que o tempo de vida são recarregados na próxima busca.
+ * - Os DAOs invalidam o ID a cada atualização/remoção.
+ *
+ * O cache guarda e devolve cópias, para que alterar o objeto recebido (ex.: na tela, antes
+ * de salvar) não altere o que está no cache.
+ */
+public class CacheLRU<V> {
+
+    private static class Entrada<V> {
+        final V valor;
+        final long carregadoEm; //System.nanoTime()
+
+        Entrada(V valor, long carregadoEm) {
+            this.valor = valor;
+            this.carregadoEm = carregadoEm;
+        }
+    }
+
+    private final String descricao; //Ex.: "produtos", usado no resumo
+    private final int capacidade;
+    private final long tempoDeVidaNanos;
+    private final UnaryOperator<V> copiar;
+    private final LinkedHashMap<Long, Entrada<V>> entradas;
+
+    //Incrementada a cada invalidação: um carregamento iniciado antes dela não é guardado
+    private long geracao;
+
+    //Contadores para dimensionar o cache
+    private long acertos;
+    private long faltas;
+    private long remocoesPorCapacidade;
+    private long expiracoes;
+    private long invalidacoes;
+
+    public CacheLRU(String descricao, int capacidade, long tempoDeVidaMs, UnaryOperator<V> copiar) {
+        this.descricao = descricao;
+        this.capacidade = capacidade;
+        this.tempoDeVidaNanos = tempoDeVidaMs * 1_000_000L;
+        this.copiar = copiar;
+        //accessOrder = true: cada get move o item para o fim, o primeiro é o menos usado
+        this.entradas = new LinkedHashMap<Long, Entrada<V>>(capacidade * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entrada<V>> maisAntigo) {
+                if (size() > CacheLRU.this.capacidade) {
+                    remocoesPorCapacidade++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Busca o item no cache ou, se não estiver (ou estiver vencido), carrega com o carregador.
+     * O carregamento é feito fora do lock, então buscas de outros IDs não esperam pelo banco.
+     * @ return Uma cópia do item, ou null se o carregador não o encontrar (null não é guardado).
+     */
+    public V obter(long id, LongFunction<V> carregador) {
+        long geracaoAntes;
+        synchronized (this) {
+            Entrada<V> entrada = entradas.get(id);
+            if (entrada != null) {
+                if (System.nanoTime() - entrada.carregadoEm <= tempoDeVidaNanos) {
+                    acertos++;
+                    return copiar.apply(entrada.valor);
+                }
+                entradas.remove(id);
+                expiracoes++;
+            }
+            faltas++;
+            geracaoAntes = geracao;
+        }
+
+        V carregado = carregador.apply(id);
+        if (carregado == null) {
+            return null;
+        }
+        V guardado = copiar.apply(carregado);
+        synchronized (this) {
+            if (geracao == geracaoAntes) {
+                entradas.put(id, new Entrada<>(guardado, System.nanoTime()));
+            }
+        }
+        return carregado;
+    }
+
+    //Remove o ID do cache (chamado pelos DAOs após atualizar ou remover o registro)
+    public synchronized void invalidar(long id) {
+        geracao++;
+        if (entradas.remove(id) != null) {
+            invalidacoes++;
+        }
+    }
+
+    public synchronized void limpar() {
+        geracao++;
+        invalidacoes += entradas.size();
+        entradas.clear();
+    }
+
+    //Remove os itens vencidos sem esperar que sejam buscados de novo
+    public synchronized int removerVencidos() {
+        long agora = System.nanoTime();
+        int removidos = 0;
+        for (Iterator<Entrada<V>> it = entradas.values().iterator(); it.hasNext(); ) {
+            if (agora - it.next().carregadoEm > tempoDeVidaNanos) {
+                it.remove();
+                removidos++;
+            }
+        }
+        expiracoes += removidos;
+        return removidos;
+    }
+
+    public synchronized int getTamanho() {
+        return entradas.size();
+    }
+
+    public int getCapacidade() {
+        return capacidade;
+    }
+
+    public synchronized long getAcertos() {
+        return acertos;
+    }
+
+    public synchronized long getFaltas() {
+        return faltas;
+    }
+
+    public synchronized long getRemocoesPorCapacidade() {
+        return remocoesPorCapacidade;
+    }
+
+    public synchronized long getExpiracoes() {
+        return expiracoes;
+    }
+
+    public synchronized long getInvalidacoes() {
+        return invalidacoes;
+    }
+
+    //Percentual de buscas atendidas pelo cache (0 a 100)
+    public synchronized double getTaxaDeAcerto() {
+        long total = acertos + faltas;
+        return total == 0 ? 0.0 : acertos * 100.0 / total;
+    }
+
+    public synchronized String resumo() {
+        return String.format("Cache %s{tamanho=%d/%d, acertos=%d, faltas=%d, taxa=%.1f%%, removidosPorCapacidade=%d, expirados=%d, invalidados=%d}",
+                descricao, entradas.size(), capacidade, acertos, faltas, getTaxaDeAcerto(),
+                remocoesPorCapacidade, expiracoes, invalidacoes);
+    }
+}
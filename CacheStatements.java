@@ -0,0 +1,240 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache de PreparedStatement de uma conexão física do PoolConexoes.
+ *
+ * Os DAOs preparam sempre os mesmos SQLs (um por método) e fecham o PreparedStatement no
+ * finally. Com o cache, o close() do DAO apenas limpa os parâmetros e guarda o statement, e o
+ * próximo prepareStatement com o mesmo SQL nessa conexão o reaproveita, sem nova ida ao
+ * servidor para preparar (com useServerPrepStmts) nem novo parse no driver.
+ *
+ * Só entram no cache prepareStatement(sql) e prepareStatement(sql, autoGeneratedKeys).
+ * Statements guardados além da capacidade são fechados de verdade (o menos usado primeiro).
+ * Se o mesmo SQL for preparado duas vezes ao mesmo tempo na conexão, o segundo é um
+ * statement comum, fechado normalmente.
+ */
+public class CacheStatements {
+
+    private final Connection conexao; //Conexão física
+    private final int capacidade;
+    private final LinkedHashMap<String, PreparedStatement> livres; //Protegido por synchronized(this)
+
+    //Incrementada a cada devolução da conexão ao pool: statements fechados depois disso não voltam ao cache
+    private long emprestimo; //Protegido por synchronized(this)
+
+    //Contadores compartilhados por todas as conexões do pool
+    private final LongAdder acertos;
+    private final LongAdder faltas;
+
+    public CacheStatements(Connection conexao, int capacidade, LongAdder acertos, LongAdder faltas) {
+        this.conexao = conexao;
+        this.capacidade = capacidade;
+        this.acertos = acertos;
+        this.faltas = faltas;
+        this.livres = new LinkedHashMap<String, PreparedStatement>(capacidade * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> maisAntigo) {
+                if (size() > CacheStatements.this.capacidade) {
+                    fecharFisico(maisAntigo.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //Indica se a chamada de prepareStatement pode usar o cache
+    static boolean podeGuardar(Object[] args) {
+        return args != null && args[0] instanceof String
+                && (args.length == 1 || (args.length == 2 && args[1] instanceof Integer));
+    }
+
+    /**
+     * Retorna um PreparedStatement do cache (ou um novo) para o SQL.
+     * @ param conexaoDoPool O proxy entregue ao DAO, devolvido por getConnection() do statement.
+     */
+    PreparedStatement preparar(Connection conexaoDoPool, Object[] args) throws SQLException {
+        String sql = (String) args[0];
+        int chavesGeradas = args.length == 2 ? (Integer) args[1] : -1;
+        String chave = chavesGeradas < 0 ? sql : chavesGeradas + "\u0000" + sql;
+
+        PreparedStatement fisico;
+        long doEmprestimo;
+        synchronized (this) {
+            doEmprestimo = emprestimo;
+            fisico = livres.remove(chave);
+        }
+        if (fisico != null) {
+            acertos.increment();
+        } else {
+            faltas.increment();
+            fisico = chavesGeradas < 0 ? conexao.prepareStatement(sql) : conexao.prepareStatement(sql, chavesGeradas);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new StatementGuardado(fisico, chave, conexaoDoPool, doEmprestimo));
+    }
+
+    //Chamado pelo pool quando a conexão é devolvida
+    synchronized void conexaoDevolvida() {
+        emprestimo++;
+    }
+
+    private void guardar(String chave, PreparedStatement fisico, long doEmprestimo) {
+        synchronized (this) {
+            if (doEmprestimo == emprestimo && !livres.containsKey(chave)) {
+                livres.put(chave, fisico);
+                return;
+            }
+        }
+        fecharFisico(fisico); //Conexão já devolvida ou SQL repetido: não guarda
+    }
+
+    //Fecha todos os statements guardados (a conexão física vai ser descartada)
+    public synchronized void fechar() {
+        Iterator<PreparedStatement> it = livres.values().iterator();
+        while (it.hasNext()) {
+            fecharFisico(it.next());
+            it.remove();
+        }
+    }
+
+    private static void fecharFisico(PreparedStatement fisico) {
+        try {
+            fisico.close();
+        } catch (SQLException e) {
+            System.err.println("Erro ao fechar PreparedStatement do cache: " + e.getMessage());
+        }
+    }
+
+    public synchronized int getTamanho() {
+        return livres.size();
+    }
+
+    //PreparedStatement entregue ao DAO. O close() devolve ao cache em vez de fechar.
+    private final class StatementGuardado implements InvocationHandler {
+        private final PreparedStatement fisico;
+        private final String chave;
+        private final Connection conexaoDoPool;
+        private final long doEmprestimo;
+        private final List<ResultSet> resultados = new ArrayList<>(1);
+        private boolean fechado;
+        private boolean usouLote;
+        private boolean alterado; //Mudou alguma configuração que não sabemos restaurar
+        private Integer fetchSizeOriginal;
+        private Integer maxRowsOriginal;
+        private Integer queryTimeoutOriginal;
+
+        StatementGuardado(PreparedStatement fisico, String chave, Connection conexaoDoPool, long doEmprestimo) {
+            this.fisico = fisico;
+            this.chave = chave;
+            this.conexaoDoPool = conexaoDoPool;
+            this.doEmprestimo = doEmprestimo;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nome = method.getName();
+            switch (nome) {
+                case "close":
+                    if (!fechado) {
+                        fechado = true;
+                        devolver();
+                    }
+                    return null;
+                case "isClosed":
+                    return fechado || fisico.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StatementDoCache[" + fisico + "]";
+                default:
+                    break;
+            }
+            if (fechado) {
+                throw new SQLException("O PreparedStatement já foi fechado.");
+            }
+            switch (nome) {
+                case "getConnection":
+                    return conexaoDoPool;
+                case "addBatch":
+                    usouLote = true;
+                    break;
+                //Configurações que são restauradas ao voltar para o cache
+                case "setFetchSize":
+                    if (fetchSizeOriginal == null) fetchSizeOriginal = fisico.getFetchSize();
+                    break;
+                case "setMaxRows":
+                    if (maxRowsOriginal == null) maxRowsOriginal = fisico.getMaxRows();
+                    break;
+                case "setQueryTimeout":
+                    if (queryTimeoutOriginal == null) queryTimeoutOriginal = fisico.getQueryTimeout();
+                    break;
+                case "setFetchDirection":
+                case "setMaxFieldSize":
+                case "setLargeMaxRows":
+                case "setEscapeProcessing":
+                case "setCursorName":
+                case "setPoolable":
+                case "closeOnCompletion":
+                    alterado = true;
+                    break;
+                default:
+                    break;
+            }
+            if (nome.startsWith("execute")) {
+                resultados.clear(); //Executar de novo fecha os ResultSets anteriores do statement
+            }
+            Object retorno;
+            try {
+                retorno = method.invoke(fisico, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (retorno instanceof ResultSet) {
+                resultados.add((ResultSet) retorno); //Fechados junto com o statement, como num close() normal
+            }
+            return retorno;
+        }
+
+        //Deixa o statement como recém-preparado e o guarda no cache
+        private void devolver() {
+            try {
+                for (ResultSet rs : resultados) {
+                    rs.close();
+                }
+                resultados.clear();
+                if (alterado) {
+                    fecharFisico(fisico);
+                    return;
+                }
+                fisico.clearParameters();
+                if (usouLote) fisico.clearBatch();
+                if (fetchSizeOriginal != null) fisico.setFetchSize(fetchSizeOriginal);
+                if (maxRowsOriginal != null) fisico.setMaxRows(maxRowsOriginal);
+                if (queryTimeoutOriginal != null) fisico.setQueryTimeout(queryTimeoutOriginal);
+                fisico.clearWarnings();
+            } catch (SQLException e) {
+                fecharFisico(fisico); //Estado desconhecido: não reaproveita
+                return;
+            }
+            guardar(chave, fisico, doEmprestimo);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Catálogo de produtos em memória, para consultas de preço e estoque sem ir ao banco.
+ *
+ * Os dados ficam em colunas (um array por campo) em vez de um objeto Produto por item:
+ * o preço é guardado em centavos (long) e não em BigDecimal, e a posição de cada ID é
+ * encontrada por um MapaLongInt. As consultas por ID não alocam nenhum objeto.
+ *
+ * É carregado do ProdutoDAO e se mantém atualizado ouvindo as gravações feitas pelo DAO
+ * (ProdutoDAO.adicionarOuvinte). Alterações feitas direto no banco, por fora do sistema,
+ * só aparecem após um novo carregar().
+ */
+public class CatalogoProdutos implements ProdutoDAO.Ouvinte {
+
+    public static final long NAO_ENCONTRADO = -1L;
+
+    //Colunas: a mesma posição i em todos os arrays é o mesmo produto
+    private long[] ids;
+    private String[] nomes;
+    private long[] quantidades;
+    private long[] precosCentavos;
+    private boolean[] disponiveis;
+    private int tamanho;
+    private final MapaLongInt posicoes;
+
+    //Leituras otimistas sem bloqueio; as gravações (raras) pegam o lock exclusivo
+    private final StampedLock lock = new StampedLock();
+
+    public CatalogoProdutos() {
+        this(1_024);
+    }
+
+    public CatalogoProdutos(int capacidadeInicial) {
+        int capacidade = Math.max(16, capacidadeInicial);
+        ids = new long[capacidade];
+        nomes = new String[capacidade];
+        quantidades = new long[capacidade];
+        precosCentavos = new long[capacidade];
+        disponiveis = new boolean[capacidade];
+        posicoes = new MapaLongInt(capacidade);
+    }
+
+    /**
+     * Cria o catálogo com todos os produtos do banco e passa a ouvir as gravações do DAO.
+     * @ return O catálogo, ou null se não foi possível ler os produtos (um catálogo pela metade
+     * daria totais errados sem aviso).
+     */
+    public static CatalogoProdutos carregarDoBanco(ProdutoDAO dao) {
+        long total = dao.contarProdutos();
+        CatalogoProdutos catalogo = new CatalogoProdutos(total > 0 ? (int) total : 1_024);
+        ProdutoDAO.adicionarOuvinte(catalogo); //Antes de ler, para não perder gravações feitas durante a carga
+        if (!catalogo.carregar(dao)) {
+            ProdutoDAO.removerOuvinte(catalogo);
+            return null;
+        }
+        return catalogo;
+    }
+
+    //Lê os produtos numa única consulta em streaming, sem montar uma lista com a tabela inteira
+    public boolean carregar(ProdutoDAO dao) {
+        if (dao.percorrerTodosProdutos(this::produtoGravado) < 0) {
+            System.err.println("ERRO: Não foi possível carregar o catálogo de produtos.");
+            return false;
+        }
+        System.out.println("INFO: Catálogo de produtos carregado: " + getTamanho() + " produtos.");
+        return true;
+    }
+
+    // --- Consultas (sem alocação) ---
+
+    //Retorna o preço em centavos, ou NAO_ENCONTRADO
+    public long getPrecoCentavos(long id) {
+        long carimbo = lock.tryOptimisticRead();
+        long preco = lerPreco(id);
+        if (!lock.validate(carimbo)) {
+            carimbo = lock.readLock();
+            try {
+                preco = lerPreco(id);
+            } finally {
+                lock.unlockRead(carimbo);
+            }
+        }
+        return preco;
+    }
+
+    //Retorna a quantidade em estoque, ou NAO_ENCONTRADO
+    public long getQuantidade(long id) {
+        long carimbo = lock.tryOptimisticRead();
+        long quantidade = lerQuantidade(id);
+        if (!lock.validate(carimbo)) {
+            carimbo = lock.readLock();
+            try {
+                quantidade = lerQuantidade(id);
+            } finally {
+                lock.unlockRead(carimbo);
+            }
+        }
+        return quantidade;
+    }
+
+    //Retorna se o produto existe e está disponível para venda
+    public boolean isDisponivel(long id) {
+        long carimbo = lock.tryOptimisticRead();
+        boolean disponivel = lerDisponivel(id);
+        if (!lock.validate(carimbo)) {
+            carimbo = lock.readLock();
+            try {
+                disponivel = lerDisponivel(id);
+            } finally {
+                lock.unlockRead(carimbo);
+            }
+        }
+        return disponivel;
+    }
+
+    public boolean contem(long id) {
+        return getPrecoCentavos(id) != NAO_ENCONTRADO;
+    }
+
+    public String getNome(long id) {
+        long carimbo = lock.readLock();
+        try {
+            int i = posicoes.obter(id);
+            return i < 0 ? null : nomes[i];
+        } finally {
+            lock.unlockRead(carimbo);
+        }
+    }
+
+    //Monta um Produto (aloca; use só quando precisar do objeto completo)
+    public Produto getProduto(long id) {
+        long carimbo = lock.readLock();
+        try {
+            int i = posicoes.obter(id);
+            if (i < 0) return null;
+            return new Produto(ids[i], nomes[i], quantidades[i], BigDecimal.valueOf(precosCentavos[i], 2), disponiveis[i]);
+        } finally {
+            lock.unlockRead(carimbo);
+        }
+    }
+
+    public int getTamanho() {
+        long carimbo = lock.tryOptimisticRead();
+        int atual = tamanho;
+        if (!lock.validate(carimbo)) {
+            carimbo = lock.readLock();
+            try {
+                atual = tamanho;
+            } finally {
+                lock.unlockRead(carimbo);
+            }
+        }
+        return atual;
+    }
+
+    /*
+     * As leituras otimistas podem ver os arrays no meio de uma gravação; por isso cada
+     * leitura confere os limites e o ID antes de usar a posição, e o resultado só é aceito
+     * se validate() confirmar que não houve gravação no meio.
+     */
+    private long lerPreco(long id) {
+        int i = posicaoSegura(id);
+        return i < 0 ? NAO_ENCONTRADO : precosCentavos[i];
+    }
+
+    private long lerQuantidade(long id) {
+        int i = posicaoSegura(id);
+        return i < 0 ? NAO_ENCONTRADO : quantidades[i];
+    }
+
+    private boolean lerDisponivel(long id) {
+        int i = posicaoSegura(id);
+        return i >= 0 && disponiveis[i];
+    }
+
+    private int posicaoSegura(long id) {
+        try {
+            int i = posicoes.obter(id);
+            long[] idsAtuais = ids;
+            return i >= 0 && i < idsAtuais.length && idsAtuais[i] == id ? i : -1;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return -1; //Mapa sendo redimensionado: o validate() vai falhar e a leitura é refeita com lock
+        }
+    }
+
+    // --- Cópia para relatórios ---
+
+    /**
+     * Cópia das colunas num instante, para percorrer o catálogo inteiro (ex.: RelatorioEstoque)
+     * em várias threads sem segurar o lock. Os arrays têm exatamente getTamanho() posições.
+     */
+    public static final class Instantaneo {
+        final long[] ids;
+        final String[] nomes;
+        final long[] quantidades;
+        final long[] precosCentavos;
+        final boolean[] disponiveis;
+
+        Instantaneo(long[] ids, String[] nomes, long[] quantidades, long[] precosCentavos, boolean[] disponiveis) {
+            this.ids = ids;
+            this.nomes = nomes;
+            this.quantidades = quantidades;
+            this.precosCentavos = precosCentavos;
+            this.disponiveis = disponiveis;
+        }
+
+        public int getTamanho() {
+            return ids.length;
+        }
+    }
+
+    public Instantaneo instantaneo() {
+        long carimbo = lock.readLock();
+        try {
+            return new Instantaneo(Arrays.copyOf(ids, tamanho), Arrays.copyOf(nomes, tamanho),
+                    Arrays.copyOf(quantidades, tamanho), Arrays.copyOf(precosCentavos, tamanho),
+                    Arrays.copyOf(disponiveis, tamanho));
+        } finally {
+            lock.unlockRead(carimbo);
+        }
+    }
+
+    // --- Atualizações vindas do ProdutoDAO ---
+
+    @Override
+    public void produtoGravado(Produto produto) {
+        if (produto == null || produto.getId() == null || produto.getPreco() == null) {
+            return;
+        }
+        long centavos = paraCentavos(produto.getPreco());
+        long carimbo = lock.writeLock();
+        try {
+            long id = produto.getId();
+            int i = posicoes.obter(id);
+            if (i < 0) {
+                garantirCapacidade(tamanho + 1);
+                i = tamanho++;
+                ids[i] = id;
+                posicoes.colocar(id, i);
+            }
+            nomes[i] = produto.getNome();
+            quantidades[i] = produto.getQuantidade();
+            precosCentavos[i] = centavos;
+            disponiveis[i] = produto.isDisponivel();
+        } finally {
+            lock.unlockWrite(carimbo);
+        }
+    }
+
+    @Override
+    public void produtoRemovido(long id) {
+        long carimbo = lock.writeLock();
+        try {
+            int i = posicoes.remover(id);
+            if (i < 0) return;
+            //Move o último produto para o buraco, mantendo as colunas contíguas
+            int ultimo = --tamanho;
+            if (i != ultimo) {
+                ids[i] = ids[ultimo];
+                nomes[i] = nomes[ultimo];
+                quantidades[i] = quantidades[ultimo];
+                precosCentavos[i] = precosCentavos[ultimo];
+                disponiveis[i] = disponiveis[ultimo];
+                posicoes.colocar(ids[i], i);
+            }
+            ids[ultimo] = 0L;
+            nomes[ultimo] = null;
+        } finally {
+            lock.unlockWrite(carimbo);
+        }
+    }
+
+    private void garantirCapacidade(int necessario) {
+        if (necessario <= ids.length) return;
+        int novaCapacidade = Math.max(necessario, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, novaCapacidade);
+        nomes = Arrays.copyOf(nomes, novaCapacidade);
+        quantidades = Arrays.copyOf(quantidades, novaCapacidade);
+        precosCentavos = Arrays.copyOf(precosCentavos, novaCapacidade);
+        disponiveis = Arrays.copyOf(disponiveis, novaCapacidade);
+    }
+
+    //A coluna preco é DECIMAL(10,2), então a conversão para centavos é exata
+    static long paraCentavos(BigDecimal preco) {
+        return preco.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    //Memória aproximada das colunas e do índice, em bytes (sem contar as Strings dos nomes)
+    public long getBytesAlocados() {
+        long carimbo = lock.readLock();
+        try {
+            long porPosicao = 8L + 4L + 8L + 8L + 1L; //id, referência do nome (oops comprimidos), quantidade, preço, disponível
+            return ids.length * porPosicao + posicoes.getBytesAlocados();
+        } finally {
+            lock.unlockRead(carimbo);
+        }
+    }
+}
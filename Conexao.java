@@ -1,15 +1,98 @@
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 //Classe que contém os métodos para abrir e fechar a conexão com o banco de dados.
+//As conexões vêm de um pool (PoolConexoes), então abrir/fechar não custa um novo login no MySQL.
+//Com -Dpetstop.sql.rastreamento=amostragem|todos as conexões passam pelo RastreadorSQL (log de SQL lento).
 public class Conexao {
-    private static final String URL = "jdbc:mysql://localhost:3306/PetStop";
-    public static final String USUARIO = "root"; //usuário padrão do banco
-    private static final String SENHA = "";
+    /*
+     * Fetch size das listagens grandes (listarTodos*, exportação), em -Dpetstop.db.fetchSize:
+     * - "streaming" (padrão no MySQL): Integer.MIN_VALUE, o Connector/J entrega as linhas uma a uma
+     *   em vez de ler o resultado inteiro para a memória antes da primeira;
+     * - um número positivo: lê em blocos desse tamanho (no MySQL liga o useCursorFetch na URL);
+     * - 0: não altera o padrão do driver (padrão fora do MySQL, ex.: H2 nos testes e no JMH).
+     */
+    private static final int FETCH_SIZE = lerFetchSize(System.getProperty("petstop.db.fetchSize"),
+            System.getProperty("petstop.db.url", "jdbc:mysql:").startsWith("jdbc:mysql:"));
 
-    //Método no qual vai conectar com o banco PetStop
+    //Podem ser trocados sem recompilar com -Dpetstop.db.url=... (ex.: um H2 local em modo MySQL para os testes e o JMH)
+    private static final String URL = comParametrosDoDriver(System.getProperty("petstop.db.url", "jdbc:mysql://localhost:3306/PetStop"));
+    public static final String USUARIO = System.getProperty("petstop.db.usuario", "root"); //usuário padrão do banco
+    private static final String SENHA = System.getProperty("petstop.db.senha", "");
+
+    //Configuração do pool de conexões
+    private static final int TAMANHO_POOL = 10; //Máximo de conexões abertas ao mesmo tempo
+    private static final long ESPERA_MAXIMA_MS = 5_000; //Tempo máximo aguardando uma conexão livre
+    private static final long OCIOSIDADE_MAXIMA_MS = 5 * 60_000; //Conexões paradas há mais tempo são fechadas
+    private static final long LIMITE_VAZAMENTO_MS = 60_000; //Conexões emprestadas há mais tempo geram aviso
+    private static final int STATEMENTS_POR_CONEXAO = 64; //PreparedStatements guardados por conexão (os DAOs usam uns 25 SQLs)
+
+    private static final PoolConexoes POOL = new PoolConexoes(URL, USUARIO, SENHA,
+            TAMANHO_POOL, ESPERA_MAXIMA_MS, OCIOSIDADE_MAXIMA_MS, LIMITE_VAZAMENTO_MS,
+            Boolean.parseBoolean(System.getProperty("petstop.db.cacheStatements", "true")) ? STATEMENTS_POR_CONEXAO : 0);
+
+    /*
+     * Liga no Connector/J os prepared statements no servidor (o MySQL faz o parse do SQL uma vez
+     * por conexão) e o cache de statements do driver. Junto com o cache do pool, o SQL de cada
+     * método do DAO é preparado uma única vez por conexão física.
+     * Desligado com -Dpetstop.db.cacheStatements=false; parâmetros já presentes na URL são mantidos.
+     */
+    private static String comParametrosDoDriver(String url) {
+        if (!url.startsWith("jdbc:mysql:")) {
+            return url;
+        }
+        boolean cacheStatements = Boolean.parseBoolean(System.getProperty("petstop.db.cacheStatements", "true"));
+        StringBuilder sb = new StringBuilder(url);
+        String[][] parametros = {
+                {"useServerPrepStmts", cacheStatements ? "true" : null},
+                {"cachePrepStmts", cacheStatements ? "true" : null},
+                {"prepStmtCacheSize", cacheStatements ? "250" : null},
+                {"prepStmtCacheSqlLimit", cacheStatements ? "2048" : null},
+                {"useCursorFetch", FETCH_SIZE > 0 ? "true" : null}}; //Necessário para fetch size positivo
+        for (String[] parametro : parametros) {
+            if (parametro[1] == null || url.contains(parametro[0] + "=")) continue;
+            sb.append(sb.indexOf("?") < 0 ? '?' : '&').append(parametro[0]).append('=').append(parametro[1]);
+        }
+        return sb.toString();
+    }
+
+    //Método no qual vai conectar com o banco PetStop (empresta uma conexão do pool)
     public static Connection conectar() {
+        long inicio = Metricas.isAtivo() ? System.nanoTime() : 0;
+        try {
+            return RastreadorSQL.envolver(POOL.getConnection());
+        } catch (SQLException e) {
+            System.out.println("Erro ao conectar: " + e.getMessage());
+            return null;
+        } finally {
+            if (inicio != 0) Metricas.registrarEsperaConexao(System.nanoTime() - inicio);
+        }
+    }
+
+    private static int lerFetchSize(String valor, boolean mysql) {
+        if (valor == null) return mysql ? Integer.MIN_VALUE : 0;
+        if (valor.equalsIgnoreCase("streaming")) return Integer.MIN_VALUE;
+        try {
+            return Math.max(0, Integer.parseInt(valor.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("AVISO: petstop.db.fetchSize inválido (" + valor + "), usando o padrão do driver.");
+            return 0;
+        }
+    }
+
+    /**
+     * Aplica o fetch size configurado no statement de uma listagem grande.
+     * Com streaming, a conexão só pode executar outra instrução depois que o ResultSet for
+     * lido até o fim ou fechado.
+     */
+    public static void aplicarFetchSize(Statement stmt) throws SQLException {
+        if (FETCH_SIZE != 0) stmt.setFetchSize(FETCH_SIZE);
+    }
+
+    //Abre uma conexão nova direto pelo DriverManager, sem passar pelo pool (usado no BancoBenchmark, para comparar com o pool)
+    public static Connection conectarSemPool() {
         try {
             return DriverManager.getConnection(URL, USUARIO, SENHA);
         } catch (SQLException e) {
@@ -18,7 +101,7 @@ public class Conexao {
         }
     }
 
-    //Método no qual vai encerrar a conexão com o banco PetStop
+    //Método no qual vai encerrar a conexão com o banco PetStop (devolve a conexão ao pool)
     public static void fechar(Connection conn) {
         if (conn != null) {
             try {
@@ -28,4 +111,19 @@ public class Conexao {
             }
         }
     }
+
+    //Retorna o pool, para consultar as métricas (ativas, ociosas, tempo de espera)
+    public static PoolConexoes getPool() {
+        return POOL;
+    }
+
+    //Fecha todas as conexões do pool. Chamado ao encerrar a aplicação.
+    public static void encerrarPool() {
+        System.out.println("INFO: " + POOL.resumo());
+        if (RastreadorSQL.getModo() != RastreadorSQL.Modo.NENHUM) {
+            System.out.println("INFO: " + RastreadorSQL.resumo());
+        }
+        POOL.encerrar();
+        RastreadorSQL.encerrar();
+    }
 }
@@ -0,0 +1,332 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Controle do estoque disponível em memória, para vendas simultâneas sem vender mais do que há.
+ *
+ * O saldo de cada produto fica dividido em faixas (uma por núcleo, até MAX_FAIXAS), cada uma num
+ * contador atômico em sua própria linha de cache. Cada thread tira da sua faixa com
+ * compareAndSet, sem lock, e só passa para as outras quando a sua acaba; assim várias threads
+ * vendendo o mesmo produto não disputam o mesmo contador. Uma faixa nunca fica negativa, então
+ * a soma reservada nunca passa do saldo.
+ *
+ * Fluxo de uma venda:
+ *   Reserva r = controle.reservar(id, qtd);  //null se não há saldo
+ *   try { ...pagamento... controle.confirmar(r); } finally { controle.liberar(r); }
+ * confirmar() soma a baixa a um LongAdder do produto, que o BufferEstoque recolhe antes de
+ * cada gravação (uma instrução por produto e intervalo); liberar() devolve o saldo se a
+ * reserva não foi confirmada (e não faz nada se foi).
+ *
+ * O saldo de um produto é lido do banco (somado às baixas ainda no buffer) no primeiro uso.
+ * Depois disso o controle é quem sabe o saldo: as vendas devem passar por ele, não direto por
+ * ProdutoDAO.ajustarEstoque. Uma alteração da quantidade pelo cadastro (atualizarProduto)
+ * redefine o saldo; se ela coincidir com uma venda em andamento, o erro é sempre para menos.
+ */
+public class ControleEstoque implements ProdutoDAO.Ouvinte {
+
+    public static final int MAX_FAIXAS = 16;
+    private static final int ESPACO = 8; //8 longs = 64 bytes entre as faixas, uma por linha de cache
+
+    private final ProdutoDAO dao;
+    private final BufferEstoque buffer;
+    private final int faixas; //Potência de 2
+    private final ConcurrentHashMap<Long, Saldo> saldos = new ConcurrentHashMap<>();
+
+    //Contadores
+    private final LongAdder reservas = new LongAdder();
+    private final LongAdder recusadas = new LongAdder();
+    private final LongAdder confirmadas = new LongAdder();
+    private final LongAdder liberadas = new LongAdder();
+
+    public ControleEstoque(ProdutoDAO dao, BufferEstoque buffer) {
+        this(dao, buffer, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @ param faixas Em quantas partes dividir o saldo de cada produto (arredondado para potência
+     *                de 2, até MAX_FAIXAS). 1 equivale a um único contador atômico por produto.
+     */
+    public ControleEstoque(ProdutoDAO dao, BufferEstoque buffer, int faixas) {
+        this.dao = dao;
+        this.buffer = buffer;
+        int n = 1;
+        while (n < faixas && n < MAX_FAIXAS) {
+            n <<= 1;
+        }
+        this.faixas = n;
+        buffer.adicionarFonte(this::drenar);
+    }
+
+    /** Quantidade reservada de um produto, até ser confirmada (vendida) ou liberada. */
+    public static final class Reserva {
+        private final long produtoId;
+        private final long quantidade;
+        private final AtomicBoolean finalizada = new AtomicBoolean();
+
+        private Reserva(long produtoId, long quantidade) {
+            this.produtoId = produtoId;
+            this.quantidade = quantidade;
+        }
+
+        public long getProdutoId() {
+            return produtoId;
+        }
+
+        public long getQuantidade() {
+            return quantidade;
+        }
+
+        public boolean isFinalizada() {
+            return finalizada.get();
+        }
+    }
+
+    /**
+     * Reserva a quantidade do produto, se houver saldo.
+     * @ return A reserva, ou null se o produto não existe ou não tem saldo suficiente.
+     */
+    public Reserva reservar(long id, long quantidade) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Quantidade inválida para reserva de estoque: " + quantidade);
+        }
+        Saldo saldo = obter(id);
+        if (saldo == null) {
+            recusadas.increment();
+            return null;
+        }
+        //Conta como aberta antes de tirar das faixas: um produtoGravado() no meio erra para menos, nunca para mais
+        saldo.abertas.add(quantidade);
+        if (!saldo.retirar(quantidade, faixaDaThread())) {
+            saldo.abertas.add(-quantidade);
+            recusadas.increment();
+            return null;
+        }
+        reservas.increment();
+        return new Reserva(id, quantidade);
+    }
+
+    /**
+     * Transforma a reserva em venda. A baixa é gravada no banco na próxima gravação do BufferEstoque.
+     * @ return false se a reserva já tinha sido confirmada ou liberada.
+     */
+    public boolean confirmar(Reserva reserva) {
+        if (reserva == null || !reserva.finalizada.compareAndSet(false, true)) return false;
+        Saldo saldo = saldos.get(reserva.produtoId);
+        if (saldo == null) {
+            buffer.registrarVenda(reserva.produtoId, reserva.quantidade); //Produto removido nesse meio tempo
+        } else {
+            //Baixa antes de tirar das abertas: um produtoGravado() no meio conta duas vezes, nunca nenhuma
+            saldo.naoGravado.add(-reserva.quantidade);
+            saldo.abertas.add(-reserva.quantidade);
+            if (buffer.isEncerrado()) drenarAgora(reserva.produtoId, saldo); //Não haverá próxima gravação
+        }
+        confirmadas.increment();
+        return true;
+    }
+
+    /**
+     * Devolve ao saldo uma reserva não confirmada. Pode ser chamado sempre no finally.
+     * @ return false se a reserva já tinha sido confirmada ou liberada.
+     */
+    public boolean liberar(Reserva reserva) {
+        if (reserva == null || !reserva.finalizada.compareAndSet(false, true)) return false;
+        Saldo saldo = saldos.get(reserva.produtoId);
+        if (saldo != null) {
+            synchronized (saldo) { //Não pode cair no meio de um produtoGravado()
+                saldo.devolver(reserva.quantidade, faixaDaThread());
+                saldo.abertas.add(-reserva.quantidade);
+            }
+        }
+        liberadas.increment();
+        return true;
+    }
+
+    //Reserva e confirma de uma vez
+    public boolean vender(long id, long quantidade) {
+        return confirmar(reservar(id, quantidade));
+    }
+
+    //Entrada de mercadoria: aumenta o saldo na hora e é gravada junto com as baixas
+    public boolean registrarEntrada(long id, long quantidade) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Quantidade inválida para entrada de estoque: " + quantidade);
+        }
+        Saldo saldo = obter(id);
+        if (saldo == null) return false;
+        synchronized (saldo) {
+            saldo.devolver(quantidade, faixaDaThread());
+            saldo.naoGravado.add(quantidade);
+        }
+        if (buffer.isEncerrado()) drenarAgora(id, saldo);
+        return true;
+    }
+
+    /**
+     * Saldo disponível para venda (sem as reservas abertas). Com vendas em andamento é uma
+     * aproximação: as faixas são somadas uma a uma.
+     * @ return O saldo, ou -1 se o produto não existe.
+     */
+    public long getDisponivel(long id) {
+        Saldo saldo = obter(id);
+        return saldo == null ? -1 : saldo.total();
+    }
+
+    public long getReservado(long id) {
+        Saldo saldo = saldos.get(id);
+        return saldo == null ? 0 : saldo.abertas.sum();
+    }
+
+    public int getFaixas() {
+        return faixas;
+    }
+
+    //--- ProdutoDAO.Ouvinte ---
+
+    @Override
+    public void produtoGravado(Produto produto) {
+        Saldo saldo = produto.getId() == null ? null : saldos.get(produto.getId());
+        if (saldo == null) return; //Ainda não carregado: será lido do banco no primeiro uso
+        long id = produto.getId();
+        //Sem gravação no meio: a quantidade nova ainda não tem as baixas não gravadas
+        buffer.semGravacao(() -> {
+            synchronized (saldo) {
+                //Esvazia antes de ler as abertas: uma reserva que tirou das faixas já está contada nelas
+                saldo.esvaziar();
+                long abertas = saldo.abertas.sum();
+                saldo.distribuir(produto.getQuantidade() + buffer.getPendente(id) + saldo.naoGravado.sum() - abertas);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void estoqueAjustado(Produto produto) {
+        //Baixas e entradas já contadas no saldo, gravadas pelo buffer
+    }
+
+    @Override
+    public void produtoRemovido(long id) {
+        saldos.remove(id);
+    }
+
+    //--- Saldos ---
+
+    private Saldo obter(long id) {
+        Saldo saldo = saldos.get(id);
+        if (saldo != null) return saldo;
+        return saldos.computeIfAbsent(id, this::carregar);
+    }
+
+    private Saldo carregar(long id) {
+        Long quantidade = buffer.semGravacao(() -> {
+            Produto produto = dao.buscarProdutoNoBanco(id);
+            return produto == null ? null : produto.getQuantidade() + buffer.getPendente(id);
+        });
+        if (quantidade == null) return null;
+        buffer.iniciar(); //Garante a gravação periódica das baixas
+        Saldo saldo = new Saldo(faixas);
+        saldo.distribuir(quantidade);
+        return saldo;
+    }
+
+    //Passa ao buffer as baixas/entradas confirmadas desde a última gravação. Chamado pelo próprio buffer.
+    private void drenar() {
+        for (Map.Entry<Long, Saldo> entrada : saldos.entrySet()) {
+            drenar(entrada.getKey(), entrada.getValue());
+        }
+    }
+
+    private void drenar(long id, Saldo saldo) {
+        long delta = saldo.naoGravado.sum();
+        if (delta == 0) return;
+        saldo.naoGravado.add(-delta); //Não usa sumThenReset: perderia as vendas confirmadas no meio
+        buffer.ajustar(id, delta);
+    }
+
+    private void drenarAgora(long id, Saldo saldo) {
+        buffer.semGravacao(() -> {
+            drenar(id, saldo);
+            return null;
+        });
+    }
+
+    //Espalha as threads pelas faixas
+    private int faixaDaThread() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (faixas - 1);
+    }
+
+    private static final class Saldo {
+        private final AtomicLongArray valores;
+        private final int faixas;
+        private final LongAdder abertas = new LongAdder(); //Quantidade em reservas não finalizadas
+        private final LongAdder naoGravado = new LongAdder(); //Baixas e entradas ainda não passadas ao buffer
+
+        Saldo(int faixas) {
+            this.faixas = faixas;
+            this.valores = new AtomicLongArray(faixas * ESPACO);
+        }
+
+        //Tira quantidade das faixas, começando pela da thread. Tudo ou nada.
+        boolean retirar(long quantidade, int inicio) {
+            long falta = quantidade;
+            for (int k = 0; k < faixas && falta > 0; k++) {
+                int i = ((inicio + k) & (faixas - 1)) * ESPACO;
+                while (true) {
+                    long atual = valores.get(i);
+                    if (atual <= 0) break;
+                    long tirar = Math.min(atual, falta);
+                    if (valores.compareAndSet(i, atual, atual - tirar)) {
+                        falta -= tirar;
+                        break;
+                    }
+                }
+            }
+            if (falta > 0) {
+                //Não deu: devolve o que já tinha tirado
+                if (falta < quantidade) devolver(quantidade - falta, inicio);
+                return false;
+            }
+            return true;
+        }
+
+        void devolver(long quantidade, int faixa) {
+            valores.addAndGet(faixa * ESPACO, quantidade);
+        }
+
+        long total() {
+            long soma = 0;
+            for (int f = 0; f < faixas; f++) {
+                soma += valores.get(f * ESPACO);
+            }
+            return soma;
+        }
+
+        void esvaziar() {
+            for (int f = 0; f < faixas; f++) {
+                valores.getAndSet(f * ESPACO, 0);
+            }
+        }
+
+        //Soma a quantidade às faixas, dividida igualmente
+        void distribuir(long quantidade) {
+            if (quantidade <= 0) return;
+            long parte = quantidade / faixas;
+            long resto = quantidade % faixas;
+            for (int f = 0; f < faixas; f++) {
+                long valor = parte + (f < resto ? 1 : 0);
+                if (valor > 0) valores.addAndGet(f * ESPACO, valor);
+            }
+        }
+    }
+
+    //--- Métricas ---
+
+    public String resumo() {
+        return String.format("ControleEstoque{faixas=%d, produtos=%d, reservas=%d, recusadas=%d, confirmadas=%d, liberadas=%d}",
+                faixas, saldos.size(), reservas.sum(), recusadas.sum(), confirmadas.sum(), liberadas.sum());
+    }
+}
@@ -0,0 +1,760 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * Diário das gravações feitas sem conexão com o banco, para o balcão continuar funcionando
+ * quando o MySQL está fora do ar.
+ *
+ * Quando Conexao.conectar() falha, os DAOs passam a inclusão, atualização ou remoção para cá
+ * em vez de desistir. Cada gravação vira um registro no fim de um arquivo mapeado em memória
+ * (petstop.diario.arquivo): gravar é copiar algumas dezenas de bytes, sem chamada ao sistema,
+ * e leva microssegundos (veja resumo()). O registro já está no cache de páginas do sistema
+ * operacional, então sobrevive a uma queda da aplicação; com -Dpetstop.diario.sincronizar=true
+ * cada registro é também forçado ao disco (mais lento), para sobreviver a uma queda de energia.
+ *
+ * Formato: cabeçalho de 64 bytes (identificador do diário, posição até onde já foi aplicado,
+ * próxima sequência) e registros "tamanho, CRC32C, sequência, tipo, momento, dados", alinhados
+ * em 8 bytes. No tipo, o bit 0x80 marca uma edição encadeada: o ID é seguido da sequência da
+ * edição anterior. Um registro incompleto ou com CRC errado (gravação interrompida) encerra a leitura.
+ *
+ * Uma thread tenta a cada intervalo reenviar os registros pendentes, em lotes, numa transação
+ * por lote. Cada registro aplicado é anotado na tabela diario_aplicado (diário, sequência) na
+ * mesma transação; um registro já anotado é pulado, então reenviar de novo (ex.: a aplicação
+ * caiu depois do commit e antes de atualizar o cabeçalho) não grava duas vezes.
+ *
+ * Conflitos: uma atualização feita sem conexão só é aplicada se o registro ainda estiver na
+ * versão lida (como em atualizarPet/atualizarProduto). Se outro terminal o alterou nesse meio
+ * tempo, ou se o banco recusar os dados (ex.: nome duplicado), o registro é anotado com a
+ * situação CONFLITO, NAO_ENCONTRADO ou REJEITADO e copiado para o arquivo de conflitos, para
+ * conferência; os demais seguem normalmente. Uma segunda edição do mesmo registro ainda sem
+ * conexão foi feita sobre a versão lida antes da primeira: ela é encadeada à primeira e espera a
+ * versão que a primeira vai gerar. No reenvio, se a primeira não foi aplicada, a encadeada também
+ * fica em CONFLITO (senão sobrescreveria a alteração do outro terminal).
+ */
+public class DiarioOffline {
+
+    public enum Tipo {
+        ADICIONAR_PET, ATUALIZAR_PET, REMOVER_PET,
+        ADICIONAR_PRODUTO, ATUALIZAR_PRODUTO, REMOVER_PRODUTO
+    }
+
+    //Situações anotadas em diario_aplicado
+    static final String APLICADO = "APLICADO";
+    static final String CONFLITO = "CONFLITO";
+    static final String NAO_ENCONTRADO = "NAO_ENCONTRADO";
+    static final String REJEITADO = "REJEITADO";
+
+    private static final int MAGICO = 0x50534A31; //"PSJ1"
+    private static final int CABECALHO = 64;
+    private static final int POS_DIARIO = 8;
+    private static final int POS_APLICADO = 16;
+    private static final int POS_SEQUENCIA = 24;
+    private static final int ENCADEADO = 0x80; //Bit do tipo: edição feita sobre outra ainda pendente
+    private static final int TAMANHO_INICIAL = 4 << 20;
+    private static final int LOTE_REENVIO = 200;
+    private static final int FAIXAS_LATENCIA = 24; //Histograma em potências de 2 de microssegundos
+
+    private static DiarioOffline padrao; //Protegido por synchronized(DiarioOffline.class)
+
+    private final Path arquivo;
+    private final Path arquivoConflitos;
+    private final long intervaloMs;
+    private final long tamanhoMaximo;
+    private final boolean sincronizar;
+    private final PetDAO petDAO;
+    private final ProdutoDAO produtoDAO;
+
+    //Protegidos por synchronized(this)
+    private FileChannel canal;
+    private MappedByteBuffer mapa;
+    private long diario;
+    private int posicao;       //Fim do último registro
+    private int aplicadoAte;   //Registros antes desta posição já estão no banco
+    private long proximaSequencia;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer rascunho = ByteBuffer.allocate(512);
+    //Última atualização pendente de cada registro, por ID
+    private final Map<Long, Pendente> pendentesPet = new HashMap<>();
+    private final Map<Long, Pendente> pendentesProduto = new HashMap<>();
+
+    private final Object reenvio = new Object(); //Um reenvio por vez
+    private ScheduledExecutorService agendador; //Protegido por synchronized(this)
+    private volatile boolean encerrado;
+
+    //Contadores
+    private final LongAdder registrados = new LongAdder();
+    private final LongAdder aplicados = new LongAdder();
+    private final LongAdder conflitos = new LongAdder();
+    private final LongAdder repetidos = new LongAdder();
+    private final LongAdder nanosRegistro = new LongAdder();
+    private final AtomicLong maiorNanosRegistro = new AtomicLong();
+    private final AtomicLongArray latencias = new AtomicLongArray(FAIXAS_LATENCIA);
+
+    public DiarioOffline(Path arquivo, Path arquivoConflitos, long intervaloMs, long tamanhoMaximo,
+                         boolean sincronizar, PetDAO petDAO, ProdutoDAO produtoDAO) {
+        this.arquivo = arquivo;
+        this.arquivoConflitos = arquivoConflitos;
+        this.intervaloMs = intervaloMs;
+        this.tamanhoMaximo = Math.min(Integer.MAX_VALUE, Math.max(TAMANHO_INICIAL, tamanhoMaximo));
+        this.sincronizar = sincronizar;
+        this.petDAO = petDAO;
+        this.produtoDAO = produtoDAO;
+    }
+
+    /**
+     * O diário usado pelos DAOs, configurado por propriedades do sistema.
+     * @ return null se desligado com -Dpetstop.diario.ativo=false.
+     */
+    public static synchronized DiarioOffline getPadrao() {
+        if (padrao == null && Boolean.parseBoolean(System.getProperty("petstop.diario.ativo", "true"))) {
+            padrao = new DiarioOffline(
+                    Paths.get(System.getProperty("petstop.diario.arquivo", "petstop-diario.dat")),
+                    Paths.get(System.getProperty("petstop.diario.conflitos", "petstop-diario-conflitos.log")),
+                    Long.getLong("petstop.diario.intervaloMs", 2_000),
+                    Long.getLong("petstop.diario.maximoMB", 256) << 20,
+                    Boolean.getBoolean("petstop.diario.sincronizar"),
+                    new PetDAO(), new ProdutoDAO());
+        }
+        return padrao;
+    }
+
+    //--- Chamados pelos DAOs quando não há conexão ---
+
+    //Inclusão ou atualização (com a versão lida) de um pet. false se o diário está desligado ou falhou.
+    static boolean registrarPet(Tipo tipo, Pet pet) {
+        DiarioOffline diario = getPadrao();
+        return diario != null && diario.registrar(tipo, pet, null, pet.getId() == null ? 0 : pet.getId());
+    }
+
+    static boolean registrarProduto(Tipo tipo, Produto produto) {
+        DiarioOffline diario = getPadrao();
+        return diario != null && diario.registrar(tipo, null, produto, produto.getId() == null ? 0 : produto.getId());
+    }
+
+    static boolean registrarRemocao(Tipo tipo, long id) {
+        DiarioOffline diario = getPadrao();
+        return diario != null && diario.registrar(tipo, null, null, id);
+    }
+
+    /**
+     * Acrescenta o registro ao diário e agenda o reenvio.
+     * @ return false se o diário não pôde ser aberto ou está cheio.
+     */
+    public boolean registrar(Tipo tipo, Pet pet, Produto produto, long id) {
+        long inicio = System.nanoTime();
+        synchronized (this) {
+            if (encerrado) return false;
+            try {
+                abrir();
+                long sequencia = proximaSequencia;
+                long lida = pet != null ? pet.getVersao() : produto != null ? produto.getVersao() : 0;
+                Pendente anterior = anteriorPendente(tipo, id, lida);
+                long versao = anterior != null ? anterior.versao : lida;
+                int tamanho = codificar(tipo, pet, produto, id, versao, anterior != null ? anterior.sequencia : 0);
+                int total = alinhar(8 + tamanho);
+                if (!garantirEspaco(total)) {
+                    System.err.println("ERRO: Diário offline cheio (" + arquivo + "). A gravação não foi guardada.");
+                    return false;
+                }
+                crc.reset();
+                crc.update(rascunho.array(), 0, tamanho);
+                mapa.put(posicao + 8, rascunho.array(), 0, tamanho);
+                mapa.putInt(posicao + 4, (int) crc.getValue());
+                mapa.putInt(posicao, tamanho); //Por último: até aqui o registro ainda não existe para a leitura
+                posicao += total;
+                anotarPendente(tipo, id, sequencia, versao);
+                mapa.putLong(POS_SEQUENCIA, proximaSequencia);
+                if (sincronizar) mapa.force();
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar no diário offline " + arquivo + ": " + e.getMessage());
+                return false;
+            }
+            iniciarAgendador();
+        }
+        registrados.increment();
+        medirRegistro(System.nanoTime() - inicio);
+        return true;
+    }
+
+    /** Atualização ainda não enviada ao banco. */
+    private static final class Pendente {
+        final long sequencia;
+        final long versao; //Versão que o registro terá depois dela
+
+        Pendente(long sequencia, long versao) {
+            this.sequencia = sequencia;
+            this.versao = versao;
+        }
+    }
+
+    //Sem conexão a tela continua com a versão lida antes da edição pendente do mesmo registro:
+    //a nova edição é encadeada a ela e espera a versão que ela vai gerar, senão seria sempre CONFLITO
+    private Pendente anteriorPendente(Tipo tipo, long id, long lida) {
+        if (tipo != Tipo.ATUALIZAR_PET && tipo != Tipo.ATUALIZAR_PRODUTO) return null;
+        Pendente pendente = pendentes(tipo).get(id);
+        return pendente != null && lida <= pendente.versao ? pendente : null;
+    }
+
+    private void anotarPendente(Tipo tipo, long id, long sequencia, long versao) {
+        if (tipo == Tipo.ATUALIZAR_PET || tipo == Tipo.ATUALIZAR_PRODUTO) {
+            pendentes(tipo).put(id, new Pendente(sequencia, versao + 1));
+        } else if (tipo == Tipo.REMOVER_PET || tipo == Tipo.REMOVER_PRODUTO) {
+            pendentes(tipo).remove(id);
+        }
+    }
+
+    private Map<Long, Pendente> pendentes(Tipo tipo) {
+        return tipo == Tipo.ADICIONAR_PET || tipo == Tipo.ATUALIZAR_PET || tipo == Tipo.REMOVER_PET
+                ? pendentesPet : pendentesProduto;
+    }
+
+    //--- Arquivo ---
+
+    /**
+     * Abre o diário que ficou da última execução, se houver, e começa a reenviar os pendentes.
+     * Sem arquivo não faz nada: o diário é criado na primeira gravação sem conexão.
+     */
+    public synchronized void iniciar() {
+        if (encerrado || !Files.exists(arquivo)) return;
+        try {
+            abrir();
+        } catch (IOException e) {
+            System.err.println("Erro ao abrir o diário offline " + arquivo + ": " + e.getMessage());
+            return;
+        }
+        if (aplicadoAte < posicao) {
+            System.out.println("INFO: Diário offline com " + contarPendentes() + " gravações pendentes; serão enviadas ao banco.");
+        }
+        iniciarAgendador();
+    }
+
+    private void abrir() throws IOException {
+        if (mapa != null) return;
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long tamanhoArquivo = canal.size();
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(TAMANHO_INICIAL, Math.min(tamanhoArquivo, tamanhoMaximo)));
+        if (tamanhoArquivo < CABECALHO || mapa.getInt(0) != MAGICO) {
+            diario = ThreadLocalRandom.current().nextLong();
+            aplicadoAte = CABECALHO;
+            posicao = CABECALHO;
+            proximaSequencia = 1;
+            mapa.putLong(POS_DIARIO, diario);
+            mapa.putLong(POS_APLICADO, aplicadoAte);
+            mapa.putLong(POS_SEQUENCIA, proximaSequencia);
+            mapa.putInt(0, MAGICO);
+            return;
+        }
+        diario = mapa.getLong(POS_DIARIO);
+        proximaSequencia = mapa.getLong(POS_SEQUENCIA);
+        //Percorre os registros até o primeiro vazio ou inválido
+        posicao = CABECALHO;
+        List<Registro> lidos = new ArrayList<>();
+        boolean corrompido = lerRegistros(CABECALHO, Integer.MAX_VALUE, lidos);
+        if (!lidos.isEmpty()) {
+            proximaSequencia = Math.max(proximaSequencia, lidos.get(lidos.size() - 1).sequencia + 1);
+            posicao = lidos.get(lidos.size() - 1).fim;
+        }
+        aplicadoAte = (int) Math.max(CABECALHO, Math.min(mapa.getLong(POS_APLICADO), posicao));
+        for (Registro registro : lidos) {
+            if (registro.fim <= aplicadoAte) continue;
+            long versao = registro.pet != null ? registro.pet.getVersao() : registro.produto != null ? registro.produto.getVersao() : 0;
+            anotarPendente(registro.tipo, registro.id, registro.sequencia, versao);
+        }
+        if (corrompido) {
+            System.err.println("AVISO: Diário offline " + arquivo + " tem um registro incompleto ou corrompido na posição "
+                    + posicao + " (gravação interrompida). Ele e o que vem depois foram descartados.");
+            zerar(posicao, mapa.capacity()); //Para não confundir com registros gravados depois
+        }
+    }
+
+    //Aumenta o mapeamento (e o arquivo) se o registro não couber
+    private boolean garantirEspaco(int total) throws IOException {
+        if ((long) posicao + total <= mapa.capacity()) return true;
+        long novo = Math.max((long) mapa.capacity() * 2, (long) posicao + total);
+        if (novo > tamanhoMaximo) {
+            if ((long) posicao + total > tamanhoMaximo) return false;
+            novo = tamanhoMaximo;
+        }
+        mapa.force();
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, novo); //O mapeamento antigo é liberado pelo GC
+        return true;
+    }
+
+    private void zerar(int inicio, int fim) {
+        //Do fim para o começo: se a aplicação cair no meio, o que sobra é um prefixo válido de registros
+        for (int i = fim - 8; i >= inicio; i -= 8) {
+            mapa.putLong(i, 0L);
+        }
+    }
+
+    private static int alinhar(int tamanho) {
+        return (tamanho + 7) & ~7;
+    }
+
+    //--- Codificação dos registros ---
+
+    /** Uma gravação lida do diário. */
+    static final class Registro {
+        final long sequencia;
+        final Tipo tipo;
+        final long momento;
+        final long id;
+        final long anterior; //Sequência da edição pendente sobre a qual esta foi feita, ou 0
+        final Pet pet;
+        final Produto produto;
+        final int fim; //Posição do registro seguinte
+        long idAplicado; //ID gerado pelo banco, numa inclusão reenviada
+
+        Registro(long sequencia, Tipo tipo, long momento, long id, long anterior, Pet pet, Produto produto, int fim) {
+            this.sequencia = sequencia;
+            this.tipo = tipo;
+            this.momento = momento;
+            this.id = id;
+            this.anterior = anterior;
+            this.pet = pet;
+            this.produto = produto;
+            this.fim = fim;
+        }
+
+        boolean isPet() {
+            return tipo == Tipo.ADICIONAR_PET || tipo == Tipo.ATUALIZAR_PET || tipo == Tipo.REMOVER_PET;
+        }
+
+        boolean isRemocao() {
+            return tipo == Tipo.REMOVER_PET || tipo == Tipo.REMOVER_PRODUTO;
+        }
+
+        @Override
+        public String toString() {
+            Object dados = pet != null ? pet : produto != null ? produto : "id=" + id;
+            return "#" + sequencia + " " + tipo + " em " + Instant.ofEpochMilli(momento) + ": " + dados;
+        }
+    }
+
+    //Escreve o corpo do registro no rascunho e retorna o tamanho
+    private int codificar(Tipo tipo, Pet pet, Produto produto, long id, long versao, long anterior) {
+        while (true) {
+            rascunho.clear();
+            try {
+                rascunho.putLong(proximaSequencia).put((byte) (tipo.ordinal() | (anterior != 0 ? ENCADEADO : 0)))
+                        .putLong(System.currentTimeMillis()).putLong(id);
+                if (anterior != 0) rascunho.putLong(anterior);
+                if (pet != null) {
+                    rascunho.putLong(versao);
+                    texto(pet.getNome());
+                    texto(pet.getEspecie());
+                    rascunho.putInt(pet.getIdade()).put((byte) (pet.isVacinado() ? 1 : 0));
+                } else if (produto != null) {
+                    rascunho.putLong(versao);
+                    texto(produto.getNome());
+                    rascunho.putLong(produto.getQuantidade());
+                    texto(produto.getPreco() == null ? null : produto.getPreco().toPlainString());
+                    rascunho.put((byte) (produto.isDisponivel() ? 1 : 0));
+                }
+                proximaSequencia++;
+                return rascunho.position();
+            } catch (BufferOverflowException e) {
+                rascunho = ByteBuffer.allocate(rascunho.capacity() * 2); //Textos longos
+            }
+        }
+    }
+
+    private void texto(String valor) {
+        if (valor == null) {
+            rascunho.putInt(-1);
+            return;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        rascunho.putInt(bytes.length).put(bytes);
+    }
+
+    private static String lerTexto(ByteBuffer dados) {
+        int tamanho = dados.getInt();
+        if (tamanho < 0) return null;
+        byte[] bytes = new byte[tamanho];
+        dados.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lê até maximo registros a partir de inicio.
+     * @ return true se parou num registro inválido (CRC errado ou incompleto), não num espaço vazio.
+     */
+    private boolean lerRegistros(int inicio, int maximo, List<Registro> destino) {
+        int atual = inicio;
+        byte[] corpo = new byte[512];
+        while (destino.size() < maximo && atual + 8 <= mapa.capacity()) {
+            int tamanho = mapa.getInt(atual);
+            if (tamanho == 0) return false;
+            int fim = atual + alinhar(8 + tamanho);
+            if (tamanho < 0 || fim > mapa.capacity() || fim < atual) return true;
+            if (corpo.length < tamanho) corpo = new byte[tamanho];
+            mapa.get(atual + 8, corpo, 0, tamanho);
+            crc.reset();
+            crc.update(corpo, 0, tamanho);
+            if ((int) crc.getValue() != mapa.getInt(atual + 4)) return true;
+            try {
+                destino.add(decodificar(ByteBuffer.wrap(corpo, 0, tamanho), fim));
+            } catch (RuntimeException e) {
+                return true; //CRC certo mas formato desconhecido
+            }
+            atual = fim;
+        }
+        return false;
+    }
+
+    private static Registro decodificar(ByteBuffer dados, int fim) {
+        long sequencia = dados.getLong();
+        byte codigo = dados.get();
+        Tipo tipo = Tipo.values()[codigo & 0x7F];
+        long momento = dados.getLong();
+        long id = dados.getLong();
+        long anterior = (codigo & ENCADEADO) != 0 ? dados.getLong() : 0;
+        Long idOuNulo = id == 0 ? null : id;
+        Pet pet = null;
+        Produto produto = null;
+        if (tipo == Tipo.ADICIONAR_PET || tipo == Tipo.ATUALIZAR_PET) {
+            long versao = dados.getLong();
+            String nome = lerTexto(dados);
+            String especie = lerTexto(dados);
+            pet = new Pet(idOuNulo, nome, especie, dados.getInt(), dados.get() != 0, versao);
+        } else if (tipo == Tipo.ADICIONAR_PRODUTO || tipo == Tipo.ATUALIZAR_PRODUTO) {
+            long versao = dados.getLong();
+            String nome = lerTexto(dados);
+            long quantidade = dados.getLong();
+            String preco = lerTexto(dados);
+            produto = new Produto(idOuNulo, nome, quantidade, preco == null ? null : new BigDecimal(preco),
+                    dados.get() != 0, versao);
+        }
+        return new Registro(sequencia, tipo, momento, id, anterior, pet, produto, fim);
+    }
+
+    //--- Reenvio ao banco ---
+
+    private void iniciarAgendador() {
+        if (agendador != null || encerrado) return;
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PetStop-DiarioOffline");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(this::reenviarComSeguranca, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    //Na thread do agendador: um erro inesperado não pode cancelar os próximos reenvios
+    private void reenviarComSeguranca() {
+        try {
+            while (reenviar() > 0) {
+                //Continua enquanto houver lotes e o banco estiver respondendo
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao reenviar o diário offline: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Envia ao banco o próximo lote de registros pendentes, se houver conexão.
+     * @ return Quantos registros foram processados (aplicados, já aplicados antes ou em conflito).
+     */
+    public int reenviar() {
+        synchronized (reenvio) {
+            List<Registro> lote = new ArrayList<>();
+            long idDiario;
+            synchronized (this) {
+                if (mapa == null || aplicadoAte >= posicao) return 0;
+                lerRegistros(aplicadoAte, LOTE_REENVIO, lote);
+                idDiario = diario;
+            }
+            if (lote.isEmpty()) return 0;
+
+            Connection conn = Conexao.conectar();
+            if (conn == null) return 0; //Ainda sem conexão: tenta no próximo intervalo
+            List<String> situacoes = new ArrayList<>(lote.size());
+            Metricas.Medicao medicao = Metricas.iniciar("DiarioOffline.reenviar");
+            try {
+                conn.setAutoCommit(false);
+                for (Registro registro : lote) {
+                    situacoes.add(aplicar(conn, idDiario, registro));
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                medicao.erro();
+                System.err.println("Erro de SQL ao reenviar o diário offline (tentará de novo): " + e.getMessage());
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    System.err.println("Erro ao desfazer o reenvio do diário offline: " + ex.getMessage());
+                }
+                return 0;
+            } finally {
+                Conexao.fechar(conn); //O pool restaura o autoCommit
+                medicao.fim(situacoes.size());
+            }
+
+            synchronized (this) {
+                aplicadoAte = lote.get(lote.size() - 1).fim;
+                mapa.putLong(POS_APLICADO, aplicadoAte);
+                if (aplicadoAte == posicao) {
+                    //Tudo no banco: volta ao início do arquivo (a sequência continua, para não repetir chaves)
+                    zerar(CABECALHO, posicao);
+                    aplicadoAte = CABECALHO;
+                    posicao = CABECALHO;
+                    mapa.putLong(POS_APLICADO, aplicadoAte);
+                    pendentesPet.clear();
+                    pendentesProduto.clear();
+                }
+                mapa.force();
+            }
+            concluir(lote, situacoes);
+            return lote.size();
+        }
+    }
+
+    //Aplica um registro na transação do lote e o anota em diario_aplicado. Retorna a situação, ou null se já tinha sido aplicado.
+    private String aplicar(Connection conn, long idDiario, Registro registro) throws SQLException {
+        if (situacaoAplicada(conn, idDiario, registro.sequencia) != null) return null;
+        String situacao;
+        String detalhe = null;
+        String situacaoAnterior = registro.anterior != 0 ? situacaoAplicada(conn, idDiario, registro.anterior) : APLICADO;
+        if (situacaoAnterior != null && !APLICADO.equals(situacaoAnterior)) {
+            //A versão esperada era a que a edição anterior geraria; agora pode ser a de outro terminal
+            situacao = CONFLITO;
+            detalhe = "Feita sobre a gravação #" + registro.anterior + ", que não foi aplicada (" + situacaoAnterior + ").";
+        } else {
+            Savepoint antes = conn.setSavepoint();
+            try {
+                situacao = executar(conn, registro);
+            } catch (SQLException e) {
+                if (!dadosRecusados(e)) throw e; //Ex.: conexão caiu: o lote inteiro é tentado de novo
+                conn.rollback(antes);
+                situacao = REJEITADO;
+                detalhe = e.getMessage();
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO diario_aplicado (diario, sequencia, tipo, registro_id, situacao, detalhe) VALUES (?, ?, ?, ?, ?, ?)")) {
+            pstmt.setLong(1, idDiario);
+            pstmt.setLong(2, registro.sequencia);
+            pstmt.setString(3, registro.tipo.name());
+            pstmt.setLong(4, registro.idAplicado != 0 ? registro.idAplicado : registro.id);
+            pstmt.setString(5, situacao);
+            pstmt.setString(6, detalhe);
+            pstmt.executeUpdate();
+        }
+        if (!APLICADO.equals(situacao)) {
+            anotarConflito(registro, situacao, detalhe);
+        }
+        return situacao;
+    }
+
+    //Situação anotada para um registro deste diário, ou null se ainda não foi aplicado
+    private static String situacaoAplicada(Connection conn, long idDiario, long sequencia) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT situacao FROM diario_aplicado WHERE diario = ? AND sequencia = ?")) {
+            pstmt.setLong(1, idDiario);
+            pstmt.setLong(2, sequencia);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private String executar(Connection conn, Registro registro) throws SQLException {
+        switch (registro.tipo) {
+            case ADICIONAR_PET:
+            case ADICIONAR_PRODUTO:
+                try (PreparedStatement pstmt = registro.pet != null
+                        ? conn.prepareStatement("INSERT INTO animais (nome, especie, idade, vacinado) VALUES (?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)
+                        : conn.prepareStatement("INSERT INTO produtos (nome, quantidade, preco, disponivel) VALUES (?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+                    preencher(pstmt, registro);
+                    pstmt.executeUpdate();
+                    try (ResultSet chaves = pstmt.getGeneratedKeys()) {
+                        if (chaves.next()) registro.idAplicado = chaves.getLong(1);
+                    }
+                }
+                return APLICADO;
+            case ATUALIZAR_PET:
+            case ATUALIZAR_PRODUTO:
+                try (PreparedStatement pstmt = registro.pet != null
+                        ? conn.prepareStatement("UPDATE animais SET nome = ?, especie = ?, idade = ?, vacinado = ?, versao = versao + 1 WHERE id = ? AND versao = ?")
+                        : conn.prepareStatement("UPDATE produtos SET nome = ?, quantidade = ?, preco = ?, disponivel = ?, versao = versao + 1 WHERE id = ? AND versao = ?")) {
+                    preencher(pstmt, registro);
+                    pstmt.setLong(5, registro.id);
+                    pstmt.setLong(6, registro.pet != null ? registro.pet.getVersao() : registro.produto.getVersao());
+                    if (pstmt.executeUpdate() > 0) return APLICADO;
+                }
+                //Removido, ou alterado por outro terminal depois da leitura
+                try (PreparedStatement pstmt = conn.prepareStatement(registro.pet != null
+                        ? "SELECT 1 FROM animais WHERE id = ?" : "SELECT 1 FROM produtos WHERE id = ?")) {
+                    pstmt.setLong(1, registro.id);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return rs.next() ? CONFLITO : NAO_ENCONTRADO;
+                    }
+                }
+            default: //Remoções
+                try (PreparedStatement pstmt = conn.prepareStatement(registro.isPet()
+                        ? "DELETE FROM animais WHERE id = ?" : "DELETE FROM produtos WHERE id = ?")) {
+                    pstmt.setLong(1, registro.id);
+                    return pstmt.executeUpdate() > 0 ? APLICADO : NAO_ENCONTRADO;
+                }
+        }
+    }
+
+    private static void preencher(PreparedStatement pstmt, Registro registro) throws SQLException {
+        if (registro.pet != null) {
+            pstmt.setString(1, registro.pet.getNome());
+            pstmt.setString(2, registro.pet.getEspecie());
+            pstmt.setInt(3, registro.pet.getIdade());
+            pstmt.setBoolean(4, registro.pet.isVacinado());
+        } else {
+            pstmt.setString(1, registro.produto.getNome());
+            pstmt.setLong(2, registro.produto.getQuantidade());
+            pstmt.setBigDecimal(3, registro.produto.getPreco());
+            pstmt.setBoolean(4, registro.produto.isDisponivel());
+        }
+    }
+
+    //Erro dos dados do registro (restrição, valor inválido), que não adianta tentar de novo
+    private static boolean dadosRecusados(SQLException e) {
+        String estado = e.getSQLState();
+        return estado != null && (estado.startsWith("23") || estado.startsWith("22"));
+    }
+
+    //Depois do commit: atualiza cache, índice, resumo etc. (e avisa os outros terminais pelo barramento)
+    private void concluir(List<Registro> lote, List<String> situacoes) {
+        for (int i = 0; i < lote.size(); i++) {
+            Registro registro = lote.get(i);
+            String situacao = situacoes.get(i);
+            if (situacao == null) {
+                repetidos.increment();
+                continue;
+            }
+            if (!APLICADO.equals(situacao)) {
+                conflitos.increment();
+                continue;
+            }
+            aplicados.increment();
+            long id = registro.idAplicado != 0 ? registro.idAplicado : registro.id;
+            if (registro.isPet()) {
+                petDAO.aplicarAlteracaoRemota(id, registro.isRemocao());
+            } else {
+                produtoDAO.aplicarAlteracaoRemota(id, registro.isRemocao());
+            }
+        }
+    }
+
+    private void anotarConflito(Registro registro, String situacao, String detalhe) {
+        String linha = Instant.now() + ";" + situacao + ";" + registro + (detalhe != null ? ";" + detalhe : "") + System.lineSeparator();
+        System.err.println("AVISO: Gravação do diário offline não aplicada (" + situacao + "): " + registro);
+        try {
+            Files.write(arquivoConflitos, linha.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar " + arquivoConflitos + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Para o reenvio periódico e tenta enviar uma última vez. O que não for enviado fica no
+     * arquivo para a próxima execução.
+     */
+    public void encerrar() {
+        synchronized (this) {
+            if (encerrado) return;
+            encerrado = true;
+            if (agendador != null) agendador.shutdown();
+        }
+        try {
+            if (agendador != null) agendador.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reenviarComSeguranca();
+        synchronized (this) {
+            if (mapa == null) return;
+            int pendentes = contarPendentes();
+            if (pendentes > 0) {
+                System.err.println("AVISO: " + pendentes + " gravações feitas sem conexão continuam no diário " + arquivo
+                        + " e serão enviadas na próxima execução.");
+            }
+            mapa.force();
+            try {
+                canal.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar o diário offline: " + e.getMessage());
+            }
+            System.out.println("INFO: " + resumo());
+        }
+    }
+
+    //--- Métricas ---
+
+    public synchronized int contarPendentes() {
+        if (mapa == null) return 0;
+        List<Registro> pendentes = new ArrayList<>();
+        lerRegistros(aplicadoAte, Integer.MAX_VALUE, pendentes);
+        return pendentes.size();
+    }
+
+    private void medirRegistro(long nanos) {
+        nanosRegistro.add(nanos);
+        maiorNanosRegistro.accumulateAndGet(nanos, Math::max);
+        long micros = nanos / 1_000;
+        latencias.incrementAndGet(Math.min(FAIXAS_LATENCIA - 1, 64 - Long.numberOfLeadingZeros(micros)));
+    }
+
+    //Latência de registrar() abaixo da qual ficaram 99% das gravações, em microssegundos (arredondada para cima)
+    public long getLatenciaP99Micros() {
+        long total = registrados.sum();
+        if (total == 0) return 0;
+        long acumulado = 0;
+        for (int i = 0; i < FAIXAS_LATENCIA; i++) {
+            acumulado += latencias.get(i);
+            if (acumulado >= Math.ceil(total * 0.99)) return i == 0 ? 0 : 1L << i;
+        }
+        return maiorNanosRegistro.get() / 1_000;
+    }
+
+    public double getLatenciaMediaMicros() {
+        long total = registrados.sum();
+        return total == 0 ? 0 : nanosRegistro.sum() / 1_000.0 / total;
+    }
+
+    public long getRegistrados() {
+        return registrados.sum();
+    }
+
+    public String resumo() {
+        return String.format("DiarioOffline{registrados=%d, aplicados=%d, conflitos=%d, repetidos=%d, "
+                        + "registroMedio=%.1fus, registroP99<=%dus, registroMax=%.1fus}",
+                registrados.sum(), aplicados.sum(), conflitos.sum(), repetidos.sum(),
+                getLatenciaMediaMicros(), getLatenciaP99Micros(), maiorNanosRegistro.get() / 1_000.0);
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta as tabelas animais e produtos para CSV ou JSON Lines (um objeto JSON por linha),
+ * para os extratos noturnos.
+ *
+ * Cada linha lida do banco é escrita direto no arquivo: o ResultSet é forward-only e em modo
+ * streaming do MySQL (Conexao.aplicarFetchSize), então nada é acumulado na memória,
+ * independente do tamanho da tabela. Opcionalmente o arquivo é compactado com gzip.
+ *
+ * O CSV gerado tem cabeçalho e pode ser lido de volta pelo ImportadorCSV (a coluna id é ignorada),
+ * inclusive com aspas, separadores e quebras de linha dentro dos campos.
+ */
+public class ExportadorDados {
+
+    public enum Formato { CSV, JSONL }
+
+    //Tabelas que podem ser exportadas e suas colunas, na ordem do arquivo
+    private static final String COLUNAS_ANIMAIS = "id, nome, especie, idade, vacinado";
+    private static final String COLUNAS_PRODUTOS = "id, nome, quantidade, preco, disponivel";
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    /**
+     * Exporta a tabela para o arquivo de destino (sobrescrevendo-o).
+     * @ param tabela "animais" ou "produtos".
+     * @ param gzip Se true, o arquivo é compactado (use extensão .gz).
+     * @ return A quantidade de linhas exportadas.
+     */
+    public long exportar(String tabela, Formato formato, Path destino, boolean gzip) throws IOException, SQLException {
+        String colunas;
+        if (tabela.equals("animais")) {
+            colunas = COLUNAS_ANIMAIS;
+        } else if (tabela.equals("produtos")) {
+            colunas = COLUNAS_PRODUTOS;
+        } else {
+            throw new IllegalArgumentException("Tabela desconhecida: " + tabela + " (use animais ou produtos)");
+        }
+        String sql = "SELECT " + colunas + " FROM " + tabela + " ORDER BY id";
+
+        Connection conn = Conexao.conectar();
+        if (conn == null) {
+            throw new SQLException("Falha ao conectar ao banco de dados para exportar " + tabela + ".");
+        }
+        try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             Writer escritor = abrirArquivo(destino, gzip)) {
+            Conexao.aplicarFetchSize(stmt); //Streaming no MySQL: as linhas não ficam todas na memória
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                return formato == Formato.CSV ? escreverCsv(rs, escritor) : escreverJsonl(rs, escritor);
+            }
+        } finally {
+            Conexao.fechar(conn);
+        }
+    }
+
+    private static Writer abrirArquivo(Path destino, boolean gzip) throws IOException {
+        FileChannel canal = FileChannel.open(destino,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream saida = Channels.newOutputStream(canal);
+        if (gzip) {
+            saida = new GZIPOutputStream(saida, TAMANHO_BUFFER);
+        }
+        return new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8), TAMANHO_BUFFER);
+    }
+
+    private static long escreverCsv(ResultSet rs, Writer escritor) throws SQLException, IOException {
+        int totalColunas = rs.getMetaData().getColumnCount();
+        for (int c = 1; c <= totalColunas; c++) {
+            if (c > 1) escritor.write(',');
+            escritor.write(rs.getMetaData().getColumnLabel(c));
+        }
+        escritor.write('\n');
+
+        long linhas = 0;
+        while (rs.next()) {
+            for (int c = 1; c <= totalColunas; c++) {
+                if (c > 1) escritor.write(',');
+                String valor = rs.getString(c);
+                if (valor != null) escreverCampoCsv(escritor, valor);
+            }
+            escritor.write('\n');
+            linhas++;
+        }
+        return linhas;
+    }
+
+    //Coloca o campo entre aspas apenas se ele tiver vírgula, aspas ou quebra de linha
+    private static void escreverCampoCsv(Writer escritor, String valor) throws IOException {
+        boolean precisaAspas = false;
+        for (int i = 0; i < valor.length() && !precisaAspas; i++) {
+            char c = valor.charAt(i);
+            precisaAspas = c == ',' || c == ';' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!precisaAspas) {
+            escritor.write(valor);
+            return;
+        }
+        escritor.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') escritor.write('"');
+            escritor.write(c);
+        }
+        escritor.write('"');
+    }
+
+    private static long escreverJsonl(ResultSet rs, Writer escritor) throws SQLException, IOException {
+        int totalColunas = rs.getMetaData().getColumnCount();
+        String[] nomes = new String[totalColunas + 1];
+        int[] tipos = new int[totalColunas + 1];
+        for (int c = 1; c <= totalColunas; c++) {
+            nomes[c] = "\"" + rs.getMetaData().getColumnLabel(c) + "\":";
+            tipos[c] = rs.getMetaData().getColumnType(c);
+        }
+
+        long linhas = 0;
+        while (rs.next()) {
+            escritor.write('{');
+            for (int c = 1; c <= totalColunas; c++) {
+                if (c > 1) escritor.write(',');
+                escritor.write(nomes[c]);
+                escreverValorJson(escritor, rs, c, tipos[c]);
+            }
+            escritor.write("}\n");
+            linhas++;
+        }
+        return linhas;
+    }
+
+    private static void escreverValorJson(Writer escritor, ResultSet rs, int coluna, int tipo) throws SQLException, IOException {
+        switch (tipo) {
+            case Types.BIT:
+            case Types.BOOLEAN: {
+                boolean valor = rs.getBoolean(coluna);
+                escritor.write(rs.wasNull() ? "null" : (valor ? "true" : "false"));
+                return;
+            }
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC: {
+                String valor = rs.getString(coluna); //Mantém a precisão do DECIMAL sem passar por double
+                escritor.write(valor == null ? "null" : valor);
+                return;
+            }
+            default: {
+                String valor = rs.getString(coluna);
+                if (valor == null) {
+                    escritor.write("null");
+                } else {
+                    escreverTextoJson(escritor, valor);
+                }
+            }
+        }
+    }
+
+    private static void escreverTextoJson(Writer escritor, String valor) throws IOException {
+        escritor.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"': escritor.write("\\\""); break;
+                case '\\': escritor.write("\\\\"); break;
+                case '\n': escritor.write("\\n"); break;
+                case '\r': escritor.write("\\r"); break;
+                case '\t': escritor.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        escritor.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        escritor.write(c);
+                    }
+            }
+        }
+        escritor.write('"');
+    }
+}
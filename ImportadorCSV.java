@@ -0,0 +1,373 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Importa produtos ou pets de arquivos CSV grandes, em memória constante.
+ *
+ * A thread que chama lê o arquivo por um FileChannel com buffer, converte cada linha
+ * (com as mesmas regras de Validacao usadas na tela) e coloca o registro numa fila limitada.
+ * Uma segunda thread tira da fila e grava no banco em lotes (adicionarProdutos/adicionarPets).
+ * Se o banco ficar mais lento que a leitura, a fila enche e a leitura espera (backpressure).
+ *
+ * Formato: a primeira linha é o cabeçalho, com as colunas em qualquer ordem, separadas por ',' ou ';'.
+ * Campos podem vir entre aspas (com "" para uma aspa), inclusive com quebras de linha dentro:
+ * o registro continua na linha seguinte, e a quebra é lida como '\n' (um "\r\n" dentro do
+ * campo também vira '\n').
+ *   produtos: nome, quantidade, preco, disponivel
+ *   pets:     nome, especie, idade, vacinado
+ * As linhas rejeitadas são gravadas em "<arquivo>.rejeitados.csv" com o número da linha e o motivo.
+ */
+public class ImportadorCSV {
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+    private static final int CAPACIDADE_FILA = LoteJDBC.TAMANHO_LOTE * 4;
+    private static final long INTERVALO_PROGRESSO = 100_000; //Linhas entre cada mensagem de progresso
+
+    //Converte os campos de uma linha (já mapeados pelo cabeçalho) em um registro, ou lança IllegalArgumentException
+    private interface ConversorLinha<T> {
+        T converter(Map<String, Integer> colunas, List<String> campos);
+    }
+
+    //Registro lido e o número da linha de origem, para reportar falhas do banco
+    private static final class Item<T> {
+        final long linha;
+        final T registro;
+
+        Item(long linha, T registro) {
+            this.linha = linha;
+            this.registro = registro;
+        }
+    }
+
+    private static final Item<?> FIM = new Item<>(-1, null); //Marca o fim do arquivo na fila
+
+    /**
+     * Resumo de uma importação.
+     */
+    public static class Relatorio {
+        private final long lidas;
+        private final long importadas;
+        private final long rejeitadas;
+        private final long duracaoMs;
+
+        Relatorio(long lidas, long importadas, long rejeitadas, long duracaoMs) {
+            this.lidas = lidas;
+            this.importadas = importadas;
+            this.rejeitadas = rejeitadas;
+            this.duracaoMs = duracaoMs;
+        }
+
+        public long getLidas() {
+            return lidas;
+        }
+
+        public long getImportadas() {
+            return importadas;
+        }
+
+        public long getRejeitadas() {
+            return rejeitadas;
+        }
+
+        public long getDuracaoMs() {
+            return duracaoMs;
+        }
+
+        //Linhas processadas por segundo
+        public double getVazao() {
+            return duracaoMs == 0 ? lidas : lidas * 1000.0 / duracaoMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Importação: %,d linhas lidas, %,d importadas, %,d rejeitadas em %,d ms (%,.0f linhas/s)",
+                    lidas, importadas, rejeitadas, duracaoMs, getVazao());
+        }
+    }
+
+    private final ProdutoDAO produtoDAO;
+    private final PetDAO petDAO;
+
+    public ImportadorCSV(ProdutoDAO produtoDAO, PetDAO petDAO) {
+        this.produtoDAO = produtoDAO;
+        this.petDAO = petDAO;
+    }
+
+    public Relatorio importarProdutos(Path arquivo) throws IOException {
+        return importar(arquivo, new String[]{"nome", "quantidade", "preco", "disponivel"},
+                (colunas, campos) -> Validacao.validarProduto(
+                        campo(colunas, campos, "nome"),
+                        campo(colunas, campos, "quantidade"),
+                        campo(colunas, campos, "preco"),
+                        lerBooleano(campo(colunas, campos, "disponivel"))),
+                produtoDAO::adicionarProdutos);
+    }
+
+    public Relatorio importarPets(Path arquivo) throws IOException {
+        return importar(arquivo, new String[]{"nome", "especie", "idade", "vacinado"},
+                (colunas, campos) -> Validacao.validarPet(
+                        campo(colunas, campos, "nome"),
+                        campo(colunas, campos, "especie"),
+                        campo(colunas, campos, "idade"),
+                        lerBooleano(campo(colunas, campos, "vacinado"))),
+                petDAO::adicionarPets);
+    }
+
+    private <T> Relatorio importar(Path arquivo, String[] colunasObrigatorias, ConversorLinha<T> conversor,
+                                   Function<List<T>, ResultadoLote> gravador) throws IOException {
+        long inicio = System.currentTimeMillis();
+        Path arquivoRejeitados = arquivo.resolveSibling(arquivo.getFileName() + ".rejeitados.csv");
+
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ);
+             BufferedReader leitor = new BufferedReader(Channels.newReader(canal,
+                     StandardCharsets.UTF_8.newDecoder()
+                             .onMalformedInput(CodingErrorAction.REPLACE)
+                             .onUnmappableCharacter(CodingErrorAction.REPLACE), TAMANHO_BUFFER), TAMANHO_BUFFER);
+             RegistroRejeitados rejeitados = new RegistroRejeitados(arquivoRejeitados)) {
+
+            String cabecalho = leitor.readLine();
+            if (cabecalho == null) {
+                throw new IOException("Arquivo vazio: " + arquivo);
+            }
+            if (cabecalho.startsWith("\uFEFF")) cabecalho = cabecalho.substring(1); //BOM do Excel
+            char separador = cabecalho.indexOf(';') >= 0 ? ';' : ',';
+            Map<String, Integer> colunas = lerCabecalho(cabecalho, separador, colunasObrigatorias);
+
+            BlockingQueue<Item<?>> fila = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+            Gravador<T> gravadorThread = new Gravador<>(fila, gravador, rejeitados);
+            Thread thread = new Thread(gravadorThread, "PetStop-ImportadorCSV");
+            thread.start();
+
+            long numeroLinha = 1;
+            long lidas = 0;
+            List<String> campos = new ArrayList<>();
+            try {
+                String linha;
+                while ((linha = leitor.readLine()) != null && gravadorThread.erroFatal == null) {
+                    numeroLinha++;
+                    if (linha.isBlank()) continue;
+                    lidas++;
+                    long linhaDoRegistro = numeroLinha; //Primeira linha do registro, usada nas rejeições
+                    if (aspasImpares(linha)) {
+                        //Campo entre aspas com quebra de linha: o registro continua nas linhas seguintes
+                        StringBuilder registro = new StringBuilder(linha);
+                        boolean aberto = true;
+                        String continuacao;
+                        while (aberto && (continuacao = leitor.readLine()) != null) {
+                            numeroLinha++;
+                            registro.append('\n').append(continuacao);
+                            aberto = !aspasImpares(continuacao);
+                        }
+                        if (aberto) {
+                            rejeitados.registrar(linhaDoRegistro, "Aspas abertas e não fechadas até o fim do arquivo.");
+                            continue;
+                        }
+                        linha = registro.toString();
+                    }
+                    dividir(linha, separador, campos);
+                    try {
+                        fila.put(new Item<>(linhaDoRegistro, conversor.converter(colunas, campos))); //Bloqueia se a fila estiver cheia
+                    } catch (IllegalArgumentException e) {
+                        rejeitados.registrar(linhaDoRegistro, e.getMessage());
+                    }
+                    if (lidas % INTERVALO_PROGRESSO == 0) {
+                        System.out.printf("INFO: %,d linhas lidas, %,d importadas...%n", lidas, gravadorThread.importadas.get());
+                    }
+                }
+                fila.put(FIM);
+                thread.join();
+            } catch (InterruptedException e) {
+                thread.interrupt();
+                Thread.currentThread().interrupt();
+                throw new IOException("Importação interrompida.", e);
+            }
+
+            if (gravadorThread.erroFatal != null) {
+                throw new IOException("Importação abortada: " + gravadorThread.erroFatal.getMessage(), gravadorThread.erroFatal);
+            }
+            Relatorio relatorio = new Relatorio(lidas, gravadorThread.importadas.get(), rejeitados.total.get(),
+                    System.currentTimeMillis() - inicio);
+            if (relatorio.getRejeitadas() > 0) {
+                System.out.println("INFO: Linhas rejeitadas gravadas em " + arquivoRejeitados);
+            }
+            return relatorio;
+        }
+    }
+
+    //Thread que tira os registros da fila e os grava no banco em lotes
+    private static final class Gravador<T> implements Runnable {
+        private final BlockingQueue<Item<?>> fila;
+        private final Function<List<T>, ResultadoLote> gravador;
+        private final RegistroRejeitados rejeitados;
+        final AtomicLong importadas = new AtomicLong();
+        volatile RuntimeException erroFatal;
+
+        Gravador(BlockingQueue<Item<?>> fila, Function<List<T>, ResultadoLote> gravador, RegistroRejeitados rejeitados) {
+            this.fila = fila;
+            this.gravador = gravador;
+            this.rejeitados = rejeitados;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            List<Item<T>> itens = new ArrayList<>(LoteJDBC.TAMANHO_LOTE);
+            List<T> registros = new ArrayList<>(LoteJDBC.TAMANHO_LOTE);
+            try {
+                boolean fim = false;
+                while (!fim) {
+                    Item<?> primeiro = fila.poll(1, TimeUnit.SECONDS);
+                    if (primeiro == null) continue;
+                    List<Item<?>> drenados = new ArrayList<>(LoteJDBC.TAMANHO_LOTE);
+                    drenados.add(primeiro);
+                    fila.drainTo(drenados, LoteJDBC.TAMANHO_LOTE - 1);
+                    for (Item<?> item : drenados) {
+                        if (item == FIM) {
+                            fim = true;
+                        } else {
+                            itens.add((Item<T>) item);
+                            registros.add(((Item<T>) item).registro);
+                        }
+                    }
+                    if (!itens.isEmpty()) {
+                        gravarLote(itens, registros);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                erroFatal = e;
+                fila.clear(); //Libera a leitura, que pode estar bloqueada na fila cheia
+            }
+        }
+
+        private void gravarLote(List<Item<T>> itens, List<T> registros) {
+            ResultadoLote resultado = gravador.apply(registros);
+            for (ResultadoLote.Falha falha : resultado.getFalhas()) {
+                rejeitados.registrar(itens.get(falha.getIndice()).linha, falha.getMensagem());
+            }
+            importadas.addAndGet(resultado.getSucessos());
+            itens.clear();
+            registros.clear();
+        }
+    }
+
+    //Arquivo com as linhas rejeitadas, aberto apenas quando ocorre a primeira rejeição
+    private static final class RegistroRejeitados implements AutoCloseable {
+        private final Path arquivo;
+        private BufferedWriter escritor;
+        final AtomicLong total = new AtomicLong();
+
+        RegistroRejeitados(Path arquivo) {
+            this.arquivo = arquivo;
+        }
+
+        //Chamado pela leitura e pela thread de gravação
+        synchronized void registrar(long linha, String motivo) {
+            total.incrementAndGet();
+            try {
+                if (escritor == null) {
+                    escritor = new BufferedWriter(Channels.newWriter(FileChannel.open(arquivo,
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                            StandardCharsets.UTF_8), TAMANHO_BUFFER);
+                    escritor.write("linha;motivo");
+                    escritor.newLine();
+                }
+                escritor.write(linha + ";" + motivo.replace(';', ',').replace('\n', ' '));
+                escritor.newLine();
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar linha rejeitada " + linha + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (escritor != null) escritor.close();
+        }
+    }
+
+    private static Map<String, Integer> lerCabecalho(String cabecalho, char separador, String[] obrigatorias) throws IOException {
+        List<String> nomes = new ArrayList<>();
+        dividir(cabecalho, separador, nomes);
+        Map<String, Integer> colunas = new HashMap<>();
+        for (int i = 0; i < nomes.size(); i++) {
+            colunas.put(nomes.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String obrigatoria : obrigatorias) {
+            if (!colunas.containsKey(obrigatoria)) {
+                throw new IOException("Coluna obrigatória ausente no cabeçalho: " + obrigatoria);
+            }
+        }
+        return colunas;
+    }
+
+    private static String campo(Map<String, Integer> colunas, List<String> campos, String nome) {
+        int indice = colunas.get(nome);
+        return indice < campos.size() ? campos.get(indice) : "";
+    }
+
+    //Aceita true/false, sim/não, s/n e 1/0; vazio é false (como o checkbox desmarcado)
+    private static boolean lerBooleano(String valor) {
+        String v = valor.trim().toLowerCase(Locale.ROOT);
+        return v.equals("true") || v.equals("sim") || v.equals("s") || v.equals("1");
+    }
+
+    //Número ímpar de aspas na linha: ela termina dentro de um campo entre aspas ("" conta duas vezes)
+    private static boolean aspasImpares(String linha) {
+        int aspas = 0;
+        for (int i = 0; i < linha.length(); i++) {
+            if (linha.charAt(i) == '"') aspas++;
+        }
+        return aspas % 2 != 0;
+    }
+
+    /**
+     * Divide a linha nos campos, reaproveitando a lista recebida.
+     * Suporta campos entre aspas (com o separador dentro) e aspas duplicadas ("").
+     */
+    static void dividir(String linha, char separador, List<String> campos) {
+        campos.clear();
+        StringBuilder atual = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (entreAspas) {
+                if (c == '"') {
+                    if (i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                        atual.append('"');
+                        i++;
+                    } else {
+                        entreAspas = false;
+                    }
+                } else {
+                    atual.append(c);
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+            } else if (c == separador) {
+                campos.add(atual.toString());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        campos.add(atual.toString());
+    }
+}
@@ -0,0 +1,255 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido em memória para a busca por texto (ex.: nome e espécie dos pets).
+ *
+ * Cada registro é quebrado em palavras normalizadas (minúsculas e sem acento, então
+ * "Ração" é encontrado por "racao", "RAÇÃO" ou "rac"). A busca aceita várias palavras e
+ * retorna os registros em que cada palavra digitada é o começo de alguma palavra do registro.
+ *
+ * O índice é carregado do banco na primeira busca e depois atualizado pelo DAO a cada
+ * inserção, atualização e remoção, sem precisar ser refeito.
+ */
+public class IndiceBusca<T> {
+
+    //Carrega todos os registros do banco, passando cada um para o consumidor
+    public interface Carregador<T> {
+        void carregar(Consumer<T> consumidor);
+    }
+
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+    private static final String[] SEM_PALAVRAS = new String[0];
+
+    private final String descricao; //Ex.: "pets", usado no log
+    private final Function<T, Long> id;
+    private final Function<T, String> texto; //Texto indexado do registro (ex.: nome + " " + especie)
+    private final UnaryOperator<T> copiar;
+    private final Comparator<T> ordem;
+
+    private final TreeMap<String, Set<Long>> palavras = new TreeMap<>(); //Palavra -> IDs que a contêm
+    private final Map<Long, T> registros = new HashMap<>();
+    private final Map<Long, String[]> palavrasPorId = new HashMap<>(); //Para tirar as palavras antigas ao atualizar
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean carregado;
+    private boolean carregando;
+    private final Set<Long> removidosDuranteCarga = new HashSet<>();
+
+    public IndiceBusca(String descricao, Function<T, Long> id, Function<T, String> texto,
+                       UnaryOperator<T> copiar, Comparator<T> ordem) {
+        this.descricao = descricao;
+        this.id = id;
+        this.texto = texto;
+        this.copiar = copiar;
+        this.ordem = ordem;
+    }
+
+    //Minúsculas e sem acentos: "Ração Cão" -> "racao cao"
+    public static String normalizar(String texto) {
+        if (texto == null) return "";
+        boolean soAscii = true;
+        for (int i = 0; i < texto.length() && soAscii; i++) {
+            soAscii = texto.charAt(i) < 0x80;
+        }
+        if (soAscii) return texto.toLowerCase(Locale.ROOT); //Caso comum: nada a decompor
+        String decomposto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        return ACENTOS.matcher(decomposto).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    //Quebra o texto em palavras normalizadas (separadas por qualquer caractere que não seja letra ou número)
+    public static String[] palavras(String texto) {
+        String normalizado = normalizar(texto).trim();
+        if (normalizado.isEmpty()) return SEM_PALAVRAS;
+        String[] partes = normalizado.split("[^\\p{L}\\p{N}]+");
+        List<String> resultado = new ArrayList<>(partes.length);
+        for (String parte : partes) {
+            if (!parte.isEmpty() && !resultado.contains(parte)) resultado.add(parte);
+        }
+        return resultado.toArray(SEM_PALAVRAS);
+    }
+
+    public boolean isCarregado() {
+        return carregado;
+    }
+
+    /**
+     * Carrega o índice na primeira chamada; as demais retornam logo.
+     * Gravações feitas enquanto a carga acontece têm prioridade sobre o que a carga leu.
+     */
+    public void carregarSeNecessario(Carregador<T> carregador) {
+        if (carregado) return;
+        synchronized (this) {
+            if (carregado) return;
+            long inicio = System.currentTimeMillis();
+            lock.writeLock().lock();
+            try {
+                carregando = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                carregador.carregar(this::colocarDaCarga);
+                carregado = true;
+                System.out.println("Índice de busca de " + descricao + " carregado: " + getTamanho()
+                        + " registros em " + (System.currentTimeMillis() - inicio) + " ms.");
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    carregando = false;
+                    removidosDuranteCarga.clear();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private void colocarDaCarga(T registro) {
+        Long chave = id.apply(registro);
+        lock.writeLock().lock();
+        try {
+            //Se o registro foi gravado ou removido durante a carga, o que a carga leu está desatualizado
+            if (chave == null || registros.containsKey(chave) || removidosDuranteCarga.contains(chave)) return;
+            indexar(chave, copiar.apply(registro));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //Inclui ou atualiza o registro (chamado pelo DAO após gravar com sucesso)
+    public void colocar(T registro) {
+        Long chave = id.apply(registro);
+        if (chave == null) return;
+        T copia = copiar.apply(registro);
+        lock.writeLock().lock();
+        try {
+            desindexar(chave);
+            indexar(chave, copia);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remover(long chave) {
+        lock.writeLock().lock();
+        try {
+            desindexar(chave);
+            if (carregando) removidosDuranteCarga.add(chave);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void indexar(Long chave, T registro) {
+        String[] doRegistro = palavras(texto.apply(registro));
+        registros.put(chave, registro);
+        palavrasPorId.put(chave, doRegistro);
+        for (String palavra : doRegistro) {
+            palavras.computeIfAbsent(palavra, p -> new HashSet<>()).add(chave);
+        }
+    }
+
+    private void desindexar(Long chave) {
+        if (registros.remove(chave) == null) return;
+        for (String palavra : palavrasPorId.remove(chave)) {
+            Set<Long> ids = palavras.get(palavra);
+            if (ids != null && ids.remove(chave) && ids.isEmpty()) {
+                palavras.remove(palavra);
+            }
+        }
+    }
+
+    /**
+     * Busca os registros que contêm todas as palavras digitadas (cada uma como começo de palavra).
+     * Percorre os IDs da palavra digitada mais longa (a mais seletiva) e confere as demais
+     * nas palavras de cada registro. Todos os encontrados são contados, mas só os [limite]
+     * primeiros na ordem do índice são guardados (num heap limitado), então o resultado não
+     * depende da ordem em que os IDs estão no índice.
+     * @ return Até [limite] registros, ordenados, e o total encontrado. Vazio se a consulta não tiver palavras.
+     */
+    public ResultadoBusca<T> buscar(String consulta, int limite) {
+        return buscar(consulta, limite, () -> false);
+    }
+
+    /**
+     * Igual a buscar(consulta, limite), mas para de percorrer o índice assim que cancelada
+     * retornar true (ex.: o usuário já digitou outro texto), devolvendo o que achou até ali.
+     */
+    public ResultadoBusca<T> buscar(String consulta, int limite, BooleanSupplier cancelada) {
+        String[] termos = palavras(consulta);
+        if (termos.length == 0 || limite <= 0) return new ResultadoBusca<>(new ArrayList<>(), 0);
+
+        String principal = termos[0];
+        for (String termo : termos) {
+            if (termo.length() > principal.length()) principal = termo;
+        }
+
+        //O topo do heap é o último dos [limite] primeiros: sai quando chega um que vem antes dele
+        PriorityQueue<T> primeiros = new PriorityQueue<>(Math.min(limite, 1024) + 1, ordem.reversed());
+        int total = 0;
+        lock.readLock().lock();
+        try {
+            Set<Long> vistos = new HashSet<>();
+            NavigableMap<String, Set<Long>> faixa = palavras.subMap(principal, true, principal + Character.MAX_VALUE, false);
+            for (Set<Long> ids : faixa.values()) {
+                if (cancelada.getAsBoolean()) break;
+                for (Long chave : ids) {
+                    if (!vistos.add(chave) || !contemTodos(palavrasPorId.get(chave), termos)) continue;
+                    total++;
+                    T registro = registros.get(chave);
+                    if (primeiros.size() < limite) {
+                        primeiros.add(registro);
+                    } else if (ordem.compare(registro, primeiros.peek()) < 0) {
+                        primeiros.poll();
+                        primeiros.add(registro);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<T> encontrados = new ArrayList<>(primeiros);
+        encontrados.sort(ordem);
+        return new ResultadoBusca<>(encontrados, total);
+    }
+
+    private static boolean contemTodos(String[] doRegistro, String[] termos) {
+        for (String termo : termos) {
+            boolean achou = false;
+            for (String palavra : doRegistro) {
+                if (palavra.startsWith(termo)) {
+                    achou = true;
+                    break;
+                }
+            }
+            if (!achou) return false;
+        }
+        return true;
+    }
+
+    public int getTamanho() {
+        lock.readLock().lock();
+        try {
+            return registros.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
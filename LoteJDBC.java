@@ -0,0 +1,180 @@
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Execução de INSERT/UPDATE em lote compartilhada pelos DAOs.
+ * Envia as linhas com addBatch/executeBatch em blocos de TAMANHO_LOTE, numa única
+ * conexão e transação. Uma linha com erro não impede as demais de serem gravadas.
+ */
+public class LoteJDBC {
+
+    //Quantidade de linhas enviadas ao banco por executeBatch
+    public static final int TAMANHO_LOTE = 500;
+
+    //Mensagem da falha de um UPDATE que não encontrou o registro (0 linhas afetadas)
+    public static final String REGISTRO_NAO_ENCONTRADO = "Registro não encontrado.";
+
+    //Mensagem das linhas de um lote que o Marcador indicou como já gravado antes
+    public static final String LOTE_JA_GRAVADO = "Lote já gravado.";
+
+    //Preenche os parâmetros do PreparedStatement para um item do lote
+    public interface Preenchedor<T> {
+        void preencher(PreparedStatement pstmt, T item) throws SQLException;
+    }
+
+    //Define o ID gerado pelo banco no item inserido
+    public interface DefinidorId<T> {
+        void definir(T item, Long id);
+    }
+
+    /**
+     * Executado na transação do lote, antes das linhas: anota o lote no banco (ex.: o número de
+     * sequência) para que ele seja gravado uma única vez, mesmo se for reenviado.
+     * @ return false se o lote já tinha sido anotado; nesse caso nada é gravado.
+     */
+    public interface Marcador {
+        boolean marcar(Connection conn) throws SQLException;
+    }
+
+    private final String descricao; //Ex.: "produtos", usado nas mensagens de log
+
+    public LoteJDBC(String descricao) {
+        this.descricao = descricao;
+    }
+
+    /**
+     * Executa o lote.
+     * @ param validador Retorna o motivo pelo qual o item não pode entrar no lote, ou null se estiver ok.
+     * @ param definidorId Recebe os IDs gerados (INSERT); null para UPDATE.
+     */
+    public <T> ResultadoLote executar(String sql, List<T> itens, Function<T, String> validador,
+                                      Preenchedor<T> preenchedor, DefinidorId<T> definidorId) {
+        return executar(sql, itens, validador, preenchedor, definidorId, null);
+    }
+
+    /**
+     * Executa o lote, anotando-o com o marcador na mesma transação.
+     * @ param marcador Anota o lote antes das linhas, ou null. Se o lote já estava anotado, todas as
+     *                  linhas falham com LOTE_JA_GRAVADO e o resultado é confirmado.
+     */
+    public <T> ResultadoLote executar(String sql, List<T> itens, Function<T, String> validador,
+                                      Preenchedor<T> preenchedor, DefinidorId<T> definidorId, Marcador marcador) {
+        ResultadoLote resultado = new ResultadoLote(itens.size());
+        if (itens.isEmpty()) {
+            resultado.registrarConfirmacao();
+            return resultado;
+        }
+        boolean inserir = definidorId != null;
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                System.err.println("Falha ao conectar ao banco de dados para gravar lote de " + descricao + ".");
+                resultado.registrarFalhas(0, itens.size(), "Sem conexão com o banco de dados.");
+                return resultado;
+            }
+            conn.setAutoCommit(false); //Um único commit para o lote inteiro
+            if (marcador != null && !marcador.marcar(conn)) {
+                conn.rollback();
+                System.out.println("INFO: Lote de " + descricao + " já gravado antes; ignorado.");
+                resultado.registrarFalhas(0, itens.size(), LOTE_JA_GRAVADO);
+                resultado.registrarConfirmacao();
+                return resultado;
+            }
+            pstmt = inserir
+                    ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql);
+
+            for (int inicio = 0; inicio < itens.size(); inicio += TAMANHO_LOTE) {
+                int fim = Math.min(itens.size(), inicio + TAMANHO_LOTE);
+                executarBloco(pstmt, itens, inicio, fim, validador, preenchedor, definidorId, resultado);
+            }
+
+            conn.commit();
+            resultado.registrarConfirmacao();
+            System.out.println("Lote de " + descricao + " gravado: " + resultado);
+        } catch (SQLException e) {
+            //Erro que não é de uma linha específica (ex.: conexão caiu): nada do lote é gravado
+            System.err.println("Erro de SQL ao gravar lote de " + descricao + ": " + e.getMessage());
+            try {
+                if (conn != null) conn.rollback();
+            } catch (SQLException ex) {
+                System.err.println("Erro ao desfazer lote de " + descricao + ": " + ex.getMessage());
+            }
+            for (int i = 0; inserir && i < itens.size(); i++) {
+                if (resultado.getIdGerado(i) != null) definidorId.definir(itens.get(i), null); //Inserção foi desfeita
+            }
+            ResultadoLote falhou = new ResultadoLote(itens.size());
+            falhou.registrarFalhas(0, itens.size(), e.getMessage());
+            return falhou;
+        } finally {
+            try {
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar PreparedStatement (lote de " + descricao + "): " + e.getMessage());
+            }
+            Conexao.fechar(conn); //O pool restaura o autoCommit
+        }
+        return resultado;
+    }
+
+    //Envia os itens [inicio, fim) num único executeBatch e registra o resultado de cada um
+    private <T> void executarBloco(PreparedStatement pstmt, List<T> itens, int inicio, int fim,
+                                   Function<T, String> validador, Preenchedor<T> preenchedor,
+                                   DefinidorId<T> definidorId, ResultadoLote resultado) throws SQLException {
+        List<Integer> enviados = new ArrayList<>(fim - inicio); //Índices que entraram no batch
+        for (int i = inicio; i < fim; i++) {
+            T item = itens.get(i);
+            String invalido = validador.apply(item);
+            if (invalido != null) {
+                resultado.registrarFalha(i, invalido);
+                continue;
+            }
+            preenchedor.preencher(pstmt, item);
+            pstmt.addBatch();
+            enviados.add(i);
+        }
+        if (enviados.isEmpty()) {
+            return;
+        }
+
+        int[] contagens;
+        String erroLote = null;
+        try {
+            contagens = pstmt.executeBatch();
+        } catch (BatchUpdateException e) {
+            //O driver continua após a linha com erro e marca-a como EXECUTE_FAILED
+            contagens = e.getUpdateCounts();
+            erroLote = e.getMessage();
+        }
+
+        ResultSet chaves = definidorId != null ? pstmt.getGeneratedKeys() : null;
+        try {
+            for (int j = 0; j < enviados.size(); j++) {
+                int indice = enviados.get(j);
+                if (j >= contagens.length || contagens[j] == Statement.EXECUTE_FAILED) {
+                    resultado.registrarFalha(indice, erroLote != null ? erroLote : "Falha ao executar a linha.");
+                } else if (contagens[j] == 0) {
+                    resultado.registrarFalha(indice, REGISTRO_NAO_ENCONTRADO);
+                } else if (chaves != null && chaves.next()) {
+                    //As chaves geradas vêm na ordem das linhas inseridas com sucesso
+                    long id = chaves.getLong(1);
+                    definidorId.definir(itens.get(indice), id);
+                    resultado.registrarId(indice, id);
+                }
+            }
+        } finally {
+            if (chaves != null) chaves.close();
+            pstmt.clearBatch();
+        }
+    }
+}
@@ -1,39 +1,117 @@
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
-import javax.swing.JFrame;
-import javax.swing.JLabel;
 import javax.swing.JOptionPane;
-import javax.swing.SwingConstants;
 import java.sql.Connection;
 import java.sql.Statement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Classe principal para iniciar a aplicação PetStop.
  * Responsável por:
- * 1. Testar a conexão com o banco de dados.
- * 2. Iniciar a interface gráfica Swing.
+ * 1. Abrir a janela da interface gráfica Swing, sem esperar o banco.
+ * 2. Em paralelo, testar a conexão, verificar as tabelas e aquecer o pool de conexões.
+ * 3. Liberar a tela para ler o banco; cada aba carrega seus dados quando é aberta.
+ * Os tempos até a primeira pintura e até a tela ficar interativa são mostrados no console.
+ *
+ * Também pode ser executada sem a interface gráfica, para tarefas em lote:
+ *   java Main --importar produtos|pets arquivo.csv
+ *   java Main --exportar animais|produtos csv|jsonl arquivo [--gzip]
+ *   java Main --relatorio [top]
  */
 public class Main {
 
+    //Conexões abertas no pool durante a inicialização (-Dpetstop.db.conexoesIniciais)
+    private static final int CONEXOES_AQUECIDAS = Integer.getInteger("petstop.db.conexoesIniciais", 3);
+
     public static void main(String[] args) {
-        //Tentar conectar ao banco de dados, usando a classe Conexao.
+        //Métricas dos DAOs, ligadas por -Dpetstop.metricas=true
+        Metricas.configurarPorPropriedades();
+
+        //Com argumentos, executa a tarefa pedida na linha de comando sem abrir a interface gráfica
+        if (args.length > 0) {
+            int codigo = executarLinhaDeComando(args);
+            ProdutoDAO.getBufferEstoque().encerrar();
+            DiarioOffline diario = DiarioOffline.getPadrao();
+            if (diario != null) diario.encerrar();
+            if (Metricas.isAtivo()) System.out.println(Metricas.resumo());
+            Metricas.encerrarExportacao();
+            Conexao.encerrarPool();
+            System.exit(codigo);
+        }
+
+        //Inicialização em etapas: a janela aparece já; o banco é validado e o pool aquecido em paralelo
+        final long inicio = System.nanoTime();
+        CompletableFuture<PetStopUI> janela = new CompletableFuture<>();
+        SwingUtilities.invokeLater(() -> {
+            try {
+                // Define um Look and Feel para uma aparência mais moderna ou nativa do sistema.
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | UnsupportedLookAndFeelException e) {
+                System.err.println("AVISO: Não foi possível definir o Look and Feel do sistema: " + e.getMessage());
+            }
+
+            System.out.println("INFO: Iniciando interface gráfica do PetStop...");
+            PetStopUI telaPrincipal = new PetStopUI();
+            telaPrincipal.setTitle("PetStop - Gerenciamento 🐶🐱🛒");
+            telaPrincipal.setAoPrimeiroDesenho(() -> registrarEtapa("primeira pintura da janela", inicio));
+            telaPrincipal.setVisible(true);
+            janela.complete(telaPrincipal);
+        });
+
+        ExecutorService inicializacao = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "PetStop-Inicializacao");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletableFuture<String> validacao = CompletableFuture.supplyAsync(Main::validarBanco, inicializacao)
+                .exceptionally(erro -> "Falha inesperada ao validar o banco de dados: " + erro.getMessage()
+                        + "\n\nA aplicação será encerrada.");
+        CompletableFuture<Void> aquecimento = CompletableFuture.runAsync(() -> {
+            long inicioPool = System.nanoTime();
+            int abertas = Conexao.getPool().aquecer(CONEXOES_AQUECIDAS);
+            System.out.println("INFO: Pool de conexões aquecido: " + abertas + " conexões abertas em "
+                    + (System.nanoTime() - inicioPool) / 1_000_000 + " ms.");
+        }, inicializacao);
+        CompletableFuture.allOf(validacao, aquecimento).whenComplete((r, erro) -> inicializacao.shutdown());
+
+        //A tela só lê o banco depois da validação; até lá mostra "Conectando ao banco de dados..."
+        validacao.thenAcceptBoth(janela, (erro, telaPrincipal) -> SwingUtilities.invokeLater(() -> {
+            if (erro != null) {
+                mostrarMensagemErroFatal(erro);
+                telaPrincipal.dispose(); //Encerra como ao fechar a janela (pool, buffers, métricas)
+                return;
+            }
+            registrarEtapa("banco validado", inicio);
+            telaPrincipal.iniciarDados(() -> registrarEtapa("interativa (primeira aba carregada)", inicio));
+        }));
+    }
+
+    /*
+     * Testa a conexão, verifica as tabelas e envia o que ficou pendente da última execução.
+     * Roda fora da EDT, em paralelo com a abertura da janela.
+     * Retorna a mensagem de erro fatal, ou null se o banco está pronto.
+     */
+    private static String validarBanco() {
         System.out.println("INFO: Tentando conectar ao banco de dados PetStop...");
         Connection conn = Conexao.conectar();
 
-        //Se não conseguir conectar, exibo erro e encerro o programa
+        //Se não conseguir conectar, a aplicação é encerrada
         if (conn == null) {
-            mostrarMensagemErroFatal(
-                "Falha crítica ao conectar ao banco de dados.\n" +
+            System.err.println("ERRO FATAL: Conexão com o banco de dados não estabelecida. Encerrando aplicação.");
+            return "Falha crítica ao conectar ao banco de dados.\n" +
                 "Verifique se o servidor MySQL está em execução, se o banco 'petstop' (ou 'PetStop') existe,\n" +
                 "e se as credenciais em Conexao.java (usuário: " + Conexao.USUARIO + ") estão corretas.\n" +
                 "Consulte o console para mais detalhes do erro JDBC.\n\n" +
-                "A aplicação será encerrada."
-            );
-            System.err.println("ERRO FATAL: Conexão com o banco de dados não estabelecida. Encerrando aplicação.");
-            return;
+                "A aplicação será encerrada.";
         }
 
         System.out.println("INFO: Conexão com o banco de dados PetStop estabelecida com sucesso! ✅");
@@ -41,59 +119,98 @@ public class Main {
         //Verificar se as tabelas principais existem
         try {
             System.out.println("INFO: Verificando tabelas...");
-            boolean tabelasOk = verificarTabelas(conn);
-            if (!tabelasOk) {
-                mostrarMensagemErroFatal(
-                    "Uma ou mais tabelas essenciais (animais, produtos) não foram encontradas no banco de dados.\n" +
-                    "Por favor, execute o script.sql para criar a estrutura do banco.\n\n" +
-                    "A aplicação será encerrada."
-                );
-                Conexao.fechar(conn); // Fecha a conexão antes de sair.
+            if (!verificarTabelas(conn)) {
                 System.err.println("ERRO FATAL: Tabelas não encontradas. Encerrando aplicação.");
-                return;
+                return "Uma ou mais tabelas essenciais (animais, produtos) não foram encontradas no banco de dados,\n" +
+                    "ou estão sem a coluna 'versao'.\n" +
+                    "Por favor, execute o script.sql para criar (ou atualizar) a estrutura do banco.\n\n" +
+                    "A aplicação será encerrada.";
             }
             System.out.println("INFO: Tabelas 'animais' e 'produtos' parecem estar presentes. 👍");
         } finally {
-            Conexao.fechar(conn);
-            System.out.println("INFO: Conexão de teste inicial com o banco de dados foi fechada.");
+            Conexao.fechar(conn); //Volta ao pool: é a primeira conexão que a tela vai usar
         }
 
-        //Início da interface gráfica (EDT)
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    // Define um Look and Feel para uma aparência mais moderna ou nativa do sistema.
-                    UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-                } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | UnsupportedLookAndFeelException e) {
-                    System.err.println("AVISO: Não foi possível definir o Look and Feel do sistema: " + e.getMessage());
+        ProdutoDAO.getBufferEstoque().iniciar(); //Grava os ajustes de estoque que ficaram pendentes na última execução
+        DiarioOffline diario = DiarioOffline.getPadrao();
+        if (diario != null) diario.iniciar(); //Envia as gravações feitas sem conexão na última execução
+        return null;
+    }
+
+    //Tempo desde a entrada no main e desde o início da JVM (que inclui carregar as classes do Swing e do driver)
+    private static void registrarEtapa(String etapa, long inicio) {
+        long desdeMain = (System.nanoTime() - inicio) / 1_000_000;
+        long desdeJvm = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println("INFO: Inicialização: " + etapa + " em " + desdeMain + " ms (" + desdeJvm + " ms desde o início da JVM).");
+    }
+
+    //Executa a tarefa da linha de comando e retorna o código de saída do processo (0 = sucesso)
+    private static int executarLinhaDeComando(String[] args) {
+        if (args[0].equals("--importar") && args.length == 3) {
+            Path arquivo = Paths.get(args[2]);
+            ImportadorCSV importador = new ImportadorCSV(new ProdutoDAO(), new PetDAO());
+            try {
+                ImportadorCSV.Relatorio relatorio;
+                if (args[1].equals("produtos")) {
+                    relatorio = importador.importarProdutos(arquivo);
+                } else if (args[1].equals("pets")) {
+                    relatorio = importador.importarPets(arquivo);
+                } else {
+                    System.err.println("Tipo de importação desconhecido: " + args[1] + " (use produtos ou pets)");
+                    return 2;
                 }
+                System.out.println("INFO: " + relatorio);
+                return relatorio.getRejeitadas() == 0 ? 0 : 1;
+            } catch (IOException e) {
+                System.err.println("ERRO: Falha ao importar " + arquivo + ": " + e.getMessage());
+                return 1;
+            }
+        }
 
-                System.out.println("INFO: Iniciando interface gráfica do PetStop...");
-
-                PetStopUI telaPrincipal = new PetStopUI();
-                telaPrincipal.setTitle("PetStop - Gerenciamento 🐶🐱🛒");
-                telaPrincipal.setVisible(true);
-
-                JFrame placeholderFrame = new JFrame("PetStop - Gerenciamento (Em Desenvolvimento)");
-                placeholderFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-                placeholderFrame.setSize(600, 400); //Tamanho da janela de placeholder
-
-                JLabel placeholderLabel = new JLabel(
-                    "<html><div style='text-align: center;'>" +
-                    "<h1>🐶 PetStop Gerenciamento 🐱🛒</h1>" +
-                    "<p>Conexão com o banco de dados testada com sucesso.</p>" +
-                    "<p>Tabelas 'animais' e 'produtos' verificadas.</p>" +
-                    "</div></html>",
-                    SwingConstants.CENTER
-                );
-                placeholderFrame.add(placeholderLabel);
-                placeholderFrame.setLocationRelativeTo(null); //Centraliza a janela
-                placeholderFrame.setVisible(true);
-
-                System.out.println("INFO: Interface gráfica do PetStop (ou placeholder) iniciada.");
+        if (args[0].equals("--exportar") && (args.length == 4 || (args.length == 5 && args[4].equals("--gzip")))) {
+            Path arquivo = Paths.get(args[3]);
+            try {
+                ExportadorDados.Formato formato = ExportadorDados.Formato.valueOf(args[2].toUpperCase());
+                long inicio = System.currentTimeMillis();
+                long linhas = new ExportadorDados().exportar(args[1], formato, arquivo, args.length == 5);
+                System.out.printf("INFO: %,d linhas de '%s' exportadas para %s em %,d ms.%n",
+                        linhas, args[1], arquivo, System.currentTimeMillis() - inicio);
+                return 0;
+            } catch (IllegalArgumentException e) {
+                System.err.println("ERRO: " + e.getMessage());
+                return 2;
+            } catch (IOException | SQLException e) {
+                System.err.println("ERRO: Falha ao exportar para " + arquivo + ": " + e.getMessage());
+                return 1;
             }
-        });
+        }
+
+        if (args[0].equals("--relatorio") && args.length <= 2) {
+            int top = RelatorioEstoque.TOP_PADRAO;
+            if (args.length == 2) {
+                try {
+                    top = Integer.parseInt(args[1].trim());
+                } catch (NumberFormatException e) {
+                    top = 0;
+                }
+            }
+            if (top > 0) {
+                //Só no banco: sem conexão não há como carregar o catálogo (a tela usa o catálogo se o banco cair depois de aberta)
+                RelatorioEstoque.Relatorio relatorio = new RelatorioEstoque(null).gerarNoBanco(top, RelatorioEstoque.LIMITE_SEM_ESTOQUE_PADRAO);
+                if (relatorio == null) {
+                    System.err.println("ERRO: Não foi possível gerar o relatório de estoque.");
+                    return 1;
+                }
+                System.out.print(relatorio.formatar());
+                return 0;
+            }
+            System.err.println("ERRO: Quantidade inválida para o relatório: " + args[1] + " (use um número maior que zero)");
+        }
+
+        System.err.println("Uso: java Main --importar produtos|pets arquivo.csv");
+        System.err.println("     java Main --exportar animais|produtos csv|jsonl arquivo [--gzip]");
+        System.err.println("     java Main --relatorio [top]");
+        return 2;
     }
 
     //Verificar se as tabelas 'animais' e 'produtos' existem no banco
@@ -103,18 +220,33 @@ public class Main {
 
         try (Statement stmt = conn.createStatement()) {
             //Verifica a tabela 'animais'
-            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM animais LIMIT 1")) {
+            //Lê a coluna versao (controle de concorrência): bancos antigos precisam do ALTER TABLE do Script.sql
+            try (ResultSet rs = stmt.executeQuery("SELECT versao FROM animais LIMIT 1")) {
                 animaisOk = true; //Se a query não lançar exceção, a tabela existe
             } catch (SQLException e) {
                 System.err.println("ERRO: Tabela 'animais' não encontrada ou inacessível. " + e.getMessage());
             }
 
             //Verifica a tabela 'produtos'
-            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM produtos LIMIT 1")) {
+            try (ResultSet rs = stmt.executeQuery("SELECT versao FROM produtos LIMIT 1")) {
                 produtosOk = true; //Se a query não lançar exceção, a tabela existe
             } catch (SQLException e) {
                 System.err.println("ERRO: Tabela 'produtos' não encontrada ou inacessível. " + e.getMessage());
             }
+
+            //Só necessária para o diário offline: sem ela, as gravações feitas sem conexão ficam no arquivo
+            try {
+                stmt.execute("SELECT sequencia FROM diario_aplicado LIMIT 1");
+            } catch (SQLException e) {
+                System.err.println("AVISO: Tabela 'diario_aplicado' não encontrada; execute o Script.sql para usar o diário offline. " + e.getMessage());
+            }
+
+            //Usada pelo buffer de estoque: sem ela as baixas não são gravadas e ficam no arquivo de pendentes
+            try {
+                stmt.execute("SELECT sequencia FROM estoque_aplicado LIMIT 1");
+            } catch (SQLException e) {
+                System.err.println("ERRO: Tabela 'estoque_aplicado' não encontrada; execute o Script.sql para gravar as baixas de estoque. " + e.getMessage());
+            }
         } catch (SQLException e) {
             System.err.println("ERRO: Falha ao criar Statement para verificar tabelas. " + e.getMessage());
             return false; //Falha geral na verificação
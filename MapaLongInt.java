@@ -0,0 +1,122 @@
+import java.util.Arrays;
+
+/**
+ * Mapa de long para int com endereçamento aberto (sondagem linear), sem objetos por entrada.
+ * Usado pelo CatalogoProdutos para achar a posição de um produto pelo ID sem criar Long
+ * nem Map.Entry a cada busca.
+ *
+ * A chave 0 é reservada para "posição vazia" (os IDs do banco começam em 1).
+ * Não é thread-safe: quem usa deve sincronizar.
+ */
+public class MapaLongInt {
+
+    private static final long VAZIO = 0L;
+    private static final int NAO_ENCONTRADO = -1;
+
+    private long[] chaves;
+    private int[] valores;
+    private int mascara; //capacidade - 1 (a capacidade é sempre potência de 2)
+    private int tamanho;
+
+    public MapaLongInt(int capacidadeInicial) {
+        int capacidade = Integer.highestOneBit(Math.max(4, capacidadeInicial * 2 - 1)) * 2; //Ocupação máxima de 50%
+        alocar(capacidade);
+    }
+
+    private void alocar(int capacidade) {
+        chaves = new long[capacidade];
+        valores = new int[capacidade];
+        mascara = capacidade - 1;
+        tamanho = 0;
+    }
+
+    //Espalha os bits do ID, para IDs sequenciais não caírem em posições vizinhas
+    private int posicao(long chave) {
+        long h = chave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+
+    /**
+     * @ return O valor associado à chave, ou -1 se ela não existir.
+     */
+    public int obter(long chave) {
+        for (int i = posicao(chave); ; i = (i + 1) & mascara) {
+            long atual = chaves[i];
+            if (atual == chave) return valores[i];
+            if (atual == VAZIO) return NAO_ENCONTRADO;
+        }
+    }
+
+    public void colocar(long chave, int valor) {
+        if (chave == VAZIO) {
+            throw new IllegalArgumentException("A chave 0 é reservada.");
+        }
+        int i = posicao(chave);
+        while (chaves[i] != VAZIO) {
+            if (chaves[i] == chave) {
+                valores[i] = valor;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        chaves[i] = chave;
+        valores[i] = valor;
+        tamanho++;
+        if (tamanho * 2 > chaves.length) {
+            redimensionar(chaves.length * 2);
+        }
+    }
+
+    /**
+     * Remove a chave, puxando para trás as entradas seguintes da mesma sequência
+     * (sem marcadores de "removido", a busca continua parando na primeira posição vazia).
+     * @ return O valor removido, ou -1 se a chave não existia.
+     */
+    public int remover(long chave) {
+        int i = posicao(chave);
+        while (chaves[i] != chave) {
+            if (chaves[i] == VAZIO) return NAO_ENCONTRADO;
+            i = (i + 1) & mascara;
+        }
+        int removido = valores[i];
+        int vazio = i;
+        for (int j = (i + 1) & mascara; chaves[j] != VAZIO; j = (j + 1) & mascara) {
+            int ideal = posicao(chaves[j]);
+            //A entrada em j pode ocupar o buraco se a posição ideal dela não estiver entre o buraco e j
+            boolean podeMover = vazio <= j ? (ideal <= vazio || ideal > j) : (ideal <= vazio && ideal > j);
+            if (podeMover) {
+                chaves[vazio] = chaves[j];
+                valores[vazio] = valores[j];
+                vazio = j;
+            }
+        }
+        chaves[vazio] = VAZIO;
+        tamanho--;
+        return removido;
+    }
+
+    private void redimensionar(int novaCapacidade) {
+        long[] chavesAntigas = chaves;
+        int[] valoresAntigos = valores;
+        alocar(novaCapacidade);
+        for (int i = 0; i < chavesAntigas.length; i++) {
+            if (chavesAntigas[i] != VAZIO) {
+                colocar(chavesAntigas[i], valoresAntigos[i]);
+            }
+        }
+    }
+
+    public void limpar() {
+        Arrays.fill(chaves, VAZIO);
+        tamanho = 0;
+    }
+
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    //Memória ocupada pelos arrays, em bytes (para o benchmark do catálogo)
+    public long getBytesAlocados() {
+        return chaves.length * 8L + valores.length * 4L;
+    }
+}
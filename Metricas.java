@@ -0,0 +1,369 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métricas das operações dos DAOs: chamadas, erros, linhas retornadas, histograma de latência
+ * e tempo de espera por conexão do pool, por método (ex.: "PetDAO.buscarPetPorId").
+ *
+ * Desligadas por padrão. Com -Dpetstop.metricas=true cada operação aparece no JMX
+ * (petstop:type=DAO,name=...) e, com -Dpetstop.metricas.arquivo=metricas.prom, um arquivo no
+ * formato texto do Prometheus é regravado a cada petstop.metricas.intervalo segundos (padrão 15).
+ *
+ * Desligadas, o custo por chamada é a leitura de um boolean: iniciar() devolve sempre a mesma
+ * Medicao vazia, sem medir o tempo nem alocar nada.
+ *
+ * Uso nos DAOs:
+ *   Metricas.Medicao medicao = Metricas.iniciar("PetDAO.listarTodosPets");
+ *   try { ... } catch (SQLException e) { medicao.erro(); ... } finally { ...; medicao.fim(pets.size()); }
+ */
+public final class Metricas {
+
+    private static volatile boolean ativo = Boolean.getBoolean("petstop.metricas");
+
+    private static final Map<String, Operacao> OPERACOES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Medicao> ATUAL = new ThreadLocal<>(); //Para somar a espera por conexão (a mais interna)
+    private static ScheduledExecutorService exportador;
+
+    private Metricas() {
+    }
+
+    public static boolean isAtivo() {
+        return ativo;
+    }
+
+    public static void setAtivo(boolean ativar) {
+        ativo = ativar;
+    }
+
+    /**
+     * Lê as propriedades do sistema e, se as métricas estiverem ligadas e houver arquivo
+     * configurado, inicia a gravação periódica. Chamado no início do Main.
+     */
+    public static void configurarPorPropriedades() {
+        String arquivo = System.getProperty("petstop.metricas.arquivo");
+        if (ativo && arquivo != null) {
+            long intervalo = Long.getLong("petstop.metricas.intervalo", 15);
+            iniciarExportacao(Paths.get(arquivo), intervalo);
+        }
+    }
+
+    /**
+     * Começa a medir uma operação. Com as métricas desligadas devolve a Medicao vazia (sem custo).
+     * Uma operação pode chamar outra (ex.: buscarPetPorId lendo do banco numa falta do cache):
+     * a interna passa a ser a atual e, no fim(), a de fora volta a ser.
+     */
+    public static Medicao iniciar(String operacao) {
+        if (!ativo) return Medicao.NENHUMA;
+        Medicao medicao = new Medicao(OPERACOES.computeIfAbsent(operacao, Metricas::criarOperacao), ATUAL.get());
+        ATUAL.set(medicao);
+        return medicao;
+    }
+
+    //Chamado por Conexao.conectar(): soma o tempo esperando o pool na operação em andamento nesta thread
+    static void registrarEsperaConexao(long nanos) {
+        Medicao medicao = ATUAL.get();
+        if (medicao != null) medicao.esperaConexaoNanos += nanos;
+    }
+
+    private static Operacao criarOperacao(String nome) {
+        Operacao operacao = new Operacao(nome);
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            servidor.registerMBean(operacao, new ObjectName("petstop:type=DAO,name=" + ObjectName.quote(nome)));
+        } catch (JMException e) {
+            System.err.println("AVISO: Não foi possível registrar a métrica " + nome + " no JMX: " + e.getMessage());
+        }
+        return operacao;
+    }
+
+    /**
+     * Uma execução de operação. Não é compartilhada entre threads.
+     */
+    public static class Medicao {
+        static final Medicao NENHUMA = new Medicao(null, null);
+
+        private final Operacao operacao;
+        private final Medicao anterior; //A que estava em andamento nesta thread quando esta começou
+        private final long inicio;
+        private long esperaConexaoNanos;
+        private boolean falhou;
+
+        private Medicao(Operacao operacao, Medicao anterior) {
+            this.operacao = operacao;
+            this.anterior = anterior;
+            this.inicio = operacao == null ? 0 : System.nanoTime();
+        }
+
+        public void erro() {
+            if (operacao != null) falhou = true;
+        }
+
+        //Encerra a medição, registrando as linhas retornadas (ou afetadas)
+        public void fim(long linhas) {
+            if (operacao == null) return;
+            if (ATUAL.get() == this) {
+                if (anterior != null) {
+                    ATUAL.set(anterior);
+                } else {
+                    ATUAL.remove();
+                }
+            }
+            operacao.registrar(System.nanoTime() - inicio, esperaConexaoNanos, linhas, falhou);
+        }
+    }
+
+    //Interface exposta no JMX (o nome precisa ser o da classe + "MBean")
+    public interface OperacaoMBean {
+        long getChamadas();
+        long getErros();
+        long getLinhas();
+        double getLatenciaMediaMs();
+        double getLatenciaP50Ms();
+        double getLatenciaP99Ms();
+        double getLatenciaMaximaMs();
+        double getEsperaConexaoP99Ms();
+    }
+
+    public static class Operacao implements OperacaoMBean {
+        private final String nome;
+        private final LongAdder chamadas = new LongAdder();
+        private final LongAdder erros = new LongAdder();
+        private final LongAdder linhas = new LongAdder();
+        private final Histograma latencia = new Histograma();
+        private final Histograma esperaConexao = new Histograma();
+
+        Operacao(String nome) {
+            this.nome = nome;
+        }
+
+        void registrar(long nanos, long esperaNanos, long linhasRetornadas, boolean falhou) {
+            chamadas.increment();
+            if (falhou) erros.increment();
+            if (linhasRetornadas > 0) linhas.add(linhasRetornadas);
+            latencia.registrar(nanos);
+            esperaConexao.registrar(esperaNanos);
+        }
+
+        public String getNome() {
+            return nome;
+        }
+
+        @Override
+        public long getChamadas() {
+            return chamadas.sum();
+        }
+
+        @Override
+        public long getErros() {
+            return erros.sum();
+        }
+
+        @Override
+        public long getLinhas() {
+            return linhas.sum();
+        }
+
+        @Override
+        public double getLatenciaMediaMs() {
+            return latencia.getMedia() / 1e6;
+        }
+
+        @Override
+        public double getLatenciaP50Ms() {
+            return latencia.getPercentil(50) / 1e6;
+        }
+
+        @Override
+        public double getLatenciaP99Ms() {
+            return latencia.getPercentil(99) / 1e6;
+        }
+
+        @Override
+        public double getLatenciaMaximaMs() {
+            return latencia.getMaximo() / 1e6;
+        }
+
+        @Override
+        public double getEsperaConexaoP99Ms() {
+            return esperaConexao.getPercentil(99) / 1e6;
+        }
+    }
+
+    /**
+     * Histograma de valores em nanossegundos com faixas log-lineares (como o HdrHistogram):
+     * cada potência de 2 é dividida em 16 faixas, então o erro de qualquer percentil fica
+     * abaixo de ~6%, com memória fixa e registro sem lock.
+     */
+    static class Histograma {
+        private static final int SUBFAIXAS = 16;
+        private static final int FAIXAS = SUBFAIXAS + 59 * SUBFAIXAS;
+
+        private final AtomicLongArray contagens = new AtomicLongArray(FAIXAS);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder soma = new LongAdder();
+        private volatile long maximo;
+
+        void registrar(long valor) {
+            if (valor < 0) valor = 0;
+            contagens.incrementAndGet(faixa(valor));
+            total.increment();
+            soma.add(valor);
+            if (valor > maximo) {
+                synchronized (this) {
+                    if (valor > maximo) maximo = valor;
+                }
+            }
+        }
+
+        static int faixa(long valor) {
+            if (valor < SUBFAIXAS) return (int) valor;
+            int expoente = 63 - Long.numberOfLeadingZeros(valor); //Posição do bit mais alto (>= 4)
+            int sub = (int) (valor >>> (expoente - 4)) & (SUBFAIXAS - 1);
+            return SUBFAIXAS + (expoente - 4) * SUBFAIXAS + sub;
+        }
+
+        //Maior valor que cai na faixa
+        static long limiteSuperior(int faixa) {
+            if (faixa < SUBFAIXAS) return faixa;
+            int deslocamento = (faixa - SUBFAIXAS) / SUBFAIXAS;
+            int sub = (faixa - SUBFAIXAS) % SUBFAIXAS;
+            return ((long) (SUBFAIXAS + sub + 1) << deslocamento) - 1;
+        }
+
+        long getTotal() {
+            return total.sum();
+        }
+
+        long getSoma() {
+            return soma.sum();
+        }
+
+        long getMaximo() {
+            return maximo;
+        }
+
+        double getMedia() {
+            long n = total.sum();
+            return n == 0 ? 0 : soma.sum() / (double) n;
+        }
+
+        long getPercentil(double percentil) {
+            long n = total.sum();
+            if (n == 0) return 0;
+            long alvo = Math.max(1, (long) Math.ceil(n * percentil / 100.0));
+            long acumulado = 0;
+            for (int i = 0; i < FAIXAS; i++) {
+                acumulado += contagens.get(i);
+                if (acumulado >= alvo) return Math.min(limiteSuperior(i), maximo);
+            }
+            return maximo;
+        }
+    }
+
+    // --- Exportação ---
+
+    /**
+     * Texto no formato de exposição do Prometheus, com as operações em ordem alfabética.
+     */
+    public static String paraPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        Map<String, Operacao> ordenadas = new TreeMap<>(OPERACOES);
+        sb.append("# HELP petstop_dao_chamadas_total Chamadas ao metodo do DAO.\n");
+        sb.append("# TYPE petstop_dao_chamadas_total counter\n");
+        for (Operacao op : ordenadas.values()) linha(sb, "petstop_dao_chamadas_total", op, null, op.getChamadas());
+        sb.append("# HELP petstop_dao_erros_total Chamadas que terminaram em erro.\n");
+        sb.append("# TYPE petstop_dao_erros_total counter\n");
+        for (Operacao op : ordenadas.values()) linha(sb, "petstop_dao_erros_total", op, null, op.getErros());
+        sb.append("# HELP petstop_dao_linhas_total Linhas retornadas ou gravadas.\n");
+        sb.append("# TYPE petstop_dao_linhas_total counter\n");
+        for (Operacao op : ordenadas.values()) linha(sb, "petstop_dao_linhas_total", op, null, op.getLinhas());
+        resumoPrometheus(sb, "petstop_dao_latencia_segundos", "Tempo total do metodo.", ordenadas, true);
+        resumoPrometheus(sb, "petstop_dao_espera_conexao_segundos", "Tempo esperando conexao do pool.", ordenadas, false);
+        return sb.toString();
+    }
+
+    private static void resumoPrometheus(StringBuilder sb, String nome, String ajuda, Map<String, Operacao> operacoes,
+                                         boolean latencia) {
+        sb.append("# HELP ").append(nome).append(' ').append(ajuda).append('\n');
+        sb.append("# TYPE ").append(nome).append(" summary\n");
+        for (Operacao op : operacoes.values()) {
+            Histograma h = latencia ? op.latencia : op.esperaConexao;
+            for (double quantil : new double[]{0.5, 0.9, 0.99, 0.999}) {
+                linha(sb, nome, op, quantil, h.getPercentil(quantil * 100) / 1e9);
+            }
+            linha(sb, nome + "_sum", op, null, h.getSoma() / 1e9);
+            linha(sb, nome + "_count", op, null, h.getTotal());
+        }
+    }
+
+    private static void linha(StringBuilder sb, String nome, Operacao op, Double quantil, double valor) {
+        sb.append(nome).append("{operacao=\"").append(op.getNome()).append('"');
+        if (quantil != null) sb.append(",quantile=\"").append(quantil).append('"');
+        sb.append("} ");
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            sb.append((long) valor);
+        } else {
+            sb.append(String.format(Locale.ROOT, "%.9f", valor));
+        }
+        sb.append('\n');
+    }
+
+    //Regrava o arquivo a cada intervalo (grava num temporário e renomeia, para nunca ler um arquivo pela metade)
+    public static synchronized void iniciarExportacao(Path arquivo, long intervaloSegundos) {
+        if (exportador != null) return;
+        exportador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PetStop-Metricas");
+            t.setDaemon(true);
+            return t;
+        });
+        exportador.scheduleAtFixedRate(() -> gravar(arquivo), intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+        System.out.println("INFO: Métricas gravadas em " + arquivo + " a cada " + intervaloSegundos + " s.");
+    }
+
+    public static void gravar(Path arquivo) {
+        try {
+            Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+            Files.write(temporario, paraPrometheus().getBytes(StandardCharsets.UTF_8));
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar métricas em " + arquivo + ": " + e.getMessage());
+        }
+    }
+
+    //Para a gravação periódica, gravando uma última vez
+    public static synchronized void encerrarExportacao() {
+        if (exportador == null) return;
+        exportador.shutdownNow();
+        exportador = null;
+        String arquivo = System.getProperty("petstop.metricas.arquivo");
+        if (arquivo != null) gravar(Paths.get(arquivo));
+    }
+
+    //Uma linha por operação, para o console
+    public static String resumo() {
+        StringBuilder sb = new StringBuilder();
+        for (Operacao op : new TreeMap<>(OPERACOES).values()) {
+            sb.append(String.format("%-40s chamadas=%d erros=%d linhas=%d p50=%.3fms p99=%.3fms max=%.3fms esperaConexaoP99=%.3fms%n",
+                    op.getNome(), op.getChamadas(), op.getErros(), op.getLinhas(), op.getLatenciaP50Ms(),
+                    op.getLatenciaP99Ms(), op.getLatenciaMaximaMs(), op.getEsperaConexaoP99Ms()));
+        }
+        return sb.toString();
+    }
+}
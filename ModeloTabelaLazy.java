@@ -0,0 +1,366 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * TableModel que não carrega a tabela inteira: busca do banco apenas os blocos de linhas
+ * que o JTable pede para desenhar (a parte visível) e guarda os últimos blocos usados
+ * num cache LRU. Assim a memória e o tempo até a primeira pintura não crescem com o
+ * tamanho do estoque.
+ *
+ * - Linhas de um bloco ainda não carregado aparecem vazias até o bloco chegar.
+ * - Ao rolar, o bloco seguinte (na direção da rolagem) é buscado antecipadamente.
+ * - Para cada bloco já visto é guardado o último registro (âncora); o bloco seguinte
+ *   é buscado por keyset a partir dela. Sem âncora, a fonte pode usar a posição (OFFSET).
+ *
+ * Deve ser usado apenas na thread do Swing (EDT).
+ */
+public class ModeloTabelaLazy<T> extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    //Origem dos dados do modelo (normalmente o DAO, via ServicoAssincrono)
+    public interface FonteDados<T> {
+        CompletableFuture<Long> contar();
+
+        /**
+         * Carrega as linhas [inicio, inicio + quantidade) na ordem da tabela.
+         * @ param anterior Registro imediatamente antes de inicio, se conhecido (para keyset), ou null.
+         */
+        CompletableFuture<List<T>> carregar(int inicio, int quantidade, T anterior);
+    }
+
+    //Valor exibido na coluna para o registro
+    public interface ValorColuna<T> {
+        Object valor(T registro, int coluna);
+    }
+
+    private final String[] colunas;
+    private final ValorColuna<T> valorColuna;
+    private final Function<T, Long> id;
+    private final int tamanhoBloco;
+    private final int maxBlocos;
+    private FonteDados<T> fonte;
+
+    private final LinkedHashMap<Integer, List<T>> cache; //Blocos carregados, em ordem de uso (LRU)
+    private final Map<Integer, T> ancoras = new HashMap<>(); //Último registro de cada bloco já visto
+    private final Set<Integer> pedidos = new HashSet<>(); //Blocos sendo buscados no momento
+    private int totalLinhas;
+    private int geracao; //Muda a cada recarga, para descartar respostas antigas
+    private int ultimoBlocoAcessado;
+    private boolean rolandoParaBaixo = true;
+    private Runnable aoCarregarTotal;
+
+    public ModeloTabelaLazy(String[] colunas, ValorColuna<T> valorColuna, Function<T, Long> id,
+                            FonteDados<T> fonte, int tamanhoBloco, int maxBlocos) {
+        this.colunas = colunas;
+        this.valorColuna = valorColuna;
+        this.id = id;
+        this.fonte = fonte;
+        this.tamanhoBloco = tamanhoBloco;
+        this.maxBlocos = maxBlocos;
+        this.cache = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> maisAntigo) {
+                return size() > ModeloTabelaLazy.this.maxBlocos;
+            }
+        };
+    }
+
+    @Override
+    public int getRowCount() {
+        return totalLinhas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return colunas.length;
+    }
+
+    @Override
+    public String getColumnName(int coluna) {
+        return colunas[coluna];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int linha, int coluna) {
+        T registro = getRegistro(linha);
+        return registro == null ? null : valorColuna.valor(registro, coluna);
+    }
+
+    /**
+     * Retorna o registro da linha, ou null se o bloco dela ainda não foi carregado
+     * (nesse caso a carga é disparada).
+     */
+    public T getRegistro(int linha) {
+        if (linha < 0 || linha >= totalLinhas) return null;
+        int bloco = linha / tamanhoBloco;
+        registrarAcesso(bloco);
+
+        List<T> registros = cache.get(bloco);
+        if (registros == null) {
+            solicitarBloco(bloco);
+            return null;
+        }
+        int posicao = linha - bloco * tamanhoBloco;
+        return posicao < registros.size() ? registros.get(posicao) : null;
+    }
+
+    //Guarda a direção da rolagem e busca antecipadamente o próximo bloco nessa direção
+    private void registrarAcesso(int bloco) {
+        if (bloco != ultimoBlocoAcessado) {
+            rolandoParaBaixo = bloco > ultimoBlocoAcessado;
+            ultimoBlocoAcessado = bloco;
+        }
+        int proximo = rolandoParaBaixo ? bloco + 1 : bloco - 1;
+        if (proximo >= 0 && proximo * tamanhoBloco < totalLinhas && !cache.containsKey(proximo)) {
+            solicitarBloco(proximo);
+        }
+    }
+
+    private void solicitarBloco(int bloco) {
+        if (!pedidos.add(bloco)) return; //Já está sendo buscado
+        int inicio = bloco * tamanhoBloco;
+        int quantidade = Math.min(tamanhoBloco, totalLinhas - inicio);
+        T anterior = bloco > 0 ? ancoras.get(bloco - 1) : null;
+        int geracaoAtual = geracao;
+
+        fonte.carregar(inicio, quantidade, anterior).whenCompleteAsync((registros, erro) -> {
+            if (geracaoAtual != geracao) return; //Modelo foi recarregado/invalidado enquanto o bloco vinha
+            pedidos.remove(bloco);
+            if (erro != null) {
+                System.err.println("Erro ao carregar linhas " + inicio + " a " + (inicio + quantidade) + ": " + erro);
+                return;
+            }
+            cache.put(bloco, registros);
+            if (!registros.isEmpty()) {
+                ancoras.put(bloco, registros.get(registros.size() - 1));
+            }
+            int fim = Math.min(totalLinhas, inicio + tamanhoBloco) - 1;
+            if (fim >= inicio) {
+                fireTableRowsUpdated(inicio, fim);
+            }
+        }, ServicoAssincrono.EDT);
+    }
+
+    /**
+     * Descarta tudo e busca de novo o total de linhas; os blocos visíveis são buscados
+     * quando o JTable repintar.
+     */
+    public void recarregar() {
+        descartarBlocos();
+        int geracaoAtual = geracao;
+        fonte.contar().whenCompleteAsync((total, erro) -> {
+            if (geracaoAtual != geracao) return;
+            if (erro != null || total < 0) {
+                System.err.println("Erro ao contar linhas da tabela: " + erro);
+                total = 0L;
+            }
+            totalLinhas = (int) Math.min(Integer.MAX_VALUE, total);
+            fireTableDataChanged();
+            if (aoCarregarTotal != null) aoCarregarTotal.run();
+        }, ServicoAssincrono.EDT);
+    }
+
+    //Troca a origem dos dados (ex.: resultado de uma busca) e recarrega
+    public void setFonte(FonteDados<T> fonte) {
+        this.fonte = fonte;
+        recarregar();
+    }
+
+    //Executado na EDT sempre que o total de linhas é recarregado
+    public void setAoCarregarTotal(Runnable aoCarregarTotal) {
+        this.aoCarregarTotal = aoCarregarTotal;
+    }
+
+    //--- Alterações de um registro só ---
+
+    /**
+     * Um registro foi inserido. A posição dele é achada pela chave (nome, id) nos blocos em cache,
+     * na mesma ordem do ORDER BY nome, id do DAO: o registro entra no bloco que o contém e as
+     * linhas seguintes descem uma posição. Blocos anteriores não mudam; os seguintes em cache
+     * recebem a última linha do bloco anterior. Só é descartado o bloco cuja primeira linha
+     * ficou desconhecida (quando a inserção cai num trecho ainda não carregado).
+     */
+    public void registroInserido(T registro, Function<T, String> chaveOrdenacao) {
+        totalLinhas++;
+        geracao++; //Blocos que estavam sendo buscados viriam com as posições antigas
+        pedidos.clear();
+
+        //Bloco onde o registro entra e a posição dele no bloco (-1: cai antes do bloco, num trecho não carregado)
+        int bloco = -1;
+        int posicao = -1;
+        TreeSet<Integer> emCache = new TreeSet<>(cache.keySet());
+        for (int b : emCache) {
+            List<T> registros = cache.get(b);
+            if (registros.isEmpty() || comparar(registro, registros.get(registros.size() - 1), chaveOrdenacao) > 0) continue;
+            bloco = b;
+            if (b == 0 || emCache.contains(b - 1) || comparar(registro, registros.get(0), chaveOrdenacao) > 0) {
+                posicao = posicaoNoBloco(registros, registro, chaveOrdenacao);
+            } else {
+                //Entrou em algum bloco não carregado antes deste: as âncoras desde o último bloco em cache deslocaram
+                Integer anterior = emCache.lower(b);
+                int primeiroSemCache = anterior == null ? 0 : anterior + 1;
+                int blocoInsercao = b;
+                ancoras.keySet().removeIf(a -> a >= primeiroSemCache && a < blocoInsercao);
+            }
+            break;
+        }
+        if (bloco == -1 && !emCache.isEmpty()) {
+            //Depois de todas as linhas em cache: só muda algo se o último bloco carregado é o final da tabela
+            int ultimo = emCache.last();
+            List<T> registros = cache.get(ultimo);
+            if ((ultimo + 1) * tamanhoBloco >= totalLinhas - 1 && registros.size() < tamanhoBloco) {
+                bloco = ultimo;
+                posicao = registros.size();
+            }
+        }
+        if (bloco == -1) {
+            //Entra num trecho não carregado depois dos blocos em cache; as âncoras de lá ficaram para trás
+            int ultimo = emCache.isEmpty() ? -1 : emCache.last();
+            ancoras.keySet().removeIf(b -> b > ultimo);
+            fireTableRowsInserted(totalLinhas - 1, totalLinhas - 1);
+            return;
+        }
+
+        //Desloca uma linha para o bloco seguinte, do bloco da inserção até o último bloco conhecido
+        int ultimoBloco = emCache.last();
+        for (int b : ancoras.keySet()) {
+            ultimoBloco = Math.max(ultimoBloco, b);
+        }
+        T sobra = null;
+        boolean sobraConhecida = true;
+        for (int b = bloco; b <= ultimoBloco; b++) {
+            List<T> registros = cache.get(b);
+            if (registros == null) {
+                ancoras.remove(b); //Deslocou uma posição
+                sobraConhecida = false;
+                continue;
+            }
+            List<T> novos = new ArrayList<>(registros);
+            if (b == bloco && posicao >= 0) {
+                novos.add(posicao, registro);
+            } else if (b != bloco && sobraConhecida) {
+                if (sobra != null) novos.add(0, sobra);
+            } else {
+                //A primeira linha deste bloco agora é desconhecida: descarta, mas a última ainda desce para o seguinte
+                sobra = registros.size() == tamanhoBloco ? registros.get(registros.size() - 1) : null;
+                sobraConhecida = true;
+                cache.remove(b);
+                ancoras.remove(b);
+                continue;
+            }
+            sobra = novos.size() > tamanhoBloco ? novos.remove(novos.size() - 1) : null;
+            sobraConhecida = true;
+            cache.put(b, novos);
+            ancoras.put(b, novos.get(novos.size() - 1));
+        }
+
+        if (posicao >= 0) {
+            int linha = bloco * tamanhoBloco + posicao;
+            fireTableRowsInserted(linha, linha);
+        } else {
+            fireTableDataChanged();
+        }
+    }
+
+    //Ordem do DAO: nome sem diferenciar maiúsculas e acentos (como a collation do MySQL), depois ID
+    private int comparar(T a, T b, Function<T, String> chaveOrdenacao) {
+        int comparacao = IndiceBusca.normalizar(chaveOrdenacao.apply(a))
+                .compareTo(IndiceBusca.normalizar(chaveOrdenacao.apply(b)));
+        if (comparacao != 0) return comparacao;
+        Long idA = id.apply(a);
+        Long idB = id.apply(b);
+        return Long.compare(idA == null ? Long.MAX_VALUE : idA, idB == null ? Long.MAX_VALUE : idB);
+    }
+
+    private int posicaoNoBloco(List<T> registros, T registro, Function<T, String> chaveOrdenacao) {
+        int inicio = 0;
+        int fim = registros.size();
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            if (comparar(registros.get(meio), registro, chaveOrdenacao) < 0) {
+                inicio = meio + 1;
+            } else {
+                fim = meio;
+            }
+        }
+        return inicio;
+    }
+
+    /**
+     * Um registro foi alterado. Se ele está num bloco em cache e o nome (ordenação) não mudou,
+     * é trocado no lugar; senão os blocos a partir dele são descartados.
+     */
+    public void registroAtualizado(T registro, Function<T, String> chaveOrdenacao) {
+        int linha = localizar(id.apply(registro));
+        if (linha == -1) return; //Não está em memória; quando o bloco for buscado, virá atualizado
+        int bloco = linha / tamanhoBloco;
+        List<T> registros = cache.get(bloco);
+        int posicao = linha - bloco * tamanhoBloco;
+        if (chaveOrdenacao.apply(registros.get(posicao)).equals(chaveOrdenacao.apply(registro))) {
+            registros.set(posicao, registro);
+            fireTableRowsUpdated(linha, linha);
+        } else {
+            descartarBlocos();
+            fireTableDataChanged();
+        }
+    }
+
+    //Um registro foi removido: as linhas seguintes sobem uma posição
+    public void registroRemovido(long idRegistro) {
+        if (totalLinhas > 0) totalLinhas--;
+        int linha = localizar(idRegistro);
+        if (linha == -1) {
+            descartarBlocos();
+        } else {
+            descartarBlocosAPartirDe(linha / tamanhoBloco);
+        }
+        fireTableDataChanged();
+    }
+
+    //Retorna a linha do registro com o ID, procurando apenas nos blocos em cache, ou -1
+    private int localizar(long idRegistro) {
+        for (Map.Entry<Integer, List<T>> entrada : cache.entrySet()) {
+            List<T> registros = entrada.getValue();
+            for (int i = 0; i < registros.size(); i++) {
+                Long idLinha = id.apply(registros.get(i));
+                if (idLinha != null && idLinha == idRegistro) {
+                    return entrada.getKey() * tamanhoBloco + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void descartarBlocos() {
+        geracao++;
+        cache.clear();
+        ancoras.clear();
+        pedidos.clear();
+    }
+
+    //Blocos antes do índice continuam válidos; os demais (e suas âncoras) são descartados
+    private void descartarBlocosAPartirDe(int primeiroBloco) {
+        geracao++;
+        pedidos.clear();
+        for (Iterator<Integer> it = cache.keySet().iterator(); it.hasNext(); ) {
+            if (it.next() >= primeiroBloco) it.remove();
+        }
+        ancoras.keySet().removeIf(bloco -> bloco >= primeiroBloco);
+    }
+}
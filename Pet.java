@@ -9,6 +9,7 @@ public class Pet {
     private String especie; // Corresponde à coluna 'especie' (VARCHAR(50) NOT NULL)
     private int idade; // Corresponde à coluna 'idade' (BIGINT NOT NULL) - usando int em Java para idades comuns
     private boolean vacinado; // Corresponde à coluna 'vacinado' (BOOLEAN NOT NULL)
+    private long versao; // Corresponde à coluna 'versao' (BIGINT NOT NULL) - incrementada a cada atualização
 
     public Pet() {
     }
@@ -21,6 +22,11 @@ public class Pet {
         this.vacinado = vacinado;
     }
 
+    public Pet(Long id, String nome, String especie, int idade, boolean vacinado, long versao) {
+        this(id, nome, especie, idade, vacinado);
+        this.versao = versao;
+    }
+
     public Pet(String nome, String especie, int idade, boolean vacinado) {
         this.nome = nome;
         this.especie = especie;
@@ -73,6 +79,15 @@ public class Pet {
         this.vacinado = vacinado;
     }
 
+    //Retorna a versão do registro lida do banco (usada para detectar alterações de outro usuário)
+    public long getVersao() {
+        return versao;
+    }
+    //Define a versão do registro
+    public void setVersao(long versao) {
+        this.versao = versao;
+    }
+
     //Retorna uma representação em String do objeto Pet.
     @Override
     public String toString() {
@@ -82,6 +97,7 @@ public class Pet {
                ", especie='" + especie + '\'' +
                ", idade=" + idade +
                ", vacinado=" + vacinado +
+               ", versao=" + versao +
                '}';
     }
 }
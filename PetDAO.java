@@ -4,7 +4,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 //Importar as classes Conexao e Pet caso necessário.
 //import com.petstop.db.Conexao;
@@ -17,21 +21,58 @@ import java.util.List;
  */
 public class PetDAO {
 
+    /**
+     * Recebe as gravações feitas com sucesso por este DAO, para manter cópias em memória
+     * (ex.: IndiceBusca, ResumoAnimais) atualizadas. É chamado na thread que fez a gravação.
+     */
+    public interface Ouvinte {
+        void petGravado(Pet pet);
+        void petRemovido(long id);
+    }
+
+    private static final List<Ouvinte> OUVINTES = new CopyOnWriteArrayList<>();
+
+    public static void adicionarOuvinte(Ouvinte ouvinte) {
+        OUVINTES.add(ouvinte);
+    }
+
+    public static void removerOuvinte(Ouvinte ouvinte) {
+        OUVINTES.remove(ouvinte);
+    }
+
+    private static void notificarGravado(Pet pet) {
+        for (Ouvinte ouvinte : OUVINTES) {
+            ouvinte.petGravado(pet);
+        }
+    }
+
+    private static void notificarRemovido(long id) {
+        for (Ouvinte ouvinte : OUVINTES) {
+            ouvinte.petRemovido(id);
+        }
+    }
+
     /**
      * Adiciona um novo pet ao banco de dados (O ID do pet é gerado automaticamente pelo banco).
-     * @ return true se o pet foi adicionado com sucesso, false caso contrário.
+     * @ return GRAVADO; PENDENTE se ficou no diário offline (sem ID até ser enviado); ou FALHOU.
      */
-    public boolean adicionarPet(Pet pet) {
+    public ResultadoGravacao adicionarPet(Pet pet) {
         String sql = "INSERT INTO animais (nome, especie, idade, vacinado) VALUES (?, ?, ?, ?)";
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet generatedKeys = null;
 
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.adicionarPet");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
+                medicao.erro();
+                if (DiarioOffline.registrarPet(DiarioOffline.Tipo.ADICIONAR_PET, pet)) {
+                    System.err.println("AVISO: Sem conexão com o banco de dados; inclusão de pet guardada no diário offline.");
+                    return ResultadoGravacao.PENDENTE;
+                }
                 System.err.println("Falha ao conectar ao banco de dados para adicionar pet.");
-                return false;
+                return ResultadoGravacao.FALHOU;
             }
             // O Statement.RETURN_GENERATED_KEYS permite obter o ID gerado.
             pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
@@ -49,16 +90,18 @@ public class PetDAO {
                     pet.setId(generatedKeys.getLong(1)); //Define o ID no objeto pet
                 }
                 System.out.println("Pet adicionado com sucesso! ID: " + pet.getId());
-                return true;
+                notificarGravado(pet);
+                return ResultadoGravacao.GRAVADO;
             } else {
                 System.err.println("Nenhuma linha afetada ao tentar adicionar o pet.");
-                return false;
+                return ResultadoGravacao.FALHOU;
             }
         } catch (SQLException e) {
+            medicao.erro();
             System.err.println("Erro de SQL ao adicionar pet: " + e.getMessage());
             //Adicionar log mais detalhado da exceção se necessário
             //e.printStackTrace();
-            return false;
+            return ResultadoGravacao.FALHOU;
         } finally {
             try {
                 if (generatedKeys != null) generatedKeys.close();
@@ -67,41 +110,162 @@ public class PetDAO {
                 System.err.println("Erro ao fechar PreparedStatement ou ResultSet: " + e.getMessage());
             }
             Conexao.fechar(conn); //Fecha a conexão principal
+            medicao.fim(pet.getId() != null ? 1 : 0);
         }
     }
 
+    //Cache dos pets buscados por ID, compartilhado por todas as instâncias do DAO
+    private static final CacheLRU<Pet> CACHE = new CacheLRU<>("pets", 2000, 5 * 60 * 1000L,
+            p -> new Pet(p.getId(), p.getNome(), p.getEspecie(), p.getIdade(), p.isVacinado(), p.getVersao()));
+
+    public static CacheLRU<Pet> getCache() {
+        return CACHE;
+    }
+
+    //Índice da busca por nome/espécie, carregado na primeira busca e mantido pelas gravações deste DAO
+    private static final IndiceBusca<Pet> INDICE = new IndiceBusca<>("pets", Pet::getId,
+            p -> p.getNome() + " " + p.getEspecie(),
+            p -> new Pet(p.getId(), p.getNome(), p.getEspecie(), p.getIdade(), p.isVacinado(), p.getVersao()),
+            Comparator.comparing(Pet::getNome, String.CASE_INSENSITIVE_ORDER).thenComparing(Pet::getId));
+
+    public static IndiceBusca<Pet> getIndice() {
+        return INDICE;
+    }
+
+    //Contagens por espécie, vacinação e idade, carregadas na abertura e mantidas pelas gravações deste DAO
+    private static final ResumoAnimais RESUMO = new ResumoAnimais();
+
+    static {
+        adicionarOuvinte(new Ouvinte() {
+            @Override
+            public void petGravado(Pet pet) {
+                INDICE.colocar(pet);
+            }
+
+            @Override
+            public void petRemovido(long id) {
+                INDICE.remover(id);
+            }
+        });
+        adicionarOuvinte(RESUMO);
+    }
+
+    public static ResumoAnimais getResumo() {
+        return RESUMO;
+    }
+
+    //Conta os pets do banco para o resumo, se ainda não foi feito (uma única consulta, lida em streaming)
+    public void carregarResumo() {
+        RESUMO.carregarSeNecessario(this);
+    }
+
+    /**
+     * Aplica uma alteração feita em outro terminal (recebida pelo BarramentoAlteracoes) ou enviada
+     * pelo DiarioOffline: o pet é relido do banco, e o índice e o resumo recebem o registro atual.
+     * Se a releitura falhar (sem conexão, erro de SQL), só o cache é invalidado: o pet não é dado
+     * como removido, e a próxima leitura busca no banco.
+     * @ return O pet como está agora no banco, ou null se não existe mais ou não foi possível reler.
+     */
+    Pet aplicarAlteracaoRemota(long id, boolean removido) {
+        CACHE.invalidar(id);
+        if (removido) {
+            notificarRemovido(id);
+            return null;
+        }
+        Pet atual;
+        try {
+            atual = lerPetNoBanco(id);
+        } catch (SQLException e) {
+            System.err.println("AVISO: Não foi possível reler o pet " + id + " alterado em outro terminal; "
+                    + "fica só fora do cache. " + e.getMessage());
+            return null;
+        }
+        if (atual == null) {
+            notificarRemovido(id);
+        } else {
+            notificarGravado(atual);
+        }
+        return atual;
+    }
+
+    /**
+     * Busca pets pelo nome ou espécie, sem diferenciar maiúsculas nem acentos.
+     * Cada palavra digitada deve ser o começo de uma palavra do nome ou da espécie (ex.: "rex gat").
+     * Na primeira chamada carrega o índice com todos os pets; as seguintes não vão ao banco.
+     * @ param limite Quantidade máxima de pets retornados.
+     * @ return Os primeiros pets encontrados, em ordem de nome, e quantos atendem à busca ao todo.
+     */
+    public ResultadoBusca<Pet> buscarPets(String texto, int limite) {
+        return buscarPets(texto, limite, () -> false);
+    }
+
+    /**
+     * Igual a buscarPets(texto, limite), mas interrompe a busca (retornando o que achou até ali)
+     * assim que cancelada retornar true, ex.: quando o usuário já digitou outro texto.
+     */
+    public ResultadoBusca<Pet> buscarPets(String texto, int limite, BooleanSupplier cancelada) {
+        carregarIndiceBusca();
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.buscarPets");
+        ResultadoBusca<Pet> resultado = INDICE.buscar(texto, limite, cancelada);
+        medicao.fim(resultado.getRegistros().size());
+        return resultado;
+    }
+
+    //Carrega o índice de busca com todos os pets, se ainda não foi carregado
+    public void carregarIndiceBusca() {
+        INDICE.carregarSeNecessario(this::percorrerTodosPets); //Uma única consulta, lida em streaming
+    }
+
     /**
      * Busca um pet pelo seu ID.
+     * Usa o cache; o banco só é consultado se o pet não estiver nele (ou estiver vencido).
      * @ param id O ID do pet a ser buscado.
      * @ return Um objeto Pet se encontrado, ou null caso contrário.
      */
     public Pet buscarPetPorId(long id) {
-        String sql = "SELECT * FROM animais WHERE id = ?";
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.buscarPetPorId");
+        Pet pet = CACHE.obter(id, this::buscarPetNoBanco);
+        medicao.fim(pet != null ? 1 : 0);
+        return pet;
+    }
+
+    private Pet buscarPetNoBanco(long id) {
+        try {
+            return lerPetNoBanco(id);
+        } catch (SQLException e) {
+            System.err.println("Erro ao buscar pet por ID: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lê o pet direto do banco, sem passar pelo cache.
+     * @ return O pet, ou null se ele não existe.
+     * @ throws SQLException se não foi possível consultar (sem conexão ou erro de SQL); não quer dizer que o pet não existe.
+     */
+    private Pet lerPetNoBanco(long id) throws SQLException {
+        String sql = "SELECT " + COLUNAS + " FROM animais WHERE id = ?";
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         Pet pet = null;
 
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.buscarPetNoBanco");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
-                System.err.println("Falha ao conectar ao banco de dados para buscar pet por ID.");
-                return null;
+                throw new SQLException("Falha ao conectar ao banco de dados para buscar pet por ID.");
             }
             pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, id);
             rs = pstmt.executeQuery();
 
             if (rs.next()) {
-                pet = new Pet();
-                pet.setId(rs.getLong("id"));
-                pet.setNome(rs.getString("nome"));
-                pet.setEspecie(rs.getString("especie"));
-                pet.setIdade(rs.getInt("idade"));
-                pet.setVacinado(rs.getBoolean("vacinado"));
+                pet = mapearPet(rs);
             }
         } catch (SQLException e) {
-            System.err.println("Erro de SQL ao buscar pet por ID: " + e.getMessage());
+            medicao.erro();
+            throw e;
         } finally {
             try {
                 if (rs != null) rs.close();
@@ -110,6 +274,7 @@ public class PetDAO {
                 System.err.println("Erro ao fechar ResultSet ou PreparedStatement: " + e.getMessage());
             }
             Conexao.fechar(conn);
+            medicao.fim(pet != null ? 1 : 0);
         }
         return pet;
     }
@@ -119,31 +284,44 @@ public class PetDAO {
      * @ return Uma lista de objetos Pet. A lista pode estar vazia se não houver pets.
      */
     public List<Pet> listarTodosPets() {
-        String sql = "SELECT * FROM animais ORDER BY nome ASC"; //Ordena por nome para melhor visualização
         List<Pet> pets = new ArrayList<>();
+        percorrerTodosPets(pets::add);
+        return pets;
+    }
+
+    /**
+     * Passa cada pet cadastrado, em ordem de nome, para o consumidor, sem montar uma lista.
+     * As linhas vêm do banco em streaming (fetch size de Conexao.aplicarFetchSize), então o
+     * driver não guarda o resultado inteiro na memória antes de entregar a primeira linha.
+     * O consumidor não deve demorar: a conexão fica presa até a última linha ser lida.
+     * @ return A quantidade de pets lidos, ou -1 em caso de erro.
+     */
+    public long percorrerTodosPets(Consumer<Pet> consumidor) {
+        String sql = "SELECT " + COLUNAS + " FROM animais ORDER BY nome ASC"; //Ordena por nome para melhor visualização
+        long lidos = 0;
         Connection conn = null;
-        Statement stmt = null; //Usando Statement simples pois não há parâmetros de entrada
+        PreparedStatement stmt = null; //Sem parâmetros, mas preparado para ser reaproveitado pelo cache de statements do pool
         ResultSet rs = null;
 
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.percorrerTodosPets");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
+                medicao.erro();
                 System.err.println("Falha ao conectar ao banco de dados para listar pets.");
-                return pets; //Retorna lista vazia
+                return -1;
             }
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(sql);
+            stmt = conn.prepareStatement(sql);
+            Conexao.aplicarFetchSize(stmt);
+            rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Pet pet = new Pet();
-                pet.setId(rs.getLong("id"));
-                pet.setNome(rs.getString("nome"));
-                pet.setEspecie(rs.getString("especie"));
-                pet.setIdade(rs.getInt("idade"));
-                pet.setVacinado(rs.getBoolean("vacinado"));
-                pets.add(pet);
+                consumidor.accept(mapearPet(rs));
+                lidos++;
             }
         } catch (SQLException e) {
+            medicao.erro();
+            lidos = -1;
             System.err.println("Erro de SQL ao listar todos os pets: " + e.getMessage());
         } finally {
             try {
@@ -153,30 +331,276 @@ public class PetDAO {
                 System.err.println("Erro ao fechar ResultSet ou Statement: " + e.getMessage());
             }
             Conexao.fechar(conn);
+            medicao.fim(Math.max(lidos, 0));
+        }
+        return lidos;
+    }
+
+    /**
+     * Lista uma página de pets ordenada por (nome, id), usando paginação por chave (keyset).
+     * Em vez de OFFSET, a consulta continua a partir do último registro da página anterior,
+     * então o custo de cada página é o mesmo no início ou no fim da tabela (usa o índice idx_animais_nome_id).
+     * @ param ultimoNome Nome do último pet da página anterior, ou null para a primeira página.
+     * @ param ultimoId ID do último pet da página anterior (ignorado na primeira página).
+     * @ param tamanhoPagina Quantidade máxima de pets retornados.
+     * @ return A página de pets. Se vier menor que tamanhoPagina, não há mais páginas.
+     */
+    public List<Pet> listarPetsPagina(String ultimoNome, Long ultimoId, int tamanhoPagina) {
+        String sql = ultimoNome == null
+                ? "SELECT " + COLUNAS + " FROM animais ORDER BY nome ASC, id ASC LIMIT ?"
+                : "SELECT " + COLUNAS + " FROM animais WHERE nome > ? OR (nome = ? AND id > ?) ORDER BY nome ASC, id ASC LIMIT ?";
+        List<Pet> pets = new ArrayList<>(tamanhoPagina);
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.listarPetsPagina");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para listar página de pets.");
+                return pets;
+            }
+            pstmt = conn.prepareStatement(sql);
+            int parametro = 1;
+            if (ultimoNome != null) {
+                pstmt.setString(parametro++, ultimoNome);
+                pstmt.setString(parametro++, ultimoNome);
+                pstmt.setLong(parametro++, ultimoId);
+            }
+            pstmt.setInt(parametro, tamanhoPagina);
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                pets.add(mapearPet(rs));
+            }
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao listar página de pets: " + e.getMessage());
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement: " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(pets.size());
         }
         return pets;
     }
 
     /**
-     * Atualiza os dados de um pet existente no banco de dados.
-     * @ param pet O objeto Pet com os dados atualizados. O ID do pet deve estar preenchido.
-     * @ return true se o pet foi atualizado com sucesso, false caso contrário.
+     * Lista os pets a partir de uma posição da ordenação (nome, id), usando OFFSET.
+     * Usado apenas quando o usuário salta para um trecho da tabela ainda não visitado;
+     * na rolagem normal use listarPetsPagina, que não precisa pular linhas.
+     * @ param inicio Posição (a partir de 0) do primeiro pet retornado.
+     * @ param quantidade Quantidade máxima de pets retornados.
      */
-    public boolean atualizarPet(Pet pet) {
-        String sql = "UPDATE animais SET nome = ?, especie = ?, idade = ?, vacinado = ? WHERE id = ?";
+    public List<Pet> listarPetsPorPosicao(int inicio, int quantidade) {
+        String sql = "SELECT " + COLUNAS + " FROM animais ORDER BY nome ASC, id ASC LIMIT ? OFFSET ?";
+        List<Pet> pets = new ArrayList<>(quantidade);
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.listarPetsPorPosicao");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para listar pets por posição.");
+                return pets;
+            }
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setInt(1, quantidade);
+            pstmt.setInt(2, inicio);
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                pets.add(mapearPet(rs));
+            }
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao listar pets por posição: " + e.getMessage());
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement: " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(pets.size());
+        }
+        return pets;
+    }
+
+    /**
+     * Conta quantos pets estão cadastrados.
+     * @ return O total de pets, ou -1 em caso de erro.
+     */
+    public long contarPets() {
+        String sql = "SELECT COUNT(*) FROM animais";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.contarPets");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para contar pets.");
+                return -1;
+            }
+            stmt = conn.prepareStatement(sql);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao contar pets: " + e.getMessage());
+            return -1;
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (stmt != null) stmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou Statement: " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(1);
+        }
+    }
+
+    /**
+     * Lista os pets cujo nome começa com o prefixo (LIKE 'prefixo%'), na ordem (nome, id).
+     * Usa o índice idx_animais_nome_id. Serve para a busca da tela enquanto o índice em memória
+     * ainda não foi carregado; a comparação segue a collation da coluna (sem diferenciar maiúsculas).
+     * @ param ultimoNome Nome do último pet já exibido (keyset), ou null para usar o OFFSET inicio.
+     * @ param ultimoId ID do último pet já exibido, ou null.
+     */
+    public List<Pet> listarPetsPorPrefixo(String prefixo, String ultimoNome, Long ultimoId, int inicio, int quantidade) {
+        String sql = ultimoNome == null
+                ? "SELECT " + COLUNAS + " FROM animais WHERE nome LIKE ? ORDER BY nome ASC, id ASC LIMIT ? OFFSET ?"
+                : "SELECT " + COLUNAS + " FROM animais WHERE nome LIKE ? AND (nome > ? OR (nome = ? AND id > ?)) ORDER BY nome ASC, id ASC LIMIT ?";
+        List<Pet> pets = new ArrayList<>(quantidade);
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.listarPetsPorPrefixo");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para buscar pets por prefixo.");
+                return pets;
+            }
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, padraoPrefixo(prefixo));
+            if (ultimoNome == null) {
+                pstmt.setInt(2, quantidade);
+                pstmt.setInt(3, inicio);
+            } else {
+                pstmt.setString(2, ultimoNome);
+                pstmt.setString(3, ultimoNome);
+                pstmt.setLong(4, ultimoId);
+                pstmt.setInt(5, quantidade);
+            }
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                pets.add(mapearPet(rs));
+            }
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao buscar pets por prefixo: " + e.getMessage());
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement: " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(pets.size());
+        }
+        return pets;
+    }
+
+    /**
+     * Conta os pets cujo nome começa com o prefixo.
+     * @ return O total encontrado, ou -1 em caso de erro.
+     */
+    public long contarPetsPorPrefixo(String prefixo) {
+        String sql = "SELECT COUNT(*) FROM animais WHERE nome LIKE ?";
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.contarPetsPorPrefixo");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para contar pets por prefixo.");
+                return -1;
+            }
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, padraoPrefixo(prefixo));
+            rs = pstmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao contar pets por prefixo: " + e.getMessage());
+            return -1;
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement: " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(1);
+        }
+    }
+
+    //Escapa os curingas do LIKE (%, _ e \) digitados pelo usuário e acrescenta o % final
+    private static String padraoPrefixo(String prefixo) {
+        return prefixo.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    /**
+     * Atualiza os dados de um pet existente no banco de dados, se ninguém o alterou desde que
+     * foi lido (a versão no banco ainda é pet.getVersao()). Em caso de sucesso a versão do
+     * objeto é incrementada, então ele pode ser atualizado de novo.
+     * @ param pet O objeto Pet com os dados atualizados. O ID e a versão lida devem estar preenchidos.
+     * @ return ATUALIZADO; CONFLITO com o pet atual do banco; NAO_ENCONTRADO; INVALIDO ou ERRO.
+     */
+    public ResultadoAtualizacao<Pet> atualizarPet(Pet pet) {
+        String sql = "UPDATE animais SET nome = ?, especie = ?, idade = ?, vacinado = ?, versao = versao + 1 WHERE id = ? AND versao = ?";
         Connection conn = null;
         PreparedStatement pstmt = null;
 
         if (pet.getId() == null || pet.getId() <= 0) {
             System.err.println("ID do pet inválido para atualização.");
-            return false;
+            return ResultadoAtualizacao.invalido("ID do pet inválido para atualização.");
         }
 
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.atualizarPet");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
+                medicao.erro();
+                if (DiarioOffline.registrarPet(DiarioOffline.Tipo.ATUALIZAR_PET, pet)) {
+                    System.err.println("AVISO: Sem conexão com o banco de dados; atualização de pet guardada no diário offline.");
+                    return ResultadoAtualizacao.pendente(pet);
+                }
                 System.err.println("Falha ao conectar ao banco de dados para atualizar pet.");
-                return false;
+                return ResultadoAtualizacao.erro("Sem conexão com o banco de dados.");
             }
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, pet.getNome());
@@ -184,18 +608,19 @@ public class PetDAO {
             pstmt.setInt(3, pet.getIdade());
             pstmt.setBoolean(4, pet.isVacinado());
             pstmt.setLong(5, pet.getId());
+            pstmt.setLong(6, pet.getVersao());
 
             int linhasAfetadas = pstmt.executeUpdate();
             if (linhasAfetadas > 0) {
+                pet.setVersao(pet.getVersao() + 1);
                 System.out.println("Pet atualizado com sucesso! ID: " + pet.getId());
-                return true;
-            } else {
-                System.err.println("Nenhuma linha afetada. Pet com ID " + pet.getId() + " não encontrado para atualização.");
-                return false;
+                notificarGravado(pet);
+                return ResultadoAtualizacao.atualizado(pet);
             }
         } catch (SQLException e) {
+            medicao.erro();
             System.err.println("Erro de SQL ao atualizar pet: " + e.getMessage());
-            return false;
+            return ResultadoAtualizacao.erro("Erro de SQL ao atualizar pet: " + e.getMessage());
         } finally {
             try {
                 if (pstmt != null) pstmt.close();
@@ -203,29 +628,55 @@ public class PetDAO {
                 System.err.println("Erro ao fechar PreparedStatement: " + e.getMessage());
             }
             Conexao.fechar(conn);
+            medicao.fim(0);
+            CACHE.invalidar(pet.getId());
+        }
+
+        //Nenhuma linha afetada: o pet foi removido, ou alterado por outro usuário (versão diferente)
+        Pet atual;
+        try {
+            atual = lerPetNoBanco(pet.getId());
+        } catch (SQLException e) {
+            //Não dá para saber se foi conflito ou remoção: nada foi gravado, e o registro não é dado como removido
+            System.err.println("Erro ao reler o pet com ID " + pet.getId() + " após a atualização não aplicada: " + e.getMessage());
+            return ResultadoAtualizacao.erro("Não foi possível verificar o pet no banco de dados.");
+        }
+        if (atual == null) {
+            System.err.println("Nenhuma linha afetada. Pet com ID " + pet.getId() + " não encontrado para atualização.");
+            return ResultadoAtualizacao.naoEncontrado();
         }
+        System.err.println("AVISO: Pet com ID " + pet.getId() + " foi alterado por outro usuário (versão lida "
+                + pet.getVersao() + ", atual " + atual.getVersao() + "). Nada foi gravado.");
+        notificarGravado(atual);
+        return ResultadoAtualizacao.conflito(atual);
     }
 
     /**
      * Remove um pet do banco de dados pelo seu ID.
      * @ param id O ID do pet a ser removido.
-     * @ return true se o pet foi removido com sucesso, false caso contrário.
+     * @ return GRAVADO; PENDENTE se ficou no diário offline; ou FALHOU (inclusive se o pet não existe).
      */
-    public boolean removerPet(long id) {
+    public ResultadoGravacao removerPet(long id) {
         String sql = "DELETE FROM animais WHERE id = ?";
         Connection conn = null;
         PreparedStatement pstmt = null;
 
         if (id <= 0) {
             System.err.println("ID do pet inválido para remoção.");
-            return false;
+            return ResultadoGravacao.FALHOU;
         }
 
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.removerPet");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
+                medicao.erro();
+                if (DiarioOffline.registrarRemocao(DiarioOffline.Tipo.REMOVER_PET, id)) {
+                    System.err.println("AVISO: Sem conexão com o banco de dados; remoção de pet guardada no diário offline.");
+                    return ResultadoGravacao.PENDENTE;
+                }
                 System.err.println("Falha ao conectar ao banco de dados para remover pet.");
-                return false;
+                return ResultadoGravacao.FALHOU;
             }
             pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, id);
@@ -233,14 +684,16 @@ public class PetDAO {
             int linhasAfetadas = pstmt.executeUpdate();
             if (linhasAfetadas > 0) {
                 System.out.println("Pet com ID " + id + " removido com sucesso!");
-                return true;
+                notificarRemovido(id);
+                return ResultadoGravacao.GRAVADO;
             } else {
                 System.err.println("Nenhuma linha afetada. Pet com ID " + id + " não encontrado para remoção.");
-                return false;
+                return ResultadoGravacao.FALHOU;
             }
         } catch (SQLException e) {
+            medicao.erro();
             System.err.println("Erro de SQL ao remover pet: " + e.getMessage());
-            return false;
+            return ResultadoGravacao.FALHOU;
         } finally {
             try {
                 if (pstmt != null) pstmt.close();
@@ -248,6 +701,58 @@ public class PetDAO {
                 System.err.println("Erro ao fechar PreparedStatement: " + e.getMessage());
             }
             Conexao.fechar(conn);
+            medicao.fim(0);
+            CACHE.invalidar(id);
         }
     }
+
+    private static final LoteJDBC LOTE = new LoteJDBC("pets");
+
+    /**
+     * Adiciona vários pets de uma vez (ex.: importação de arquivo), em lote e numa única transação.
+     * Um pet com erro (ex.: nome e espécie duplicados) não impede os demais de serem gravados.
+     * @ return O resultado do lote, com os IDs gerados e as linhas que falharam.
+     */
+    public ResultadoLote adicionarPets(List<Pet> pets) {
+        String sql = "INSERT INTO animais (nome, especie, idade, vacinado) VALUES (?, ?, ?, ?)";
+        Metricas.Medicao medicao = Metricas.iniciar("PetDAO.adicionarPets");
+        ResultadoLote resultado = LOTE.executar(sql, pets,
+                pet -> pet == null || pet.getNome() == null || pet.getEspecie() == null ? "Pet sem nome ou espécie." : null,
+                (pstmt, pet) -> {
+                    pstmt.setString(1, pet.getNome());
+                    pstmt.setString(2, pet.getEspecie());
+                    pstmt.setInt(3, pet.getIdade());
+                    pstmt.setBoolean(4, pet.isVacinado());
+                }, Pet::setId);
+        if (!resultado.isSucessoTotal()) medicao.erro();
+        medicao.fim(resultado.getSucessos());
+        for (int i = 0; i < pets.size(); i++) {
+            if (resultado.getIdGerado(i) != null) notificarGravado(pets.get(i));
+        }
+        return resultado;
+    }
+
+    /*
+     * Colunas lidas nas consultas, sempre nesta ordem: o mapeamento lê cada coluna pela posição
+     * (COL_*), sem procurar o nome a cada linha, e o SELECT não traz colunas que não são usadas.
+     */
+    static final String COLUNAS = "id, nome, especie, idade, vacinado, versao";
+    private static final int COL_ID = 1;
+    private static final int COL_NOME = 2;
+    private static final int COL_ESPECIE = 3;
+    private static final int COL_IDADE = 4;
+    private static final int COL_VACINADO = 5;
+    private static final int COL_VERSAO = 6;
+
+    //Converte a linha atual do ResultSet em um objeto Pet (as colunas de COLUNAS, nessa ordem; visível no pacote para o ModeloBenchmark)
+    static Pet mapearPet(ResultSet rs) throws SQLException {
+        Pet pet = new Pet();
+        pet.setId(rs.getLong(COL_ID));
+        pet.setNome(rs.getString(COL_NOME));
+        pet.setEspecie(rs.getString(COL_ESPECIE));
+        pet.setIdade(rs.getInt(COL_IDADE));
+        pet.setVacinado(rs.getBoolean(COL_VACINADO));
+        pet.setVersao(rs.getLong(COL_VERSAO));
+        return pet;
+    }
 }
@@ -1,14 +1,24 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 import java.math.BigDecimal;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableModel;
 
 //Importar as classes Pet e PetDAO caso necessário.
 //import com.petstop.model.Pet;
@@ -17,6 +27,8 @@ import java.awt.event.WindowEvent;
 public class PetStopUI extends JFrame {
     private PetDAO petDAO;
     private ProdutoDAO produtoDAO;
+    private ServicoAssincrono servico; //Executa as chamadas aos DAOs fora da thread do Swing
+    private BarramentoAlteracoes barramento; //Avisa e recebe as gravações dos outros terminais
     private JTabbedPane tabbedPane;
 
     //Componentes da UI de Animais
@@ -30,9 +42,16 @@ public class PetStopUI extends JFrame {
     private JButton btnAtualizar;
     private JButton btnRemover;
     private JButton btnLimpar;
+    private JButton btnRecarregar;
 
     private JTable tabelaPets;
-    private DefaultTableModel tableModel;
+    private ModeloTabelaLazy<Pet> tableModel;
+    private ModeloTabelaLazy.FonteDados<Pet> fontePets; //Todos os pets, do banco
+    private JLabel lblTotalPets;
+    private JTextField txtBuscaPet;
+    private Timer timerBuscaPet; //Espera o usuário parar de digitar antes de buscar
+    private final AtomicInteger geracaoBuscaPets = new AtomicInteger(); //Muda a cada busca; a anterior é cancelada
+    private Pet petEmEdicao; //Como estava no banco ao ser selecionado: versão e base da mesclagem em caso de conflito
 
     //Componentes da UI de Produtos
     private JTextField txtIdProduto;
@@ -45,13 +64,52 @@ public class PetStopUI extends JFrame {
     private JButton btnAtualizarProduto;
     private JButton btnRemoverProduto;
     private JButton btnLimparProduto;
+    private JButton btnRecarregarProduto;
 
     private JTable tabelaProdutos;
-    private DefaultTableModel tableModelProdutos;
+    private ModeloTabelaLazy<Produto> tableModelProdutos;
+    private ModeloTabelaLazy.FonteDados<Produto> fonteProdutos;
+    private JLabel lblTotalProdutos;
+    private JTextField txtBuscaProduto;
+    private Timer timerBuscaProduto;
+    private final AtomicInteger geracaoBuscaProdutos = new AtomicInteger();
+    private Produto produtoEmEdicao;
+
+    //Aba Resumo: lê só os contadores do ResumoAnimais, sem consultar as linhas da tabela animais
+    private JPanel abaResumo;
+    private DefaultTableModel modeloResumo;
+    private JLabel lblResumo;
+    private Timer timerResumo; //Atualiza a aba enquanto ela está visível
+    private JButton btnRelatorioEstoque;
+    private CatalogoProdutos catalogoProdutos; //Lido ao abrir o Resumo; usado pelo relatório se o banco cair (só na EDT)
+
+    //Cada aba lê o banco só quando é aberta pela primeira vez, depois que o Main validou o banco
+    private JPanel abaDadosAnimal;
+    private JPanel abaProdutos;
+    private volatile boolean dadosLiberados;
+    private volatile boolean petsCarregados; //Lidos também na thread do barramento
+    private volatile boolean produtosCarregados;
+    private boolean resumoCarregado;
+    private Runnable aoPrimeiroDesenho; //Medições de inicialização do Main, executadas uma única vez
+    private Runnable aoFicarInterativa;
+
+    //As tabelas buscam do banco só os blocos de linhas visíveis e guardam os últimos blocos usados
+    private static final int TAMANHO_BLOCO = 100; //Linhas buscadas por vez
+    private static final int BLOCOS_EM_CACHE = 20; //Blocos mantidos em memória por tabela
+    private static final String SIM = "Sim";
+    private static final String NAO = "Não";
+    private static final int LIMITE_BUSCA = 1_000; //Resultados exibidos por busca
+    private final Map<ModeloTabelaLazy<?>, Integer> ocultosNaBusca = new IdentityHashMap<>(); //Encontrados além do limite, por tabela (só na EDT)
+    private static final int ATRASO_BUSCA_MS = 250; //Pausa na digitação que dispara a busca
+    private static final int INTERVALO_RESUMO_MS = 1_000;
 
     public PetStopUI() {
         petDAO = new PetDAO(); //Instancia o DAO
         produtoDAO = new ProdutoDAO();
+        servico = new ServicoAssincrono(petDAO, produtoDAO);
+        barramento = new BarramentoAlteracoes();
+        barramento.ligarDAOs(petDAO, produtoDAO);
+        barramento.adicionarOuvinte(this::alteracaoDeOutroTerminal);
 
         setTitle("PetStop 🐶🐱 Gerenciamento de Animais");
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
@@ -64,8 +122,107 @@ public class PetStopUI extends JFrame {
         addListeners();
         addListenersProduto();
 
-        carregarPetsNaTabela();
-        carregarProdutosNaTabela();
+        //Ao fechar a janela, espera as operações pendentes e fecha as conexões do pool (fora da EDT)
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timerResumo.stop();
+                new Thread(() -> {
+                    barramento.encerrar();
+                    servico.encerrar();
+                    ProdutoDAO.getBufferEstoque().encerrar(); //Antes do pool: grava as baixas de estoque pendentes
+                    DiarioOffline diario = DiarioOffline.getPadrao();
+                    if (diario != null) diario.encerrar(); //Envia o que foi gravado sem conexão, se o banco voltou
+                    System.out.println("INFO: " + PetDAO.getCache().resumo());
+                    System.out.println("INFO: " + ProdutoDAO.getCache().resumo());
+                    if (Metricas.isAtivo()) System.out.println(Metricas.resumo());
+                    Metricas.encerrarExportacao();
+                    Conexao.encerrarPool();
+                }, "PetStop-Encerramento").start();
+            }
+        });
+
+        //Sem acesso ao banco aqui: a janela aparece antes da validação; os dados vêm em iniciarDados()
+        lblTotalPets.setText("Conectando ao banco de dados...");
+        lblTotalProdutos.setText("Conectando ao banco de dados...");
+        timerResumo.start();
+    }
+
+    /**
+     * Chamado pelo Main (na EDT) depois que o banco foi validado: carrega a aba visível e passa a
+     * carregar as outras quando forem abertas.
+     * @ param aoFicarInterativa Executado uma vez, quando a primeira aba termina de carregar.
+     */
+    public void iniciarDados(Runnable aoFicarInterativa) {
+        this.aoFicarInterativa = aoFicarInterativa;
+        dadosLiberados = true;
+        carregarAbaSelecionada();
+        barramento.iniciar();
+    }
+
+    //Executado uma vez, quando a janela é pintada pela primeira vez
+    public void setAoPrimeiroDesenho(Runnable aoPrimeiroDesenho) {
+        this.aoPrimeiroDesenho = aoPrimeiroDesenho;
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (aoPrimeiroDesenho != null) {
+            Runnable acao = aoPrimeiroDesenho;
+            aoPrimeiroDesenho = null;
+            acao.run();
+        }
+    }
+
+    private void marcarInterativa() {
+        if (aoFicarInterativa != null) {
+            Runnable acao = aoFicarInterativa;
+            aoFicarInterativa = null;
+            acao.run();
+        }
+    }
+
+    //Primeira abertura de cada aba: busca o total (e os blocos visíveis) ou faz a carga do resumo
+    private void carregarAbaSelecionada() {
+        if (!dadosLiberados) return;
+        Component aba = tabbedPane.getSelectedComponent();
+        if (aba == abaDadosAnimal && !petsCarregados) {
+            petsCarregados = true;
+            carregarPetsNaTabela();
+        } else if (aba == abaProdutos && !produtosCarregados) {
+            produtosCarregados = true;
+            carregarProdutosNaTabela();
+        } else if (aba == abaResumo && !resumoCarregado) {
+            resumoCarregado = true;
+            //Única leitura do banco para o resumo; depois ele é mantido pelas gravações do PetDAO
+            servico.carregarResumoAnimais().whenCompleteAsync((carregado, erro) -> {
+                if (erro != null) System.err.println("Erro ao carregar o resumo dos animais: " + erro.getMessage());
+                atualizarResumo();
+                marcarInterativa();
+            }, ServicoAssincrono.EDT);
+            //Depois mantido pelas gravações do ProdutoDAO: o relatório continua saindo se o banco cair
+            servico.carregarCatalogoProdutos().whenCompleteAsync((catalogo, erro) -> {
+                if (erro != null) System.err.println("Erro ao carregar o catálogo de produtos: " + erro.getMessage());
+                catalogoProdutos = catalogo;
+            }, ServicoAssincrono.EDT);
+        }
+    }
+
+    //Gera no banco; sem conexão, sobre o catálogo em memória
+    private void gerarRelatorioEstoque() {
+        btnRelatorioEstoque.setEnabled(false);
+        servico.gerarRelatorioEstoque(catalogoProdutos).whenCompleteAsync((relatorio, erro) -> {
+            btnRelatorioEstoque.setEnabled(true);
+            if (erro != null || relatorio == null) {
+                mostrarErroBanco("Não foi possível gerar o relatório de estoque.", erro);
+                return;
+            }
+            JTextArea texto = new JTextArea(relatorio.formatar(), 25, 90);
+            texto.setEditable(false);
+            texto.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            JOptionPane.showMessageDialog(this, new JScrollPane(texto), "Relatório de Estoque", JOptionPane.INFORMATION_MESSAGE);
+        }, ServicoAssincrono.EDT);
     }
 
     private void initComponents() {
@@ -84,27 +241,44 @@ public class PetStopUI extends JFrame {
         btnAtualizar = new JButton("Atualizar Selecionado");
         btnRemover = new JButton("Remover Selecionado");
         btnLimpar = new JButton("Limpar Campos");
+        btnRecarregar = new JButton("Recarregar");
 
         //Tabela
         String[] colunas = {"ID", "Nome", "Espécie", "Idade", "Vacinado?"};
-        tableModel = new DefaultTableModel(colunas, 0) {
+        fontePets = new ModeloTabelaLazy.FonteDados<Pet>() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; //Torna a tabela não editável diretamente
-            }
-            //Para exibir "Sim"/"Não" em vez de true/false na coluna "Vacinado?"
-             @Override
-            public Object getValueAt(int row, int column) {
-                //Coluna "Vacinado?"
-                if (column == 4) {
-                    return (Boolean) super.getValueAt(row, column) ? "Sim" : "Não";
+            public CompletableFuture<Long> contar() {
+                return servico.contarPets();
+            }
+
+            @Override
+            public CompletableFuture<List<Pet>> carregar(int inicio, int quantidade, Pet anterior) {
+                if (inicio == 0 || anterior != null) { //Continua a partir do bloco anterior (keyset)
+                    return servico.listarPetsPagina(anterior == null ? null : anterior.getNome(),
+                            anterior == null ? null : anterior.getId(), quantidade);
                 }
-                return super.getValueAt(row, column);
+                return servico.listarPetsPorPosicao(inicio, quantidade); //Salto para trecho não visitado
             }
         };
+        tableModel = new ModeloTabelaLazy<>(colunas, PetStopUI::valorColunaPet, Pet::getId, fontePets,
+                TAMANHO_BLOCO, BLOCOS_EM_CACHE);
         tabelaPets = new JTable(tableModel);
         tabelaPets.setSelectionMode(ListSelectionModel.SINGLE_SELECTION); //Permite selecionar apenas uma linha
         tabelaPets.getTableHeader().setReorderingAllowed(false); //Impede reordenação de colunas
+        lblTotalPets = new JLabel(" ");
+        txtBuscaPet = new JTextField(25);
+        txtBuscaPet.setToolTipText("Nome ou espécie (sem diferenciar acentos)");
+        timerBuscaPet = new Timer(ATRASO_BUSCA_MS, e -> {
+            if (petsCarregados) buscarPets(); //Senão, a busca digitada é feita na primeira carga da aba
+        });
+        timerBuscaPet.setRepeats(false);
+        tableModel.setAoCarregarTotal(() -> {
+            atualizarTotal(lblTotalPets, tableModel);
+            marcarInterativa(); //Antes do aviso abaixo, que é modal
+            if (tableModel.getRowCount() == 0 && !buscaAtiva(txtBuscaPet)) {
+                JOptionPane.showMessageDialog(this, "Nenhum pet cadastrado.", "Informação", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
     
         //Inicializar componentes produtos (exemplo)
         txtIdProduto = new JTextField(5);
@@ -118,24 +292,61 @@ public class PetStopUI extends JFrame {
         btnAtualizarProduto = new JButton("Atualizar Produto");
         btnRemoverProduto = new JButton("Remover Produto");
         btnLimparProduto = new JButton("Limpar Produto");
+        btnRecarregarProduto = new JButton("Recarregar");
 
         String[] colunasProdutos = {"ID", "Nome", "Quantidade", "Preço", "Disponível"};
-        tableModelProdutos = new DefaultTableModel(colunasProdutos, 0) {
+        fonteProdutos = new ModeloTabelaLazy.FonteDados<Produto>() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            public CompletableFuture<Long> contar() {
+                return servico.contarProdutos();
             }
+
             @Override
-            public Object getValueAt(int row, int column) {
-                if (column == 4) {
-                    return (Boolean) super.getValueAt(row, column) ? "Sim" : "Não";
+            public CompletableFuture<List<Produto>> carregar(int inicio, int quantidade, Produto anterior) {
+                if (inicio == 0 || anterior != null) {
+                    return servico.listarProdutosPagina(anterior == null ? null : anterior.getNome(),
+                            anterior == null ? null : anterior.getId(), quantidade);
                 }
-                return super.getValueAt(row, column);
+                return servico.listarProdutosPorPosicao(inicio, quantidade);
             }
         };
+        tableModelProdutos = new ModeloTabelaLazy<>(colunasProdutos, PetStopUI::valorColunaProduto, Produto::getId,
+                fonteProdutos, TAMANHO_BLOCO, BLOCOS_EM_CACHE);
         tabelaProdutos = new JTable(tableModelProdutos);
         tabelaProdutos.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         tabelaProdutos.getTableHeader().setReorderingAllowed(false);
+        lblTotalProdutos = new JLabel(" ");
+        txtBuscaProduto = new JTextField(25);
+        txtBuscaProduto.setToolTipText("Nome do produto (sem diferenciar acentos)");
+        timerBuscaProduto = new Timer(ATRASO_BUSCA_MS, e -> {
+            if (produtosCarregados) buscarProdutos();
+        });
+        timerBuscaProduto.setRepeats(false);
+        tableModelProdutos.setAoCarregarTotal(() -> {
+            atualizarTotal(lblTotalProdutos, tableModelProdutos);
+            marcarInterativa();
+            if (tableModelProdutos.getRowCount() == 0 && !buscaAtiva(txtBuscaProduto)) {
+                JOptionPane.showMessageDialog(this, "Nenhum produto cadastrado.", "Informação", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+
+        //Resumo dos animais
+        List<String> colunasResumo = new ArrayList<>(List.of("Espécie", "Total", "Vacinados", "Não vacinados"));
+        for (String faixa : ResumoAnimais.getRotulosFaixas()) {
+            colunasResumo.add(faixa + (faixa.equals("1") ? " ano" : " anos"));
+        }
+        modeloResumo = new DefaultTableModel(colunasResumo.toArray(), 0) {
+            @Override
+            public boolean isCellEditable(int linha, int coluna) {
+                return false;
+            }
+        };
+        lblResumo = new JLabel(" ");
+        btnRelatorioEstoque = new JButton("Relatório de Estoque");
+        btnRelatorioEstoque.addActionListener(e -> gerarRelatorioEstoque());
+        timerResumo = new Timer(INTERVALO_RESUMO_MS, e -> {
+            if (tabbedPane.getSelectedComponent() == abaResumo) atualizarResumo();
+        });
     }
 
     private void layoutComponents() {
@@ -179,6 +390,7 @@ public class PetStopUI extends JFrame {
         painelBotoes.add(btnAtualizar);
         painelBotoes.add(btnRemover);
         painelBotoes.add(btnLimpar);
+        painelBotoes.add(btnRecarregar);
 
         // Painel superior com formulário + botões
         JPanel painelSuperior = new JPanel(new BorderLayout());
@@ -186,9 +398,10 @@ public class PetStopUI extends JFrame {
         painelSuperior.add(painelBotoes, BorderLayout.SOUTH);
 
         // Painel da aba "Dados do Animal" com formulário e tabela
-        JPanel abaDadosAnimal = new JPanel(new BorderLayout());
+        abaDadosAnimal = new JPanel(new BorderLayout());
         abaDadosAnimal.add(painelSuperior, BorderLayout.NORTH);
-        abaDadosAnimal.add(new JScrollPane(tabelaPets), BorderLayout.CENTER);
+        abaDadosAnimal.add(criarPainelTabela(txtBuscaPet, tabelaPets), BorderLayout.CENTER);
+        abaDadosAnimal.add(lblTotalPets, BorderLayout.SOUTH);
 
 
         // Painel formulário produtos
@@ -232,6 +445,7 @@ public class PetStopUI extends JFrame {
         painelBotoesProdutos.add(btnAtualizarProduto);
         painelBotoesProdutos.add(btnRemoverProduto);
         painelBotoesProdutos.add(btnLimparProduto);
+        painelBotoesProdutos.add(btnRecarregarProduto);
 
         // Painel superior produtos com formulário + botões
         JPanel painelSuperiorProdutos = new JPanel(new BorderLayout());
@@ -239,17 +453,76 @@ public class PetStopUI extends JFrame {
         painelSuperiorProdutos.add(painelBotoesProdutos, BorderLayout.SOUTH);
 
         // Painel da aba Produtos com formulário e tabela
-        JPanel abaProdutos = new JPanel(new BorderLayout());
+        abaProdutos = new JPanel(new BorderLayout());
         abaProdutos.add(painelSuperiorProdutos, BorderLayout.NORTH);
-        abaProdutos.add(new JScrollPane(tabelaProdutos), BorderLayout.CENTER);
+        abaProdutos.add(criarPainelTabela(txtBuscaProduto, tabelaProdutos), BorderLayout.CENTER);
+        abaProdutos.add(lblTotalProdutos, BorderLayout.SOUTH);
 
         // Adicionar abas ao tabbedPane (já existente)
         tabbedPane.addTab("Dados do Animal", abaDadosAnimal);
         tabbedPane.addTab("Produtos", abaProdutos);
 
+        // Aba Resumo: contagens por espécie, vacinação e idade
+        JTable tabelaResumo = new JTable(modeloResumo);
+        tabelaResumo.getTableHeader().setReorderingAllowed(false);
+        abaResumo = new JPanel(new BorderLayout());
+        abaResumo.add(new JScrollPane(tabelaResumo), BorderLayout.CENTER);
+        JPanel rodapeResumo = new JPanel(new BorderLayout(10, 0));
+        rodapeResumo.add(lblResumo, BorderLayout.CENTER);
+        rodapeResumo.add(btnRelatorioEstoque, BorderLayout.EAST);
+        abaResumo.add(rodapeResumo, BorderLayout.SOUTH);
+        tabbedPane.addTab("Resumo", abaResumo);
+        tabbedPane.addChangeListener(e -> {
+            carregarAbaSelecionada();
+            if (tabbedPane.getSelectedComponent() == abaResumo) atualizarResumo();
+        });
+
         add(tabbedPane, BorderLayout.CENTER);
     }
 
+    //Mostra os contadores do resumo; custa o número de espécies, não o de animais
+    private void atualizarResumo() {
+        ResumoAnimais.Painel painel = PetDAO.getResumo().instantaneo();
+        modeloResumo.setRowCount(0);
+        for (ResumoAnimais.Linha linha : painel.getEspecies()) {
+            modeloResumo.addRow(linhaResumo(linha));
+        }
+        ResumoAnimais.Linha geral = painel.getGeral();
+        if (!painel.getEspecies().isEmpty()) modeloResumo.addRow(linhaResumo(geral));
+        if (!painel.isCarregado()) {
+            lblResumo.setText("Carregando o resumo dos animais...");
+        } else {
+            long total = geral.getTotal();
+            lblResumo.setText("Total: " + total + " animais, " + geral.getVacinados() + " vacinados"
+                    + (total > 0 ? String.format(" (%.1f%%)", 100.0 * geral.getVacinados() / total) : "") + ".");
+        }
+    }
+
+    private static Object[] linhaResumo(ResumoAnimais.Linha linha) {
+        long[] faixas = linha.getFaixas();
+        Object[] valores = new Object[4 + faixas.length];
+        valores[0] = linha.getEspecie();
+        valores[1] = linha.getTotal();
+        valores[2] = linha.getVacinados();
+        valores[3] = linha.getNaoVacinados();
+        for (int i = 0; i < faixas.length; i++) {
+            valores[4 + i] = faixas[i];
+        }
+        return valores;
+    }
+
+    //Campo de busca acima da tabela
+    private JPanel criarPainelTabela(JTextField txtBusca, JTable tabela) {
+        JPanel painelBusca = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 5));
+        painelBusca.add(new JLabel("Buscar:"));
+        painelBusca.add(txtBusca);
+
+        JPanel painelTabela = new JPanel(new BorderLayout());
+        painelTabela.add(painelBusca, BorderLayout.NORTH);
+        painelTabela.add(new JScrollPane(tabela), BorderLayout.CENTER);
+        return painelTabela;
+    }
+
     //Dados do Animal
     private void addListeners() {
         //Botão Salvar
@@ -284,6 +557,17 @@ public class PetStopUI extends JFrame {
             }
         });
 
+        //Botão Recarregar: única situação em que a tabela inteira é buscada de novo
+        btnRecarregar.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (petsCarregados) carregarPetsNaTabela(); //Antes da primeira carga não há o que recarregar
+            }
+        });
+
+        //Busca quando o usuário para de digitar (cada tecla reinicia a espera)
+        txtBuscaPet.getDocument().addDocumentListener(aoAlterarTexto(timerBuscaPet::restart));
+
         //Listener para seleção de linha na tabela
         tabelaPets.addMouseListener(new MouseAdapter() {
             @Override
@@ -330,6 +614,16 @@ public class PetStopUI extends JFrame {
             }
         });
 
+        //Botão Recarregar
+        btnRecarregarProduto.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (produtosCarregados) carregarProdutosNaTabela();
+            }
+        });
+
+        txtBuscaProduto.getDocument().addDocumentListener(aoAlterarTexto(timerBuscaProduto::restart));
+
         //Listener para seleção de linha na tabela
         tabelaProdutos.addMouseListener(new MouseAdapter() {
             @Override
@@ -342,41 +636,234 @@ public class PetStopUI extends JFrame {
         });
     }
 
+    //Recarrega a tabela de pets: busca o total e descarta os blocos em cache (ou refaz a busca, se houver)
     private void carregarPetsNaTabela() {
-        tableModel.setRowCount(0);
-
-        List<Pet> pets = petDAO.listarTodosPets();
-        if (pets.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Nenhum pet cadastrado.", "Informação", JOptionPane.INFORMATION_MESSAGE);
+        if (buscaAtiva(txtBuscaPet)) {
+            buscarPets();
         } else {
-            for (Pet pet : pets) {
-                tableModel.addRow(new Object[]{
-                        pet.getId(),
-                        pet.getNome(),
-                        pet.getEspecie(),
-                        pet.getIdade(),
-                        pet.isVacinado()
-                });
-            }
+            tableModel.recarregar();
         }
     }
 
     private void carregarProdutosNaTabela() {
-        tableModelProdutos.setRowCount(0);
+        if (buscaAtiva(txtBuscaProduto)) {
+            buscarProdutos();
+        } else {
+            tableModelProdutos.recarregar();
+        }
+    }
 
-        List<Produto> produtos = produtoDAO.listarTodosProdutos();
-        if (produtos.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Nenhum produto cadastrado.", "Informação", JOptionPane.INFORMATION_MESSAGE);
+    /*
+     * Gravação feita em outro terminal, já aplicada ao cache, índice e resumo pelo barramento.
+     * Chamado na thread do barramento: o registro vem do cache, relido pelo barramento.
+     */
+    private void alteracaoDeOutroTerminal(BarramentoAlteracoes.Evento evento) {
+        boolean removido = evento.getOperacao() == BarramentoAlteracoes.Operacao.REMOVIDO;
+        if (evento.getEntidade() == BarramentoAlteracoes.Entidade.PET) {
+            if (!petsCarregados) return; //A aba ainda não foi aberta: lê tudo do banco quando for
+            Pet atual = removido ? null : petDAO.buscarPetPorId(evento.getId());
+            ServicoAssincrono.EDT.execute(() -> aplicarNaTabela(evento, atual, tableModel, txtBuscaPet,
+                    lblTotalPets, Pet::getNome, this::buscarPets));
         } else {
-            for (Produto produto : produtos) {
-                tableModelProdutos.addRow(new Object[]{
-                    produto.getId(),
-                    produto.getNome(),
-                    produto.getQuantidade(),
-                    produto.getPreco(),
-                    produto.isDisponivel()
-                });
+            if (!produtosCarregados) return;
+            Produto atual = removido ? null : produtoDAO.buscarProdutoPorId(evento.getId());
+            ServicoAssincrono.EDT.execute(() -> aplicarNaTabela(evento, atual, tableModelProdutos, txtBuscaProduto,
+                    lblTotalProdutos, Produto::getNome, this::buscarProdutos));
+        }
+    }
+
+    //Troca só a linha alterada; com uma busca ativa, inclusões e remoções refazem a busca (no índice em memória)
+    private <T> void aplicarNaTabela(BarramentoAlteracoes.Evento evento, T atual, ModeloTabelaLazy<T> modelo,
+                                     JTextField txtBusca, JLabel lblTotal, Function<T, String> chaveOrdenacao,
+                                     Runnable refazerBusca) {
+        if (atual == null && evento.getOperacao() == BarramentoAlteracoes.Operacao.INSERIDO) {
+            return; //Removido logo depois de incluído: nunca chegou a esta tabela
+        }
+        if (atual != null && evento.getOperacao() == BarramentoAlteracoes.Operacao.ATUALIZADO) {
+            modelo.registroAtualizado(atual, chaveOrdenacao);
+            return;
+        }
+        if (buscaAtiva(txtBusca)) {
+            refazerBusca.run();
+            return;
+        }
+        if (atual != null) {
+            modelo.registroInserido(atual, chaveOrdenacao);
+        } else {
+            modelo.registroRemovido(evento.getId());
+        }
+        atualizarTotal(lblTotal, modelo);
+    }
+
+    private static boolean buscaAtiva(JTextField txtBusca) {
+        return !txtBusca.getText().trim().isEmpty();
+    }
+
+    private static DocumentListener aoAlterarTexto(Runnable acao) {
+        return new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                acao.run();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                acao.run();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                acao.run();
+            }
+        };
+    }
+
+    /**
+     * Mostra na tabela os pets que atendem ao texto do campo de busca. A busca roda fora da EDT:
+     * no índice em memória, se já estiver carregado; senão, com LIKE 'texto%' no banco (só as
+     * linhas visíveis são buscadas) enquanto o índice é carregado em segundo plano.
+     * Uma busca em andamento é cancelada quando outra começa.
+     * Com o campo vazio, a tabela volta a listar todos os pets do banco.
+     */
+    private void buscarPets() {
+        timerBuscaPet.stop();
+        int geracao = geracaoBuscaPets.incrementAndGet();
+        BooleanSupplier cancelada = () -> geracaoBuscaPets.get() != geracao;
+        String texto = txtBuscaPet.getText().trim();
+        if (texto.isEmpty()) {
+            ocultosNaBusca.remove(tableModel);
+            tableModel.setFonte(fontePets);
+            return;
+        }
+        if (!PetDAO.getIndice().isCarregado()) {
+            ocultosNaBusca.remove(tableModel);
+            tableModel.setFonte(fontePetsPorPrefixo(texto));
+            //Quando o índice ficar pronto, refaz a busca com ele (se o texto não mudou nesse meio tempo)
+            servico.carregarIndicePets().thenRunAsync(() -> {
+                if (!cancelada.getAsBoolean()) buscarPets();
+            }, ServicoAssincrono.EDT);
+            return;
+        }
+        servico.buscarPets(texto, LIMITE_BUSCA, cancelada).whenCompleteAsync((pets, erro) -> {
+            if (cancelada.getAsBoolean()) return; //Já foi digitado outro texto
+            if (erro != null) {
+                mostrarErroBanco("Erro ao buscar pets.", erro);
+                return;
+            }
+            mostrarBusca(tableModel, pets);
+        }, ServicoAssincrono.EDT);
+    }
+
+    private void buscarProdutos() {
+        timerBuscaProduto.stop();
+        int geracao = geracaoBuscaProdutos.incrementAndGet();
+        BooleanSupplier cancelada = () -> geracaoBuscaProdutos.get() != geracao;
+        String texto = txtBuscaProduto.getText().trim();
+        if (texto.isEmpty()) {
+            ocultosNaBusca.remove(tableModelProdutos);
+            tableModelProdutos.setFonte(fonteProdutos);
+            return;
+        }
+        if (!ProdutoDAO.getIndice().isCarregado()) {
+            ocultosNaBusca.remove(tableModelProdutos);
+            tableModelProdutos.setFonte(fonteProdutosPorPrefixo(texto));
+            //Quando o índice ficar pronto, refaz a busca com ele (se o texto não mudou nesse meio tempo)
+            servico.carregarIndiceProdutos().thenRunAsync(() -> {
+                if (!cancelada.getAsBoolean()) buscarProdutos();
+            }, ServicoAssincrono.EDT);
+            return;
+        }
+        servico.buscarProdutos(texto, LIMITE_BUSCA, cancelada).whenCompleteAsync((produtos, erro) -> {
+            if (cancelada.getAsBoolean()) return;
+            if (erro != null) {
+                mostrarErroBanco("Erro ao buscar produtos.", erro);
+                return;
+            }
+            mostrarBusca(tableModelProdutos, produtos);
+        }, ServicoAssincrono.EDT);
+    }
+
+    //Pets cujo nome começa com o prefixo, lidos do banco bloco a bloco conforme a tabela rola
+    private ModeloTabelaLazy.FonteDados<Pet> fontePetsPorPrefixo(String prefixo) {
+        return new ModeloTabelaLazy.FonteDados<Pet>() {
+            @Override
+            public CompletableFuture<Long> contar() {
+                return servico.contarPetsPorPrefixo(prefixo);
             }
+
+            @Override
+            public CompletableFuture<List<Pet>> carregar(int inicio, int quantidade, Pet anterior) {
+                return servico.listarPetsPorPrefixo(prefixo, anterior == null ? null : anterior.getNome(),
+                        anterior == null ? null : anterior.getId(), inicio, quantidade);
+            }
+        };
+    }
+
+    private ModeloTabelaLazy.FonteDados<Produto> fonteProdutosPorPrefixo(String prefixo) {
+        return new ModeloTabelaLazy.FonteDados<Produto>() {
+            @Override
+            public CompletableFuture<Long> contar() {
+                return servico.contarProdutosPorPrefixo(prefixo);
+            }
+
+            @Override
+            public CompletableFuture<List<Produto>> carregar(int inicio, int quantidade, Produto anterior) {
+                return servico.listarProdutosPorPrefixo(prefixo, anterior == null ? null : anterior.getNome(),
+                        anterior == null ? null : anterior.getId(), inicio, quantidade);
+            }
+        };
+    }
+
+    //Mostra o resultado de uma busca no índice; os encontrados além do limite entram só no total
+    private <T> void mostrarBusca(ModeloTabelaLazy<T> modelo, ResultadoBusca<T> resultado) {
+        ocultosNaBusca.put(modelo, resultado.getTotal() - resultado.getRegistros().size());
+        modelo.setFonte(fonteDaLista(resultado.getRegistros()));
+    }
+
+    //Fonte de dados para a tabela a partir de uma lista já carregada (resultado da busca)
+    private static <T> ModeloTabelaLazy.FonteDados<T> fonteDaLista(List<T> registros) {
+        return new ModeloTabelaLazy.FonteDados<T>() {
+            @Override
+            public CompletableFuture<Long> contar() {
+                return CompletableFuture.completedFuture((long) registros.size());
+            }
+
+            @Override
+            public CompletableFuture<List<T>> carregar(int inicio, int quantidade, T anterior) {
+                int fim = Math.min(registros.size(), inicio + quantidade);
+                return CompletableFuture.completedFuture(registros.subList(Math.min(inicio, fim), fim));
+            }
+        };
+    }
+
+    //Valores das colunas da tabela de pets. "Sim"/"Não" são constantes, sem criar String a cada repintura.
+    static Object valorColunaPet(Pet pet, int coluna) {
+        switch (coluna) {
+            case 0: return pet.getId();
+            case 1: return pet.getNome();
+            case 2: return pet.getEspecie();
+            case 3: return pet.getIdade();
+            default: return pet.isVacinado() ? SIM : NAO;
+        }
+    }
+
+    static Object valorColunaProduto(Produto produto, int coluna) {
+        switch (coluna) {
+            case 0: return produto.getId();
+            case 1: return produto.getNome();
+            case 2: return produto.getQuantidade();
+            case 3: return produto.getPreco();
+            default: return produto.isDisponivel() ? SIM : NAO;
+        }
+    }
+
+    private void atualizarTotal(JLabel lblTotal, ModeloTabelaLazy<?> modelo) {
+        int ocultos = ocultosNaBusca.getOrDefault(modelo, 0);
+        if (ocultos > 0) {
+            lblTotal.setText("Total: " + (modelo.getRowCount() + ocultos) + " (exibindo os " + modelo.getRowCount()
+                    + " primeiros; refine a busca para ver os demais)");
+        } else {
+            lblTotal.setText("Total: " + modelo.getRowCount());
         }
     }
 
@@ -386,6 +873,7 @@ public class PetStopUI extends JFrame {
         txtEspecie.setText("");
         txtIdade.setText("");
         chkVacinado.setSelected(false);
+        petEmEdicao = null;
         tabelaPets.clearSelection(); //Limpa a seleção da tabela
         txtNome.requestFocus(); //Foca no campo nome
     }
@@ -395,110 +883,100 @@ public class PetStopUI extends JFrame {
         txtPrecoProduto.setText("");
         txtQuantidade.setText("");
         chkDisponivelProduto.setSelected(false);
+        produtoEmEdicao = null;
         tabelaProdutos.clearSelection(); //Limpa a seleção da tabela
         txtNomeProduto.requestFocus(); //Foca no campo nome
     }
 
     private void carregarDadosDoPetSelecionado(int linha) {
-        if (linha < 0 || linha >= tableModel.getRowCount()) return;
+        Pet pet = tableModel.getRegistro(linha);
+        if (pet == null) return; //Linha ainda não carregada
+        mostrarPet(pet);
+    }
 
-        txtId.setText(tableModel.getValueAt(linha, 0).toString());
-        txtNome.setText(tableModel.getValueAt(linha, 1).toString());
-        txtEspecie.setText(tableModel.getValueAt(linha, 2).toString());
-        txtIdade.setText(tableModel.getValueAt(linha, 3).toString());
-        
-        String vacinadoStr = tableModel.getValueAt(linha, 4).toString();
-        chkVacinado.setSelected("Sim".equalsIgnoreCase(vacinadoStr));
+    private void mostrarPet(Pet pet) {
+        petEmEdicao = pet;
+        txtId.setText(String.valueOf(pet.getId()));
+        txtNome.setText(pet.getNome());
+        txtEspecie.setText(pet.getEspecie());
+        txtIdade.setText(String.valueOf(pet.getIdade()));
+        chkVacinado.setSelected(pet.isVacinado());
     }
 
     private void carregarDadosDoProdutoSelecionado(int linha) {
-        if (linha < 0 || linha >= tableModelProdutos.getRowCount()) return;
-
-        txtIdProduto.setText(tableModelProdutos.getValueAt(linha, 0).toString());
-        txtNomeProduto.setText(tableModelProdutos.getValueAt(linha, 1).toString());
-        txtQuantidade.setText(tableModelProdutos.getValueAt(linha, 2).toString());
-        txtPrecoProduto.setText(tableModelProdutos.getValueAt(linha, 3).toString());
+        Produto produto = tableModelProdutos.getRegistro(linha);
+        if (produto == null) return;
+        mostrarProduto(produto);
+    }
 
-        String disponivelStr = tableModelProdutos.getValueAt(linha, 4).toString();
-        chkDisponivelProduto.setSelected("Sim".equalsIgnoreCase(disponivelStr));
+    private void mostrarProduto(Produto produto) {
+        produtoEmEdicao = produto;
+        txtIdProduto.setText(String.valueOf(produto.getId()));
+        txtNomeProduto.setText(produto.getNome());
+        txtQuantidade.setText(String.valueOf(produto.getQuantidade()));
+        txtPrecoProduto.setText(produto.getPreco().toPlainString());
+        chkDisponivelProduto.setSelected(produto.isDisponivel());
     }
 
     private void salvarPet() {
-        String nome = txtNome.getText().trim();
-        String especie = txtEspecie.getText().trim();
-        String idadeStr = txtIdade.getText().trim();
-
-        if (nome.isEmpty() || especie.isEmpty() || idadeStr.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Por favor, preencha todos os campos obrigatórios (Nome, Espécie, Idade).", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        int idade;
+        Pet novoPet;
         try {
-            idade = Integer.parseInt(idadeStr);
-            if (idade < 0) {
-                JOptionPane.showMessageDialog(this, "A idade não pode ser negativa.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "Idade inválida. Por favor, insira um número.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
+            novoPet = Validacao.validarPet(txtNome.getText(), txtEspecie.getText(), txtIdade.getText(), chkVacinado.isSelected());
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro de Validação", JOptionPane.ERROR_MESSAGE);
             return;
         }
-        boolean vacinado = chkVacinado.isSelected();
 
-        Pet novoPet = new Pet(nome, especie, idade, vacinado);
-        if (petDAO.adicionarPet(novoPet)) {
-            JOptionPane.showMessageDialog(this, "Pet salvo com sucesso! ID: " + novoPet.getId(), "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-            carregarPetsNaTabela();
-            limparCampos();
-        } else {
-            JOptionPane.showMessageDialog(this, "Erro ao salvar o pet. Verifique o console para mais detalhes.", "Erro no Banco", JOptionPane.ERROR_MESSAGE);
-        }
+        btnSalvar.setEnabled(false); //Evita salvar o mesmo pet duas vezes enquanto o banco responde
+        servico.adicionarPet(novoPet).whenCompleteAsync((resultado, erro) -> {
+            btnSalvar.setEnabled(true);
+            if (erro == null && resultado.isGravado()) {
+                JOptionPane.showMessageDialog(this, "Pet salvo com sucesso! ID: " + novoPet.getId(), "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                if (buscaAtiva(txtBuscaPet)) {
+                    buscarPets();
+                } else {
+                    tableModel.registroInserido(novoPet, Pet::getNome);
+                    atualizarTotal(lblTotalPets, tableModel);
+                }
+                limparCampos();
+            } else if (erro == null && resultado.isPendente()) {
+                avisarPendente("Pet");
+                limparCampos();
+            } else {
+                mostrarErroBanco("Erro ao salvar o pet.", erro);
+            }
+        }, ServicoAssincrono.EDT);
     }
 
     private void salvarProduto() {
-        String nome = txtNomeProduto.getText().trim();
-        String precoStr = txtPrecoProduto.getText().trim();
-        String quantidadeStr = txtQuantidade.getText().trim();
-        boolean disponivel = chkDisponivelProduto.isSelected();
-
-        if (nome.isEmpty() || precoStr.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Por favor, preencha todos os campos obrigatórios (Nome, Preço).", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        BigDecimal preco;
+        Produto novoProduto;
         try {
-            preco = new BigDecimal(precoStr);
-            if (preco.compareTo(BigDecimal.ZERO) < 0) {
-                JOptionPane.showMessageDialog(this, "O preço não pode ser negativo.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "Preço inválido. Por favor, insira um número decimal.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
+            novoProduto = Validacao.validarProduto(txtNomeProduto.getText(), txtQuantidade.getText(),
+                    txtPrecoProduto.getText(), chkDisponivelProduto.isSelected());
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro de Validação", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        int quantidade;
-        try {
-            quantidade = Integer.parseInt(quantidadeStr);
-            if (quantidade < 0) {
-                JOptionPane.showMessageDialog(this, "A quantidade não pode ser negativa.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
-                return;
+        btnSalvarProduto.setEnabled(false);
+        servico.adicionarProduto(novoProduto).whenCompleteAsync((resultado, erro) -> {
+            btnSalvarProduto.setEnabled(true);
+            if (erro == null && resultado.isGravado()) {
+                JOptionPane.showMessageDialog(this, "Produto salvo com sucesso! ID: " + novoProduto.getId(), "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                if (buscaAtiva(txtBuscaProduto)) {
+                    buscarProdutos();
+                } else {
+                    tableModelProdutos.registroInserido(novoProduto, Produto::getNome);
+                    atualizarTotal(lblTotalProdutos, tableModelProdutos);
+                }
+                limparCamposProduto();
+            } else if (erro == null && resultado.isPendente()) {
+                avisarPendente("Produto");
+                limparCamposProduto();
+            } else {
+                mostrarErroBanco("Erro ao salvar o produto.", erro);
             }
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Quantidade inválida. Por favor, insira um número inteiro.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        Produto novoProduto = new Produto(nome, quantidade, preco, disponivel);
-        if (produtoDAO.adicionarProduto(novoProduto)) {
-            JOptionPane.showMessageDialog(this, "Produto salvo com sucesso! ID: " + novoProduto.getId(), "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-            carregarProdutosNaTabela();
-            limparCamposProduto();
-        } else {
-            JOptionPane.showMessageDialog(this, "Erro ao salvar o produto. Verifique o console para mais detalhes.", "Erro no Banco", JOptionPane.ERROR_MESSAGE);
-        }
+        }, ServicoAssincrono.EDT);
     }
 
     private void atualizarPet() {
@@ -508,38 +986,83 @@ public class PetStopUI extends JFrame {
             return;
         }
 
-        String nome = txtNome.getText().trim();
-        String especie = txtEspecie.getText().trim();
-        String idadeStr = txtIdade.getText().trim();
-
-        if (nome.isEmpty() || especie.isEmpty() || idadeStr.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Por favor, preencha todos os campos obrigatórios (Nome, Espécie, Idade).", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
+        //Mesmas regras do cadastro (Validacao)
+        Pet digitado;
+        try {
+            digitado = Validacao.validarPet(txtNome.getText(), txtEspecie.getText(), txtIdade.getText(), chkVacinado.isSelected());
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro de Validação", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        long id;
-        int idade;
-        try {
-            id = Long.parseLong(idStr);
-            idade = Integer.parseInt(idadeStr);
-            if (idade < 0) {
-                JOptionPane.showMessageDialog(this, "A idade não pode ser negativa.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "ID ou Idade inválida. Verifique os valores.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
+        if (petEmEdicao == null || !idStr.equals(String.valueOf(petEmEdicao.getId()))) {
+            JOptionPane.showMessageDialog(this, "Selecione o pet na tabela antes de atualizar.", "Aviso", JOptionPane.WARNING_MESSAGE);
             return;
         }
+        //Vai com a versão lida: se outro usuário gravou nesse meio tempo, o DAO responde CONFLITO
+        gravarPet(petEmEdicao, new Pet(petEmEdicao.getId(), digitado.getNome(), digitado.getEspecie(), digitado.getIdade(),
+                digitado.isVacinado(), petEmEdicao.getVersao()), false);
+    }
 
-        boolean vacinado = chkVacinado.isSelected();
+    //Envia a atualização. Nenhum lock fica preso no banco enquanto o usuário edita.
+    private void gravarPet(Pet lido, Pet petAtualizado, boolean mesclado) {
+        btnAtualizar.setEnabled(false);
+        servico.atualizarPet(petAtualizado).whenCompleteAsync((resultado, erro) -> {
+            btnAtualizar.setEnabled(true);
+            if (erro != null) {
+                mostrarErroBanco("Erro ao atualizar o pet.", erro);
+                return;
+            }
+            switch (resultado.getSituacao()) {
+                case ATUALIZADO:
+                    JOptionPane.showMessageDialog(this, mesclado
+                            ? "Pet atualizado com sucesso!\nAs alterações feitas por outro usuário nos demais campos foram mantidas."
+                            : "Pet atualizado com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                    if (buscaAtiva(txtBuscaPet)) {
+                        buscarPets(); //O pet pode ter deixado de atender à busca
+                    } else {
+                        tableModel.registroAtualizado(petAtualizado, Pet::getNome);
+                    }
+                    limparCampos();
+                    break;
+                case CONFLITO:
+                    resolverConflitoPet(lido, petAtualizado, resultado.getAtual());
+                    break;
+                case PENDENTE:
+                    JOptionPane.showMessageDialog(this, "Sem conexão com o banco de dados.\nA alteração do pet foi guardada e será gravada quando a conexão voltar.",
+                            "Aviso", JOptionPane.WARNING_MESSAGE);
+                    limparCampos();
+                    break;
+                case NAO_ENCONTRADO:
+                    JOptionPane.showMessageDialog(this, "O pet foi removido por outro usuário.", "Aviso", JOptionPane.WARNING_MESSAGE);
+                    tableModel.registroRemovido(petAtualizado.getId());
+                    atualizarTotal(lblTotalPets, tableModel);
+                    limparCampos();
+                    break;
+                default:
+                    mostrarErroBanco("Erro ao atualizar o pet. " + resultado.getMensagem(), null);
+            }
+        }, ServicoAssincrono.EDT);
+    }
 
-        Pet petAtualizado = new Pet(id, nome, especie, idade, vacinado);
-        if (petDAO.atualizarPet(petAtualizado)) {
-            JOptionPane.showMessageDialog(this, "Pet atualizado com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-            carregarPetsNaTabela();
-            limparCampos();
+    /*
+     * Outro usuário gravou o pet depois que ele foi lido. Campo a campo: fica o que o usuário
+     * alterou e, nos campos em que ele não mexeu, o valor atual do banco. Só pergunta quando os
+     * dois alteraram o mesmo campo para valores diferentes.
+     */
+    private void resolverConflitoPet(Pet lido, Pet meu, Pet atual) {
+        List<String> conflitos = new ArrayList<>();
+        Pet mesclado = new Pet(atual.getId(),
+                mesclar("Nome", lido.getNome(), meu.getNome(), atual.getNome(), conflitos),
+                mesclar("Espécie", lido.getEspecie(), meu.getEspecie(), atual.getEspecie(), conflitos),
+                mesclar("Idade", lido.getIdade(), meu.getIdade(), atual.getIdade(), conflitos),
+                mesclar("Vacinado", lido.isVacinado(), meu.isVacinado(), atual.isVacinado(), conflitos),
+                atual.getVersao());
+        if (!buscaAtiva(txtBuscaPet)) tableModel.registroAtualizado(atual, Pet::getNome);
+        if (conflitos.isEmpty() || manterMinhasAlteracoes("pet", conflitos)) {
+            gravarPet(atual, mesclado, true);
         } else {
-            JOptionPane.showMessageDialog(this, "Erro ao atualizar o pet. Verifique o console para mais detalhes.", "Erro no Banco", JOptionPane.ERROR_MESSAGE);
+            mostrarPet(atual); //Descarta o que o usuário digitou
         }
     }
 
@@ -550,43 +1073,112 @@ public class PetStopUI extends JFrame {
             return;
         }
 
-        String nome = txtNomeProduto.getText().trim();
-        String quantidadeStr = txtQuantidade.getText().trim();
-        String precoStr = txtPrecoProduto.getText().trim();
-
-        if (nome.isEmpty() || quantidadeStr.isEmpty() || precoStr.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Por favor, preencha todos os campos obrigatórios (Nome, Quantidade, Preço).", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
+        Produto digitado;
+        try {
+            digitado = Validacao.validarProduto(txtNomeProduto.getText(), txtQuantidade.getText(),
+                    txtPrecoProduto.getText(), chkDisponivelProduto.isSelected());
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro de Validação", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        long id;
-        int quantidade;
-        BigDecimal preco;
-
-        try {
-            id = Long.parseLong(idStr);
-            quantidade = Integer.parseInt(quantidadeStr);
-            preco = new BigDecimal(precoStr.replace(",", "."));
+        if (produtoEmEdicao == null || !idStr.equals(String.valueOf(produtoEmEdicao.getId()))) {
+            JOptionPane.showMessageDialog(this, "Selecione o produto na tabela antes de atualizar.", "Aviso", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        gravarProduto(produtoEmEdicao, new Produto(produtoEmEdicao.getId(), digitado.getNome(), digitado.getQuantidade(),
+                digitado.getPreco(), digitado.isDisponivel(), produtoEmEdicao.getVersao()), false);
+    }
 
-            if (quantidade < 0 || preco.compareTo(BigDecimal.ZERO) < 0) {
-                JOptionPane.showMessageDialog(this, "Quantidade e Preço não podem ser negativos.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
+    private void gravarProduto(Produto lido, Produto produtoAtualizado, boolean mesclado) {
+        btnAtualizarProduto.setEnabled(false);
+        servico.atualizarProduto(produtoAtualizado).whenCompleteAsync((resultado, erro) -> {
+            btnAtualizarProduto.setEnabled(true);
+            if (erro != null) {
+                mostrarErroBanco("Erro ao atualizar o produto.", erro);
                 return;
             }
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "ID, Quantidade ou Preço inválido. Verifique os valores.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
-            return;
+            switch (resultado.getSituacao()) {
+                case ATUALIZADO:
+                    JOptionPane.showMessageDialog(this, mesclado
+                            ? "Produto atualizado com sucesso!\nAs alterações feitas por outro usuário nos demais campos foram mantidas."
+                            : "Produto atualizado com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                    if (buscaAtiva(txtBuscaProduto)) {
+                        buscarProdutos();
+                    } else {
+                        tableModelProdutos.registroAtualizado(produtoAtualizado, Produto::getNome);
+                    }
+                    limparCamposProduto();
+                    break;
+                case CONFLITO:
+                    resolverConflitoProduto(lido, produtoAtualizado, resultado.getAtual());
+                    break;
+                case PENDENTE:
+                    JOptionPane.showMessageDialog(this, "Sem conexão com o banco de dados.\nA alteração do produto foi guardada e será gravada quando a conexão voltar.",
+                            "Aviso", JOptionPane.WARNING_MESSAGE);
+                    limparCamposProduto();
+                    break;
+                case NAO_ENCONTRADO:
+                    JOptionPane.showMessageDialog(this, "O produto foi removido por outro usuário.", "Aviso", JOptionPane.WARNING_MESSAGE);
+                    tableModelProdutos.registroRemovido(produtoAtualizado.getId());
+                    atualizarTotal(lblTotalProdutos, tableModelProdutos);
+                    limparCamposProduto();
+                    break;
+                default:
+                    mostrarErroBanco("Erro ao atualizar o produto. " + resultado.getMensagem(), null);
+            }
+        }, ServicoAssincrono.EDT);
+    }
+
+    //Mesma mesclagem de resolverConflitoPet. Baixas de estoque também contam como alteração da quantidade.
+    private void resolverConflitoProduto(Produto lido, Produto meu, Produto atual) {
+        List<String> conflitos = new ArrayList<>();
+        Produto mesclado = new Produto(atual.getId(),
+                mesclar("Nome", lido.getNome(), meu.getNome(), atual.getNome(), conflitos),
+                mesclar("Quantidade", lido.getQuantidade(), meu.getQuantidade(), atual.getQuantidade(), conflitos),
+                mesclar("Preço", lido.getPreco(), meu.getPreco(), atual.getPreco(), conflitos),
+                mesclar("Disponível", lido.isDisponivel(), meu.isDisponivel(), atual.isDisponivel(), conflitos),
+                atual.getVersao());
+        if (!buscaAtiva(txtBuscaProduto)) tableModelProdutos.registroAtualizado(atual, Produto::getNome);
+        if (conflitos.isEmpty() || manterMinhasAlteracoes("produto", conflitos)) {
+            gravarProduto(atual, mesclado, true);
+        } else {
+            mostrarProduto(atual);
         }
+    }
 
-        boolean disponivel = chkDisponivelProduto.isSelected();
+    //Um campo na mesclagem: vale a alteração do usuário; se ele não mexeu no campo, o valor atual do banco
+    private static <V> V mesclar(String campo, V lido, V meu, V atual, List<String> conflitos) {
+        boolean alteradoPorMim = !iguais(lido, meu);
+        if (alteradoPorMim && !iguais(lido, atual) && !iguais(meu, atual)) {
+            conflitos.add(campo + ": seu valor \"" + formatarCampo(meu) + "\", valor atual \"" + formatarCampo(atual) + "\"");
+        }
+        return alteradoPorMim ? meu : atual;
+    }
 
-        Produto produtoAtualizado = new Produto(id, nome, quantidade, preco, disponivel);
-        if (produtoDAO.atualizarProduto(produtoAtualizado)) {
-            JOptionPane.showMessageDialog(this, "Produto atualizado com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-            carregarProdutosNaTabela();
-            limparCamposProduto();
-        } else {
-            JOptionPane.showMessageDialog(this, "Erro ao atualizar o produto. Verifique o console para mais detalhes.", "Erro no Banco", JOptionPane.ERROR_MESSAGE);
+    private static boolean iguais(Object a, Object b) {
+        if (a instanceof BigDecimal && b instanceof BigDecimal) {
+            return ((BigDecimal) a).compareTo((BigDecimal) b) == 0; //9.9 e 9.90 são o mesmo preço
         }
+        return Objects.equals(a, b);
+    }
+
+    private static String formatarCampo(Object valor) {
+        if (valor instanceof Boolean) return (Boolean) valor ? SIM : NAO;
+        if (valor instanceof BigDecimal) return ((BigDecimal) valor).toPlainString();
+        return String.valueOf(valor);
+    }
+
+    //Pergunta o que fazer quando o usuário e outra pessoa alteraram os mesmos campos
+    private boolean manterMinhasAlteracoes(String registro, List<String> conflitos) {
+        String[] opcoes = {"Gravar os meus valores", "Descartar e ver os atuais"};
+        int escolha = JOptionPane.showOptionDialog(this,
+                "Outro usuário alterou este " + registro + " enquanto você editava.\n"
+                        + "Campos alterados pelos dois:\n  " + String.join("\n  ", conflitos) + "\n\n"
+                        + "Os demais campos alterados por ele serão mantidos.",
+                "Conflito de Atualização", JOptionPane.DEFAULT_OPTION, JOptionPane.WARNING_MESSAGE,
+                null, opcoes, opcoes[1]);
+        return escolha == 0;
     }
 
     private void removerPet() {
@@ -605,13 +1197,23 @@ public class PetStopUI extends JFrame {
         if (confirmacao == JOptionPane.YES_OPTION) {
             try {
                 long id = Long.parseLong(idStr);
-                if (petDAO.removerPet(id)) {
-                    JOptionPane.showMessageDialog(this, "Pet removido com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-                    carregarPetsNaTabela();
-                    limparCampos();
-                } else {
-                    JOptionPane.showMessageDialog(this, "Erro ao remover o pet. Verifique o console para mais detalhes.", "Erro no Banco", JOptionPane.ERROR_MESSAGE);
-                }
+                servico.removerPet(id).whenCompleteAsync((resultado, erro) -> {
+                    if (erro == null && resultado.isGravado()) {
+                        JOptionPane.showMessageDialog(this, "Pet removido com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                        if (buscaAtiva(txtBuscaPet)) {
+                            buscarPets();
+                        } else {
+                            tableModel.registroRemovido(id);
+                            atualizarTotal(lblTotalPets, tableModel);
+                        }
+                        limparCampos();
+                    } else if (erro == null && resultado.isPendente()) {
+                        avisarPendente("Pedido de remoção do pet");
+                        limparCampos();
+                    } else {
+                        mostrarErroBanco("Erro ao remover o pet.", erro);
+                    }
+                }, ServicoAssincrono.EDT);
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "ID inválido para remoção.", "Erro", JOptionPane.ERROR_MESSAGE);
             }
@@ -634,16 +1236,43 @@ public class PetStopUI extends JFrame {
         if (confirmacao == JOptionPane.YES_OPTION) {
             try {
                 long id = Long.parseLong(idStr);
-                if (produtoDAO.removerProduto(id)) {
-                    JOptionPane.showMessageDialog(this, "Produto removido com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-                    carregarProdutosNaTabela();
-                    limparCamposProduto();
-                } else {
-                    JOptionPane.showMessageDialog(this, "Erro ao remover o produto. Verifique o console para mais detalhes.", "Erro no Banco", JOptionPane.ERROR_MESSAGE);
-                }
+                servico.removerProduto(id).whenCompleteAsync((resultado, erro) -> {
+                    if (erro == null && resultado.isGravado()) {
+                        JOptionPane.showMessageDialog(this, "Produto removido com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                        if (buscaAtiva(txtBuscaProduto)) {
+                            buscarProdutos();
+                        } else {
+                            tableModelProdutos.registroRemovido(id);
+                            atualizarTotal(lblTotalProdutos, tableModelProdutos);
+                        }
+                        limparCamposProduto();
+                    } else if (erro == null && resultado.isPendente()) {
+                        avisarPendente("Pedido de remoção do produto");
+                        limparCamposProduto();
+                    } else {
+                        mostrarErroBanco("Erro ao remover o produto.", erro);
+                    }
+                }, ServicoAssincrono.EDT);
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "ID inválido para remoção.", "Erro", JOptionPane.ERROR_MESSAGE);
             }
         }
     }
-}
+
+    /**
+     * Inclusão ou remoção feita sem conexão (ResultadoGravacao.PENDENTE): ficou no DiarioOffline.
+     * A tabela não muda agora; o registro aparece (ou some) quando o diário for enviado ao banco.
+     */
+    private void avisarPendente(String oQue) {
+        JOptionPane.showMessageDialog(this, "Sem conexão com o banco de dados.\n" + oQue
+                + " guardado no diário offline, será enviado quando o banco voltar.", "Aviso", JOptionPane.WARNING_MESSAGE);
+    }
+
+    //Exibe erro de banco. Se a operação falhou com exceção (ex.: fila cheia), mostra a causa no console.
+    private void mostrarErroBanco(String mensagem, Throwable erro) {
+        if (erro != null) {
+            System.err.println(mensagem + " " + erro);
+        }
+        JOptionPane.showMessageDialog(this, mensagem + " Verifique o console para mais detalhes.", "Erro no Banco", JOptionPane.ERROR_MESSAGE);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,494 @@
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Pool de conexões JDBC usado pela classe Conexao.
+ * Mantém um número limitado de conexões físicas abertas com o MySQL e as reutiliza
+ * entre as chamadas dos DAOs, evitando o custo de abrir (TCP + autenticação) uma
+ * conexão nova a cada operação.
+ *
+ * O Connection entregue aos DAOs é um proxy: chamar close() devolve a conexão ao pool
+ * em vez de fechá-la. Além disso o pool:
+ * - valida a conexão ociosa antes de emprestá-la (Connection.isValid);
+ * - fecha conexões ociosas há mais tempo que o limite configurado;
+ * - avisa no console quando uma conexão fica emprestada por tempo demais (possível vazamento);
+ * - expõe métricas de conexões ativas, ociosas e tempo de espera;
+ * - guarda os PreparedStatements de cada conexão física (CacheStatements), para que os
+ *   DAOs reaproveitem o statement já preparado ao repetir o mesmo SQL.
+ */
+public class PoolConexoes implements DataSource {
+
+    private static final int TIMEOUT_VALIDACAO_SEGUNDOS = 2;
+    private static final long INTERVALO_MANUTENCAO_MS = 30_000;
+
+    private final String url;
+    private final String usuario;
+    private final String senha;
+    private final int tamanhoMaximo;
+    private final long tempoMaximoEsperaMs;
+    private final long tempoOciosoMaximoMs;
+    private final long limiteVazamentoMs;
+    private final int tamanhoCacheStatements; //Statements guardados por conexão física (0 desativa)
+    private volatile boolean cacheStatementsAtivo = true;
+
+    private final Semaphore permissoes;
+    private final Deque<ConexaoOciosa> ociosas = new ArrayDeque<>(); //Protegida por synchronized(ociosas)
+    private final Set<Emprestimo> emprestadas = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService manutencao;
+
+    //Métricas
+    private final LongAdder totalEmprestimos = new LongAdder();
+    private final LongAdder totalTempoEsperaNanos = new LongAdder();
+    private final AtomicLong maiorTempoEsperaNanos = new AtomicLong();
+    private final LongAdder conexoesCriadas = new LongAdder();
+    private final LongAdder conexoesDescartadas = new LongAdder();
+    private final LongAdder vazamentosDetectados = new LongAdder();
+    private final LongAdder statementsReaproveitados = new LongAdder();
+    private final LongAdder statementsPreparados = new LongAdder();
+
+    private volatile boolean encerrado;
+
+    public PoolConexoes(String url, String usuario, String senha, int tamanhoMaximo,
+                        long tempoMaximoEsperaMs, long tempoOciosoMaximoMs, long limiteVazamentoMs) {
+        this(url, usuario, senha, tamanhoMaximo, tempoMaximoEsperaMs, tempoOciosoMaximoMs, limiteVazamentoMs, 0);
+    }
+
+    /**
+     * Cria o pool. As conexões físicas são abertas sob demanda.
+     * @ param tamanhoMaximo Número máximo de conexões emprestadas ao mesmo tempo.
+     * @ param tempoMaximoEsperaMs Quanto tempo um DAO espera por uma conexão livre antes de desistir.
+     * @ param tempoOciosoMaximoMs Conexões ociosas há mais tempo que isso são fechadas.
+     * @ param limiteVazamentoMs Conexões emprestadas há mais tempo que isso geram aviso (0 desativa).
+     * @ param tamanhoCacheStatements PreparedStatements guardados por conexão física (0 desativa o cache).
+     */
+    public PoolConexoes(String url, String usuario, String senha, int tamanhoMaximo,
+                        long tempoMaximoEsperaMs, long tempoOciosoMaximoMs, long limiteVazamentoMs,
+                        int tamanhoCacheStatements) {
+        if (tamanhoMaximo <= 0) {
+            throw new IllegalArgumentException("O tamanho máximo do pool deve ser positivo.");
+        }
+        this.url = url;
+        this.usuario = usuario;
+        this.senha = senha;
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.tempoMaximoEsperaMs = tempoMaximoEsperaMs;
+        this.tempoOciosoMaximoMs = tempoOciosoMaximoMs;
+        this.limiteVazamentoMs = limiteVazamentoMs;
+        this.tamanhoCacheStatements = tamanhoCacheStatements;
+        this.permissoes = new Semaphore(tamanhoMaximo, true);
+
+        this.manutencao = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PetStop-PoolConexoes-Manutencao");
+            t.setDaemon(true); //Não impede a JVM de encerrar
+            return t;
+        });
+        this.manutencao.scheduleWithFixedDelay(this::executarManutencao,
+                INTERVALO_MANUTENCAO_MS, INTERVALO_MANUTENCAO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Empresta uma conexão do pool. Deve ser devolvida com close() (ou Conexao.fechar).
+     * @ throws SQLTimeoutException se nenhuma conexão ficar livre dentro do tempo máximo de espera.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (encerrado) {
+            throw new SQLException("O pool de conexões já foi encerrado.");
+        }
+
+        long inicioEspera = System.nanoTime();
+        try {
+            if (!permissoes.tryAcquire(tempoMaximoEsperaMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Tempo esgotado aguardando conexão livre no pool ("
+                        + tempoMaximoEsperaMs + " ms, " + tamanhoMaximo + " conexões em uso).");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido aguardando conexão do pool.", e);
+        }
+        registrarEspera(System.nanoTime() - inicioEspera);
+
+        try {
+            ConexaoFisica fisica = obterConexaoFisica();
+            Emprestimo emprestimo = new Emprestimo(fisica, limiteVazamentoMs > 0 ? new Exception("Conexão emprestada aqui") : null);
+            emprestadas.add(emprestimo);
+            totalEmprestimos.increment();
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    emprestimo);
+        } catch (SQLException | RuntimeException e) {
+            permissoes.release(); //Não conseguiu abrir: devolve a vaga
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String usuario, String senha) throws SQLException {
+        throw new SQLFeatureNotSupportedException("O pool usa apenas as credenciais configuradas em Conexao.");
+    }
+
+    //Reaproveita uma conexão ociosa válida ou abre uma nova
+    private ConexaoFisica obterConexaoFisica() throws SQLException {
+        while (true) {
+            ConexaoOciosa ociosa;
+            synchronized (ociosas) {
+                ociosa = ociosas.pollFirst(); //LIFO: a mais recente tem mais chance de estar viva
+            }
+            if (ociosa == null) {
+                return abrirConexaoFisica();
+            }
+            if (validar(ociosa.fisica.conexao)) {
+                return ociosa.fisica;
+            }
+            descartar(ociosa.fisica);
+        }
+    }
+
+    private ConexaoFisica abrirConexaoFisica() throws SQLException {
+        Connection nova = DriverManager.getConnection(url, usuario, senha);
+        conexoesCriadas.increment();
+        return new ConexaoFisica(nova, tamanhoCacheStatements > 0 ? new CacheStatements(nova, tamanhoCacheStatements, statementsReaproveitados, statementsPreparados) : null);
+    }
+
+    /**
+     * Abre conexões físicas antes de alguém pedir, para que as primeiras consultas da tela não
+     * paguem a abertura (TCP + autenticação). Conexões já abertas, ociosas ou emprestadas, contam.
+     * Cada conexão é aberta com uma vaga do pool, como num empréstimo: sem vaga livre (o pool já
+     * está em uso) o aquecimento para, e o total de conexões físicas não passa do tamanho máximo.
+     * @ param quantidade Conexões que devem ficar abertas (limitado ao tamanho máximo).
+     * @ return Quantas conexões foram abertas agora.
+     */
+    public int aquecer(int quantidade) {
+        int alvo = Math.min(quantidade, tamanhoMaximo);
+        int abertas = 0;
+        while (!encerrado) {
+            synchronized (ociosas) {
+                if (ociosas.size() + emprestadas.size() >= alvo) break;
+            }
+            if (!permissoes.tryAcquire()) break; //Todas as vagas em uso: não há o que aquecer
+            try {
+                ConexaoFisica fisica;
+                try {
+                    fisica = abrirConexaoFisica();
+                } catch (SQLException e) {
+                    System.err.println("AVISO: Não foi possível aquecer o pool de conexões: " + e.getMessage());
+                    break;
+                }
+                synchronized (ociosas) {
+                    if (encerrado) { //Encerrado enquanto abria: encerrar() já esvaziou a fila
+                        descartar(fisica);
+                        break;
+                    }
+                    ociosas.addFirst(new ConexaoOciosa(fisica, System.currentTimeMillis()));
+                }
+            } finally {
+                permissoes.release();
+            }
+            abertas++;
+        }
+        return abertas;
+    }
+
+    private boolean validar(Connection conexao) {
+        try {
+            return conexao.isValid(TIMEOUT_VALIDACAO_SEGUNDOS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void descartar(ConexaoFisica fisica) {
+        conexoesDescartadas.increment();
+        if (fisica.statements != null) fisica.statements.fechar();
+        try {
+            fisica.conexao.close();
+        } catch (SQLException e) {
+            System.err.println("Erro ao descartar conexão do pool: " + e.getMessage());
+        }
+    }
+
+    //Chamado quando o DAO fecha o proxy. Restaura o estado padrão antes de reaproveitar.
+    private void devolver(Emprestimo emprestimo) {
+        emprestadas.remove(emprestimo);
+        ConexaoFisica fisica = emprestimo.fisica;
+        if (fisica.statements != null) fisica.statements.conexaoDevolvida();
+        try {
+            if (encerrado || fisica.conexao.isClosed()) {
+                descartar(fisica);
+                return;
+            }
+            if (!fisica.conexao.getAutoCommit()) {
+                fisica.conexao.rollback(); //Descarta transação deixada aberta pelo DAO
+                fisica.conexao.setAutoCommit(true);
+            }
+            synchronized (ociosas) {
+                ociosas.addFirst(new ConexaoOciosa(fisica, System.currentTimeMillis()));
+            }
+        } catch (SQLException e) {
+            System.err.println("Conexão devolvida em estado inválido, descartando: " + e.getMessage());
+            descartar(fisica);
+        } finally {
+            permissoes.release();
+        }
+    }
+
+    private void registrarEspera(long nanos) {
+        totalTempoEsperaNanos.add(nanos);
+        long maior;
+        do {
+            maior = maiorTempoEsperaNanos.get();
+        } while (nanos > maior && !maiorTempoEsperaNanos.compareAndSet(maior, nanos));
+    }
+
+    //Remove conexões ociosas antigas e procura conexões emprestadas há tempo demais
+    private void executarManutencao() {
+        long agora = System.currentTimeMillis();
+
+        if (tempoOciosoMaximoMs > 0) {
+            synchronized (ociosas) {
+                Iterator<ConexaoOciosa> it = ociosas.iterator();
+                while (it.hasNext()) {
+                    ConexaoOciosa ociosa = it.next();
+                    if (agora - ociosa.desde > tempoOciosoMaximoMs) {
+                        it.remove();
+                        descartar(ociosa.fisica);
+                    }
+                }
+            }
+        }
+
+        if (limiteVazamentoMs > 0) {
+            for (Emprestimo emprestimo : emprestadas) {
+                if (!emprestimo.vazamentoReportado && agora - emprestimo.inicio > limiteVazamentoMs) {
+                    emprestimo.vazamentoReportado = true;
+                    vazamentosDetectados.increment();
+                    System.err.println("AVISO: Possível vazamento de conexão. Emprestada há "
+                            + (agora - emprestimo.inicio) + " ms sem ser devolvida.");
+                    emprestimo.origem.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Fecha todas as conexões ociosas e impede novos empréstimos.
+     * Conexões ainda emprestadas são fechadas quando forem devolvidas.
+     */
+    public void encerrar() {
+        encerrado = true;
+        manutencao.shutdownNow();
+        synchronized (ociosas) {
+            for (ConexaoOciosa ociosa : ociosas) {
+                descartar(ociosa.fisica);
+            }
+            ociosas.clear();
+        }
+    }
+
+    //--- Métricas ---
+
+    //Retorna quantas conexões estão emprestadas aos DAOs neste momento
+    public int getAtivas() {
+        return emprestadas.size();
+    }
+
+    //Retorna quantas conexões abertas estão paradas no pool
+    public int getOciosas() {
+        synchronized (ociosas) {
+            return ociosas.size();
+        }
+    }
+
+    public int getTamanhoMaximo() {
+        return tamanhoMaximo;
+    }
+
+    public long getTotalEmprestimos() {
+        return totalEmprestimos.sum();
+    }
+
+    //Retorna o tempo médio (ms) que os DAOs esperaram por uma conexão livre
+    public double getTempoEsperaMedioMs() {
+        long emprestimos = totalEmprestimos.sum();
+        return emprestimos == 0 ? 0 : totalTempoEsperaNanos.sum() / 1_000_000.0 / emprestimos;
+    }
+
+    //Retorna o maior tempo (ms) que um DAO esperou por uma conexão livre
+    public double getTempoEsperaMaximoMs() {
+        return maiorTempoEsperaNanos.get() / 1_000_000.0;
+    }
+
+    public long getConexoesCriadas() {
+        return conexoesCriadas.sum();
+    }
+
+    public long getConexoesDescartadas() {
+        return conexoesDescartadas.sum();
+    }
+
+    public long getVazamentosDetectados() {
+        return vazamentosDetectados.sum();
+    }
+
+    //Liga/desliga o uso do cache de statements (os já guardados continuam guardados). Usado no CrudBenchmark (JMH).
+    public void setCacheStatementsAtivo(boolean ativo) {
+        cacheStatementsAtivo = ativo;
+    }
+
+    //PreparedStatements reaproveitados do cache, em vez de preparados de novo
+    public long getStatementsReaproveitados() {
+        return statementsReaproveitados.sum();
+    }
+
+    public long getStatementsPreparados() {
+        return statementsPreparados.sum();
+    }
+
+    //Retorna um resumo das métricas em uma linha, útil para log
+    public String resumo() {
+        return String.format("Pool{ativas=%d, ociosas=%d, max=%d, emprestimos=%d, esperaMedia=%.3fms, esperaMax=%.3fms, criadas=%d, descartadas=%d, vazamentos=%d, statementsReaproveitados=%d, statementsPreparados=%d}",
+                getAtivas(), getOciosas(), tamanhoMaximo, getTotalEmprestimos(),
+                getTempoEsperaMedioMs(), getTempoEsperaMaximoMs(),
+                getConexoesCriadas(), getConexoesDescartadas(), getVazamentosDetectados(),
+                getStatementsReaproveitados(), getStatementsPreparados());
+    }
+
+    //--- Demais métodos de DataSource ---
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("PoolConexoes não implementa " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    //Conexão aberta com o banco e os statements já preparados nela
+    private static final class ConexaoFisica {
+        final Connection conexao;
+        final CacheStatements statements; //null com o cache desativado
+
+        ConexaoFisica(Connection conexao, CacheStatements statements) {
+            this.conexao = conexao;
+            this.statements = statements;
+        }
+    }
+
+    //Conexão física parada no pool e o instante em que ficou ociosa
+    private static final class ConexaoOciosa {
+        final ConexaoFisica fisica;
+        final long desde;
+
+        ConexaoOciosa(ConexaoFisica fisica, long desde) {
+            this.fisica = fisica;
+            this.desde = desde;
+        }
+    }
+
+    //Conexão emprestada a um DAO. Também é o InvocationHandler do proxy entregue a ele.
+    private final class Emprestimo implements InvocationHandler {
+        final ConexaoFisica fisica;
+        final Exception origem; //Pilha de quem pegou a conexão (apenas com detecção de vazamento)
+        final long inicio = System.currentTimeMillis();
+        volatile boolean vazamentoReportado;
+        private boolean devolvida; //Protegido por synchronized(this)
+
+        Emprestimo(ConexaoFisica fisica, Exception origem) {
+            this.fisica = fisica;
+            this.origem = origem;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nome = method.getName();
+            switch (nome) {
+                case "close":
+                    synchronized (this) {
+                        if (devolvida) return null; //close() repetido não faz nada
+                        devolvida = true;
+                    }
+                    devolver(this);
+                    return null;
+                case "isClosed":
+                    synchronized (this) {
+                        if (devolvida) return true;
+                    }
+                    return fisica.conexao.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexaoDoPool[" + fisica.conexao + "]";
+                default:
+                    break;
+            }
+            synchronized (this) {
+                if (devolvida) {
+                    throw new SQLException("A conexão já foi devolvida ao pool.");
+                }
+            }
+            if ("prepareStatement".equals(nome) && fisica.statements != null && cacheStatementsAtivo
+                    && CacheStatements.podeGuardar(args)) {
+                return fisica.statements.preparar((Connection) proxy, args);
+            }
+            try {
+                return method.invoke(fisica.conexao, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
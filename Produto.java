@@ -11,6 +11,7 @@ public class Produto {
     private long quantidade; // Corresponde à coluna 'quantidade' (BIGINT NOT NULL)
     private BigDecimal preco; // Corresponde à coluna 'preco' (DECIMAL(10,2) NOT NULL)
     private boolean disponivel; // Corresponde à coluna 'disponivel' (BOOLEAN NOT NULL)
+    private long versao; // Corresponde à coluna 'versao' (BIGINT NOT NULL) - incrementada a cada atualização
 
     //Construtor padrão.
     public Produto() {
@@ -24,6 +25,11 @@ public class Produto {
         this.disponivel = disponivel;
     }
     
+    public Produto(Long id, String nome, long quantidade, BigDecimal preco, boolean disponivel, long versao) {
+        this(id, nome, quantidade, preco, disponivel);
+        this.versao = versao;
+    }
+
     public Produto(String nome, long quantidade, BigDecimal preco, boolean disponivel) {
         this.nome = nome;
         this.quantidade = quantidade;
@@ -77,6 +83,15 @@ public class Produto {
         this.disponivel = disponivel;
     }
 
+    //Retorna a versão do registro lida do banco (usada para detectar alterações de outro usuário)
+    public long getVersao() {
+        return versao;
+    }
+    //Define a versão do registro
+    public void setVersao(long versao) {
+        this.versao = versao;
+    }
+
     //Retorna uma representação em String do objeto Produto.
     @Override
     public String toString() {
@@ -86,6 +101,7 @@ public class Produto {
                ", quantidade=" + quantidade +
                ", preco=" + (preco != null ? preco.toPlainString() : "null") + // Formata o BigDecimal para string
                ", disponivel=" + disponivel +
+               ", versao=" + versao +
                '}';
     }
 }
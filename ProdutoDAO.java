@@ -1,11 +1,16 @@
 import java.math.BigDecimal;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 //Importar as classes Conexao e Produto caso necessário.
 //import com.petstop.db.Conexao;
@@ -18,22 +23,100 @@ import java.util.List;
  */
 public class ProdutoDAO {
 
+    /**
+     * Recebe as gravações feitas com sucesso por este DAO, para manter cópias em memória
+     * (ex.: CatalogoProdutos) atualizadas. É chamado na thread que fez a gravação.
+     */
+    public interface Ouvinte {
+        void produtoGravado(Produto produto);
+        void produtoRemovido(long id);
+
+        //Quantidade alterada por ajustarEstoques (baixa ou entrada), já relida do banco
+        default void estoqueAjustado(Produto produto) {
+            produtoGravado(produto);
+        }
+    }
+
+    private static final List<Ouvinte> OUVINTES = new CopyOnWriteArrayList<>();
+
+    public static void adicionarOuvinte(Ouvinte ouvinte) {
+        OUVINTES.add(ouvinte);
+    }
+
+    public static void removerOuvinte(Ouvinte ouvinte) {
+        OUVINTES.remove(ouvinte);
+    }
+
+    private static void notificarGravado(Produto produto) {
+        for (Ouvinte ouvinte : OUVINTES) {
+            ouvinte.produtoGravado(produto);
+        }
+    }
+
+    private static void notificarRemovido(long id) {
+        for (Ouvinte ouvinte : OUVINTES) {
+            ouvinte.produtoRemovido(id);
+        }
+    }
+
+    private static void notificarEstoqueAjustado(Produto produto) {
+        for (Ouvinte ouvinte : OUVINTES) {
+            ouvinte.estoqueAjustado(produto);
+        }
+    }
+
+    /**
+     * Aplica uma alteração feita em outro terminal (recebida pelo BarramentoAlteracoes) ou enviada
+     * pelo DiarioOffline: o produto é relido do banco, e índice, catálogo e controle de estoque
+     * recebem o registro atual como uma gravação (o saldo em memória é refeito a partir da
+     * quantidade do banco). Se a releitura falhar (sem conexão, erro de SQL), só o cache é
+     * invalidado: o produto não é dado como removido, e a próxima leitura busca no banco.
+     * @ return O produto como está agora no banco, ou null se não existe mais ou não foi possível reler.
+     */
+    Produto aplicarAlteracaoRemota(long id, boolean removido) {
+        CACHE.invalidar(id);
+        if (removido) {
+            notificarRemovido(id);
+            return null;
+        }
+        Produto atual;
+        try {
+            atual = lerProdutoNoBanco(id);
+        } catch (SQLException e) {
+            System.err.println("AVISO: Não foi possível reler o produto " + id + " alterado em outro terminal; "
+                    + "fica só fora do cache. " + e.getMessage());
+            return null;
+        }
+        if (atual == null) {
+            notificarRemovido(id);
+        } else {
+            notificarGravado(atual);
+        }
+        return atual;
+    }
+
     /**
      * Adiciona um novo produto ao banco de dados.
      * O ID do produto é gerado automaticamente pelo banco.
-     * @ return true se o produto foi adicionado com sucesso, false caso contrário.
+     * @ return GRAVADO; PENDENTE se ficou no diário offline (sem ID até ser enviado); ou FALHOU.
      */
-    public boolean adicionarProduto(Produto produto) {
+    public ResultadoGravacao adicionarProduto(Produto produto) {
         String sql = "INSERT INTO produtos (nome, quantidade, preco, disponivel) VALUES (?, ?, ?, ?)";
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet generatedKeys = null;
 
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.adicionarProduto");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
+                medicao.erro();
+                if (DiarioOffline.registrarProduto(DiarioOffline.Tipo.ADICIONAR_PRODUTO, produto)) {
+                    System.err.println("AVISO: Sem conexão com o banco de dados; inclusão de produto guardada no diário offline.");
+                    return ResultadoGravacao.PENDENTE;
+                }
                 System.err.println("Falha ao conectar ao banco de dados para adicionar produto.");
-                return false;
+                return ResultadoGravacao.FALHOU;
             }
             //O Statement.RETURN_GENERATED_KEYS permite obter o ID gerado.
             pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
@@ -51,15 +134,17 @@ public class ProdutoDAO {
                     produto.setId(generatedKeys.getLong(1)); //Define o ID no objeto produto
                 }
                 System.out.println("Produto adicionado com sucesso! ID: " + produto.getId());
-                return true;
+                notificarGravado(produto);
+                return ResultadoGravacao.GRAVADO;
             } else {
                 System.err.println("Nenhuma linha afetada ao tentar adicionar o produto.");
-                return false;
+                return ResultadoGravacao.FALHOU;
             }
         } catch (SQLException e) {
+            medicao.erro();
             System.err.println("Erro de SQL ao adicionar produto: " + e.getMessage());
             //e.printStackTrace(); //Para depuração mais detalhada
-            return false;
+            return ResultadoGravacao.FALHOU;
         } finally {
             try {
                 if (generatedKeys != null) generatedKeys.close();
@@ -68,40 +153,119 @@ public class ProdutoDAO {
                 System.err.println("Erro ao fechar PreparedStatement ou ResultSet (adicionarProduto): " + e.getMessage());
             }
             Conexao.fechar(conn); //Fecha a conexão principal
+            medicao.fim(produto.getId() != null ? 1 : 0);
         }
     }
 
+    //Cache dos produtos buscados por ID, compartilhado por todas as instâncias do DAO
+    private static final CacheLRU<Produto> CACHE = new CacheLRU<>("produtos", 2000, 5 * 60 * 1000L,
+            p -> new Produto(p.getId(), p.getNome(), p.getQuantidade(), p.getPreco(), p.isDisponivel(), p.getVersao()));
+
+    public static CacheLRU<Produto> getCache() {
+        return CACHE;
+    }
+
+    //Índice da busca por nome, carregado na primeira busca e mantido pelas gravações deste DAO
+    private static final IndiceBusca<Produto> INDICE = new IndiceBusca<>("produtos", Produto::getId, Produto::getNome,
+            p -> new Produto(p.getId(), p.getNome(), p.getQuantidade(), p.getPreco(), p.isDisponivel(), p.getVersao()),
+            Comparator.comparing(Produto::getNome, String.CASE_INSENSITIVE_ORDER).thenComparing(Produto::getId));
+
+    static {
+        adicionarOuvinte(new Ouvinte() {
+            @Override
+            public void produtoGravado(Produto produto) {
+                INDICE.colocar(produto);
+            }
+
+            @Override
+            public void produtoRemovido(long id) {
+                INDICE.remover(id);
+            }
+        });
+    }
+
+    public static IndiceBusca<Produto> getIndice() {
+        return INDICE;
+    }
+
+    /**
+     * Busca produtos pelo nome, sem diferenciar maiúsculas nem acentos ("racao" encontra "Ração").
+     * Cada palavra digitada deve ser o começo de uma palavra do nome.
+     * Na primeira chamada carrega o índice com todos os produtos; as seguintes não vão ao banco.
+     * @ param limite Quantidade máxima de produtos retornados.
+     * @ return Os primeiros produtos encontrados, em ordem de nome, e quantos atendem à busca ao todo.
+     */
+    public ResultadoBusca<Produto> buscarProdutos(String texto, int limite) {
+        return buscarProdutos(texto, limite, () -> false);
+    }
+
+    /**
+     * Igual a buscarProdutos(texto, limite), mas interrompe a busca (retornando o que achou até ali)
+     * assim que cancelada retornar true.
+     */
+    public ResultadoBusca<Produto> buscarProdutos(String texto, int limite, BooleanSupplier cancelada) {
+        carregarIndiceBusca();
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.buscarProdutos");
+        ResultadoBusca<Produto> resultado = INDICE.buscar(texto, limite, cancelada);
+        medicao.fim(resultado.getRegistros().size());
+        return resultado;
+    }
+
+    //Carrega o índice de busca com todos os produtos, se ainda não foi carregado
+    public void carregarIndiceBusca() {
+        INDICE.carregarSeNecessario(this::percorrerTodosProdutos); //Uma única consulta, lida em streaming
+    }
+
     /**
      * Busca um produto pelo seu ID.
+     * Usa o cache; o banco só é consultado se o produto não estiver nele (ou estiver vencido).
      * @ return Um objeto Produto se encontrado, ou null caso contrário.
      */
     public Produto buscarProdutoPorId(long id) {
-        String sql = "SELECT * FROM produtos WHERE id = ?";
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.buscarProdutoPorId");
+        Produto produto = CACHE.obter(id, this::buscarProdutoNoBanco);
+        medicao.fim(produto != null ? 1 : 0);
+        return produto;
+    }
+
+    //Sem passar pelo cache (usado também pelo ControleEstoque, que precisa da quantidade atual)
+    Produto buscarProdutoNoBanco(long id) {
+        try {
+            return lerProdutoNoBanco(id);
+        } catch (SQLException e) {
+            System.err.println("Erro ao buscar produto por ID: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lê o produto direto do banco, sem passar pelo cache.
+     * @ return O produto, ou null se ele não existe.
+     * @ throws SQLException se não foi possível consultar (sem conexão ou erro de SQL); não quer dizer que o produto não existe.
+     */
+    private Produto lerProdutoNoBanco(long id) throws SQLException {
+        String sql = "SELECT " + COLUNAS + " FROM produtos WHERE id = ?";
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         Produto produto = null;
 
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.buscarProdutoNoBanco");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
-                System.err.println("Falha ao conectar ao banco de dados para buscar produto por ID.");
-                return null;
+                throw new SQLException("Falha ao conectar ao banco de dados para buscar produto por ID.");
             }
             pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, id);
             rs = pstmt.executeQuery();
 
             if (rs.next()) {
-                produto = new Produto();
-                produto.setId(rs.getLong("id"));
-                produto.setNome(rs.getString("nome"));
-                produto.setQuantidade(rs.getLong("quantidade"));
-                produto.setPreco(rs.getBigDecimal("preco"));
-                produto.setDisponivel(rs.getBoolean("disponivel"));
+                produto = mapearProduto(rs);
             }
         } catch (SQLException e) {
-            System.err.println("Erro de SQL ao buscar produto por ID: " + e.getMessage());
+            medicao.erro();
+            throw e;
         } finally {
             try {
                 if (rs != null) rs.close();
@@ -110,6 +274,7 @@ public class ProdutoDAO {
                 System.err.println("Erro ao fechar ResultSet ou PreparedStatement (buscarProdutoPorId): " + e.getMessage());
             }
             Conexao.fechar(conn);
+            medicao.fim(produto != null ? 1 : 0);
         }
         return produto;
     }
@@ -119,31 +284,44 @@ public class ProdutoDAO {
      * @ return Uma lista de objetos Produto. A lista pode estar vazia se não houver produtos.
      */
     public List<Produto> listarTodosProdutos() {
-        String sql = "SELECT * FROM produtos ORDER BY nome ASC"; //Ordena por nome
         List<Produto> produtos = new ArrayList<>();
+        percorrerTodosProdutos(produtos::add);
+        return produtos;
+    }
+
+    /**
+     * Passa cada produto cadastrado, em ordem de nome, para o consumidor, sem montar uma lista.
+     * As linhas vêm do banco em streaming (fetch size de Conexao.aplicarFetchSize), então o
+     * driver não guarda o resultado inteiro na memória antes de entregar a primeira linha.
+     * O consumidor não deve demorar: a conexão fica presa até a última linha ser lida.
+     * @ return A quantidade de produtos lidos, ou -1 em caso de erro.
+     */
+    public long percorrerTodosProdutos(Consumer<Produto> consumidor) {
+        String sql = "SELECT " + COLUNAS + " FROM produtos ORDER BY nome ASC"; //Ordena por nome
+        long lidos = 0;
         Connection conn = null;
-        Statement stmt = null;
+        PreparedStatement stmt = null;
         ResultSet rs = null;
 
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.percorrerTodosProdutos");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
+                medicao.erro();
                 System.err.println("Falha ao conectar ao banco de dados para listar produtos.");
-                return produtos; //Retorna lista vazia
+                return -1;
             }
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(sql);
+            stmt = conn.prepareStatement(sql);
+            Conexao.aplicarFetchSize(stmt);
+            rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Produto produto = new Produto();
-                produto.setId(rs.getLong("id"));
-                produto.setNome(rs.getString("nome"));
-                produto.setQuantidade(rs.getLong("quantidade"));
-                produto.setPreco(rs.getBigDecimal("preco"));
-                produto.setDisponivel(rs.getBoolean("disponivel"));
-                produtos.add(produto);
+                consumidor.accept(mapearProduto(rs));
+                lidos++;
             }
         } catch (SQLException e) {
+            medicao.erro();
+            lidos = -1;
             System.err.println("Erro de SQL ao listar todos os produtos: " + e.getMessage());
         } finally {
             try {
@@ -153,30 +331,276 @@ public class ProdutoDAO {
                 System.err.println("Erro ao fechar ResultSet ou Statement (listarTodosProdutos): " + e.getMessage());
             }
             Conexao.fechar(conn);
+            medicao.fim(Math.max(lidos, 0));
+        }
+        return lidos;
+    }
+
+    /**
+     * Lista uma página de produtos ordenada por (nome, id), usando paginação por chave (keyset).
+     * Em vez de OFFSET, a consulta continua a partir do último registro da página anterior,
+     * então o custo de cada página é o mesmo no início ou no fim da tabela (usa o índice idx_produtos_nome_id).
+     * @ param ultimoNome Nome do último produto da página anterior, ou null para a primeira página.
+     * @ param ultimoId ID do último produto da página anterior (ignorado na primeira página).
+     * @ param tamanhoPagina Quantidade máxima de produtos retornados.
+     * @ return A página de produtos. Se vier menor que tamanhoPagina, não há mais páginas.
+     */
+    public List<Produto> listarProdutosPagina(String ultimoNome, Long ultimoId, int tamanhoPagina) {
+        String sql = ultimoNome == null
+                ? "SELECT " + COLUNAS + " FROM produtos ORDER BY nome ASC, id ASC LIMIT ?"
+                : "SELECT " + COLUNAS + " FROM produtos WHERE nome > ? OR (nome = ? AND id > ?) ORDER BY nome ASC, id ASC LIMIT ?";
+        List<Produto> produtos = new ArrayList<>(tamanhoPagina);
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.listarProdutosPagina");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para listar página de produtos.");
+                return produtos;
+            }
+            pstmt = conn.prepareStatement(sql);
+            int parametro = 1;
+            if (ultimoNome != null) {
+                pstmt.setString(parametro++, ultimoNome);
+                pstmt.setString(parametro++, ultimoNome);
+                pstmt.setLong(parametro++, ultimoId);
+            }
+            pstmt.setInt(parametro, tamanhoPagina);
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                produtos.add(mapearProduto(rs));
+            }
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao listar página de produtos: " + e.getMessage());
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement (listarProdutosPagina): " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(produtos.size());
         }
         return produtos;
     }
 
     /**
-     * Atualiza os dados de um produto existente no banco de dados.
-     * @ param produto O objeto Produto com os dados atualizados. O ID do produto deve estar preenchido.
-     * @ return true se o produto foi atualizado com sucesso, false caso contrário.
+     * Lista os produtos a partir de uma posição da ordenação (nome, id), usando OFFSET.
+     * Usado apenas quando o usuário salta para um trecho da tabela ainda não visitado;
+     * na rolagem normal use listarProdutosPagina, que não precisa pular linhas.
+     * @ param inicio Posição (a partir de 0) do primeiro produto retornado.
+     * @ param quantidade Quantidade máxima de produtos retornados.
      */
-    public boolean atualizarProduto(Produto produto) {
-        String sql = "UPDATE produtos SET nome = ?, quantidade = ?, preco = ?, disponivel = ? WHERE id = ?";
+    public List<Produto> listarProdutosPorPosicao(int inicio, int quantidade) {
+        String sql = "SELECT " + COLUNAS + " FROM produtos ORDER BY nome ASC, id ASC LIMIT ? OFFSET ?";
+        List<Produto> produtos = new ArrayList<>(quantidade);
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.listarProdutosPorPosicao");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para listar produtos por posição.");
+                return produtos;
+            }
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setInt(1, quantidade);
+            pstmt.setInt(2, inicio);
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                produtos.add(mapearProduto(rs));
+            }
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao listar produtos por posição: " + e.getMessage());
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement (listarProdutosPorPosicao): " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(produtos.size());
+        }
+        return produtos;
+    }
+
+    /**
+     * Conta quantos produtos estão cadastrados.
+     * @ return O total de produtos, ou -1 em caso de erro.
+     */
+    public long contarProdutos() {
+        String sql = "SELECT COUNT(*) FROM produtos";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.contarProdutos");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para contar produtos.");
+                return -1;
+            }
+            stmt = conn.prepareStatement(sql);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao contar produtos: " + e.getMessage());
+            return -1;
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (stmt != null) stmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou Statement (contarProdutos): " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(1);
+        }
+    }
+
+    /**
+     * Lista os produtos cujo nome começa com o prefixo (LIKE 'prefixo%'), na ordem (nome, id).
+     * Usa o índice idx_produtos_nome_id. Serve para a busca da tela enquanto o índice em memória
+     * ainda não foi carregado; a comparação segue a collation da coluna (sem diferenciar maiúsculas).
+     * @ param ultimoNome Nome do último produto já exibido (keyset), ou null para usar o OFFSET inicio.
+     * @ param ultimoId ID do último produto já exibido, ou null.
+     */
+    public List<Produto> listarProdutosPorPrefixo(String prefixo, String ultimoNome, Long ultimoId, int inicio, int quantidade) {
+        String sql = ultimoNome == null
+                ? "SELECT " + COLUNAS + " FROM produtos WHERE nome LIKE ? ORDER BY nome ASC, id ASC LIMIT ? OFFSET ?"
+                : "SELECT " + COLUNAS + " FROM produtos WHERE nome LIKE ? AND (nome > ? OR (nome = ? AND id > ?)) ORDER BY nome ASC, id ASC LIMIT ?";
+        List<Produto> produtos = new ArrayList<>(quantidade);
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.listarProdutosPorPrefixo");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para buscar produtos por prefixo.");
+                return produtos;
+            }
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, padraoPrefixo(prefixo));
+            if (ultimoNome == null) {
+                pstmt.setInt(2, quantidade);
+                pstmt.setInt(3, inicio);
+            } else {
+                pstmt.setString(2, ultimoNome);
+                pstmt.setString(3, ultimoNome);
+                pstmt.setLong(4, ultimoId);
+                pstmt.setInt(5, quantidade);
+            }
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                produtos.add(mapearProduto(rs));
+            }
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao buscar produtos por prefixo: " + e.getMessage());
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement (listarProdutosPorPrefixo): " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(produtos.size());
+        }
+        return produtos;
+    }
+
+    /**
+     * Conta os produtos cujo nome começa com o prefixo.
+     * @ return O total encontrado, ou -1 em caso de erro.
+     */
+    public long contarProdutosPorPrefixo(String prefixo) {
+        String sql = "SELECT COUNT(*) FROM produtos WHERE nome LIKE ?";
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.contarProdutosPorPrefixo");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para contar produtos por prefixo.");
+                return -1;
+            }
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, padraoPrefixo(prefixo));
+            rs = pstmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao contar produtos por prefixo: " + e.getMessage());
+            return -1;
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement (contarProdutosPorPrefixo): " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(1);
+        }
+    }
+
+    //Escapa os curingas do LIKE (%, _ e \) digitados pelo usuário e acrescenta o % final
+    private static String padraoPrefixo(String prefixo) {
+        return prefixo.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    /**
+     * Atualiza os dados de um produto existente no banco de dados, se ninguém o alterou desde
+     * que foi lido (a versão no banco ainda é produto.getVersao()). Baixas e entradas de estoque
+     * também mudam a versão. Em caso de sucesso a versão do objeto é incrementada.
+     * @ param produto O objeto Produto com os dados atualizados. O ID e a versão lida devem estar preenchidos.
+     * @ return ATUALIZADO; CONFLITO com o produto atual do banco; NAO_ENCONTRADO; INVALIDO ou ERRO.
+     */
+    public ResultadoAtualizacao<Produto> atualizarProduto(Produto produto) {
+        String sql = "UPDATE produtos SET nome = ?, quantidade = ?, preco = ?, disponivel = ?, versao = versao + 1 WHERE id = ? AND versao = ?";
         Connection conn = null;
         PreparedStatement pstmt = null;
 
         if (produto.getId() == null || produto.getId() <= 0) {
             System.err.println("ID do produto inválido para atualização.");
-            return false;
+            return ResultadoAtualizacao.invalido("ID do produto inválido para atualização.");
         }
 
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.atualizarProduto");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
+                medicao.erro();
+                if (DiarioOffline.registrarProduto(DiarioOffline.Tipo.ATUALIZAR_PRODUTO, produto)) {
+                    System.err.println("AVISO: Sem conexão com o banco de dados; atualização de produto guardada no diário offline.");
+                    return ResultadoAtualizacao.pendente(produto);
+                }
                 System.err.println("Falha ao conectar ao banco de dados para atualizar produto.");
-                return false;
+                return ResultadoAtualizacao.erro("Sem conexão com o banco de dados.");
             }
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, produto.getNome());
@@ -184,18 +608,19 @@ public class ProdutoDAO {
             pstmt.setBigDecimal(3, produto.getPreco());
             pstmt.setBoolean(4, produto.isDisponivel());
             pstmt.setLong(5, produto.getId());
+            pstmt.setLong(6, produto.getVersao());
 
             int linhasAfetadas = pstmt.executeUpdate();
             if (linhasAfetadas > 0) {
+                produto.setVersao(produto.getVersao() + 1);
                 System.out.println("Produto atualizado com sucesso! ID: " + produto.getId());
-                return true;
-            } else {
-                System.err.println("Nenhuma linha afetada. Produto com ID " + produto.getId() + " não encontrado para atualização.");
-                return false;
+                notificarGravado(produto);
+                return ResultadoAtualizacao.atualizado(produto);
             }
         } catch (SQLException e) {
+            medicao.erro();
             System.err.println("Erro de SQL ao atualizar produto: " + e.getMessage());
-            return false;
+            return ResultadoAtualizacao.erro("Erro de SQL ao atualizar produto: " + e.getMessage());
         } finally {
             try {
                 if (pstmt != null) pstmt.close();
@@ -203,28 +628,54 @@ public class ProdutoDAO {
                 System.err.println("Erro ao fechar PreparedStatement (atualizarProduto): " + e.getMessage());
             }
             Conexao.fechar(conn);
+            medicao.fim(0);
+            CACHE.invalidar(produto.getId());
         }
+
+        //Nenhuma linha afetada: o produto foi removido, ou alterado por outro usuário (versão diferente)
+        Produto atual;
+        try {
+            atual = lerProdutoNoBanco(produto.getId());
+        } catch (SQLException e) {
+            //Não dá para saber se foi conflito ou remoção: nada foi gravado, e o registro não é dado como removido
+            System.err.println("Erro ao reler o produto com ID " + produto.getId() + " após a atualização não aplicada: " + e.getMessage());
+            return ResultadoAtualizacao.erro("Não foi possível verificar o produto no banco de dados.");
+        }
+        if (atual == null) {
+            System.err.println("Nenhuma linha afetada. Produto com ID " + produto.getId() + " não encontrado para atualização.");
+            return ResultadoAtualizacao.naoEncontrado();
+        }
+        System.err.println("AVISO: Produto com ID " + produto.getId() + " foi alterado por outro usuário (versão lida "
+                + produto.getVersao() + ", atual " + atual.getVersao() + "). Nada foi gravado.");
+        notificarGravado(atual);
+        return ResultadoAtualizacao.conflito(atual);
     }
 
     /**
      * Remove um produto do banco de dados pelo seu ID.
-     * @ return true se o produto foi removido com sucesso, false caso contrário.
+     * @ return GRAVADO; PENDENTE se ficou no diário offline; ou FALHOU (inclusive se o produto não existe).
      */
-    public boolean removerProduto(long id) {
+    public ResultadoGravacao removerProduto(long id) {
         String sql = "DELETE FROM produtos WHERE id = ?";
         Connection conn = null;
         PreparedStatement pstmt = null;
 
         if (id <= 0) {
             System.err.println("ID do produto inválido para remoção.");
-            return false;
+            return ResultadoGravacao.FALHOU;
         }
 
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.removerProduto");
         try {
             conn = Conexao.conectar();
             if (conn == null) {
+                medicao.erro();
+                if (DiarioOffline.registrarRemocao(DiarioOffline.Tipo.REMOVER_PRODUTO, id)) {
+                    System.err.println("AVISO: Sem conexão com o banco de dados; remoção de produto guardada no diário offline.");
+                    return ResultadoGravacao.PENDENTE;
+                }
                 System.err.println("Falha ao conectar ao banco de dados para remover produto.");
-                return false;
+                return ResultadoGravacao.FALHOU;
             }
             pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, id);
@@ -232,14 +683,16 @@ public class ProdutoDAO {
             int linhasAfetadas = pstmt.executeUpdate();
             if (linhasAfetadas > 0) {
                 System.out.println("Produto com ID " + id + " removido com sucesso!");
-                return true;
+                notificarRemovido(id);
+                return ResultadoGravacao.GRAVADO;
             } else {
                 System.err.println("Nenhuma linha afetada. Produto com ID " + id + " não encontrado para remoção.");
-                return false;
+                return ResultadoGravacao.FALHOU;
             }
         } catch (SQLException e) {
+            medicao.erro();
             System.err.println("Erro de SQL ao remover produto: " + e.getMessage());
-            return false;
+            return ResultadoGravacao.FALHOU;
         } finally {
             try {
                 if (pstmt != null) pstmt.close();
@@ -247,7 +700,261 @@ public class ProdutoDAO {
                 System.err.println("Erro ao fechar PreparedStatement (removerProduto): " + e.getMessage());
             }
             Conexao.fechar(conn);
+            medicao.fim(0);
+            CACHE.invalidar(id);
+        }
+    }
+
+    private static final LoteJDBC LOTE = new LoteJDBC("produtos");
+
+    /**
+     * Adiciona vários produtos de uma vez (ex.: entrada de mercadoria de um fornecedor).
+     * Usa addBatch/executeBatch em blocos, tudo numa única conexão e transação.
+     * Um produto com erro não impede os demais de serem gravados; o ID gerado é definido
+     * em cada produto inserido e também devolvido no resultado.
+     * @ return O resultado do lote, com os IDs gerados e as linhas que falharam.
+     */
+    public ResultadoLote adicionarProdutos(List<Produto> produtos) {
+        String sql = "INSERT INTO produtos (nome, quantidade, preco, disponivel) VALUES (?, ?, ?, ?)";
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.adicionarProdutos");
+        ResultadoLote resultado = LOTE.executar(sql, produtos, produto -> validarParaLote(produto, true), (pstmt, produto) -> {
+            pstmt.setString(1, produto.getNome());
+            pstmt.setLong(2, produto.getQuantidade());
+            pstmt.setBigDecimal(3, produto.getPreco());
+            pstmt.setBoolean(4, produto.isDisponivel());
+        }, Produto::setId);
+        if (!resultado.isSucessoTotal()) medicao.erro();
+        medicao.fim(resultado.getSucessos());
+        for (int i = 0; i < produtos.size(); i++) {
+            if (resultado.getIdGerado(i) != null) notificarGravado(produtos.get(i));
         }
+        return resultado;
+    }
+
+    /**
+     * Atualiza vários produtos de uma vez, com as mesmas regras de adicionarProdutos e a mesma
+     * verificação de versão de atualizarProduto. Produtos sem ID, com ID inexistente ou alterados
+     * por outro usuário são registrados como falha (LoteJDBC.REGISTRO_NAO_ENCONTRADO nos dois últimos).
+     */
+    public ResultadoLote atualizarProdutos(List<Produto> produtos) {
+        String sql = "UPDATE produtos SET nome = ?, quantidade = ?, preco = ?, disponivel = ?, versao = versao + 1 WHERE id = ? AND versao = ?";
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.atualizarProdutos");
+        ResultadoLote resultado = LOTE.executar(sql, produtos, produto -> validarParaLote(produto, false), (pstmt, produto) -> {
+            pstmt.setString(1, produto.getNome());
+            pstmt.setLong(2, produto.getQuantidade());
+            pstmt.setBigDecimal(3, produto.getPreco());
+            pstmt.setBoolean(4, produto.isDisponivel());
+            pstmt.setLong(5, produto.getId());
+            pstmt.setLong(6, produto.getVersao());
+        }, null);
+        if (!resultado.isSucessoTotal()) medicao.erro();
+        medicao.fim(resultado.getSucessos());
+        for (int i = 0; i < produtos.size(); i++) {
+            Produto produto = produtos.get(i);
+            if (produto != null && produto.getId() != null) CACHE.invalidar(produto.getId());
+            if (resultado.isSucesso(i)) {
+                produto.setVersao(produto.getVersao() + 1);
+                notificarGravado(produto);
+            }
+        }
+        return resultado;
+    }
+
+    /*
+     * Soma o delta à quantidade sem ler nem regravar os demais campos. O disponivel é calculado
+     * antes da quantidade, com o valor antigo dela (assim o resultado é o mesmo no MySQL, que
+     * aplica o SET da esquerda para a direita, e nos bancos que usam sempre o valor antigo):
+     * fica false quando a quantidade chega a zero e volta a true quando uma entrada tira o
+     * produto do zero; nos demais casos não muda. A versão muda também, para que uma edição
+     * aberta antes da baixa não grave por cima a quantidade antiga.
+     */
+    private static final String SQL_AJUSTAR_ESTOQUE = "UPDATE produtos SET "
+            + "disponivel = CASE WHEN quantidade + ? <= 0 THEN FALSE WHEN quantidade <= 0 THEN TRUE ELSE disponivel END, "
+            + "quantidade = quantidade + ?, versao = versao + 1 WHERE id = ?";
+
+    //Baixas/entradas de estoque acumuladas em memória e gravadas juntas (write-behind)
+    private static final BufferEstoque BUFFER_ESTOQUE = new BufferEstoque(new ProdutoDAO(),
+            Long.getLong("petstop.estoque.intervaloMs", 1_000),
+            Paths.get(System.getProperty("petstop.estoque.arquivo", "petstop-estoque-pendente.csv")));
+
+    public static BufferEstoque getBufferEstoque() {
+        return BUFFER_ESTOQUE;
+    }
+
+    //Saldo em memória para vendas simultâneas (reservar/confirmar/liberar), gravado pelo BUFFER_ESTOQUE
+    private static final ControleEstoque CONTROLE_ESTOQUE = new ControleEstoque(new ProdutoDAO(), BUFFER_ESTOQUE);
+
+    static {
+        adicionarOuvinte(CONTROLE_ESTOQUE);
+    }
+
+    public static ControleEstoque getControleEstoque() {
+        return CONTROLE_ESTOQUE;
+    }
+
+    /**
+     * Soma delta à quantidade em estoque do produto (negativo para uma venda), numa única
+     * instrução atômica: duas vendas simultâneas do mesmo produto não se sobrescrevem.
+     * Para muitas vendas seguidas prefira getBufferEstoque().registrarVenda(...), que junta as
+     * alterações de cada produto numa única instrução por intervalo.
+     * @ return true se o produto existe e foi atualizado.
+     */
+    public boolean ajustarEstoque(long id, long delta) {
+        return ajustarEstoques(new long[]{id}, new long[]{delta}).isSucessoTotal();
+    }
+
+    /**
+     * Aplica vários deltas de estoque numa única transação (ids[i] recebe deltas[i]).
+     * Depois relê os produtos alterados para atualizar o cache, o índice e o catálogo.
+     * @ return O resultado por posição; IDs inexistentes falham com LoteJDBC.REGISTRO_NAO_ENCONTRADO.
+     */
+    public ResultadoLote ajustarEstoques(long[] ids, long[] deltas) {
+        return ajustarEstoques(ids, deltas, null);
+    }
+
+    /**
+     * Como ajustarEstoques(ids, deltas), anotando a gravação (origem, sequencia) na tabela
+     * estoque_aplicado na mesma transação. Uma gravação com sequência menor ou igual à última
+     * anotada para a origem não é aplicada de novo: as linhas falham com LoteJDBC.LOTE_JA_GRAVADO.
+     * Usado pelo BufferEstoque, que reenvia a mesma gravação se não souber se ela chegou ao banco.
+     * @ param origem Identifica quem grava (um BufferEstoque); as sequências de cada origem só crescem.
+     */
+    public ResultadoLote ajustarEstoques(long origem, long sequencia, long[] ids, long[] deltas) {
+        return ajustarEstoques(ids, deltas, conn -> marcarAjusteEstoque(conn, origem, sequencia));
+    }
+
+    private ResultadoLote ajustarEstoques(long[] ids, long[] deltas, LoteJDBC.Marcador marcador) {
+        List<Integer> posicoes = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            posicoes.add(i);
+        }
+        Metricas.Medicao medicao = Metricas.iniciar("ProdutoDAO.ajustarEstoques");
+        ResultadoLote resultado = LOTE.executar(SQL_AJUSTAR_ESTOQUE, posicoes,
+                i -> ids[i] <= 0 ? "ID do produto inválido para ajuste de estoque." : null,
+                (pstmt, i) -> {
+                    pstmt.setLong(1, deltas[i]);
+                    pstmt.setLong(2, deltas[i]);
+                    pstmt.setLong(3, ids[i]);
+                }, null, marcador);
+        if (!resultado.isSucessoTotal()) medicao.erro();
+        medicao.fim(resultado.getSucessos());
+
+        List<Long> alterados = new ArrayList<>(resultado.getSucessos());
+        for (int i = 0; i < ids.length; i++) {
+            CACHE.invalidar(ids[i]);
+            if (resultado.isSucesso(i)) alterados.add(ids[i]);
+        }
+        for (Produto produto : buscarProdutosNoBanco(alterados)) {
+            notificarEstoqueAjustado(produto);
+        }
+        return resultado;
+    }
+
+    //Anota a sequência como a última gravada pela origem. Retorna false se ela já tinha sido gravada.
+    private static boolean marcarAjusteEstoque(Connection conn, long origem, long sequencia) throws SQLException {
+        Long ultima = null;
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT sequencia FROM estoque_aplicado WHERE origem = ?")) {
+            pstmt.setLong(1, origem);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) ultima = rs.getLong(1);
+            }
+        }
+        if (ultima != null && ultima >= sequencia) {
+            return false;
+        }
+        String sql = ultima == null
+                ? "INSERT INTO estoque_aplicado (sequencia, origem) VALUES (?, ?)"
+                : "UPDATE estoque_aplicado SET sequencia = ?, aplicado_em = CURRENT_TIMESTAMP WHERE origem = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, sequencia);
+            pstmt.setLong(2, origem);
+            pstmt.executeUpdate();
+        }
+        return true;
+    }
+
+    //Busca vários produtos por ID (WHERE id IN, em blocos), sem passar pelo cache
+    private List<Produto> buscarProdutosNoBanco(List<Long> ids) {
+        List<Produto> produtos = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return produtos;
+        }
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                System.err.println("Falha ao conectar ao banco de dados para reler produtos.");
+                return produtos;
+            }
+            for (int inicio = 0; inicio < ids.size(); inicio += LoteJDBC.TAMANHO_LOTE) {
+                int fim = Math.min(ids.size(), inicio + LoteJDBC.TAMANHO_LOTE);
+                StringBuilder sql = new StringBuilder("SELECT " + COLUNAS + " FROM produtos WHERE id IN (");
+                for (int i = inicio; i < fim; i++) {
+                    sql.append(i == inicio ? "?" : ", ?");
+                }
+                pstmt = conn.prepareStatement(sql.append(')').toString());
+                for (int i = inicio; i < fim; i++) {
+                    pstmt.setLong(i - inicio + 1, ids.get(i));
+                }
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    produtos.add(mapearProduto(rs));
+                }
+                rs.close();
+                rs = null;
+                pstmt.close();
+                pstmt = null;
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro de SQL ao reler produtos: " + e.getMessage());
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement (buscarProdutosNoBanco): " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+        }
+        return produtos;
+    }
+
+    //Retorna o motivo pelo qual o produto não pode entrar no lote, ou null se estiver ok
+    private static String validarParaLote(Produto produto, boolean inserir) {
+        if (produto == null || produto.getNome() == null || produto.getPreco() == null) {
+            return "Produto sem nome ou preço.";
+        }
+        if (!inserir && (produto.getId() == null || produto.getId() <= 0)) {
+            return "ID do produto inválido para atualização.";
+        }
+        return null;
+    }
+
+    /*
+     * Colunas lidas nas consultas, sempre nesta ordem: o mapeamento lê cada coluna pela posição
+     * (COL_*), sem procurar o nome a cada linha, e o SELECT não traz colunas que não são usadas.
+     */
+    static final String COLUNAS = "id, nome, quantidade, preco, disponivel, versao";
+    private static final int COL_ID = 1;
+    private static final int COL_NOME = 2;
+    private static final int COL_QUANTIDADE = 3;
+    private static final int COL_PRECO = 4;
+    private static final int COL_DISPONIVEL = 5;
+    private static final int COL_VERSAO = 6;
+
+    //Converte a linha atual do ResultSet em um objeto Produto (as colunas de COLUNAS, nessa ordem; visível no pacote para o RelatorioEstoque e o JMH)
+    static Produto mapearProduto(ResultSet rs) throws SQLException {
+        Produto produto = new Produto();
+        produto.setId(rs.getLong(COL_ID));
+        produto.setNome(rs.getString(COL_NOME));
+        produto.setQuantidade(rs.getLong(COL_QUANTIDADE));
+        produto.setPreco(rs.getBigDecimal(COL_PRECO));
+        produto.setDisponivel(rs.getBoolean(COL_DISPONIVEL));
+        produto.setVersao(rs.getLong(COL_VERSAO));
+        return produto;
     }
 
     // --- Método Principal para Teste (Opcional) ---
@@ -290,7 +997,7 @@ public class ProdutoDAO {
                 System.out.println("\n4. Atualizando Produto com ID " + produtoEncontrado.getId() + " (preço para 155.00, quantidade para 45):");
                 produtoEncontrado.setPreco(new BigDecimal("155.00"));
                 produtoEncontrado.setQuantidade(45L);
-                if (produtoDAO.atualizarProduto(produtoEncontrado)) {
+                if (produtoDAO.atualizarProduto(produtoEncontrado).isSucesso()) {
                     Produto produtoAtualizado = produtoDAO.buscarProdutoPorId(produtoEncontrado.getId());
                     System.out.println("   Dados após atualização: " + produtoAtualizado);
                 } else {
@@ -307,7 +1014,7 @@ public class ProdutoDAO {
         //Teste de Remover um produto (usando o ID do prod2, se ele foi inserido)
         if (prod2.getId() != null && prod2.getId() > 0) {
             System.out.println("\n5. Removendo Produto com ID " + prod2.getId() + ":");
-            if (produtoDAO.removerProduto(prod2.getId())) {
+            if (produtoDAO.removerProduto(prod2.getId()).isGravado()) {
                 System.out.println("   Produto removido. Verificando lista novamente:");
                 todosProdutos = produtoDAO.listarTodosProdutos();
                  for (Produto p : todosProdutos) {
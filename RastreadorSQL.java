@@ -0,0 +1,499 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rastreamento das instruções SQL executadas pelos DAOs, com log de consultas lentas.
+ *
+ * A Conexao passa cada conexão emprestada do pool por envolver(). Quando a conexão é rastreada,
+ * ela e os Statements/ResultSets criados a partir dela são proxies que registram, para cada
+ * instrução: o SQL, os parâmetros, o tempo de execução, o tempo de leitura das linhas (next())
+ * e o número de linhas. As instruções que passam do limite, ou que dão erro, são gravadas num
+ * arquivo de log rotativo.
+ *
+ * Configuração (propriedades do sistema):
+ * - petstop.sql.rastreamento: "nenhum" (padrão), "amostragem" ou "todos";
+ * - petstop.sql.amostragem: no modo amostragem, rastreia 1 a cada N conexões emprestadas (padrão 100);
+ * - petstop.sql.lenta.ms: limite para a instrução ir para o log (padrão 200; 0 grava todas);
+ * - petstop.sql.ocultarParametros: true grava "?" no lugar dos valores dos parâmetros;
+ * - petstop.sql.log: arquivo do log (padrão petstop-sql-lentas.log), com até
+ *   petstop.sql.log.arquivos cópias antigas de petstop.sql.log.tamanho bytes cada.
+ *
+ * No modo amostragem as conexões não sorteadas são devolvidas sem proxy, então o custo para
+ * elas é só o sorteio. É o modo pensado para ficar ligado em produção.
+ */
+public final class RastreadorSQL {
+
+    public enum Modo {NENHUM, AMOSTRAGEM, TODOS}
+
+    private static final int TAMANHO_MAXIMO_VALOR = 100; //Valores de parâmetro maiores são cortados no log
+
+    private static volatile Modo modo = lerModo(System.getProperty("petstop.sql.rastreamento", "nenhum"));
+    private static volatile int amostragem = Math.max(1, Integer.getInteger("petstop.sql.amostragem", 100));
+    private static volatile long limiteNanos = Long.getLong("petstop.sql.lenta.ms", 200) * 1_000_000L;
+    private static volatile boolean ocultarParametros = Boolean.getBoolean("petstop.sql.ocultarParametros");
+
+    private static final LogRotativo LOG = new LogRotativo(
+            Paths.get(System.getProperty("petstop.sql.log", "petstop-sql-lentas.log")),
+            Long.getLong("petstop.sql.log.tamanho", 5L * 1024 * 1024),
+            Integer.getInteger("petstop.sql.log.arquivos", 3));
+
+    //Contadores
+    private static final LongAdder conexoesRastreadas = new LongAdder();
+    private static final LongAdder instrucoes = new LongAdder();
+    private static final LongAdder lentas = new LongAdder();
+    private static final LongAdder erros = new LongAdder();
+
+    private RastreadorSQL() {
+    }
+
+    private static Modo lerModo(String valor) {
+        try {
+            return Modo.valueOf(valor.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("AVISO: petstop.sql.rastreamento inválido (" + valor + "), rastreamento desligado.");
+            return Modo.NENHUM;
+        }
+    }
+
+    public static Modo getModo() {
+        return modo;
+    }
+
+    public static void setModo(Modo novoModo) {
+        modo = novoModo;
+    }
+
+    public static void setAmostragem(int umaACada) {
+        amostragem = Math.max(1, umaACada);
+    }
+
+    public static void setLimiteMs(long ms) {
+        limiteNanos = ms * 1_000_000L;
+    }
+
+    public static void setOcultarParametros(boolean ocultar) {
+        ocultarParametros = ocultar;
+    }
+
+    /**
+     * Retorna a conexão rastreada, ou a própria conexão se ela não for rastreada
+     * (rastreamento desligado ou não sorteada na amostragem).
+     */
+    public static Connection envolver(Connection conn) {
+        Modo atual = modo;
+        if (conn == null || atual == Modo.NENHUM) return conn;
+        if (atual == Modo.AMOSTRAGEM && ThreadLocalRandom.current().nextInt(amostragem) != 0) return conn;
+        conexoesRastreadas.increment();
+        return (Connection) Proxy.newProxyInstance(RastreadorSQL.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConexaoRastreada(conn));
+    }
+
+    //Chamado quando uma instrução termina (linhas lidas ou ResultSet/Statement fechado)
+    private static void registrar(Execucao execucao) {
+        instrucoes.increment();
+        if (execucao.erro != null) erros.increment();
+        long total = execucao.execucaoNanos + execucao.leituraNanos;
+        if (total < limiteNanos && execucao.erro == null) return;
+        if (execucao.erro == null) lentas.increment();
+        LOG.escrever(execucao.formatar());
+    }
+
+    //Uma linha com os contadores, para o log de encerramento
+    public static String resumo() {
+        return String.format("RastreadorSQL{modo=%s, conexoes=%d, instrucoes=%d, lentas=%d, erros=%d, limite=%dms, log=%s}",
+                modo, conexoesRastreadas.sum(), instrucoes.sum(), lentas.sum(), erros.sum(),
+                limiteNanos / 1_000_000L, LOG.arquivo);
+    }
+
+    public static void encerrar() {
+        LOG.fechar();
+    }
+
+    private static Object chamar(Object alvo, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(alvo, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    //--- Proxies ---
+
+    private static final class ConexaoRastreada implements InvocationHandler {
+        private final Connection alvo;
+
+        ConexaoRastreada(Connection alvo) {
+            this.alvo = alvo;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall": {
+                    PreparedStatement pstmt = (PreparedStatement) chamar(alvo, method, args);
+                    Class<?> tipo = method.getReturnType(); //PreparedStatement ou CallableStatement
+                    return Proxy.newProxyInstance(RastreadorSQL.class.getClassLoader(),
+                            new Class<?>[]{tipo}, new StatementRastreado(pstmt, (String) args[0]));
+                }
+                case "createStatement": {
+                    Statement stmt = (Statement) chamar(alvo, method, args);
+                    return Proxy.newProxyInstance(RastreadorSQL.class.getClassLoader(),
+                            new Class<?>[]{Statement.class}, new StatementRastreado(stmt, null));
+                }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexaoRastreada[" + alvo + "]";
+                default:
+                    return chamar(alvo, method, args);
+            }
+        }
+    }
+
+    private static final class StatementRastreado implements InvocationHandler {
+        private final Statement alvo;
+        private final String sqlPreparado; //null para Statement simples (o SQL vem no execute)
+        private Object[] parametros = new Object[8]; //Índice 0 não é usado (os parâmetros começam em 1)
+        private int maiorParametro;
+        private int itensLote;
+        private String sqlLote;
+        private Execucao pendente; //Consulta cujas linhas ainda estão sendo lidas
+
+        StatementRastreado(Statement alvo, String sqlPreparado) {
+            this.alvo = alvo;
+            this.sqlPreparado = sqlPreparado;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nome = method.getName();
+            //setString(1, ...), setLong(2, ...), setNull(3, Types.X) etc.
+            if (nome.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                guardarParametro((Integer) args[0], "setNull".equals(nome) ? null : args[1]);
+                return chamar(alvo, method, args);
+            }
+            switch (nome) {
+                case "executeQuery":
+                    return executarConsulta(proxy, method, args);
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "execute":
+                    return executar(method, args);
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return executarLote(method, args);
+                case "getResultSet": {
+                    ResultSet rs = (ResultSet) chamar(alvo, method, args);
+                    return rs != null && pendente != null ? envolverResultSet(proxy, rs, pendente) : rs;
+                }
+                case "addBatch":
+                    itensLote++;
+                    if (args != null && args.length == 1) sqlLote = (String) args[0]; //Statement.addBatch(sql)
+                    return chamar(alvo, method, args);
+                case "clearBatch":
+                    itensLote = 0;
+                    return chamar(alvo, method, args);
+                case "clearParameters":
+                    Arrays.fill(parametros, null);
+                    maiorParametro = 0;
+                    return chamar(alvo, method, args);
+                case "close":
+                    concluirPendente();
+                    return chamar(alvo, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return chamar(alvo, method, args);
+            }
+        }
+
+        private void guardarParametro(int indice, Object valor) {
+            if (indice >= parametros.length) {
+                parametros = Arrays.copyOf(parametros, Math.max(indice + 1, parametros.length * 2));
+            }
+            parametros[indice] = valor;
+            maiorParametro = Math.max(maiorParametro, indice);
+        }
+
+        private Execucao novaExecucao(Object[] args) {
+            concluirPendente();
+            String sql = sqlPreparado != null ? sqlPreparado : (args != null && args.length > 0 ? (String) args[0] : "?");
+            String valores = sqlPreparado != null ? formatarParametros(parametros, maiorParametro) : "";
+            return new Execucao(sql, valores);
+        }
+
+        private Object executarConsulta(Object proxy, Method method, Object[] args) throws Throwable {
+            Execucao execucao = novaExecucao(args);
+            long inicio = System.nanoTime();
+            ResultSet rs;
+            try {
+                rs = (ResultSet) chamar(alvo, method, args);
+            } catch (Throwable e) {
+                execucao.execucaoNanos = System.nanoTime() - inicio;
+                execucao.concluir(e);
+                throw e;
+            }
+            execucao.execucaoNanos = System.nanoTime() - inicio;
+            pendente = execucao;
+            return envolverResultSet(proxy, rs, execucao);
+        }
+
+        private Object executar(Method method, Object[] args) throws Throwable {
+            Execucao execucao = novaExecucao(args);
+            long inicio = System.nanoTime();
+            Object resultado;
+            try {
+                resultado = chamar(alvo, method, args);
+            } catch (Throwable e) {
+                execucao.execucaoNanos = System.nanoTime() - inicio;
+                execucao.concluir(e);
+                throw e;
+            }
+            execucao.execucaoNanos = System.nanoTime() - inicio;
+            if (Boolean.TRUE.equals(resultado)) {
+                pendente = execucao; //execute() de uma consulta: as linhas vêm pelo getResultSet()
+            } else {
+                execucao.linhas = resultado instanceof Number ? ((Number) resultado).longValue() : alvo.getUpdateCount();
+                execucao.concluir(null);
+            }
+            return resultado;
+        }
+
+        private Object executarLote(Method method, Object[] args) throws Throwable {
+            concluirPendente();
+            String sql = sqlPreparado != null ? sqlPreparado : sqlLote;
+            Execucao execucao = new Execucao("[lote de " + itensLote + "] " + sql, "");
+            itensLote = 0;
+            long inicio = System.nanoTime();
+            Object resultado;
+            try {
+                resultado = chamar(alvo, method, args);
+            } catch (Throwable e) {
+                execucao.execucaoNanos = System.nanoTime() - inicio;
+                execucao.concluir(e);
+                throw e;
+            }
+            execucao.execucaoNanos = System.nanoTime() - inicio;
+            long linhas = 0;
+            if (resultado instanceof int[]) {
+                for (int n : (int[]) resultado) linhas += Math.max(0, n); //SUCCESS_NO_INFO é negativo
+            } else if (resultado instanceof long[]) {
+                for (long n : (long[]) resultado) linhas += Math.max(0, n);
+            }
+            execucao.linhas = linhas;
+            execucao.concluir(null);
+            return resultado;
+        }
+
+        private void concluirPendente() {
+            if (pendente != null) {
+                pendente.concluir(null);
+                pendente = null;
+            }
+        }
+    }
+
+    private static Object envolverResultSet(Object statement, ResultSet rs, Execucao execucao) {
+        return Proxy.newProxyInstance(RastreadorSQL.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new ResultSetRastreado(rs, statement, execucao));
+    }
+
+    private static final class ResultSetRastreado implements InvocationHandler {
+        private final ResultSet alvo;
+        private final Object statement;
+        private final Execucao execucao;
+
+        ResultSetRastreado(ResultSet alvo, Object statement, Execucao execucao) {
+            this.alvo = alvo;
+            this.statement = statement;
+            this.execucao = execucao;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next": {
+                    long inicio = System.nanoTime();
+                    boolean temLinha;
+                    try {
+                        temLinha = alvo.next();
+                    } catch (SQLException e) {
+                        execucao.leituraNanos += System.nanoTime() - inicio;
+                        execucao.concluir(e);
+                        throw e;
+                    }
+                    execucao.leituraNanos += System.nanoTime() - inicio;
+                    if (temLinha) {
+                        execucao.linhas++;
+                    } else {
+                        execucao.concluir(null);
+                    }
+                    return temLinha;
+                }
+                case "close":
+                    execucao.concluir(null);
+                    return chamar(alvo, method, args);
+                case "getStatement":
+                    return statement;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return chamar(alvo, method, args);
+            }
+        }
+    }
+
+    //--- Registro de uma instrução ---
+
+    private static final class Execucao {
+        final String sql;
+        final String parametros;
+        final String thread = Thread.currentThread().getName();
+        long execucaoNanos;
+        long leituraNanos;
+        long linhas;
+        Throwable erro;
+        private boolean concluida;
+
+        Execucao(String sql, String parametros) {
+            this.sql = sql;
+            this.parametros = parametros;
+        }
+
+        void concluir(Throwable falha) {
+            if (concluida) return;
+            concluida = true;
+            erro = falha;
+            registrar(this);
+        }
+
+        String formatar() {
+            StringBuilder sb = new StringBuilder(160 + sql.length());
+            sb.append(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS)).append(" [").append(thread).append("] ");
+            sb.append(String.format(Locale.ROOT, "%.1f ms (execução %.1f ms, leitura %.1f ms, %d linhas) ",
+                    (execucaoNanos + leituraNanos) / 1e6, execucaoNanos / 1e6, leituraNanos / 1e6, linhas));
+            if (erro != null) sb.append("ERRO ").append(erro.getMessage()).append(' ');
+            sb.append(sql.replaceAll("\\s+", " ").trim());
+            if (!parametros.isEmpty()) sb.append(" | parâmetros: ").append(parametros);
+            return sb.toString();
+        }
+    }
+
+    private static String formatarParametros(Object[] parametros, int quantidade) {
+        if (quantidade == 0) return "";
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 1; i <= quantidade; i++) {
+            if (i > 1) sb.append(", ");
+            Object valor = parametros[i];
+            if (ocultarParametros) {
+                sb.append('?');
+            } else if (valor == null) {
+                sb.append("NULL");
+            } else if (valor instanceof byte[]) {
+                sb.append('<').append(((byte[]) valor).length).append(" bytes>");
+            } else if (valor instanceof CharSequence) {
+                String texto = valor.toString();
+                if (texto.length() > TAMANHO_MAXIMO_VALOR) texto = texto.substring(0, TAMANHO_MAXIMO_VALOR) + "...";
+                sb.append('\'').append(texto).append('\'');
+            } else {
+                sb.append(valor);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Arquivo de log que, ao passar do tamanho máximo, é renomeado para .1 (o .1 vira .2 e
+     * assim por diante, descartando o mais antigo).
+     */
+    private static final class LogRotativo {
+        final Path arquivo;
+        private final long tamanhoMaximo;
+        private final int copias;
+        private BufferedWriter saida;
+        private long tamanho;
+
+        LogRotativo(Path arquivo, long tamanhoMaximo, int copias) {
+            this.arquivo = arquivo;
+            this.tamanhoMaximo = tamanhoMaximo;
+            this.copias = Math.max(0, copias);
+        }
+
+        synchronized void escrever(String linha) {
+            try {
+                if (saida == null) abrir();
+                byte[] bytes = (linha + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+                if (tamanho > 0 && tamanho + bytes.length > tamanhoMaximo) {
+                    rotacionar();
+                }
+                saida.write(linha);
+                saida.newLine();
+                saida.flush();
+                tamanho += bytes.length;
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar o log de SQL lento em " + arquivo + ": " + e.getMessage());
+            }
+        }
+
+        private void abrir() throws IOException {
+            saida = Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            tamanho = Files.size(arquivo);
+        }
+
+        private void rotacionar() throws IOException {
+            saida.close();
+            if (copias == 0) {
+                Files.deleteIfExists(arquivo);
+            } else {
+                for (int i = copias - 1; i >= 1; i--) {
+                    Path antigo = arquivo.resolveSibling(arquivo.getFileName() + "." + i);
+                    if (Files.exists(antigo)) {
+                        Files.move(antigo, arquivo.resolveSibling(arquivo.getFileName() + "." + (i + 1)),
+                                StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                Files.move(arquivo, arquivo.resolveSibling(arquivo.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            abrir();
+        }
+
+        synchronized void fechar() {
+            if (saida == null) return;
+            try {
+                saida.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar o log de SQL lento: " + e.getMessage());
+            }
+            saida = null;
+        }
+    }
+}
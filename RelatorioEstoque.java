@@ -0,0 +1,379 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Relatórios de estoque: valor total (quantidade * preço), produtos sem estoque
+ * (disponivel = false) e os N produtos de maior valor em estoque.
+ *
+ * gerar() calcula tudo no banco (SUM/COUNT e ORDER BY ... LIMIT), trazendo só o resultado.
+ * Sem banco, ou sobre um catálogo já carregado, gerarEmMemoria() percorre uma cópia do
+ * CatalogoProdutos em paralelo (fork-join), com os valores em centavos acumulados em 128
+ * bits: o total é exato e nenhum BigDecimal é criado por produto.
+ */
+public class RelatorioEstoque {
+
+    public static final int TOP_PADRAO = 10;
+    public static final int LIMITE_SEM_ESTOQUE_PADRAO = 50;
+
+    //Valor em estoque de um produto
+    public static final class ItemValor {
+        private final long id;
+        private final String nome;
+        private final long quantidade;
+        private final BigDecimal preco;
+        private final BigDecimal valor;
+
+        ItemValor(long id, String nome, long quantidade, BigDecimal preco, BigDecimal valor) {
+            this.id = id;
+            this.nome = nome;
+            this.quantidade = quantidade;
+            this.preco = preco;
+            this.valor = valor;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+
+        public long getQuantidade() {
+            return quantidade;
+        }
+
+        public BigDecimal getPreco() {
+            return preco;
+        }
+
+        public BigDecimal getValor() {
+            return valor;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%6d  %-40s %8d x %10s = %14s", id, nome, quantidade, preco.toPlainString(), valor.toPlainString());
+        }
+    }
+
+    public static final class Relatorio {
+        private final String origem; //"banco" ou "memória"
+        private final long produtos;
+        private final long unidades;
+        private final BigDecimal valorTotal;
+        private final long semEstoque;
+        private final List<ItemValor> maioresValores;
+        private final List<ItemValor> listaSemEstoque;
+        private long nanos;
+
+        Relatorio(String origem, long produtos, long unidades, BigDecimal valorTotal, long semEstoque,
+                  List<ItemValor> maioresValores, List<ItemValor> listaSemEstoque) {
+            this.origem = origem;
+            this.produtos = produtos;
+            this.unidades = unidades;
+            this.valorTotal = valorTotal;
+            this.semEstoque = semEstoque;
+            this.maioresValores = maioresValores;
+            this.listaSemEstoque = listaSemEstoque;
+        }
+
+        public String getOrigem() {
+            return origem;
+        }
+
+        public long getProdutos() {
+            return produtos;
+        }
+
+        public long getUnidades() {
+            return unidades;
+        }
+
+        public BigDecimal getValorTotal() {
+            return valorTotal;
+        }
+
+        //Total de produtos sem estoque; getListaSemEstoque() traz só os primeiros por nome
+        public long getSemEstoque() {
+            return semEstoque;
+        }
+
+        public List<ItemValor> getMaioresValores() {
+            return maioresValores;
+        }
+
+        public List<ItemValor> getListaSemEstoque() {
+            return listaSemEstoque;
+        }
+
+        public long getTempoNanos() {
+            return nanos;
+        }
+
+        //Texto do relatório, para o console ou um arquivo
+        public String formatar() {
+            StringBuilder sb = new StringBuilder();
+            String nl = System.lineSeparator();
+            sb.append("=== Relatório de estoque (").append(origem).append(", ")
+              .append(String.format("%,.1f ms", nanos / 1_000_000.0)).append(") ===").append(nl);
+            sb.append(String.format("Produtos: %,d   Unidades: %,d   Valor total: R$ %s%n", produtos, unidades, valorTotal.toPlainString()));
+            sb.append(String.format("Sem estoque (disponivel = false): %,d%n", semEstoque));
+            sb.append(nl).append("Maiores valores em estoque:").append(nl);
+            for (ItemValor item : maioresValores) {
+                sb.append("  ").append(item).append(nl);
+            }
+            if (!listaSemEstoque.isEmpty()) {
+                sb.append(nl).append("Sem estoque").append(semEstoque > listaSemEstoque.size()
+                        ? " (primeiros " + listaSemEstoque.size() + " por nome)" : "").append(':').append(nl);
+                for (ItemValor item : listaSemEstoque) {
+                    sb.append("  ").append(item).append(nl);
+                }
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Relatorio{origem=%s, produtos=%d, unidades=%d, valorTotal=%s, semEstoque=%d}",
+                    origem, produtos, unidades, valorTotal.toPlainString(), semEstoque);
+        }
+    }
+
+    //Sem estoque: disponivel false ou nulo (o mapeamento do DAO lê nulo como false)
+    private static final String SQL_TOTAIS = "SELECT COUNT(*), COALESCE(SUM(quantidade), 0), COALESCE(SUM(quantidade * preco), 0), "
+            + "COALESCE(SUM(CASE WHEN disponivel THEN 0 ELSE 1 END), 0) FROM produtos";
+    private static final String SQL_MAIORES = "SELECT " + ProdutoDAO.COLUNAS + ", quantidade * preco AS valor "
+            + "FROM produtos ORDER BY valor DESC, id ASC LIMIT ?";
+    private static final String SQL_SEM_ESTOQUE = "SELECT " + ProdutoDAO.COLUNAS + " FROM produtos "
+            + "WHERE NOT COALESCE(disponivel, FALSE) ORDER BY nome ASC, id ASC LIMIT ?";
+
+    private final CatalogoProdutos catalogo; //Usado se o banco não responder; pode ser null
+
+    public RelatorioEstoque(CatalogoProdutos catalogo) {
+        this.catalogo = catalogo;
+    }
+
+    /**
+     * Gera o relatório no banco; se não conseguir e houver catálogo, gera sobre ele.
+     * @ return O relatório, ou null se nenhum dos dois estiver disponível.
+     */
+    public Relatorio gerar(int top, int limiteSemEstoque) {
+        Relatorio relatorio = gerarNoBanco(top, limiteSemEstoque);
+        if (relatorio == null && catalogo != null) {
+            System.err.println("AVISO: Relatório de estoque gerado a partir do catálogo em memória.");
+            relatorio = gerarEmMemoria(catalogo.instantaneo(), top, limiteSemEstoque);
+        }
+        return relatorio;
+    }
+
+    /**
+     * Calcula os totais e as listas no banco, numa conexão só (três consultas).
+     * @ return O relatório, ou null em caso de erro.
+     */
+    public Relatorio gerarNoBanco(int top, int limiteSemEstoque) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        long inicio = System.nanoTime();
+
+        Metricas.Medicao medicao = Metricas.iniciar("RelatorioEstoque.gerarNoBanco");
+        try {
+            conn = Conexao.conectar();
+            if (conn == null) {
+                medicao.erro();
+                System.err.println("Falha ao conectar ao banco de dados para gerar o relatório de estoque.");
+                return null;
+            }
+            pstmt = conn.prepareStatement(SQL_TOTAIS);
+            rs = pstmt.executeQuery();
+            rs.next();
+            long produtos = rs.getLong(1);
+            long unidades = rs.getLong(2);
+            BigDecimal valorTotal = rs.getBigDecimal(3).setScale(2);
+            long semEstoque = rs.getLong(4);
+            rs.close();
+            pstmt.close();
+
+            List<ItemValor> maiores = new ArrayList<>(top);
+            pstmt = conn.prepareStatement(SQL_MAIORES);
+            pstmt.setInt(1, top);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                Produto produto = ProdutoDAO.mapearProduto(rs);
+                maiores.add(new ItemValor(produto.getId(), produto.getNome(), produto.getQuantidade(),
+                        produto.getPreco(), rs.getBigDecimal("valor").setScale(2)));
+            }
+            rs.close();
+            pstmt.close();
+
+            List<ItemValor> listaSemEstoque = new ArrayList<>();
+            pstmt = conn.prepareStatement(SQL_SEM_ESTOQUE);
+            pstmt.setInt(1, limiteSemEstoque);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                listaSemEstoque.add(item(ProdutoDAO.mapearProduto(rs)));
+            }
+
+            Relatorio relatorio = new Relatorio("banco", produtos, unidades, valorTotal, semEstoque, maiores, listaSemEstoque);
+            relatorio.nanos = System.nanoTime() - inicio;
+            return relatorio;
+        } catch (SQLException e) {
+            medicao.erro();
+            System.err.println("Erro de SQL ao gerar o relatório de estoque: " + e.getMessage());
+            return null;
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar ResultSet ou PreparedStatement (gerarNoBanco): " + e.getMessage());
+            }
+            Conexao.fechar(conn);
+            medicao.fim(1);
+        }
+    }
+
+    private static ItemValor item(Produto produto) {
+        return new ItemValor(produto.getId(), produto.getNome(), produto.getQuantidade(), produto.getPreco(),
+                produto.getPreco().multiply(BigDecimal.valueOf(produto.getQuantidade())).setScale(2));
+    }
+
+    // --- Em memória ---
+
+    /**
+     * Gera o relatório sobre uma cópia do catálogo, dividindo as posições entre as threads do
+     * ForkJoinPool em uso (o comum, ou o pool de quem chamou, se for chamado dentro de um).
+     */
+    public static Relatorio gerarEmMemoria(CatalogoProdutos.Instantaneo dados, int top, int limiteSemEstoque) {
+        long inicio = System.nanoTime();
+        Acumulador total = IntStream.range(0, dados.getTamanho()).parallel()
+                .collect(() -> new Acumulador(dados, top, limiteSemEstoque), Acumulador::adicionar, Acumulador::juntar);
+
+        List<ItemValor> maiores = total.itens(total.maiores, porValor(dados).reversed());
+        List<ItemValor> listaSemEstoque = total.itens(total.semEstoque, porNome(dados));
+        BigDecimal valorTotal = new BigDecimal(total.valorTotal(), 2);
+        Relatorio relatorio = new Relatorio("memória", dados.getTamanho(), total.unidades, valorTotal, total.contagemSemEstoque,
+                maiores, listaSemEstoque);
+        relatorio.nanos = System.nanoTime() - inicio;
+        return relatorio;
+    }
+
+    //Maior valor (quantidade * centavos, comparado em 128 bits) por último; empate: menor ID por último
+    private static Comparator<Integer> porValor(CatalogoProdutos.Instantaneo dados) {
+        return (a, b) -> {
+            long qa = dados.quantidades[a], pa = dados.precosCentavos[a];
+            long qb = dados.quantidades[b], pb = dados.precosCentavos[b];
+            int c = Long.compare(Math.multiplyHigh(qa, pa), Math.multiplyHigh(qb, pb));
+            if (c == 0) c = Long.compareUnsigned(qa * pa, qb * pb);
+            return c != 0 ? c : Long.compare(dados.ids[b], dados.ids[a]);
+        };
+    }
+
+    /*
+     * Nome e depois ID, como o ORDER BY nome, id do banco. Compara os nomes sem acentos e em
+     * minúsculas, como a collation padrão do MySQL 8 (utf8mb4_0900_ai_ci) faz com as letras;
+     * pontuação e símbolos podem sair em outra ordem. Um Collator daria a mesma ordem para as
+     * letras, mas deixava o relatório em memória umas dez vezes mais lento.
+     */
+    private static Comparator<Integer> porNome(CatalogoProdutos.Instantaneo dados) {
+        return (a, b) -> {
+            int c = IndiceBusca.normalizar(dados.nomes[a]).compareTo(IndiceBusca.normalizar(dados.nomes[b]));
+            return c != 0 ? c : Long.compare(dados.ids[a], dados.ids[b]);
+        };
+    }
+
+    //Resultado parcial de um pedaço das posições; os pedaços são juntados dois a dois
+    private static final class Acumulador {
+        private final CatalogoProdutos.Instantaneo dados;
+        private final int top;
+        private final int limiteSemEstoque;
+        private final Comparator<Integer> porValor;
+        private final Comparator<Integer> porNomeInvertido;
+
+        private long unidades;
+        private long valorAlto; //Soma de quantidade * centavos em 128 bits (alto com sinal, baixo sem sinal)
+        private long valorBaixo;
+        private long contagemSemEstoque;
+        private final PriorityQueue<Integer> maiores;    //Os top maiores valores; o menor deles na cabeça
+        private final PriorityQueue<Integer> semEstoque; //Os primeiros por nome; o último deles na cabeça
+
+        Acumulador(CatalogoProdutos.Instantaneo dados, int top, int limiteSemEstoque) {
+            this.dados = dados;
+            this.top = top;
+            this.limiteSemEstoque = limiteSemEstoque;
+            this.porValor = porValor(dados);
+            this.porNomeInvertido = porNome(dados).reversed();
+            this.maiores = new PriorityQueue<>(top + 1, porValor);
+            this.semEstoque = new PriorityQueue<>(limiteSemEstoque + 1, porNomeInvertido);
+        }
+
+        void adicionar(int i) {
+            long quantidade = dados.quantidades[i];
+            long centavos = dados.precosCentavos[i];
+            unidades += quantidade;
+            somarValor(Math.multiplyHigh(quantidade, centavos), quantidade * centavos);
+            manter(maiores, i, top, porValor);
+            if (!dados.disponiveis[i]) {
+                contagemSemEstoque++;
+                manter(semEstoque, i, limiteSemEstoque, porNomeInvertido);
+            }
+        }
+
+        void juntar(Acumulador outro) {
+            unidades += outro.unidades;
+            somarValor(outro.valorAlto, outro.valorBaixo);
+            contagemSemEstoque += outro.contagemSemEstoque;
+            for (Integer i : outro.maiores) {
+                manter(maiores, i, top, porValor);
+            }
+            for (Integer i : outro.semEstoque) {
+                manter(semEstoque, i, limiteSemEstoque, porNomeInvertido);
+            }
+        }
+
+        private void somarValor(long alto, long baixo) {
+            long soma = valorBaixo + baixo;
+            long vaiUm = Long.compareUnsigned(soma, valorBaixo) < 0 ? 1 : 0;
+            valorBaixo = soma;
+            valorAlto += alto + vaiUm;
+        }
+
+        //Guarda i se ele vier depois da cabeça do heap (ou se o heap ainda não estiver cheio)
+        private static void manter(PriorityQueue<Integer> heap, int i, int limite, Comparator<Integer> ordem) {
+            if (limite <= 0) return;
+            if (heap.size() < limite) {
+                heap.add(i);
+            } else if (ordem.compare(i, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+
+        BigInteger valorTotal() {
+            return BigInteger.valueOf(valorAlto).shiftLeft(64)
+                    .add(new BigInteger(Long.toUnsignedString(valorBaixo)));
+        }
+
+        List<ItemValor> itens(PriorityQueue<Integer> heap, Comparator<Integer> ordem) {
+            List<Integer> posicoes = new ArrayList<>(heap);
+            posicoes.sort(ordem);
+            List<ItemValor> itens = new ArrayList<>(posicoes.size());
+            for (int i : posicoes) {
+                BigDecimal preco = BigDecimal.valueOf(dados.precosCentavos[i], 2);
+                itens.add(new ItemValor(dados.ids[i], dados.nomes[i], dados.quantidades[i], preco,
+                        preco.multiply(BigDecimal.valueOf(dados.quantidades[i]))));
+            }
+            return itens;
+        }
+    }
+}
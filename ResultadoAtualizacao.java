@@ -0,0 +1,79 @@
+/**
+ * Resultado de atualizarPet/atualizarProduto, que usam controle de concorrência otimista:
+ * o UPDATE só é aplicado se a coluna versao do registro ainda for a que foi lida.
+ *
+ * Em CONFLITO, getAtual() traz o registro como está agora no banco (com a versão nova), para
+ * a tela mesclar com o que o usuário digitou e tentar de novo. Nenhum lock fica preso enquanto
+ * o usuário edita.
+ */
+public class ResultadoAtualizacao<T> {
+
+    public enum Situacao {
+        ATUALIZADO,     //Gravado; a versão do objeto enviado foi incrementada
+        CONFLITO,       //Outro usuário alterou o registro depois da leitura
+        NAO_ENCONTRADO, //O registro não existe mais
+        INVALIDO,       //Dados inválidos (ex.: sem ID); nada foi enviado ao banco
+        PENDENTE,       //Sem conexão: guardado no DiarioOffline, enviado ao banco quando a conexão voltar
+        ERRO            //Sem conexão ou erro de SQL
+    }
+
+    private final Situacao situacao;
+    private final T atual;
+    private final String mensagem;
+
+    private ResultadoAtualizacao(Situacao situacao, T atual, String mensagem) {
+        this.situacao = situacao;
+        this.atual = atual;
+        this.mensagem = mensagem;
+    }
+
+    public static <T> ResultadoAtualizacao<T> atualizado(T gravado) {
+        return new ResultadoAtualizacao<>(Situacao.ATUALIZADO, gravado, null);
+    }
+
+    public static <T> ResultadoAtualizacao<T> conflito(T atual) {
+        return new ResultadoAtualizacao<>(Situacao.CONFLITO, atual, "Registro alterado por outro usuário.");
+    }
+
+    public static <T> ResultadoAtualizacao<T> naoEncontrado() {
+        return new ResultadoAtualizacao<>(Situacao.NAO_ENCONTRADO, null, LoteJDBC.REGISTRO_NAO_ENCONTRADO);
+    }
+
+    public static <T> ResultadoAtualizacao<T> pendente(T enviado) {
+        return new ResultadoAtualizacao<>(Situacao.PENDENTE, enviado, "Sem conexão com o banco de dados: a alteração será gravada quando a conexão voltar.");
+    }
+
+    public static <T> ResultadoAtualizacao<T> invalido(String mensagem) {
+        return new ResultadoAtualizacao<>(Situacao.INVALIDO, null, mensagem);
+    }
+
+    public static <T> ResultadoAtualizacao<T> erro(String mensagem) {
+        return new ResultadoAtualizacao<>(Situacao.ERRO, null, mensagem);
+    }
+
+    public Situacao getSituacao() {
+        return situacao;
+    }
+
+    public boolean isSucesso() {
+        return situacao == Situacao.ATUALIZADO;
+    }
+
+    public boolean isConflito() {
+        return situacao == Situacao.CONFLITO;
+    }
+
+    //Em ATUALIZADO, o objeto gravado; em CONFLITO, o registro atual do banco; em PENDENTE, o objeto enviado; senão null
+    public T getAtual() {
+        return atual;
+    }
+
+    public String getMensagem() {
+        return mensagem;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoAtualizacao{" + situacao + (mensagem != null ? ", " + mensagem : "") + '}';
+    }
+}
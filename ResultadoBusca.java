@@ -0,0 +1,37 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de uma busca no IndiceBusca: os primeiros registros na ordem do índice (no máximo
+ * o limite pedido) e quantos registros atendem à busca ao todo.
+ */
+public class ResultadoBusca<T> {
+
+    private final List<T> registros;
+    private final int total;
+
+    public ResultadoBusca(List<T> registros, int total) {
+        this.registros = Collections.unmodifiableList(registros);
+        this.total = total;
+    }
+
+    //Os registros retornados, já ordenados
+    public List<T> getRegistros() {
+        return registros;
+    }
+
+    //Quantos registros atendem à busca, inclusive os que passaram do limite
+    public int getTotal() {
+        return total;
+    }
+
+    //true se há mais registros do que os retornados (a busca deveria ser refinada)
+    public boolean isTruncado() {
+        return total > registros.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoBusca{registros=" + registros.size() + ", total=" + total + "}";
+    }
+}
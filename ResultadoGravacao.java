@@ -0,0 +1,19 @@
+/**
+ * Resultado de adicionarPet/adicionarProduto e removerPet/removerProduto.
+ *
+ * Em PENDENTE não havia conexão: a gravação foi guardada no DiarioOffline e só chega ao banco
+ * quando a conexão voltar. Até lá o registro incluído não tem ID, e o removido continua no banco.
+ */
+public enum ResultadoGravacao {
+    GRAVADO,  //Gravado no banco
+    PENDENTE, //Sem conexão: guardado no DiarioOffline, enviado ao banco quando a conexão voltar
+    FALHOU;   //Erro de SQL, registro não encontrado, ou sem conexão e sem o diário
+
+    public boolean isGravado() {
+        return this == GRAVADO;
+    }
+
+    public boolean isPendente() {
+        return this == PENDENTE;
+    }
+}
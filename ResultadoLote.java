@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de uma operação em lote (ex.: ProdutoDAO.adicionarProdutos).
+ * Uma linha com erro não cancela as demais: cada falha é registrada com a
+ * posição do item na lista enviada e a mensagem do banco.
+ */
+public class ResultadoLote {
+
+    //Uma linha do lote que não foi gravada
+    public static class Falha {
+        private final int indice;
+        private final String mensagem;
+
+        public Falha(int indice, String mensagem) {
+            this.indice = indice;
+            this.mensagem = mensagem;
+        }
+
+        //Posição do item na lista enviada ao DAO
+        public int getIndice() {
+            return indice;
+        }
+
+        public String getMensagem() {
+            return mensagem;
+        }
+
+        @Override
+        public String toString() {
+            return "Falha{indice=" + indice + ", mensagem='" + mensagem + "'}";
+        }
+    }
+
+    private final int total;
+    private final Long[] idsGerados; //Mesma posição da lista enviada; null se a linha falhou ou não gera ID
+    private final boolean[] falhou; //Mesma posição da lista enviada
+    private final List<Falha> falhas = new ArrayList<>();
+    private boolean confirmado;
+
+    public ResultadoLote(int total) {
+        this.total = total;
+        this.idsGerados = new Long[total];
+        this.falhou = new boolean[total];
+    }
+
+    void registrarId(int indice, long id) {
+        idsGerados[indice] = id;
+    }
+
+    void registrarFalha(int indice, String mensagem) {
+        falhas.add(new Falha(indice, mensagem));
+        falhou[indice] = true;
+    }
+
+    //Registra a mesma falha para todas as linhas de [inicio, fim)
+    void registrarFalhas(int inicio, int fim, String mensagem) {
+        for (int i = inicio; i < fim; i++) {
+            falhas.add(new Falha(i, mensagem));
+            falhou[i] = true;
+        }
+    }
+
+    void registrarConfirmacao() {
+        confirmado = true;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getSucessos() {
+        return total - falhas.size();
+    }
+
+    public List<Falha> getFalhas() {
+        return Collections.unmodifiableList(falhas);
+    }
+
+    //Retorna o ID gerado para o item na posição informada, ou null se ele não foi inserido
+    public Long getIdGerado(int indice) {
+        return idsGerados[indice];
+    }
+
+    //Retorna se o item na posição informada foi gravado
+    public boolean isSucesso(int indice) {
+        return !falhou[indice];
+    }
+
+    public boolean isSucessoTotal() {
+        return falhas.isEmpty();
+    }
+
+    /**
+     * Retorna se o banco confirmou o lote (commit feito, ou lote já gravado antes): as falhas são
+     * só das linhas listadas. Se false, a transação foi desfeita ou a resposta do commit se perdeu,
+     * e não dá para saber se o lote foi gravado; reenvie com o mesmo LoteJDBC.Marcador.
+     */
+    public boolean isConfirmado() {
+        return confirmado;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{total=" + total + ", sucessos=" + getSucessos() + ", falhas=" + falhas.size() + '}';
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Contagens dos animais cadastrados para o painel de resumo: total por espécie, vacinados e
+ * não vacinados, e quantos há em cada faixa de idade.
+ *
+ * Os totais são lidos do banco uma única vez (na abertura da aplicação) e depois mantidos pelo
+ * PetDAO: cada inserção, atualização ou remoção só tira dos contadores os valores antigos do
+ * pet e soma os novos, sem consultar o banco. Para isso o resumo guarda, de cada pet, só a
+ * espécie, a idade e se é vacinado.
+ *
+ * Espécies que diferem só por maiúsculas ou acentos ("Cão", "cao") são contadas juntas; o nome
+ * exibido é o do primeiro pet contado.
+ */
+public class ResumoAnimais implements PetDAO.Ouvinte {
+
+    //Idade inicial de cada faixa do histograma; a última não tem fim
+    private static final int[] FAIXAS_IDADE = {0, 1, 3, 6, 10, 15};
+    private static final String SEM_ESPECIE = "(sem espécie)";
+
+    private final Map<Long, Contado> contados = new HashMap<>(); //ID -> valores do pet que estão nos contadores
+    private final Map<String, Contagem> porEspecie = new HashMap<>(); //Espécie normalizada -> contagem
+    private final Contagem geral = new Contagem("Todas");
+
+    private volatile boolean carregado;
+    private boolean carregando; //Protegido por synchronized(this)
+    private final Set<Long> removidosDuranteCarga = new HashSet<>();
+    private final Object carga = new Object(); //Uma carga por vez
+
+    //Rótulos das faixas de idade, na ordem das colunas de Linha.getFaixas(): "0", "1-2", ..., "15+"
+    public static String[] getRotulosFaixas() {
+        String[] rotulos = new String[FAIXAS_IDADE.length];
+        for (int i = 0; i < FAIXAS_IDADE.length; i++) {
+            int inicio = FAIXAS_IDADE[i];
+            if (i == FAIXAS_IDADE.length - 1) {
+                rotulos[i] = inicio + "+";
+            } else {
+                int fim = FAIXAS_IDADE[i + 1] - 1;
+                rotulos[i] = inicio == fim ? String.valueOf(inicio) : inicio + "-" + fim;
+            }
+        }
+        return rotulos;
+    }
+
+    public boolean isCarregado() {
+        return carregado;
+    }
+
+    /**
+     * Conta todos os pets do banco na primeira chamada; as demais retornam logo.
+     * Gravações feitas enquanto a carga acontece têm prioridade sobre o que a carga leu.
+     */
+    public void carregarSeNecessario(PetDAO dao) {
+        if (carregado) return;
+        synchronized (carga) {
+            if (carregado) return;
+            long inicio = System.currentTimeMillis();
+            synchronized (this) {
+                carregando = true;
+            }
+            try {
+                long lidos = dao.percorrerTodosPets(this::contarDaCarga);
+                if (lidos < 0) {
+                    System.err.println("Erro ao carregar o resumo dos animais: os totais podem estar incompletos.");
+                    return; //Tenta de novo na próxima chamada
+                }
+                carregado = true;
+                System.out.println("Resumo dos animais carregado: " + lidos + " pets em "
+                        + (System.currentTimeMillis() - inicio) + " ms.");
+            } finally {
+                synchronized (this) {
+                    carregando = false;
+                    removidosDuranteCarga.clear();
+                }
+            }
+        }
+    }
+
+    private synchronized void contarDaCarga(Pet pet) {
+        Long id = pet.getId();
+        //Se o pet foi gravado ou removido durante a carga, o que a carga leu está desatualizado
+        if (id == null || contados.containsKey(id) || removidosDuranteCarga.contains(id)) return;
+        Contado novo = new Contado(pet);
+        contados.put(id, novo);
+        somar(novo, 1);
+    }
+
+    //--- PetDAO.Ouvinte ---
+
+    @Override
+    public synchronized void petGravado(Pet pet) {
+        if (pet.getId() == null) return;
+        Contado novo = new Contado(pet);
+        Contado antigo = contados.put(pet.getId(), novo);
+        if (antigo != null) somar(antigo, -1);
+        somar(novo, 1);
+    }
+
+    @Override
+    public synchronized void petRemovido(long id) {
+        Contado antigo = contados.remove(id);
+        if (antigo != null) somar(antigo, -1);
+        if (carregando) removidosDuranteCarga.add(id);
+    }
+
+    private void somar(Contado pet, int sinal) {
+        geral.somar(pet, sinal);
+        Contagem contagem = porEspecie.get(pet.chave);
+        if (contagem == null) {
+            if (sinal < 0) return;
+            contagem = new Contagem(pet.especie);
+            porEspecie.put(pet.chave, contagem);
+        }
+        contagem.somar(pet, sinal);
+        if (contagem.total == 0) porEspecie.remove(pet.chave);
+    }
+
+    private static int faixa(int idade) {
+        int i = FAIXAS_IDADE.length - 1;
+        while (i > 0 && idade < FAIXAS_IDADE[i]) {
+            i--;
+        }
+        return i;
+    }
+
+    //--- Leitura ---
+
+    /**
+     * Cópia dos contadores para exibir. Custa o número de espécies, não o de pets.
+     * @ return As espécies, da mais numerosa para a menos, e o total geral.
+     */
+    public synchronized Painel instantaneo() {
+        List<Linha> especies = new ArrayList<>(porEspecie.size());
+        for (Contagem contagem : porEspecie.values()) {
+            especies.add(contagem.copiar());
+        }
+        especies.sort((a, b) -> a.total != b.total ? Long.compare(b.total, a.total)
+                : String.CASE_INSENSITIVE_ORDER.compare(a.especie, b.especie));
+        return new Painel(especies, geral.copiar(), carregado);
+    }
+
+    public synchronized long getTotal() {
+        return geral.total;
+    }
+
+    //Valores do pet que entraram nos contadores
+    private static final class Contado {
+        private final String chave;
+        private final String especie;
+        private final int faixa;
+        private final boolean vacinado;
+
+        Contado(Pet pet) {
+            String especie = pet.getEspecie() == null ? "" : pet.getEspecie().trim();
+            this.especie = especie.isEmpty() ? SEM_ESPECIE : especie;
+            this.chave = IndiceBusca.normalizar(this.especie);
+            this.faixa = faixa(pet.getIdade());
+            this.vacinado = pet.isVacinado();
+        }
+    }
+
+    private static final class Contagem {
+        private final String especie;
+        private long total;
+        private long vacinados;
+        private final long[] faixas = new long[FAIXAS_IDADE.length];
+
+        Contagem(String especie) {
+            this.especie = especie;
+        }
+
+        void somar(Contado pet, int sinal) {
+            total += sinal;
+            if (pet.vacinado) vacinados += sinal;
+            faixas[pet.faixa] += sinal;
+        }
+
+        Linha copiar() {
+            return new Linha(especie, total, vacinados, faixas.clone());
+        }
+    }
+
+    /** Contagem de uma espécie (ou de todas) no momento do instantâneo. */
+    public static final class Linha {
+        private final String especie;
+        private final long total;
+        private final long vacinados;
+        private final long[] faixas;
+
+        private Linha(String especie, long total, long vacinados, long[] faixas) {
+            this.especie = especie;
+            this.total = total;
+            this.vacinados = vacinados;
+            this.faixas = faixas;
+        }
+
+        public String getEspecie() {
+            return especie;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getVacinados() {
+            return vacinados;
+        }
+
+        public long getNaoVacinados() {
+            return total - vacinados;
+        }
+
+        //Quantidade em cada faixa de idade, na ordem de getRotulosFaixas()
+        public long[] getFaixas() {
+            return faixas.clone();
+        }
+
+        @Override
+        public String toString() {
+            return especie + ": " + total + " (vacinados " + vacinados + ", não vacinados " + getNaoVacinados()
+                    + ", por idade " + Arrays.toString(faixas) + ")";
+        }
+    }
+
+    public static final class Painel {
+        private final List<Linha> especies;
+        private final Linha geral;
+        private final boolean carregado;
+
+        private Painel(List<Linha> especies, Linha geral, boolean carregado) {
+            this.especies = Collections.unmodifiableList(especies);
+            this.geral = geral;
+            this.carregado = carregado;
+        }
+
+        public List<Linha> getEspecies() {
+            return especies;
+        }
+
+        public Linha getGeral() {
+            return geral;
+        }
+
+        //false enquanto a carga inicial não terminou: os totais ainda estão incompletos
+        public boolean isCarregado() {
+            return carregado;
+        }
+    }
+}
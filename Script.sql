@@ -9,7 +9,9 @@ CREATE TABLE IF NOT EXISTS animais (
     especie VARCHAR(50) NOT NULL,
     idade BIGINT NOT NULL,
     vacinado BOOLEAN,
-    UNIQUE (nome, especie) --Para impedir que tenha cadastro de animais duplicados
+    versao BIGINT NOT NULL DEFAULT 0, -- Incrementada a cada UPDATE (controle de concorrência otimista)
+    UNIQUE (nome, especie), --Para impedir que tenha cadastro de animais duplicados
+    INDEX idx_animais_nome_id (nome, id) -- Usado pela listagem paginada (ORDER BY nome, id)
 );
 
 -- Tabela de PRODUTOS
@@ -18,5 +20,35 @@ CREATE TABLE IF NOT EXISTS produtos (
     nome VARCHAR(100) NOT NULL,
     quantidade BIGINT NOT NULL,
     preco DECIMAL(10,2) NOT NULL,
-    disponivel BOOLEAN
+    disponivel BOOLEAN,
+    versao BIGINT NOT NULL DEFAULT 0, -- Incrementada a cada UPDATE, inclusive baixas de estoque
+    INDEX idx_produtos_nome_id (nome, id) -- Usado pela listagem paginada (ORDER BY nome, id)
 );
+
+-- Gravações feitas sem conexão (DiarioOffline) já enviadas ao banco: impede aplicar duas vezes
+CREATE TABLE IF NOT EXISTS diario_aplicado (
+    diario BIGINT NOT NULL,     -- Identificador do arquivo de diário do terminal
+    sequencia BIGINT NOT NULL,  -- Número da gravação no diário
+    tipo VARCHAR(20) NOT NULL,
+    registro_id BIGINT,
+    situacao VARCHAR(20) NOT NULL, -- APLICADO, CONFLITO, NAO_ENCONTRADO ou REJEITADO
+    detalhe VARCHAR(500),
+    aplicado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (diario, sequencia)
+);
+
+-- Última gravação do buffer de estoque (BufferEstoque) aplicada por cada terminal: impede aplicar
+-- a mesma baixa duas vezes quando ela é reenviada (ex.: a aplicação caiu logo depois do commit)
+CREATE TABLE IF NOT EXISTS estoque_aplicado (
+    origem BIGINT NOT NULL PRIMARY KEY, -- Identificador do buffer (um por execução da aplicação)
+    sequencia BIGINT NOT NULL,          -- Número da última gravação aplicada
+    aplicado_em TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Para bancos criados antes da paginação, crie os índices manualmente:
+-- CREATE INDEX idx_animais_nome_id ON animais (nome, id);
+-- CREATE INDEX idx_produtos_nome_id ON produtos (nome, id);
+
+-- Para bancos criados antes do controle de concorrência, adicione a coluna de versão:
+-- ALTER TABLE animais ADD COLUMN versao BIGINT NOT NULL DEFAULT 0;
+-- ALTER TABLE produtos ADD COLUMN versao BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,244 @@
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
+
+/**
+ * Camada assíncrona em volta de PetDAO e ProdutoDAO.
+ * Cada operação roda fora da thread do Swing (EDT) e devolve um CompletableFuture,
+ * assim a janela não congela enquanto espera o MySQL.
+ *
+ * - Usa virtual threads quando a JVM oferece (Java 21+); senão, um pool fixo de threads.
+ * - O número de operações simultâneas no banco é limitado ao tamanho do pool de conexões.
+ * - Leituras e remoções repetidas enquanto a anterior ainda está em andamento
+ *   reaproveitam o mesmo CompletableFuture em vez de ir ao banco de novo.
+ * - Use EDT como executor (ex.: whenCompleteAsync(..., ServicoAssincrono.EDT))
+ *   para tratar o resultado de volta na thread do Swing.
+ */
+public class ServicoAssincrono {
+
+    //Executor que entrega as tarefas para a thread do Swing
+    public static final Executor EDT = SwingUtilities::invokeLater;
+
+    private static final int FILA_MAXIMA = 200; //Tarefas aguardando quando não há virtual threads
+
+    private final PetDAO petDAO;
+    private final ProdutoDAO produtoDAO;
+    private final ExecutorService executor;
+    private final Semaphore limiteBanco;
+    private final ConcurrentHashMap<String, CompletableFuture<?>> emAndamento = new ConcurrentHashMap<>();
+
+    public ServicoAssincrono(PetDAO petDAO, ProdutoDAO produtoDAO) {
+        this.petDAO = petDAO;
+        this.produtoDAO = produtoDAO;
+        int limite = Conexao.getPool().getTamanhoMaximo();
+        this.limiteBanco = new Semaphore(limite);
+        this.executor = criarExecutor(limite);
+    }
+
+    //--- Pets ---
+
+    public CompletableFuture<ResultadoGravacao> adicionarPet(Pet pet) {
+        return executar(() -> petDAO.adicionarPet(pet));
+    }
+
+    public CompletableFuture<ResultadoAtualizacao<Pet>> atualizarPet(Pet pet) {
+        return executar(() -> petDAO.atualizarPet(pet));
+    }
+
+    public CompletableFuture<ResultadoGravacao> removerPet(long id) {
+        return coalescer("removerPet:" + id, () -> petDAO.removerPet(id));
+    }
+
+    public CompletableFuture<List<Pet>> listarTodosPets() {
+        return coalescer("listarTodosPets", petDAO::listarTodosPets);
+    }
+
+    public CompletableFuture<List<Pet>> listarPetsPagina(String ultimoNome, Long ultimoId, int tamanhoPagina) {
+        return coalescer("listarPetsPagina:" + ultimoNome + ":" + ultimoId + ":" + tamanhoPagina,
+                () -> petDAO.listarPetsPagina(ultimoNome, ultimoId, tamanhoPagina));
+    }
+
+    public CompletableFuture<List<Pet>> listarPetsPorPosicao(int inicio, int quantidade) {
+        return coalescer("listarPetsPorPosicao:" + inicio + ":" + quantidade,
+                () -> petDAO.listarPetsPorPosicao(inicio, quantidade));
+    }
+
+    public CompletableFuture<Long> contarPets() {
+        return coalescer("contarPets", petDAO::contarPets);
+    }
+
+    //Busca no índice em memória. Não é coalescida: cada busca tem o seu próprio cancelamento.
+    public CompletableFuture<ResultadoBusca<Pet>> buscarPets(String texto, int limite, BooleanSupplier cancelada) {
+        return executar(() -> petDAO.buscarPets(texto, limite, cancelada));
+    }
+
+    public CompletableFuture<Boolean> carregarIndicePets() {
+        return coalescer("carregarIndicePets", () -> {
+            petDAO.carregarIndiceBusca();
+            return true;
+        });
+    }
+
+    //Conta os pets para o painel de resumo; depois disso o resumo é mantido pelas gravações
+    public CompletableFuture<Boolean> carregarResumoAnimais() {
+        return coalescer("carregarResumoAnimais", () -> {
+            petDAO.carregarResumo();
+            return PetDAO.getResumo().isCarregado();
+        });
+    }
+
+    public CompletableFuture<List<Pet>> listarPetsPorPrefixo(String prefixo, String ultimoNome, Long ultimoId,
+                                                            int inicio, int quantidade) {
+        return coalescer("listarPetsPorPrefixo:" + prefixo + ":" + ultimoNome + ":" + ultimoId + ":" + inicio + ":" + quantidade,
+                () -> petDAO.listarPetsPorPrefixo(prefixo, ultimoNome, ultimoId, inicio, quantidade));
+    }
+
+    public CompletableFuture<Long> contarPetsPorPrefixo(String prefixo) {
+        return coalescer("contarPetsPorPrefixo:" + prefixo, () -> petDAO.contarPetsPorPrefixo(prefixo));
+    }
+
+    //--- Produtos ---
+
+    public CompletableFuture<ResultadoGravacao> adicionarProduto(Produto produto) {
+        return executar(() -> produtoDAO.adicionarProduto(produto));
+    }
+
+    public CompletableFuture<ResultadoAtualizacao<Produto>> atualizarProduto(Produto produto) {
+        return executar(() -> produtoDAO.atualizarProduto(produto));
+    }
+
+    public CompletableFuture<ResultadoGravacao> removerProduto(long id) {
+        return coalescer("removerProduto:" + id, () -> produtoDAO.removerProduto(id));
+    }
+
+    public CompletableFuture<List<Produto>> listarTodosProdutos() {
+        return coalescer("listarTodosProdutos", produtoDAO::listarTodosProdutos);
+    }
+
+    public CompletableFuture<List<Produto>> listarProdutosPagina(String ultimoNome, Long ultimoId, int tamanhoPagina) {
+        return coalescer("listarProdutosPagina:" + ultimoNome + ":" + ultimoId + ":" + tamanhoPagina,
+                () -> produtoDAO.listarProdutosPagina(ultimoNome, ultimoId, tamanhoPagina));
+    }
+
+    public CompletableFuture<List<Produto>> listarProdutosPorPosicao(int inicio, int quantidade) {
+        return coalescer("listarProdutosPorPosicao:" + inicio + ":" + quantidade,
+                () -> produtoDAO.listarProdutosPorPosicao(inicio, quantidade));
+    }
+
+    public CompletableFuture<Long> contarProdutos() {
+        return coalescer("contarProdutos", produtoDAO::contarProdutos);
+    }
+
+    public CompletableFuture<ResultadoBusca<Produto>> buscarProdutos(String texto, int limite, BooleanSupplier cancelada) {
+        return executar(() -> produtoDAO.buscarProdutos(texto, limite, cancelada));
+    }
+
+    public CompletableFuture<Boolean> carregarIndiceProdutos() {
+        return coalescer("carregarIndiceProdutos", () -> {
+            produtoDAO.carregarIndiceBusca();
+            return true;
+        });
+    }
+
+    public CompletableFuture<List<Produto>> listarProdutosPorPrefixo(String prefixo, String ultimoNome, Long ultimoId,
+                                                                    int inicio, int quantidade) {
+        return coalescer("listarProdutosPorPrefixo:" + prefixo + ":" + ultimoNome + ":" + ultimoId + ":" + inicio + ":" + quantidade,
+                () -> produtoDAO.listarProdutosPorPrefixo(prefixo, ultimoNome, ultimoId, inicio, quantidade));
+    }
+
+    public CompletableFuture<Long> contarProdutosPorPrefixo(String prefixo) {
+        return coalescer("contarProdutosPorPrefixo:" + prefixo, () -> produtoDAO.contarProdutosPorPrefixo(prefixo));
+    }
+
+    //Lê todos os produtos uma vez; depois o catálogo é mantido pelas gravações do ProdutoDAO. null se falhou.
+    public CompletableFuture<CatalogoProdutos> carregarCatalogoProdutos() {
+        return coalescer("carregarCatalogoProdutos", () -> CatalogoProdutos.carregarDoBanco(produtoDAO));
+    }
+
+    //No banco; sem conexão, sobre o catálogo (se já carregado). null se nenhum dos dois estiver disponível.
+    public CompletableFuture<RelatorioEstoque.Relatorio> gerarRelatorioEstoque(CatalogoProdutos catalogo) {
+        return executar(() -> new RelatorioEstoque(catalogo).gerar(RelatorioEstoque.TOP_PADRAO,
+                RelatorioEstoque.LIMITE_SEM_ESTOQUE_PADRAO));
+    }
+
+    /**
+     * Executa a operação em segundo plano, respeitando o limite de operações simultâneas no banco.
+     */
+    public <T> CompletableFuture<T> executar(Supplier<T> operacao) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                limiteBanco.acquireUninterruptibly();
+                try {
+                    return operacao.get();
+                } finally {
+                    limiteBanco.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) { //Ex.: fila cheia (RejectedExecutionException)
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Igual a executar, mas se já existir uma operação com a mesma chave em andamento,
+     * devolve o mesmo CompletableFuture em vez de disparar outra ida ao banco.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> coalescer(String chave, Supplier<T> operacao) {
+        CompletableFuture<T> novo = new CompletableFuture<>();
+        CompletableFuture<T> existente = (CompletableFuture<T>) emAndamento.putIfAbsent(chave, novo);
+        if (existente != null) {
+            return existente;
+        }
+        executar(operacao).whenComplete((resultado, erro) -> {
+            emAndamento.remove(chave, novo); //Remove antes de completar: quem chegar depois dispara nova consulta
+            if (erro != null) {
+                novo.completeExceptionally(erro);
+            } else {
+                novo.complete(resultado);
+            }
+        });
+        return novo;
+    }
+
+    //Encerra as threads de segundo plano, esperando as operações em andamento terminarem
+    public void encerrar() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("AVISO: Operações no banco ainda em andamento ao encerrar.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Virtual threads quando disponíveis (Java 21+); senão, pool fixo com fila limitada
+    private static ExecutorService criarExecutor(int limite) {
+        try {
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger contador = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(limite, limite, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(FILA_MAXIMA), r -> {
+                        Thread t = new Thread(r, "PetStop-DAO-" + contador.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import java.math.BigDecimal;
+
+/**
+ * Regras de validação dos dados digitados (ou importados) de Pet e Produto.
+ * Usadas pela tela (PetStopUI) e pelo ImportadorCSV, para que as duas entradas
+ * aceitem e rejeitem exatamente os mesmos valores.
+ * Em caso de erro lança IllegalArgumentException com a mensagem a ser exibida ao usuário.
+ */
+public final class Validacao {
+
+    private Validacao() {
+    }
+
+    //Valida os campos de um pet (novo ou em edição) e retorna o Pet pronto para ser gravado, sem ID
+    public static Pet validarPet(String nome, String especie, String idadeStr, boolean vacinado) {
+        nome = nome == null ? "" : nome.trim();
+        especie = especie == null ? "" : especie.trim();
+        idadeStr = idadeStr == null ? "" : idadeStr.trim();
+
+        if (nome.isEmpty() || especie.isEmpty() || idadeStr.isEmpty()) {
+            throw new IllegalArgumentException("Por favor, preencha todos os campos obrigatórios (Nome, Espécie, Idade).");
+        }
+
+        int idade;
+        try {
+            idade = Integer.parseInt(idadeStr);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Idade inválida. Por favor, insira um número.");
+        }
+        if (idade < 0) {
+            throw new IllegalArgumentException("A idade não pode ser negativa.");
+        }
+        return new Pet(nome, especie, idade, vacinado);
+    }
+
+    //Valida os campos de um produto (novo ou em edição) e retorna o Produto pronto para ser gravado, sem ID
+    public static Produto validarProduto(String nome, String quantidadeStr, String precoStr, boolean disponivel) {
+        nome = nome == null ? "" : nome.trim();
+        precoStr = precoStr == null ? "" : precoStr.trim();
+        quantidadeStr = quantidadeStr == null ? "" : quantidadeStr.trim();
+
+        if (nome.isEmpty() || precoStr.isEmpty()) {
+            throw new IllegalArgumentException("Por favor, preencha todos os campos obrigatórios (Nome, Preço).");
+        }
+
+        BigDecimal preco;
+        try {
+            preco = new BigDecimal(normalizarDecimal(precoStr));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Preço inválido. Por favor, insira um número decimal.");
+        }
+        if (preco.compareTo(BigDecimal.ZERO) < 0) {
+            throw new IllegalArgumentException("O preço não pode ser negativo.");
+        }
+
+        int quantidade;
+        try {
+            quantidade = Integer.parseInt(quantidadeStr);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Quantidade inválida. Por favor, insira um número inteiro.");
+        }
+        if (quantidade < 0) {
+            throw new IllegalArgumentException("A quantidade não pode ser negativa.");
+        }
+        return new Produto(nome, quantidade, preco, disponivel);
+    }
+
+    /*
+     * Aceita a vírgula como separador decimal ("12,50"), como se digita no Brasil, além do ponto.
+     * Valores com os dois separadores ("1.234,50") são recusados: o separador de milhar é ambíguo.
+     */
+    private static String normalizarDecimal(String valor) {
+        if (valor.indexOf(',') < 0) return valor;
+        if (valor.indexOf('.') >= 0 || valor.indexOf(',') != valor.lastIndexOf(',')) {
+            throw new NumberFormatException(valor);
+        }
+        return valor.replace(',', '.');
+    }
+}
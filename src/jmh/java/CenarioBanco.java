@@ -0,0 +1,102 @@
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import petstop.jmh.Cenario;
+
+/**
+ * Operações do BancoBenchmark sobre a tabela de produtos do H2 (BancoTeste), com PRODUTOS linhas:
+ * conexão com e sem o pool, páginas da listagem por chave no início, meio e fim da tabela, e
+ * buscas por ID concentradas em poucos produtos (como no balcão), com e sem o cache.
+ */
+public class CenarioBanco implements Cenario {
+
+    private static final int PRODUTOS = 10_000;
+    private static final int TAMANHO_PAGINA = 100;
+    private static final int QUENTES = 20; //80% das buscas vão para estes produtos
+
+    private final ProdutoDAO dao = new ProdutoDAO();
+    private final long[] ids = new long[PRODUTOS];
+    private final Produto[] antesDaPagina = new Produto[3]; //Último produto antes da página no início, meio e fim
+    private final Random aleatorio = new Random(42);
+
+    public CenarioBanco(String... parametros) throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+        List<Produto> produtos = new ArrayList<>(PRODUTOS);
+        for (int i = 0; i < PRODUTOS; i++) {
+            produtos.add(new Produto(String.format("JMH PetStop %05d", i), 10, new BigDecimal("9.90"), true));
+        }
+        ResultadoLote resultado = dao.adicionarProdutos(produtos);
+        if (!resultado.isSucessoTotal()) {
+            throw new IllegalStateException("Falha ao preparar os produtos: " + resultado);
+        }
+        for (int i = 0; i < PRODUTOS; i++) {
+            ids[i] = produtos.get(i).getId();
+        }
+        antesDaPagina[1] = produtos.get(PRODUTOS / 2 - 1);
+        antesDaPagina[2] = produtos.get(PRODUTOS - TAMANHO_PAGINA - 1);
+    }
+
+    @Override
+    public Operacao operacao(String nome) {
+        switch (nome) {
+            case "conexaoSemPool":
+                return () -> consultaSimples(Conexao.conectarSemPool());
+            case "conexaoDoPool":
+                return () -> consultaSimples(Conexao.conectar());
+            case "paginaInicio":
+                return () -> pagina(antesDaPagina[0]);
+            case "paginaMeio":
+                return () -> pagina(antesDaPagina[1]);
+            case "paginaFim":
+                return () -> pagina(antesDaPagina[2]);
+            case "paginaFimPorOffset":
+                return () -> dao.listarProdutosPorPosicao(PRODUTOS - TAMANHO_PAGINA, TAMANHO_PAGINA);
+            case "buscarPorIdSemCache":
+                return () -> {
+                    long id = sortearId();
+                    ProdutoDAO.getCache().invalidar(id);
+                    return dao.buscarProdutoPorId(id);
+                };
+            case "buscarPorIdComCache":
+                return () -> dao.buscarProdutoPorId(sortearId());
+            default:
+                throw new IllegalArgumentException("Operação desconhecida: " + nome);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        System.out.println("INFO: " + ProdutoDAO.getCache().resumo());
+        BancoTeste.limpar();
+        Conexao.encerrarPool();
+    }
+
+    private List<Produto> pagina(Produto anterior) {
+        return anterior == null
+                ? dao.listarProdutosPagina(null, null, TAMANHO_PAGINA)
+                : dao.listarProdutosPagina(anterior.getNome(), anterior.getId(), TAMANHO_PAGINA);
+    }
+
+    private long sortearId() {
+        return aleatorio.nextInt(100) < 80 ? ids[aleatorio.nextInt(QUENTES)] : ids[aleatorio.nextInt(ids.length)];
+    }
+
+    private static Object consultaSimples(Connection conn) throws SQLException {
+        if (conn == null) {
+            throw new IllegalStateException("Não foi possível conectar ao banco de dados.");
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1")) {
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            Conexao.fechar(conn);
+        }
+    }
+}
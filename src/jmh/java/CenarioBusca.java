@@ -0,0 +1,37 @@
+import java.util.Random;
+import petstop.jmh.Cenario;
+
+/**
+ * Operação do BuscaBenchmark: busca por prefixo no IndiceBusca montado com PETS pets sintéticos
+ * (nomes e espécies com acento, como no cadastro). Não usa o banco.
+ */
+public class CenarioBusca implements Cenario {
+
+    private static final int PETS = 1_000_000;
+    private static final int LIMITE = 100;
+
+    private final IndiceBusca<Pet> indice = new IndiceBusca<>("pets", Pet::getId, p -> p.getNome() + " " + p.getEspecie(),
+            p -> p, (a, b) -> a.getNome().compareTo(b.getNome()));
+    private final String consulta;
+
+    //parametros[0]: texto digitado na busca
+    public CenarioBusca(String... parametros) {
+        consulta = parametros[0];
+        String[] nomes = {"Rex", "Thor", "Mel", "Luna", "Bidu", "Pipoca", "Pérola", "Frederico", "Simão", "Paçoca"};
+        String[] especies = {"Cão", "Gato", "Pássaro", "Coelho", "Hamster", "Tartaruga"};
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < PETS; i++) {
+            String nome = nomes[aleatorio.nextInt(nomes.length)] + " " + Integer.toString(i, 36);
+            indice.colocar(new Pet((long) i + 1, nome, especies[aleatorio.nextInt(especies.length)], i % 20, true));
+        }
+        System.out.println("INFO: busca \"" + consulta + "\": " + indice.buscar(consulta, LIMITE));
+    }
+
+    @Override
+    public Operacao operacao(String nome) {
+        if (!nome.equals("buscar")) {
+            throw new IllegalArgumentException("Operação desconhecida: " + nome);
+        }
+        return () -> indice.buscar(consulta, LIMITE);
+    }
+}
@@ -0,0 +1,65 @@
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import petstop.jmh.Cenario;
+
+/**
+ * Operações do CatalogoBenchmark sobre um CatalogoProdutos com PRODUTOS produtos sintéticos:
+ * leitura de preço por ID e o RelatorioEstoque em memória num ForkJoinPool de [threads] threads.
+ * Não usa o banco.
+ */
+public class CenarioCatalogo implements Cenario {
+
+    private static final int PRODUTOS = 1_000_000;
+
+    private final CatalogoProdutos catalogo = new CatalogoProdutos(PRODUTOS);
+    private final CatalogoProdutos.Instantaneo dados;
+    private final ForkJoinPool pool;
+    private int proximo;
+
+    //parametros[0]: threads do relatório
+    public CenarioCatalogo(String... parametros) {
+        pool = new ForkJoinPool(Integer.parseInt(parametros[0]));
+        Produto reutilizado = new Produto();
+        Random aleatorio = new Random(42);
+        BigDecimal conferencia = BigDecimal.ZERO; //Soma feita do jeito antigo, produto a produto
+        for (int i = 0; i < PRODUTOS; i++) {
+            reutilizado.setId((long) i + 1);
+            reutilizado.setNome("JMH PetStop " + i);
+            reutilizado.setQuantidade(aleatorio.nextInt(10) == 0 ? 0 : aleatorio.nextInt(500));
+            reutilizado.setPreco(BigDecimal.valueOf(50 + aleatorio.nextInt(100_000), 2));
+            reutilizado.setDisponivel(reutilizado.getQuantidade() > 0);
+            catalogo.produtoGravado(reutilizado);
+            conferencia = conferencia.add(reutilizado.getPreco().multiply(BigDecimal.valueOf(reutilizado.getQuantidade())));
+        }
+        dados = catalogo.instantaneo();
+
+        RelatorioEstoque.Relatorio relatorio = RelatorioEstoque.gerarEmMemoria(dados, 10, 50);
+        if (relatorio.getValorTotal().compareTo(conferencia) != 0) {
+            throw new IllegalStateException("Total do relatório (" + relatorio.getValorTotal().toPlainString()
+                    + ") diferente da soma com BigDecimal (" + conferencia.toPlainString() + ").");
+        }
+        System.out.printf("INFO: CatalogoProdutos com %,d produtos: %,.1f bytes/produto nos arrays (sem contar os nomes)%n",
+                PRODUTOS, catalogo.getBytesAlocados() / (double) PRODUTOS);
+    }
+
+    @Override
+    public Operacao operacao(String nome) {
+        switch (nome) {
+            case "getPrecoCentavos":
+                return () -> {
+                    proximo = (proximo + 7919) % PRODUTOS; //Salta pelo catálogo, sem repetir a mesma linha de cache
+                    return catalogo.getPrecoCentavos(proximo + 1);
+                };
+            case "relatorioEmMemoria":
+                return () -> pool.submit(() -> RelatorioEstoque.gerarEmMemoria(dados, 10, 50)).get();
+            default:
+                throw new IllegalArgumentException("Operação desconhecida: " + nome);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
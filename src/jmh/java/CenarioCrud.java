@@ -0,0 +1,196 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import petstop.jmh.Cenario;
+
+/**
+ * Operações do CrudBenchmark sobre a tabela de produtos ou de animais, pelos DAOs da aplicação.
+ * O banco é o da BancoTeste (H2 em memória com o Script.sql); a tabela começa com
+ * REGISTROS_INICIAIS linhas, e as buscas e atualizações percorrem essas linhas em rodízio.
+ */
+public class CenarioCrud<T> implements Cenario {
+
+    private static final int REGISTROS_INICIAIS = 1_000;
+    private static final String PREFIXO = "JMH PetStop ";
+
+    //O que o cenário faz em cada tabela, com o DAO correspondente
+    private interface Tabela<T> {
+        T novo(String nome);
+
+        boolean adicionar(T registro);
+
+        Long id(T registro);
+
+        Object buscarPorId(long id);
+
+        //Altera um campo do registro e grava
+        Object atualizar(T registro);
+
+        ResultadoGravacao remover(long id);
+
+        void invalidar(long id);
+    }
+
+    private final Tabela<T> tabela;
+    private final List<T> registros = new ArrayList<>(REGISTROS_INICIAIS);
+    private final List<Long> adicionados = new ArrayList<>();
+    private long sequencia;
+    private int proximo;
+
+    //parametros[0]: "produtos" ou "animais"; parametros[1] (opcional): "false" desliga o cache de statements do pool
+    @SuppressWarnings("unchecked")
+    public CenarioCrud(String... parametros) throws Exception {
+        switch (parametros[0]) {
+            case "produtos":
+                tabela = (Tabela<T>) produtos();
+                break;
+            case "animais":
+                tabela = (Tabela<T>) animais();
+                break;
+            default:
+                throw new IllegalArgumentException("Tabela desconhecida: " + parametros[0]);
+        }
+        Conexao.getPool().setCacheStatementsAtivo(parametros.length < 2 || Boolean.parseBoolean(parametros[1]));
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+        for (int i = 0; i < REGISTROS_INICIAIS; i++) {
+            registros.add(inserir());
+        }
+    }
+
+    @Override
+    public Operacao operacao(String nome) {
+        switch (nome) {
+            case "adicionar":
+                return () -> {
+                    T registro = inserir();
+                    adicionados.add(tabela.id(registro));
+                    return registro;
+                };
+            case "buscarPorIdNoBanco":
+                return () -> {
+                    long id = tabela.id(proximoRegistro());
+                    tabela.invalidar(id);
+                    return tabela.buscarPorId(id);
+                };
+            case "buscarPorIdNoCache":
+                return () -> tabela.buscarPorId(tabela.id(proximoRegistro()));
+            case "atualizar":
+                return () -> tabela.atualizar(proximoRegistro());
+            case "adicionarERemover":
+                return () -> tabela.remover(tabela.id(inserir()));
+            default:
+                throw new IllegalArgumentException("Operação desconhecida: " + nome);
+        }
+    }
+
+    @Override
+    public void fimDaIteracao() {
+        for (Long id : adicionados) {
+            tabela.remover(id);
+        }
+        adicionados.clear();
+    }
+
+    @Override
+    public void close() {
+        fimDaIteracao();
+        Conexao.encerrarPool();
+    }
+
+    private T inserir() {
+        T registro = tabela.novo(PREFIXO + sequencia++);
+        if (!tabela.adicionar(registro)) {
+            throw new IllegalStateException("Falha ao adicionar " + registro + " (veja o log acima).");
+        }
+        return registro;
+    }
+
+    private T proximoRegistro() {
+        T registro = registros.get(proximo);
+        proximo = (proximo + 1) % registros.size();
+        return registro;
+    }
+
+    private static Tabela<Produto> produtos() {
+        ProdutoDAO dao = new ProdutoDAO();
+        return new Tabela<Produto>() {
+            @Override
+            public Produto novo(String nome) {
+                return new Produto(nome, 10, new BigDecimal("9.90"), true);
+            }
+
+            @Override
+            public boolean adicionar(Produto produto) {
+                return dao.adicionarProduto(produto).isGravado();
+            }
+
+            @Override
+            public Long id(Produto produto) {
+                return produto.getId();
+            }
+
+            @Override
+            public Object buscarPorId(long id) {
+                return dao.buscarProdutoPorId(id);
+            }
+
+            @Override
+            public Object atualizar(Produto produto) {
+                produto.setQuantidade(produto.getQuantidade() + 1);
+                return dao.atualizarProduto(produto);
+            }
+
+            @Override
+            public ResultadoGravacao remover(long id) {
+                return dao.removerProduto(id);
+            }
+
+            @Override
+            public void invalidar(long id) {
+                ProdutoDAO.getCache().invalidar(id);
+            }
+        };
+    }
+
+    private static Tabela<Pet> animais() {
+        PetDAO dao = new PetDAO();
+        return new Tabela<Pet>() {
+            @Override
+            public Pet novo(String nome) {
+                return new Pet(nome, "Cão", 3, true);
+            }
+
+            @Override
+            public boolean adicionar(Pet pet) {
+                return dao.adicionarPet(pet).isGravado();
+            }
+
+            @Override
+            public Long id(Pet pet) {
+                return pet.getId();
+            }
+
+            @Override
+            public Object buscarPorId(long id) {
+                return dao.buscarPetPorId(id);
+            }
+
+            @Override
+            public Object atualizar(Pet pet) {
+                pet.setIdade(pet.getIdade() % 15 + 1);
+                return dao.atualizarPet(pet);
+            }
+
+            @Override
+            public ResultadoGravacao remover(long id) {
+                return dao.removerPet(id);
+            }
+
+            @Override
+            public void invalidar(long id) {
+                PetDAO.getCache().invalidar(id);
+            }
+        };
+    }
+}
@@ -0,0 +1,63 @@
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import petstop.jmh.Cenario;
+
+/**
+ * Operação do DiarioBenchmark: uma inclusão de produto gravada no DiarioOffline, como nos DAOs
+ * quando o banco cai. Cada iteração grava num arquivo novo, que é apagado no fim dela. Sem
+ * conexão (o benchmark aponta petstop.db.url para um banco que não existe), o reenvio no
+ * encerrar() não aplica nada e os registros ficam só no arquivo.
+ */
+public class CenarioDiario implements Cenario {
+
+    private static final long INTERVALO_MS = 3_600_000; //O reenvio agendado não roda durante a medição
+    private static final long TAMANHO_MAXIMO = 256L << 20;
+
+    private final Path pasta;
+    private final Produto produto = new Produto("JMH PetStop diário", 10, new BigDecimal("9.90"), true);
+    private DiarioOffline diario;
+    private int iteracao;
+
+    public CenarioDiario(String... parametros) throws Exception {
+        pasta = Files.createTempDirectory("petstop-diario-jmh");
+        abrirDiario();
+    }
+
+    @Override
+    public Operacao operacao(String nome) {
+        if (!nome.equals("registrar")) {
+            throw new IllegalArgumentException("Operação desconhecida: " + nome);
+        }
+        return () -> {
+            if (!diario.registrar(DiarioOffline.Tipo.ADICIONAR_PRODUTO, null, produto, 0)) {
+                throw new IllegalStateException("O diário recusou a gravação (veja o log acima).");
+            }
+            return diario;
+        };
+    }
+
+    @Override
+    public void fimDaIteracao() throws Exception {
+        fecharDiario();
+        abrirDiario();
+    }
+
+    @Override
+    public void close() throws Exception {
+        fecharDiario();
+        Files.deleteIfExists(pasta);
+    }
+
+    private void abrirDiario() {
+        iteracao++;
+        diario = new DiarioOffline(pasta.resolve("diario-" + iteracao + ".dat"), pasta.resolve("conflitos.log"),
+                INTERVALO_MS, TAMANHO_MAXIMO, false, new PetDAO(), new ProdutoDAO());
+    }
+
+    private void fecharDiario() throws Exception {
+        diario.encerrar();
+        Files.deleteIfExists(pasta.resolve("diario-" + iteracao + ".dat"));
+        Files.deleteIfExists(pasta.resolve("conflitos.log"));
+    }
+}
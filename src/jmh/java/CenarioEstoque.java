@@ -0,0 +1,42 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import petstop.jmh.Cenario;
+
+/**
+ * Operações do ControleEstoqueBenchmark: um produto com estoque grande o bastante para não acabar
+ * durante a medição, sem banco (ProdutoDAOMemoria). As baixas vão para o BufferEstoque como na
+ * aplicação.
+ */
+public class CenarioEstoque implements Cenario {
+
+    private static final long PRODUTO = 1L;
+
+    private final Path arquivo;
+    private final BufferEstoque buffer;
+    private final ControleEstoque controle;
+
+    //parametros[0]: número de faixas do ControleEstoque
+    public CenarioEstoque(String... parametros) throws Exception {
+        ProdutoDAOMemoria dao = new ProdutoDAOMemoria();
+        dao.quantidades.put(PRODUTO, Long.MAX_VALUE / 2);
+        arquivo = Files.createTempFile("petstop-estoque", ".csv");
+        Files.delete(arquivo);
+        buffer = new BufferEstoque(dao, 50, arquivo);
+        controle = new ControleEstoque(dao, buffer, Integer.parseInt(parametros[0]));
+        controle.getDisponivel(PRODUTO); //Carrega antes de medir
+    }
+
+    @Override
+    public Operacao operacao(String nome) {
+        if (!nome.equals("reservarEConfirmar")) {
+            throw new IllegalArgumentException("Operação desconhecida: " + nome);
+        }
+        return () -> controle.confirmar(controle.reservar(PRODUTO, 1));
+    }
+
+    @Override
+    public void close() throws Exception {
+        buffer.encerrar();
+        Files.deleteIfExists(arquivo);
+    }
+}
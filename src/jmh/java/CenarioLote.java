@@ -0,0 +1,95 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import petstop.jmh.Cenario;
+
+/**
+ * Operações do LoteBenchmark: gravar [tamanho] produtos com uma chamada do ProdutoDAO por produto
+ * ou com adicionarProdutos/atualizarProdutos (addBatch, uma transação). Cada operação medida
+ * grava o lote inteiro; os produtos incluídos são apagados no fim de cada iteração.
+ */
+public class CenarioLote implements Cenario {
+
+    private static final String PREFIXO = "JMH Lote ";
+
+    private final ProdutoDAO dao = new ProdutoDAO();
+    private final int tamanho;
+    private final List<Produto> existentes; //Alterados pelas operações de atualização
+    private final List<Long> adicionados = new ArrayList<>();
+    private long sequencia;
+
+    //parametros[0]: produtos por lote
+    public CenarioLote(String... parametros) throws Exception {
+        tamanho = Integer.parseInt(parametros[0]);
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+        existentes = novos();
+        if (!dao.adicionarProdutos(existentes).isSucessoTotal()) {
+            throw new IllegalStateException("Falha ao preparar os produtos (veja o log acima).");
+        }
+    }
+
+    @Override
+    public Operacao operacao(String nome) {
+        switch (nome) {
+            case "adicionarUmPorVez":
+                return () -> {
+                    List<Produto> produtos = novos();
+                    for (Produto produto : produtos) {
+                        if (dao.adicionarProduto(produto).isGravado()) adicionados.add(produto.getId());
+                    }
+                    return produtos;
+                };
+            case "adicionarEmLote":
+                return () -> {
+                    List<Produto> produtos = novos();
+                    ResultadoLote resultado = dao.adicionarProdutos(produtos);
+                    for (int i = 0; i < produtos.size(); i++) {
+                        if (resultado.getIdGerado(i) != null) adicionados.add(resultado.getIdGerado(i));
+                    }
+                    return resultado;
+                };
+            case "atualizarUmPorVez":
+                return () -> {
+                    int atualizados = 0;
+                    for (Produto produto : existentes) {
+                        produto.setQuantidade(produto.getQuantidade() + 1);
+                        if (dao.atualizarProduto(produto).isSucesso()) atualizados++;
+                    }
+                    return atualizados;
+                };
+            case "atualizarEmLote":
+                return () -> {
+                    for (Produto produto : existentes) {
+                        produto.setQuantidade(produto.getQuantidade() + 1);
+                    }
+                    return dao.atualizarProdutos(existentes);
+                };
+            default:
+                throw new IllegalArgumentException("Operação desconhecida: " + nome);
+        }
+    }
+
+    @Override
+    public void fimDaIteracao() {
+        for (Long id : adicionados) {
+            dao.removerProduto(id);
+        }
+        adicionados.clear();
+    }
+
+    @Override
+    public void close() throws Exception {
+        fimDaIteracao();
+        BancoTeste.limpar();
+        Conexao.encerrarPool();
+    }
+
+    private List<Produto> novos() {
+        List<Produto> produtos = new ArrayList<>(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            produtos.add(new Produto(PREFIXO + sequencia++, 10, new BigDecimal("9.90"), true));
+        }
+        return produtos;
+    }
+}
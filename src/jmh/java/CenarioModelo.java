@@ -0,0 +1,86 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import petstop.jmh.Cenario;
+
+/**
+ * Operações do ModeloBenchmark: mapeamento de uma linha de ResultSet em Pet/Produto e toString.
+ * O ResultSet fica em memória, para medir só o mapeamento.
+ */
+public class CenarioModelo implements Cenario {
+
+    private final ResultSet rsPet;
+    private final ResultSet rsProduto;
+    private final Pet pet = new Pet(42L, "Rex", "Cão", 3, true);
+    private final Produto produto = new Produto(7L, "Ração Premium 10kg", 25, new BigDecimal("189.90"), true);
+
+    public CenarioModelo(String... parametros) throws SQLException {
+        //Na ordem de PetDAO.COLUNAS e ProdutoDAO.COLUNAS
+        rsPet = resultSetEmMemoria(42L, "Rex", "Cão", 3, true, 0L);
+        rsProduto = resultSetEmMemoria(7L, "Ração Premium 10kg", 25L, new BigDecimal("189.90"), true, 0L);
+        rsPet.next();
+        rsProduto.next();
+    }
+
+    @Override
+    public Operacao operacao(String nome) {
+        switch (nome) {
+            case "mapearPet":
+                return () -> PetDAO.mapearPet(rsPet);
+            case "mapearProduto":
+                return () -> ProdutoDAO.mapearProduto(rsProduto);
+            case "petToString":
+                return pet::toString;
+            case "produtoToString":
+                return produto::toString;
+            default:
+                throw new IllegalArgumentException("Operação desconhecida: " + nome);
+        }
+    }
+
+    /**
+     * ResultSet somente leitura, sempre posicionado na única linha informada.
+     * Implementa apenas o que os DAOs usam: next, close, wasNull e os getters por índice.
+     */
+    private static ResultSet resultSetEmMemoria(Object... linha) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean ultimoNulo;
+
+            @Override
+            public Object invoke(Object proxy, Method metodo, Object[] args) {
+                String nome = metodo.getName();
+                switch (nome) {
+                    case "next":
+                        return true;
+                    case "close":
+                        return null;
+                    case "wasNull":
+                        return ultimoNulo;
+                    case "isClosed":
+                        return false;
+                    default:
+                        break;
+                }
+                if (nome.startsWith("get") && args != null && args.length == 1 && args[0] instanceof Integer) {
+                    Object valor = linha[(Integer) args[0] - 1];
+                    ultimoNulo = valor == null;
+                    return converter(valor, metodo.getReturnType());
+                }
+                throw new UnsupportedOperationException("ResultSet em memória: " + nome);
+            }
+        };
+        return (ResultSet) Proxy.newProxyInstance(CenarioModelo.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, handler);
+    }
+
+    private static Object converter(Object valor, Class<?> tipo) {
+        if (tipo == long.class) return valor == null ? 0L : ((Number) valor).longValue();
+        if (tipo == int.class) return valor == null ? 0 : ((Number) valor).intValue();
+        if (tipo == boolean.class) return valor != null && (Boolean) valor;
+        if (tipo == String.class) return valor == null ? null : valor.toString();
+        return valor;
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
+import petstop.jmh.Cenario;
+
+/**
+ * Operações do TabelaBenchmark. O ModeloTabelaLazy é carregado inteiro na EDT no início (os
+ * LINHAS pets cabem nos blocos em cache), e a medição só lê as células, sem novas buscas.
+ */
+public class CenarioTabela implements Cenario {
+
+    private static final int LINHAS = 2_000; //Cabe inteiro no cache do ModeloTabelaLazy (20 blocos de 100)
+    private static final String[] COLUNAS = {"ID", "Nome", "Espécie", "Idade", "Vacinado?"};
+
+    private final List<Pet> pets = new ArrayList<>(LINHAS);
+    private final ModeloTabelaLazy<Pet> modelo;
+
+    public CenarioTabela(String... parametros) throws Exception {
+        for (int i = 0; i < LINHAS; i++) {
+            pets.add(new Pet((long) i + 1, "Pet " + i, i % 2 == 0 ? "Cão" : "Gato", i % 15, i % 3 == 0));
+        }
+        modelo = new ModeloTabelaLazy<>(COLUNAS, PetStopUI::valorColunaPet, Pet::getId,
+                new ModeloTabelaLazy.FonteDados<Pet>() {
+                    @Override
+                    public CompletableFuture<Long> contar() {
+                        return CompletableFuture.completedFuture((long) pets.size());
+                    }
+
+                    @Override
+                    public CompletableFuture<List<Pet>> carregar(int inicio, int quantidade, Pet anterior) {
+                        return CompletableFuture.completedFuture(pets.subList(inicio, Math.min(pets.size(), inicio + quantidade)));
+                    }
+                }, 100, 20);
+
+        //Carrega o total e todos os blocos (as respostas chegam pela fila da EDT)
+        SwingUtilities.invokeAndWait(modelo::recarregar);
+        SwingUtilities.invokeAndWait(this::percorrer);
+        SwingUtilities.invokeAndWait(() -> { });
+        for (int linha = 0; linha < modelo.getRowCount(); linha++) {
+            if (modelo.getRegistro(linha) == null) {
+                throw new IllegalStateException("Linha " + linha + " não foi carregada.");
+            }
+        }
+    }
+
+    @Override
+    public Operacao operacao(String nome) {
+        switch (nome) {
+            case "percorrerModeloLazy":
+                return this::percorrer;
+            case "preencherDefaultTableModel":
+                return this::preencherDefaultTableModel;
+            default:
+                throw new IllegalArgumentException("Operação desconhecida: " + nome);
+        }
+    }
+
+    //Uma passada por todas as células, como o JTable faz ao repintar
+    private Object percorrer() {
+        Object ultimo = null;
+        int nulos = 0;
+        for (int linha = 0; linha < modelo.getRowCount(); linha++) {
+            for (int coluna = 0; coluna < modelo.getColumnCount(); coluna++) {
+                ultimo = modelo.getValueAt(linha, coluna);
+                if (ultimo == null) nulos++;
+            }
+        }
+        return nulos == 0 ? ultimo : null;
+    }
+
+    //Como a tela fazia antes: uma nova DefaultTableModel preenchida com addRow a cada recarga
+    private Object preencherDefaultTableModel() {
+        DefaultTableModel antigo = new DefaultTableModel(COLUNAS, 0);
+        for (Pet pet : pets) {
+            antigo.addRow(new Object[]{pet.getId(), pet.getNome(), pet.getEspecie(), pet.getIdade(),
+                    pet.isVacinado() ? "Sim" : "Não"});
+        }
+        return antigo;
+    }
+}
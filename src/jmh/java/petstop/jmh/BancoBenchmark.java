@@ -0,0 +1,103 @@
+package petstop.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Acesso ao banco pelo pool, pela listagem paginada e pelo cache de produtos (CenarioBanco),
+ * contra o H2 em memória em modo MySQL:
+ * - conexaoSemPool x conexaoDoPool: um SELECT 1 abrindo uma conexão por chamada ou emprestando do pool;
+ * - paginaInicio, paginaMeio, paginaFim: a página por chave deve custar o mesmo em qualquer ponto
+ *   da tabela; paginaFimPorOffset é a mesma página do fim com OFFSET, para comparar;
+ * - buscarPorIdSemCache x buscarPorIdComCache: 80% das buscas em 20 produtos, como no balcão.
+ * No H2 a conexão não passa pela rede: contra o MySQL as diferenças são maiores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {
+        "-Dpetstop.db.url=jdbc:h2:mem:petstop;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "-Dpetstop.db.usuario=sa",
+        "-Dpetstop.diario.ativo=false"})
+public class BancoBenchmark {
+
+    private Cenario cenario;
+    private Cenario.Operacao conexaoSemPool;
+    private Cenario.Operacao conexaoDoPool;
+    private Cenario.Operacao paginaInicio;
+    private Cenario.Operacao paginaMeio;
+    private Cenario.Operacao paginaFim;
+    private Cenario.Operacao paginaFimPorOffset;
+    private Cenario.Operacao buscarPorIdSemCache;
+    private Cenario.Operacao buscarPorIdComCache;
+
+    @Setup
+    public void preparar() throws Exception {
+        cenario = Cenario.abrir("CenarioBanco");
+        conexaoSemPool = cenario.operacao("conexaoSemPool");
+        conexaoDoPool = cenario.operacao("conexaoDoPool");
+        paginaInicio = cenario.operacao("paginaInicio");
+        paginaMeio = cenario.operacao("paginaMeio");
+        paginaFim = cenario.operacao("paginaFim");
+        paginaFimPorOffset = cenario.operacao("paginaFimPorOffset");
+        buscarPorIdSemCache = cenario.operacao("buscarPorIdSemCache");
+        buscarPorIdComCache = cenario.operacao("buscarPorIdComCache");
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        cenario.close();
+    }
+
+    @Benchmark
+    public Object conexaoSemPool() throws Exception {
+        return conexaoSemPool.executar();
+    }
+
+    @Benchmark
+    public Object conexaoDoPool() throws Exception {
+        return conexaoDoPool.executar();
+    }
+
+    @Benchmark
+    public Object paginaInicio() throws Exception {
+        return paginaInicio.executar();
+    }
+
+    @Benchmark
+    public Object paginaMeio() throws Exception {
+        return paginaMeio.executar();
+    }
+
+    @Benchmark
+    public Object paginaFim() throws Exception {
+        return paginaFim.executar();
+    }
+
+    @Benchmark
+    public Object paginaFimPorOffset() throws Exception {
+        return paginaFimPorOffset.executar();
+    }
+
+    @Benchmark
+    public Object buscarPorIdSemCache() throws Exception {
+        return buscarPorIdSemCache.executar();
+    }
+
+    @Benchmark
+    public Object buscarPorIdComCache() throws Exception {
+        return buscarPorIdComCache.executar();
+    }
+}
@@ -0,0 +1,51 @@
+package petstop.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Busca por prefixo no IndiceBusca com 1 milhão de pets (CenarioBusca), limite de 100 resultados:
+ * com e sem acento, com duas palavras, com muitos resultados ("perola") e com nenhum ("zzzzzz").
+ * O total de resultados de cada consulta sai no log do @Setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dpetstop.diario.ativo=false"})
+public class BuscaBenchmark {
+
+    @Param({"perola", "PAÇOCA gat", "simao coe", "fred", "abc1", "zzzzzz"})
+    public String consulta;
+
+    private Cenario cenario;
+    private Cenario.Operacao buscar;
+
+    @Setup
+    public void preparar() throws Exception {
+        cenario = Cenario.abrir("CenarioBusca", consulta);
+        buscar = cenario.operacao("buscar");
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        cenario.close();
+    }
+
+    @Benchmark
+    public Object buscar() throws Exception {
+        return buscar.executar();
+    }
+}
@@ -0,0 +1,61 @@
+package petstop.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CatalogoProdutos com 1 milhão de produtos (CenarioCatalogo):
+ * - getPrecoCentavos: leitura otimista, sem lock e sem alocação (ns por leitura);
+ * - relatorioEmMemoria: RelatorioEstoque.gerarEmMemoria com 1, 2 e 4 threads (ms por relatório).
+ * O @Setup confere o total do relatório com a soma em BigDecimal e mostra os bytes por produto.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dpetstop.diario.ativo=false"})
+public class CatalogoBenchmark {
+
+    @Param({"1", "2", "4"})
+    public String threads;
+
+    private Cenario cenario;
+    private Cenario.Operacao getPrecoCentavos;
+    private Cenario.Operacao relatorioEmMemoria;
+
+    @Setup
+    public void preparar() throws Exception {
+        cenario = Cenario.abrir("CenarioCatalogo", threads);
+        getPrecoCentavos = cenario.operacao("getPrecoCentavos");
+        relatorioEmMemoria = cenario.operacao("relatorioEmMemoria");
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        cenario.close();
+    }
+
+    //Não depende de [threads]: basta olhar a linha de threads=1
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object getPrecoCentavos() throws Exception {
+        return getPrecoCentavos.executar();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object relatorioEmMemoria() throws Exception {
+        return relatorioEmMemoria.executar();
+    }
+}
@@ -0,0 +1,36 @@
+package petstop.jmh;
+
+/**
+ * Ponte entre os benchmarks deste pacote e as classes do PetStop.
+ *
+ * O JMH não aceita benchmarks no pacote padrão, e uma classe de pacote nomeado não enxerga as do
+ * pacote padrão, onde está todo o PetStop. Por isso as classes @State deste pacote só medem: o
+ * trabalho fica num cenário do pacote padrão (src/jmh/java), criado pelo nome no @Setup. Cada
+ * @Benchmark chama sempre a mesma Operacao, então o JIT resolve e inlineia a chamada.
+ */
+public interface Cenario extends AutoCloseable {
+
+    //Uma operação medida; o retorno vai para o Blackhole do JMH
+    interface Operacao {
+        Object executar() throws Exception;
+    }
+
+    /**
+     * @ param nome Nome da operação no cenário.
+     * @ throws IllegalArgumentException se o cenário não tem a operação.
+     */
+    Operacao operacao(String nome);
+
+    //Chamado no fim de cada iteração de medição (ex.: apagar as linhas inseridas)
+    default void fimDaIteracao() throws Exception {
+    }
+
+    @Override
+    default void close() throws Exception {
+    }
+
+    //Cria o cenário do pacote padrão com o construtor (String... parametros)
+    static Cenario abrir(String classe, String... parametros) throws ReflectiveOperationException {
+        return (Cenario) Class.forName(classe).getConstructor(String[].class).newInstance((Object) parametros);
+    }
+}
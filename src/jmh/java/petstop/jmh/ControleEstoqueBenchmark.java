@@ -0,0 +1,54 @@
+package petstop.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Vazão de reservar + confirmar no ControleEstoque com todas as threads vendendo o mesmo produto
+ * (CenarioEstoque), com um único contador (1 faixa) e com as faixas. Para ver a escala por
+ * núcleos, rode com números de threads diferentes:
+ *   ./gradlew jmh -Pjmh="ControleEstoqueBenchmark -t 1"
+ *   ./gradlew jmh -Pjmh="ControleEstoqueBenchmark -t 4"
+ * A correção sob concorrência (nunca vender além do estoque) é conferida no ControleEstoqueTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ControleEstoqueBenchmark {
+
+    @Param({"1", "16"})
+    public String faixas;
+
+    private Cenario cenario;
+    private Cenario.Operacao reservarEConfirmar;
+
+    @Setup
+    public void preparar() throws Exception {
+        cenario = Cenario.abrir("CenarioEstoque", faixas);
+        reservarEConfirmar = cenario.operacao("reservarEConfirmar");
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        cenario.close();
+    }
+
+    @Benchmark
+    public Object reservarEConfirmar() throws Exception {
+        return reservarEConfirmar.executar();
+    }
+}
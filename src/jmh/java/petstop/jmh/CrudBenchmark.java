@@ -0,0 +1,93 @@
+package petstop.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CRUD do PetDAO e do ProdutoDAO (CenarioCrud) contra um H2 em memória em modo MySQL, com as
+ * tabelas do Script.sql: roda sem servidor e sem rede. Passa pelo pool, pelo cache de
+ * statements e pelo cache de registros, como na aplicação. Com cacheStatements=false o pool
+ * prepara o SQL de novo a cada chamada, para medir o que o cache de statements economiza.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {
+        "-Dpetstop.db.url=jdbc:h2:mem:petstop;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "-Dpetstop.db.usuario=sa",
+        "-Dpetstop.diario.ativo=false"})
+public class CrudBenchmark {
+
+    @Param({"produtos", "animais"})
+    public String tabela;
+
+    @Param({"true", "false"})
+    public String cacheStatements;
+
+    private Cenario cenario;
+    private Cenario.Operacao adicionar;
+    private Cenario.Operacao buscarPorIdNoBanco;
+    private Cenario.Operacao buscarPorIdNoCache;
+    private Cenario.Operacao atualizar;
+    private Cenario.Operacao adicionarERemover;
+
+    @Setup
+    public void preparar() throws Exception {
+        cenario = Cenario.abrir("CenarioCrud", tabela, cacheStatements);
+        adicionar = cenario.operacao("adicionar");
+        buscarPorIdNoBanco = cenario.operacao("buscarPorIdNoBanco");
+        buscarPorIdNoCache = cenario.operacao("buscarPorIdNoCache");
+        atualizar = cenario.operacao("atualizar");
+        adicionarERemover = cenario.operacao("adicionarERemover");
+    }
+
+    //Apaga o que adicionar() inseriu, para a tabela não crescer de uma iteração para outra
+    @TearDown(Level.Iteration)
+    public void fimDaIteracao() throws Exception {
+        cenario.fimDaIteracao();
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        cenario.close();
+    }
+
+    @Benchmark
+    public Object adicionar() throws Exception {
+        return adicionar.executar();
+    }
+
+    @Benchmark
+    public Object buscarPorIdNoBanco() throws Exception {
+        return buscarPorIdNoBanco.executar();
+    }
+
+    @Benchmark
+    public Object buscarPorIdNoCache() throws Exception {
+        return buscarPorIdNoCache.executar();
+    }
+
+    @Benchmark
+    public Object atualizar() throws Exception {
+        return atualizar.executar();
+    }
+
+    @Benchmark
+    public Object adicionarERemover() throws Exception {
+        return adicionarERemover.executar();
+    }
+}
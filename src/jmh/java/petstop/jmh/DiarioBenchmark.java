@@ -0,0 +1,56 @@
+package petstop.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latência de uma gravação no DiarioOffline (CenarioDiario), sem fsync a cada registro.
+ * Em SampleTime o JMH mostra a distribuição (p50, p99, p99.9): o que importa aqui é a cauda,
+ * que a tela sente quando o banco está fora. As iterações são curtas para cada arquivo novo
+ * ficar bem abaixo do tamanho máximo. A recuperação do arquivo e o reenvio estão no
+ * DiarioOfflineTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Dpetstop.db.url=jdbc:petstop:sem-banco", "-Dpetstop.diario.ativo=false"})
+public class DiarioBenchmark {
+
+    private Cenario cenario;
+    private Cenario.Operacao registrar;
+
+    @Setup
+    public void preparar() throws Exception {
+        cenario = Cenario.abrir("CenarioDiario");
+        registrar = cenario.operacao("registrar");
+    }
+
+    //Fecha e apaga o arquivo da iteração e abre outro vazio
+    @TearDown(Level.Iteration)
+    public void fimDaIteracao() throws Exception {
+        cenario.fimDaIteracao();
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        cenario.close();
+    }
+
+    @Benchmark
+    public Object registrar() throws Exception {
+        return registrar.executar();
+    }
+}
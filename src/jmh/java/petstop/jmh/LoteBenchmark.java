@@ -0,0 +1,81 @@
+package petstop.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inclusão e atualização de [tamanho] produtos um a um ou em lote (CenarioLote), no H2 em memória.
+ * O tempo é por lote inteiro: divida por [tamanho] para o tempo por produto.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {
+        "-Dpetstop.db.url=jdbc:h2:mem:petstop;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "-Dpetstop.db.usuario=sa",
+        "-Dpetstop.diario.ativo=false"})
+public class LoteBenchmark {
+
+    @Param({"100", "1000"})
+    public String tamanho;
+
+    private Cenario cenario;
+    private Cenario.Operacao adicionarUmPorVez;
+    private Cenario.Operacao adicionarEmLote;
+    private Cenario.Operacao atualizarUmPorVez;
+    private Cenario.Operacao atualizarEmLote;
+
+    @Setup
+    public void preparar() throws Exception {
+        cenario = Cenario.abrir("CenarioLote", tamanho);
+        adicionarUmPorVez = cenario.operacao("adicionarUmPorVez");
+        adicionarEmLote = cenario.operacao("adicionarEmLote");
+        atualizarUmPorVez = cenario.operacao("atualizarUmPorVez");
+        atualizarEmLote = cenario.operacao("atualizarEmLote");
+    }
+
+    //Apaga o que as inclusões gravaram, para a tabela não crescer de uma iteração para outra
+    @TearDown(Level.Iteration)
+    public void fimDaIteracao() throws Exception {
+        cenario.fimDaIteracao();
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        cenario.close();
+    }
+
+    @Benchmark
+    public Object adicionarUmPorVez() throws Exception {
+        return adicionarUmPorVez.executar();
+    }
+
+    @Benchmark
+    public Object adicionarEmLote() throws Exception {
+        return adicionarEmLote.executar();
+    }
+
+    @Benchmark
+    public Object atualizarUmPorVez() throws Exception {
+        return atualizarUmPorVez.executar();
+    }
+
+    @Benchmark
+    public Object atualizarEmLote() throws Exception {
+        return atualizarEmLote.executar();
+    }
+}
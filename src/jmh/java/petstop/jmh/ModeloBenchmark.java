@@ -0,0 +1,60 @@
+package petstop.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapeamento ResultSet -> Pet/Produto (PetDAO.mapearPet, ProdutoDAO.mapearProduto), com um
+ * ResultSet em memória, e Produto.toString/Pet.toString. Não usa banco (CenarioModelo).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ModeloBenchmark {
+
+    private Cenario.Operacao mapearPet;
+    private Cenario.Operacao mapearProduto;
+    private Cenario.Operacao petToString;
+    private Cenario.Operacao produtoToString;
+
+    @Setup
+    public void preparar() throws Exception {
+        Cenario cenario = Cenario.abrir("CenarioModelo");
+        mapearPet = cenario.operacao("mapearPet");
+        mapearProduto = cenario.operacao("mapearProduto");
+        petToString = cenario.operacao("petToString");
+        produtoToString = cenario.operacao("produtoToString");
+    }
+
+    @Benchmark
+    public Object mapearPet() throws Exception {
+        return mapearPet.executar();
+    }
+
+    @Benchmark
+    public Object mapearProduto() throws Exception {
+        return mapearProduto.executar();
+    }
+
+    @Benchmark
+    public Object petToString() throws Exception {
+        return petToString.executar();
+    }
+
+    @Benchmark
+    public Object produtoToString() throws Exception {
+        return produtoToString.executar();
+    }
+}
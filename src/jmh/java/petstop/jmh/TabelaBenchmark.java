@@ -0,0 +1,54 @@
+package petstop.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Preenchimento das tabelas da tela (CenarioTabela): uma passada por todas as células do
+ * ModeloTabelaLazy já carregado, como o JTable faz ao repintar, contra o antigo
+ * DefaultTableModel montado com addRow a cada recarga.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TabelaBenchmark {
+
+    private Cenario cenario;
+    private Cenario.Operacao percorrerModeloLazy;
+    private Cenario.Operacao preencherDefaultTableModel;
+
+    @Setup
+    public void preparar() throws Exception {
+        cenario = Cenario.abrir("CenarioTabela");
+        percorrerModeloLazy = cenario.operacao("percorrerModeloLazy");
+        preencherDefaultTableModel = cenario.operacao("preencherDefaultTableModel");
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        cenario.close();
+    }
+
+    @Benchmark
+    public Object percorrerModeloLazy() throws Exception {
+        return percorrerModeloLazy.executar();
+    }
+
+    @Benchmark
+    public Object preencherDefaultTableModel() throws Exception {
+        return preencherDefaultTableModel.executar();
+    }
+}
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Controle de concorrência otimista de atualizarPet/atualizarProduto (H2): dois usuários editam
+ * o mesmo registro a partir da mesma versão; só o primeiro grava, o segundo recebe o atual.
+ */
+class AtualizacaoOtimistaTest {
+
+    private final PetDAO petDAO = new PetDAO();
+    private final ProdutoDAO produtoDAO = new ProdutoDAO();
+
+    @BeforeEach
+    void preparar() throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+    }
+
+    @Test
+    void segundaEdicaoDaMesmaVersaoEConflito() {
+        Pet pet = new Pet("Rex", "Cão", 3, true);
+        assertTrue(petDAO.adicionarPet(pet).isGravado());
+
+        Pet doPrimeiro = petDAO.buscarPetPorId(pet.getId());
+        Pet doSegundo = petDAO.buscarPetPorId(pet.getId());
+        doPrimeiro.setIdade(4);
+        doSegundo.setNome("Rex II");
+
+        ResultadoAtualizacao<Pet> primeiro = petDAO.atualizarPet(doPrimeiro);
+        assertEquals(ResultadoAtualizacao.Situacao.ATUALIZADO, primeiro.getSituacao());
+        assertEquals(1, doPrimeiro.getVersao());
+
+        ResultadoAtualizacao<Pet> segundo = petDAO.atualizarPet(doSegundo);
+        assertEquals(ResultadoAtualizacao.Situacao.CONFLITO, segundo.getSituacao());
+        assertEquals(1, segundo.getAtual().getVersao());
+        assertEquals(4, segundo.getAtual().getIdade());
+        assertEquals("Rex", petDAO.buscarPetPorId(pet.getId()).getNome()); //Nada do segundo foi gravado
+
+        //Mesclado sobre a versão atual, grava
+        doSegundo.setVersao(segundo.getAtual().getVersao());
+        doSegundo.setIdade(4);
+        assertTrue(petDAO.atualizarPet(doSegundo).isSucesso());
+        assertEquals("Rex II", petDAO.buscarPetPorId(pet.getId()).getNome());
+    }
+
+    @Test
+    void edicaoDeRegistroRemovidoNaoEncontrado() {
+        Pet pet = new Pet("Mia", "Gato", 2, false);
+        assertTrue(petDAO.adicionarPet(pet).isGravado());
+        Pet lido = petDAO.buscarPetPorId(pet.getId());
+        assertTrue(petDAO.removerPet(pet.getId()).isGravado());
+
+        lido.setIdade(3);
+        ResultadoAtualizacao<Pet> resultado = petDAO.atualizarPet(lido);
+        assertEquals(ResultadoAtualizacao.Situacao.NAO_ENCONTRADO, resultado.getSituacao());
+        assertNull(resultado.getAtual());
+    }
+
+    //No conflito os ouvintes (índice, catálogo, ControleEstoque) recebem o produto atual do banco
+    @Test
+    void conflitoDeProdutoAvisaOsOuvintes() {
+        Produto produto = new Produto("Ração teste de versão", 10, new BigDecimal("5.00"), true);
+        assertTrue(produtoDAO.adicionarProduto(produto).isGravado());
+        Produto doPrimeiro = produtoDAO.buscarProdutoPorId(produto.getId());
+        Produto doSegundo = produtoDAO.buscarProdutoPorId(produto.getId());
+        doPrimeiro.setQuantidade(20);
+        assertTrue(produtoDAO.atualizarProduto(doPrimeiro).isSucesso());
+
+        List<Produto> gravados = new ArrayList<>();
+        ProdutoDAO.Ouvinte ouvinte = new ProdutoDAO.Ouvinte() {
+            @Override
+            public void produtoGravado(Produto gravado) {
+                gravados.add(gravado);
+            }
+
+            @Override
+            public void produtoRemovido(long id) {
+            }
+        };
+        ProdutoDAO.adicionarOuvinte(ouvinte);
+        try {
+            doSegundo.setPreco(new BigDecimal("6.00"));
+            assertTrue(produtoDAO.atualizarProduto(doSegundo).isConflito());
+        } finally {
+            ProdutoDAO.removerOuvinte(ouvinte);
+        }
+        assertEquals(1, gravados.size());
+        assertEquals(20, gravados.get(0).getQuantidade());
+        assertEquals(1, gravados.get(0).getVersao());
+    }
+}
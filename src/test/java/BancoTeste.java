@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Banco usado pelos testes e benchmarks: um H2 em memória em modo MySQL, configurado no
+ * build.gradle por -Dpetstop.db.url (a Conexao e os DAOs não sabem que não é o MySQL).
+ * As tabelas são as do Script.sql, sem o CREATE DATABASE/USE.
+ */
+public final class BancoTeste {
+
+    private static boolean criado;
+
+    private BancoTeste() {
+    }
+
+    //Cria as tabelas na primeira chamada; as seguintes não fazem nada
+    public static synchronized void criarTabelas() throws IOException, SQLException {
+        if (criado) return;
+        String script = new String(Files.readAllBytes(localizarScript()), StandardCharsets.UTF_8);
+        StringBuilder semComentarios = new StringBuilder();
+        for (String linha : script.split("\n")) {
+            int comentario = linha.indexOf("--");
+            semComentarios.append(comentario < 0 ? linha : linha.substring(0, comentario)).append('\n');
+        }
+        executar(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String instrucao : semComentarios.toString().split(";")) {
+                    String sql = instrucao.trim();
+                    if (sql.isEmpty() || sql.startsWith("CREATE DATABASE") || sql.startsWith("USE ")) continue;
+                    stmt.execute(sql);
+                }
+            }
+        });
+        criado = true;
+    }
+
+    //Apaga todos os registros e limpa os caches dos DAOs
+    public static void limpar() throws SQLException {
+        executar(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM animais");
+                stmt.executeUpdate("DELETE FROM produtos");
+                stmt.executeUpdate("DELETE FROM diario_aplicado");
+            }
+        });
+        PetDAO.getCache().limpar();
+        ProdutoDAO.getCache().limpar();
+    }
+
+    public interface ComConexao {
+        void executar(Connection conn) throws SQLException;
+    }
+
+    public static void executar(ComConexao tarefa) throws SQLException {
+        Connection conn = Conexao.conectar();
+        if (conn == null) {
+            throw new SQLException("Sem conexão com o banco de teste (verifique -Dpetstop.db.url).");
+        }
+        try {
+            tarefa.executar(conn);
+        } finally {
+            Conexao.fechar(conn);
+        }
+    }
+
+    //Script.sql na raiz do projeto (o diretório de trabalho dos testes e do JMH)
+    private static Path localizarScript() throws IOException {
+        Path script = Paths.get(System.getProperty("petstop.script", "Script.sql"));
+        if (!Files.exists(script)) {
+            throw new IOException("Script.sql não encontrado em " + script.toAbsolutePath());
+        }
+        return script;
+    }
+}
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Vários terminais na mesma máquina, cada um num processo com seu BarramentoAlteracoes, como
+ * nos computadores do balcão. Confere que todos recebem cada evento uma única vez (os
+ * repetidos são ignorados) e que o que um terminal publica chega a todos os outros.
+ */
+class BarramentoAlteracoesTest {
+
+    private static final int TERMINAIS = 3;
+    private static final int EVENTOS = 2_000;
+    private static final int REPETIDOS = 100; //Eventos enviados duas vezes, que devem ser ignorados
+
+    @Test
+    @Timeout(value = 2, unit = TimeUnit.MINUTES)
+    void todosOsTerminaisRecebemCadaEventoUmaVez() throws Exception {
+        BarramentoAlteracoes publicador = new BarramentoAlteracoes();
+        LongAdder produtosRecebidos = new LongAdder();
+        publicador.adicionarOuvinte(evento -> {
+            if (evento.getEntidade() == BarramentoAlteracoes.Entidade.PRODUTO) produtosRecebidos.increment();
+        });
+        assumeTrue(publicador.iniciar(), "Multicast indisponível nesta máquina");
+
+        List<Process> processos = new ArrayList<>();
+        try {
+            List<BufferedReader> saidas = new ArrayList<>();
+            for (int t = 1; t <= TERMINAIS; t++) {
+                Process processo = abrirTerminal(t);
+                processos.add(processo);
+                saidas.add(new BufferedReader(new InputStreamReader(processo.getInputStream(), StandardCharsets.UTF_8)));
+            }
+            for (BufferedReader saida : saidas) {
+                aguardarLinha(saida, "PRONTO");
+            }
+
+            for (int i = 1; i <= EVENTOS; i++) {
+                publicador.publicar(BarramentoAlteracoes.Entidade.PET, BarramentoAlteracoes.Operacao.ATUALIZADO, i, 1);
+                if (i % 200 == 0) Thread.sleep(1); //Ritmo de um balcão muito movimentado, sem encher o buffer de recepção
+            }
+            for (int i = 1; i <= REPETIDOS; i++) {
+                publicador.publicar(BarramentoAlteracoes.Entidade.PET, BarramentoAlteracoes.Operacao.ATUALIZADO, i, 1);
+            }
+
+            //Cada terminal publica um evento de produto, que os outros (e este processo) devem receber
+            for (Process processo : processos) {
+                new PrintWriter(processo.getOutputStream(), true, StandardCharsets.UTF_8).println("PUBLICAR");
+            }
+            for (int t = 0; t < saidas.size(); t++) {
+                assertEquals(String.format("RECEBIDOS pets=%d repetidos=%d produtos=%d", EVENTOS, REPETIDOS, TERMINAIS - 1),
+                        aguardarLinha(saidas.get(t), "RECEBIDOS"), "terminal " + (t + 1));
+            }
+            for (Process processo : processos) {
+                processo.waitFor(10, TimeUnit.SECONDS);
+            }
+            assertEquals(TERMINAIS, produtosRecebidos.sum(), "eventos de produto dos terminais recebidos aqui");
+        } finally {
+            publicador.encerrar();
+            processos.forEach(Process::destroy);
+        }
+    }
+
+    //Outra JVM com o mesmo classpath, rodando Terminal.main
+    private static Process abrirTerminal(int numero) throws IOException {
+        List<String> comando = new ArrayList<>(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path")));
+        for (String propriedade : new String[]{"petstop.barramento.grupo", "petstop.barramento.porta"}) {
+            if (System.getProperty(propriedade) != null) comando.add("-D" + propriedade + "=" + System.getProperty(propriedade));
+        }
+        comando.addAll(Arrays.asList(Terminal.class.getName(), String.valueOf(numero)));
+        return new ProcessBuilder(comando).redirectErrorStream(true).start();
+    }
+
+    //Lê a saída do terminal até a linha que começa com o prefixo (as demais são o log dele)
+    private static String aguardarLinha(BufferedReader saida, String prefixo) throws IOException {
+        String linha;
+        while ((linha = saida.readLine()) != null) {
+            if (linha.startsWith(prefixo)) return linha;
+        }
+        throw new IllegalStateException("O terminal terminou sem responder " + prefixo + ".");
+    }
+
+    //Um terminal: conta o que recebe e responde ao processo do teste pela saída padrão
+    public static final class Terminal {
+        public static void main(String[] args) throws Exception {
+            int numero = Integer.parseInt(args[0]);
+            BarramentoAlteracoes barramento = new BarramentoAlteracoes();
+            LongAdder pets = new LongAdder();
+            LongAdder produtos = new LongAdder();
+            barramento.adicionarOuvinte(evento -> {
+                if (evento.getEntidade() == BarramentoAlteracoes.Entidade.PET) {
+                    pets.increment();
+                } else {
+                    produtos.increment();
+                }
+            });
+            if (!barramento.iniciar()) System.exit(1);
+            System.out.println("PRONTO");
+            BufferedReader entrada = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            if (!"PUBLICAR".equals(entrada.readLine())) System.exit(1);
+            barramento.publicar(BarramentoAlteracoes.Entidade.PRODUTO, BarramentoAlteracoes.Operacao.INSERIDO, numero, 0);
+
+            //Espera até não chegar mais nada por 2 segundos
+            long ultimo = -1;
+            while (pets.sum() + produtos.sum() != ultimo) {
+                ultimo = pets.sum() + produtos.sum();
+                Thread.sleep(2_000);
+            }
+            System.out.println("RECEBIDOS pets=" + pets.sum() + " repetidos=" + barramento.getIgnorados() + " produtos=" + produtos.sum());
+            barramento.encerrar();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Reenvio de gravações do BufferEstoque (H2): um lote que já chegou ao banco não pode ser
+ * aplicado de novo, nem quando volta do arquivo de pendentes nem quando a resposta se perdeu.
+ */
+class BufferEstoqueTest {
+
+    @TempDir
+    Path pasta;
+
+    private final ProdutoDAO dao = new ProdutoDAO();
+    private Produto produto;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+        produto = new Produto("Ração teste de reenvio", 100, new BigDecimal("10.00"), true);
+        assertTrue(dao.adicionarProduto(produto).isGravado());
+    }
+
+    //A aplicação caiu depois do commit e antes de apagar o arquivo: na próxima execução o lote volta
+    @Test
+    void loteDoArquivoJaGravadoNaoEAplicadoDeNovo() throws Exception {
+        Path arquivo = pasta.resolve("pendentes.csv");
+        String conteudo = "77;1;" + produto.getId() + ";-10" + System.lineSeparator();
+        Files.write(arquivo, conteudo.getBytes(StandardCharsets.UTF_8));
+
+        BufferEstoque primeira = new BufferEstoque(dao, 20, arquivo);
+        primeira.iniciar();
+        primeira.encerrar();
+        assertEquals(90, quantidadeNoBanco());
+        assertFalse(Files.exists(arquivo));
+
+        Files.write(arquivo, conteudo.getBytes(StandardCharsets.UTF_8));
+        BufferEstoque segunda = new BufferEstoque(dao, 20, arquivo);
+        segunda.iniciar();
+        segunda.encerrar();
+        assertEquals(90, quantidadeNoBanco());
+        assertFalse(Files.exists(arquivo));
+    }
+
+    //O commit foi feito mas a resposta não chegou: o buffer reenvia o mesmo lote
+    @Test
+    void respostaPerdidaNaoAplicaDuasVezes() {
+        ProdutoDAO semResposta = new ProdutoDAO() {
+            private boolean perdida;
+
+            @Override
+            public ResultadoLote ajustarEstoques(long origem, long sequencia, long[] ids, long[] deltas) {
+                ResultadoLote resultado = super.ajustarEstoques(origem, sequencia, ids, deltas);
+                if (perdida) return resultado;
+                perdida = true;
+                ResultadoLote semConfirmacao = new ResultadoLote(ids.length);
+                semConfirmacao.registrarFalhas(0, ids.length, "Conexão perdida.");
+                return semConfirmacao;
+            }
+        };
+        BufferEstoque buffer = new BufferEstoque(semResposta, 60_000, pasta.resolve("pendentes.csv"));
+        buffer.ajustar(produto.getId(), -5);
+
+        assertEquals(0, buffer.gravar());
+        assertEquals(95, quantidadeNoBanco());
+        assertEquals(-5, buffer.getPendente(produto.getId()));
+
+        assertEquals(0, buffer.gravar()); //Já gravado: ignorado
+        assertEquals(95, quantidadeNoBanco());
+        assertEquals(0, buffer.getPendente(produto.getId()));
+
+        buffer.ajustar(produto.getId(), -1);
+        assertEquals(1, buffer.gravar());
+        assertEquals(94, quantidadeNoBanco());
+        buffer.encerrar();
+    }
+
+    //Vendas feitas enquanto o buffer encerra: cada uma entra na última gravação ou é gravada direto
+    @Test
+    void ajustesDuranteOEncerramentoNaoSePerdem() throws Exception {
+        BufferEstoque buffer = new BufferEstoque(dao, 60_000, pasta.resolve("pendentes.csv"));
+        buffer.iniciar();
+        int threads = 4;
+        int vendas = 500;
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> vendedores = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread vendedor = new Thread(() -> {
+                try {
+                    largada.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < vendas; i++) {
+                    buffer.registrarVenda(produto.getId(), 1);
+                }
+            });
+            vendedor.start();
+            vendedores.add(vendedor);
+        }
+        largada.countDown();
+        Thread.sleep(1);
+        buffer.encerrar();
+        for (Thread vendedor : vendedores) {
+            vendedor.join();
+        }
+
+        assertEquals(0, buffer.getPendente(produto.getId()));
+        assertEquals(100 - threads * vendas, quantidadeNoBanco());
+    }
+
+    private long quantidadeNoBanco() {
+        return dao.buscarProdutoNoBanco(produto.getId()).getQuantidade();
+    }
+}
@@ -0,0 +1,62 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * CatalogoProdutos carregado do H2 e mantido pelas gravações do ProdutoDAO; o relatório em
+ * memória sobre ele tem de bater com o do banco.
+ */
+class CatalogoProdutosTest {
+
+    private final ProdutoDAO dao = new ProdutoDAO();
+    private CatalogoProdutos catalogo;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+    }
+
+    @AfterEach
+    void encerrar() {
+        if (catalogo != null) ProdutoDAO.removerOuvinte(catalogo);
+    }
+
+    @Test
+    void carregaDoBancoESegueAsGravacoes() {
+        Produto racao = new Produto("Ração", 10, new BigDecimal("189.90"), true);
+        Produto coleira = new Produto("Coleira", 0, new BigDecimal("25.00"), false);
+        assertTrue(dao.adicionarProduto(racao).isGravado());
+        assertTrue(dao.adicionarProduto(coleira).isGravado());
+
+        catalogo = CatalogoProdutos.carregarDoBanco(dao);
+        assertNotNull(catalogo);
+        assertEquals(2, catalogo.getTamanho());
+        assertEquals(18_990, catalogo.getPrecoCentavos(racao.getId()));
+
+        //Gravações depois da carga chegam pelo Ouvinte
+        Produto petisco = new Produto("Petisco", 3, new BigDecimal("7.50"), true);
+        assertTrue(dao.adicionarProduto(petisco).isGravado());
+        racao.setPreco(new BigDecimal("199.90"));
+        assertTrue(dao.atualizarProduto(racao).isSucesso());
+        assertTrue(dao.removerProduto(coleira.getId()).isGravado());
+
+        assertEquals(2, catalogo.getTamanho());
+        assertEquals(19_990, catalogo.getPrecoCentavos(racao.getId()));
+        assertEquals(3, catalogo.getQuantidade(petisco.getId()));
+        assertFalse(catalogo.contem(coleira.getId()));
+
+        RelatorioEstoque.Relatorio noBanco = new RelatorioEstoque(null).gerarNoBanco(10, 50);
+        RelatorioEstoque.Relatorio emMemoria = RelatorioEstoque.gerarEmMemoria(catalogo.instantaneo(), 10, 50);
+        assertEquals(noBanco.getProdutos(), emMemoria.getProdutos());
+        assertEquals(noBanco.getUnidades(), emMemoria.getUnidades());
+        assertEquals(noBanco.getValorTotal(), emMemoria.getValorTotal());
+        assertEquals(noBanco.getSemEstoque(), emMemoria.getSemEstoque());
+    }
+}
@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Teste de carga do ControleEstoque: várias threads reservando, confirmando e liberando o mesmo
+ * produto, com a procura bem maior que o estoque. Nada pode ser vendido além do estoque e as
+ * baixas gravadas pelo BufferEstoque têm de bater com as vendas.
+ * A vazão por número de threads é medida pelo ControleEstoqueBenchmark (JMH).
+ */
+class ControleEstoqueTest {
+
+    private static final int OPERACOES_POR_THREAD = 200_000;
+
+    @TempDir
+    Path pasta;
+
+    @ParameterizedTest(name = "{0} faixa(s)")
+    @ValueSource(ints = {1, ControleEstoque.MAX_FAIXAS})
+    void nuncaVendeAlemDoEstoque(int faixas) throws Exception {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        long estoqueInicial = OPERACOES_POR_THREAD / 10L * threads;
+        ProdutoDAOMemoria dao = new ProdutoDAOMemoria();
+        dao.quantidades.put(1L, estoqueInicial);
+        BufferEstoque buffer = new BufferEstoque(dao, 50, pasta.resolve("pendentes.csv"));
+        ControleEstoque controle = new ControleEstoque(dao, buffer, faixas);
+
+        long vendido = venderEmThreads(controle, 1L, threads);
+        buffer.encerrar();
+
+        long saldo = controle.getDisponivel(1L);
+        assertTrue(vendido <= estoqueInicial, "vendido " + vendido + " de " + estoqueInicial);
+        assertEquals(estoqueInicial - vendido, saldo);
+        assertEquals(saldo, (long) dao.quantidades.get(1L), "baixas gravadas no banco");
+        assertEquals(0, controle.getReservado(1L));
+    }
+
+    //O mesmo, gravando de verdade na tabela produtos (H2) com ajustarEstoques
+    @Test
+    void baixasChegamNaTabelaProdutos() throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+        ProdutoDAO dao = new ProdutoDAO();
+        int threads = 4;
+        long estoqueInicial = 20_000;
+        Produto produto = new Produto("Ração teste de carga", estoqueInicial, new BigDecimal("10.00"), true);
+        assertTrue(dao.adicionarProduto(produto).isGravado());
+
+        BufferEstoque buffer = new BufferEstoque(dao, 20, pasta.resolve("pendentes.csv"));
+        buffer.iniciar();
+        ControleEstoque controle = new ControleEstoque(dao, buffer, 8);
+        long vendido = venderEmThreads(controle, produto.getId(), threads);
+        buffer.encerrar();
+
+        long[] noBanco = new long[1];
+        BancoTeste.executar(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT quantidade FROM produtos WHERE id = ?")) {
+                pstmt.setLong(1, produto.getId());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    assertTrue(rs.next());
+                    noBanco[0] = rs.getLong(1);
+                }
+            }
+        });
+        assertTrue(vendido <= estoqueInicial);
+        assertEquals(estoqueInicial - vendido, controle.getDisponivel(produto.getId()));
+        assertEquals(estoqueInicial - vendido, noBanco[0]);
+    }
+
+    //Reservas de 1 a 3 unidades; uma em cada dez é desistência (liberada). Retorna o total vendido.
+    private static long venderEmThreads(ControleEstoque controle, long id, int threads) throws InterruptedException {
+        long[] vendidoPorThread = new long[threads];
+        executarEmThreads(threads, t -> {
+            Random aleatorio = new Random(t);
+            long vendido = 0;
+            for (int i = 0; i < OPERACOES_POR_THREAD; i++) {
+                ControleEstoque.Reserva reserva = controle.reservar(id, 1 + aleatorio.nextInt(3));
+                if (reserva == null) continue;
+                if (aleatorio.nextInt(10) == 0) {
+                    controle.liberar(reserva);
+                } else if (controle.confirmar(reserva)) {
+                    vendido += reserva.getQuantidade();
+                }
+            }
+            vendidoPorThread[t] = vendido;
+        });
+        long vendido = 0;
+        for (long v : vendidoPorThread) {
+            vendido += v;
+        }
+        return vendido;
+    }
+
+    //Roda a tarefa em n threads ao mesmo tempo (cada uma recebe seu índice) e espera todas terminarem
+    private static void executarEmThreads(int n, IntConsumer tarefa) throws InterruptedException {
+        CountDownLatch largada = new CountDownLatch(1);
+        Thread[] threads = new Thread[n];
+        for (int t = 0; t < n; t++) {
+            int indice = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    largada.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                tarefa.accept(indice);
+            });
+            threads[t].start();
+        }
+        largada.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Reenvio do DiarioOffline ao banco (H2). O diário padrão fica desligado nos testes; aqui é
+ * usado um diário próprio, num arquivo temporário, e o reenvio é chamado diretamente.
+ */
+class DiarioOfflineTest {
+
+    @TempDir
+    Path pasta;
+
+    private final PetDAO petDAO = new PetDAO();
+    private DiarioOffline diario;
+    private Pet pet;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+        pet = new Pet("Rex", "Cão", 3, true);
+        assertTrue(petDAO.adicionarPet(pet).isGravado());
+        diario = new DiarioOffline(pasta.resolve("diario.dat"), pasta.resolve("conflitos.log"),
+                60_000, 4 << 20, false, petDAO, new ProdutoDAO());
+    }
+
+    @AfterEach
+    void encerrar() {
+        diario.encerrar();
+    }
+
+    //As duas edições foram feitas sobre a versão 0, a segunda sem saber da primeira
+    @Test
+    void duasEdicoesSemConexaoSaoAplicadasEmSequencia() {
+        Pet primeira = new Pet(pet.getId(), "Rex", "Cão", 4, true, 0);
+        Pet segunda = new Pet(pet.getId(), "Rex II", "Cão", 4, true, 0);
+        assertTrue(diario.registrar(DiarioOffline.Tipo.ATUALIZAR_PET, primeira, null, pet.getId()));
+        assertTrue(diario.registrar(DiarioOffline.Tipo.ATUALIZAR_PET, segunda, null, pet.getId()));
+
+        assertEquals(2, diario.reenviar());
+        assertEquals(0, diario.contarPendentes());
+        Pet gravado = petDAO.buscarPetPorId(pet.getId());
+        assertEquals("Rex II", gravado.getNome());
+        assertEquals(4, gravado.getIdade());
+        assertEquals(2, gravado.getVersao());
+        assertFalse(Files.exists(pasta.resolve("conflitos.log")));
+    }
+
+    //A aplicação foi fechada entre as duas edições: o encadeamento é refeito a partir do arquivo
+    @Test
+    void encadeamentoSobreviveAoReinicio() {
+        assertTrue(diario.registrar(DiarioOffline.Tipo.ATUALIZAR_PET, new Pet(pet.getId(), "Rex", "Cão", 4, true, 0), null, pet.getId()));
+
+        DiarioOffline reaberto = new DiarioOffline(pasta.resolve("diario.dat"), pasta.resolve("conflitos.log"),
+                60_000, 4 << 20, false, petDAO, new ProdutoDAO());
+        try {
+            reaberto.iniciar();
+            assertTrue(reaberto.registrar(DiarioOffline.Tipo.ATUALIZAR_PET, new Pet(pet.getId(), "Rex II", "Cão", 4, true, 0), null, pet.getId()));
+            assertEquals(2, reaberto.reenviar());
+        } finally {
+            reaberto.encerrar();
+        }
+        assertEquals("Rex II", petDAO.buscarPetPorId(pet.getId()).getNome());
+        assertEquals(2, petDAO.buscarPetPorId(pet.getId()).getVersao());
+    }
+
+    //Outro terminal alterou o pet antes do reenvio: as edições deste terminal vão para o arquivo de conflitos
+    @Test
+    void edicaoDeOutroTerminalGeraConflito() throws Exception {
+        assertTrue(diario.registrar(DiarioOffline.Tipo.ATUALIZAR_PET, new Pet(pet.getId(), "Rex", "Cão", 4, true, 0), null, pet.getId()));
+        assertTrue(diario.registrar(DiarioOffline.Tipo.ATUALIZAR_PET, new Pet(pet.getId(), "Rex II", "Cão", 4, true, 0), null, pet.getId()));
+
+        Pet outroTerminal = petDAO.buscarPetPorId(pet.getId());
+        outroTerminal.setNome("Bidu");
+        assertTrue(petDAO.atualizarPet(outroTerminal).isSucesso());
+
+        assertEquals(2, diario.reenviar());
+        assertEquals("Bidu", petDAO.buscarPetPorId(pet.getId()).getNome());
+        List<String> conflitos = Files.readAllLines(pasta.resolve("conflitos.log"), StandardCharsets.UTF_8);
+        assertEquals(2, conflitos.size());
+        assertTrue(conflitos.get(0).contains(DiarioOffline.CONFLITO));
+    }
+
+    //Uma cópia do arquivo, com o último registro corrompido (gravação interrompida), é reenviada
+    //antes do original: como se a aplicação caísse depois do commit e antes de anotar o que enviou
+    @Test
+    void registroCorrompidoDescartadoEReenvioRepetidoNaoDuplica() throws Exception {
+        ProdutoDAO produtoDAO = new ProdutoDAO();
+        for (int i = 0; i < 3; i++) {
+            Produto produto = new Produto("Ração do diário " + i, 10, new BigDecimal("9.90"), true);
+            assertTrue(diario.registrar(DiarioOffline.Tipo.ADICIONAR_PRODUTO, null, produto, 0));
+        }
+        Path copia = pasta.resolve("copia.dat");
+        Files.copy(pasta.resolve("diario.dat"), copia);
+        corromperUltimoRegistro(copia);
+
+        DiarioOffline reaberto = new DiarioOffline(copia, pasta.resolve("conflitos.log"),
+                60_000, 4 << 20, false, petDAO, produtoDAO);
+        try {
+            reaberto.iniciar();
+            assertEquals(2, reaberto.contarPendentes());
+            assertEquals(2, reaberto.reenviar());
+        } finally {
+            reaberto.encerrar();
+        }
+        assertEquals(2, produtoDAO.contarProdutos());
+
+        assertEquals(3, diario.reenviar()); //Os dois primeiros já estão em diario_aplicado
+        assertEquals(3, produtoDAO.contarProdutos());
+    }
+
+    //Troca um byte dos dados do último registro (os registros começam depois do cabeçalho de 64 bytes)
+    private static void corromperUltimoRegistro(Path arquivo) throws Exception {
+        ByteBuffer dados = ByteBuffer.wrap(Files.readAllBytes(arquivo));
+        int posicao = 64;
+        int ultimo = -1;
+        while (posicao + 8 <= dados.capacity() && dados.getInt(posicao) > 0) {
+            ultimo = posicao;
+            posicao += (8 + dados.getInt(posicao) + 7) & ~7;
+        }
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            canal.read(b, ultimo + 20);
+            b.put(0, (byte) (b.get(0) ^ 0x5A)).rewind();
+            canal.write(b, ultimo + 20);
+        }
+    }
+}
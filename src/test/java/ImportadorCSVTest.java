@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * CSV do ExportadorDados lido de volta pelo ImportadorCSV (H2), com aspas, separadores e
+ * quebras de linha dentro dos campos.
+ */
+class ImportadorCSVTest {
+
+    @TempDir
+    Path pasta;
+
+    private final ProdutoDAO dao = new ProdutoDAO();
+
+    @BeforeEach
+    void preparar() throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+    }
+
+    @Test
+    void exportadoComQuebraDeLinhaVoltaIgual() throws Exception {
+        String nome = "Ração \"Premium\", 10kg\nsabor carne;\n\nfrango";
+        assertTrue(dao.adicionarProduto(new Produto(nome, 7, new BigDecimal("189.90"), true)).isGravado());
+        assertTrue(dao.adicionarProduto(new Produto("Coleira", 2, new BigDecimal("25.00"), false)).isGravado());
+        Path arquivo = pasta.resolve("produtos.csv");
+        assertEquals(2, new ExportadorDados().exportar("produtos", ExportadorDados.Formato.CSV, arquivo, false));
+        BancoTeste.limpar();
+
+        ImportadorCSV.Relatorio relatorio = new ImportadorCSV(dao, new PetDAO()).importarProdutos(arquivo);
+
+        assertEquals(2, relatorio.getLidas());
+        assertEquals(2, relatorio.getImportadas());
+        List<Produto> produtos = dao.listarTodosProdutos();
+        assertEquals("Coleira", produtos.get(0).getNome());
+        assertEquals(nome, produtos.get(1).getNome());
+        assertEquals(7, produtos.get(1).getQuantidade());
+    }
+
+    //Aspas sem fechar: o registro é rejeitado pela linha em que começou, e os anteriores são importados
+    @Test
+    void aspasSemFecharSaoRejeitadas() throws Exception {
+        Path arquivo = pasta.resolve("produtos.csv");
+        String conteudo = "nome;quantidade;preco;disponivel\n"
+                + "Petisco;3;7,50;sim\n"
+                + "\"Ração;5;10,00;sim\n"
+                + "Coleira;2;25,00;não\n";
+        Files.write(arquivo, conteudo.getBytes(StandardCharsets.UTF_8));
+
+        ImportadorCSV.Relatorio relatorio = new ImportadorCSV(dao, new PetDAO()).importarProdutos(arquivo);
+
+        assertEquals(1, relatorio.getImportadas());
+        assertEquals(1, relatorio.getRejeitadas());
+        List<String> rejeitadas = Files.readAllLines(pasta.resolve("produtos.csv.rejeitados.csv"), StandardCharsets.UTF_8);
+        assertTrue(rejeitadas.get(1).startsWith("3;"), rejeitadas.get(1));
+    }
+}
@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Busca no IndiceBusca com mais resultados que o limite: os retornados são os primeiros na
+ * ordem do índice, não os primeiros que a busca encontrou, e o total conta todos.
+ */
+class IndiceBuscaTest {
+
+    private final IndiceBusca<Pet> indice = new IndiceBusca<>("pets", Pet::getId,
+            p -> p.getNome() + " " + p.getEspecie(), p -> p,
+            Comparator.comparing(Pet::getNome, String.CASE_INSENSITIVE_ORDER).thenComparing(Pet::getId));
+
+    @Test
+    void limiteFicaComOsPrimeirosNaOrdem() {
+        //Inseridos do último para o primeiro, e com IDs que espalham a ordem no HashSet
+        for (int i = 500; i >= 1; i--) {
+            indice.colocar(new Pet((long) i * 7919, String.format("Rex %03d", i), "Cão", 1, true));
+        }
+        indice.colocar(new Pet(1L, "Mia", "Gato", 2, false));
+
+        ResultadoBusca<Pet> resultado = indice.buscar("rex", 10);
+        assertEquals(500, resultado.getTotal());
+        assertTrue(resultado.isTruncado());
+        List<Pet> pets = resultado.getRegistros();
+        assertEquals(10, pets.size());
+        for (int i = 0; i < pets.size(); i++) {
+            assertEquals(String.format("Rex %03d", i + 1), pets.get(i).getNome());
+        }
+    }
+
+    @Test
+    void semPassarDoLimiteRetornaTodos() {
+        indice.colocar(new Pet(1L, "Ração Cão", "Cão", 1, true));
+        indice.colocar(new Pet(2L, "Bidu", "Cão", 1, true));
+        indice.colocar(new Pet(3L, "Mia", "Gato", 1, true));
+
+        ResultadoBusca<Pet> resultado = indice.buscar("CAO", 10);
+        assertEquals(2, resultado.getTotal());
+        assertFalse(resultado.isTruncado());
+        assertEquals("Bidu", resultado.getRegistros().get(0).getNome());
+        assertEquals(0, indice.buscar("zzz", 10).getTotal());
+    }
+}
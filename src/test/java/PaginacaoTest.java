@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Paginação por chave (nome, id) do PetDAO no H2, com nomes repetidos entre uma página e outra.
+ */
+class PaginacaoTest {
+
+    private final PetDAO dao = new PetDAO();
+
+    @BeforeEach
+    void preparar() throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+        for (int i = 0; i < 25; i++) {
+            //Cinco pets com cada nome (espécies diferentes): as páginas de 10 cortam no meio de um mesmo nome
+            assertTrue(dao.adicionarPet(new Pet("Pet " + (char) ('E' - i % 5), "Raça " + i, i, true)).isGravado());
+        }
+    }
+
+    @Test
+    void paginasPorChaveCobremTudoNaOrdem() {
+        List<Pet> lidos = new ArrayList<>();
+        List<Pet> pagina = dao.listarPetsPagina(null, null, 10);
+        while (true) {
+            lidos.addAll(pagina);
+            if (pagina.size() < 10) break;
+            Pet ultimo = pagina.get(pagina.size() - 1);
+            pagina = dao.listarPetsPagina(ultimo.getNome(), ultimo.getId(), 10);
+        }
+
+        assertEquals(25, lidos.size());
+        for (int i = 1; i < lidos.size(); i++) {
+            Pet anterior = lidos.get(i - 1);
+            Pet atual = lidos.get(i);
+            int nome = anterior.getNome().compareTo(atual.getNome());
+            assertTrue(nome < 0 || (nome == 0 && anterior.getId() < atual.getId()), "Fora da ordem: " + anterior + " / " + atual);
+        }
+        //O salto por posição (OFFSET) cai no mesmo lugar da rolagem por chave
+        assertEquals(ids(lidos.subList(10, 20)), ids(dao.listarPetsPorPosicao(10, 10)));
+    }
+
+    @Test
+    void prefixoPorChaveContinuaDoUltimoExibido() {
+        assertTrue(dao.adicionarPet(new Pet("Pet_X", "Gato", 1, true)).isGravado());
+
+        List<Pet> primeira = dao.listarPetsPorPrefixo("Pet C", null, null, 0, 3);
+        assertEquals(3, primeira.size());
+        Pet ultimo = primeira.get(2);
+        List<Pet> segunda = dao.listarPetsPorPrefixo("Pet C", ultimo.getNome(), ultimo.getId(), 3, 3);
+        assertEquals(2, segunda.size());
+        assertTrue(segunda.get(0).getId() > ultimo.getId());
+
+        //"_" digitado pelo usuário não é curinga do LIKE
+        assertEquals(1, dao.listarPetsPorPrefixo("Pet_", null, null, 0, 10).size());
+        assertEquals(5, dao.contarPetsPorPrefixo("Pet A"));
+    }
+
+    private static List<Long> ids(List<Pet> pets) {
+        List<Long> ids = new ArrayList<>();
+        for (Pet pet : pets) ids.add(pet.getId());
+        return ids;
+    }
+}
@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PoolConexoes sobre o H2 dos testes, com um pool próprio e pequeno (não o da Conexao).
+ */
+class PoolConexoesTest {
+
+    private final PoolConexoes pool = new PoolConexoes(System.getProperty("petstop.db.url"),
+            System.getProperty("petstop.db.usuario"), System.getProperty("petstop.db.senha", ""),
+            2, 200, 60_000, 0, 8);
+
+    @AfterEach
+    void encerrar() {
+        pool.encerrar();
+    }
+
+    @Test
+    void conexaoDevolvidaEReaproveitada() throws Exception {
+        Connection primeira = pool.getConnection();
+        primeira.close();
+        primeira.close(); //close() repetido não devolve duas vezes
+        assertTrue(primeira.isClosed());
+        assertThrows(SQLException.class, primeira::createStatement);
+
+        try (Connection segunda = pool.getConnection()) {
+            assertTrue(segunda.isValid(1));
+            assertEquals(1, pool.getAtivas());
+        }
+        assertEquals(1, pool.getConexoesCriadas());
+        assertEquals(1, pool.getOciosas());
+        assertEquals(2, pool.getTotalEmprestimos());
+    }
+
+    @Test
+    void esgotadoEsperaEDesiste() throws Exception {
+        try (Connection primeira = pool.getConnection(); Connection segunda = pool.getConnection()) {
+            assertThrows(SQLTimeoutException.class, pool::getConnection);
+        }
+        try (Connection depois = pool.getConnection()) {
+            assertTrue(depois.isValid(1)); //As vagas voltaram
+        }
+    }
+
+    //O DAO devolveu a conexão no meio de uma transação: o pool a desfaz e restaura o autoCommit
+    @Test
+    void transacaoAbertaEDesfeitaNaDevolucao() throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.executeUpdate("INSERT INTO animais (nome, especie, idade, vacinado) VALUES ('Rex', 'Cão', 1, TRUE)");
+        }
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM animais")) {
+            assertTrue(conn.getAutoCommit());
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void aquecerNaoPassaDoTamanhoMaximo() {
+        assertEquals(2, pool.aquecer(5));
+        assertEquals(2, pool.getOciosas());
+        assertEquals(0, pool.aquecer(2)); //Já aquecido
+        assertEquals(2, pool.getConexoesCriadas());
+    }
+
+    //Com todas as vagas emprestadas o aquecimento não abre conexões além das emprestadas
+    @Test
+    void aquecerComPoolEmUsoNaoAbreConexaoExtra() throws Exception {
+        Connection primeira = pool.getConnection();
+        Connection segunda = pool.getConnection();
+        assertEquals(0, pool.aquecer(2));
+        primeira.close();
+        segunda.close();
+        assertEquals(2, pool.getOciosas());
+        assertEquals(2, pool.getConexoesCriadas());
+    }
+}
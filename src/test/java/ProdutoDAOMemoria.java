@@ -0,0 +1,30 @@
+import java.math.BigDecimal;
+import java.util.concurrent.ConcurrentHashMap;
+
+//ProdutoDAO sem banco: as quantidades ficam num mapa, para testes e benchmarks do controle de estoque
+public class ProdutoDAOMemoria extends ProdutoDAO {
+
+    public final ConcurrentHashMap<Long, Long> quantidades = new ConcurrentHashMap<>();
+
+    @Override
+    Produto buscarProdutoNoBanco(long id) {
+        Long quantidade = quantidades.get(id);
+        return quantidade == null ? null : new Produto(id, "Produto " + id, quantidade, BigDecimal.ONE, quantidade > 0);
+    }
+
+    @Override
+    public ResultadoLote ajustarEstoques(long[] ids, long[] deltas) {
+        for (int i = 0; i < ids.length; i++) {
+            quantidades.merge(ids[i], deltas[i], Long::sum);
+        }
+        ResultadoLote resultado = new ResultadoLote(ids.length);
+        resultado.registrarConfirmacao();
+        return resultado;
+    }
+
+    //Sem estoque_aplicado: o BufferEstoque só reenvia um lote quando a gravação falha, e aqui ela não falha
+    @Override
+    public ResultadoLote ajustarEstoques(long origem, long sequencia, long[] ids, long[] deltas) {
+        return ajustarEstoques(ids, deltas);
+    }
+}
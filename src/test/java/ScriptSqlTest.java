@@ -0,0 +1,18 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * O banco dos testes: as tabelas do Script.sql carregam no H2 em modo MySQL e os DAOs as
+ * enxergam pela Conexao, como enxergariam o MySQL.
+ */
+class ScriptSqlTest {
+
+    @Test
+    void tabelasDoScriptCarregamNoH2() throws Exception {
+        BancoTeste.criarTabelas();
+        BancoTeste.limpar();
+        assertEquals(0, new PetDAO().contarPets());
+        assertEquals(0, new ProdutoDAO().contarProdutos());
+    }
+}